@@ -1,5 +1,6 @@
 package de.hshn.mi.pdbg.basicservice;
 
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
 import de.hshn.mi.pdbg.schema.SchemaGenerator;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -27,10 +28,11 @@ public final class DBCreator implements SchemaGenerator {
 
         "SET WRITE_DELAY FALSE", // S p e c i f i c t o HsqlDB
         "CREATE TABLE Person (\n" +
-                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,\n" +
+                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY (START WITH 1),\n" +
                     " Vorname VARCHAR(50),\n" +
                     " Nachname VARCHAR(50),\n" +
-                    " Geburtsdatum Date\n" +
+                    " Geburtsdatum Date,\n" +
+                    " Version BIGINT DEFAULT 0 NOT NULL\n" +
                     ");\n" +
                     "CREATE TABLE Patient(\n" +
                     " ID BIGINT PRIMARY KEY references Person(ID)\n" +
@@ -39,12 +41,13 @@ public final class DBCreator implements SchemaGenerator {
                     " Versicherungsnummer VARCHAR(50)\n" +
                     ");\n" +
                     "CREATE TABLE Station (\n" +
-                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,\n" +
+                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY (START WITH 1),\n" +
                     " Bezeichnung VARCHAR(50),\n" +
-                    " Bettenzahl INT\n" +
+                    " Bettenzahl INT,\n" +
+                    " Version BIGINT DEFAULT 0 NOT NULL\n" +
                     ");\n" +
                     "CREATE TABLE Aufenthalt (\n" +
-                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,\n" +
+                    " ID BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY (START WITH 1),\n" +
                     " PID BIGINT references Patient(ID)\n" +
                     "on delete set null\n" +
                     "on update cascade,\n" +
@@ -52,11 +55,85 @@ public final class DBCreator implements SchemaGenerator {
                     "on delete set null\n" +
                     "on update cascade,\n" +
                     " Aufnahmedatum Date,\n" +
-                    " Entlassdatum Date\n" +
-                    ");\n",
+                    " Entlassdatum Date,\n" +
+                    " Version BIGINT DEFAULT 0 NOT NULL\n" +
+                    ");\n" +
+                    "CREATE SEQUENCE pdbg_id_seq AS BIGINT START WITH 1 INCREMENT BY 50;\n",
         "SHUTDOWN" // S p e c i f i c t o HsqlDB
     };
 
+    /**
+     * Trigger function and row triggers that publish every change of the hospital tables on the
+     * {@code pdbg_changes} channel as {@code table:operation:id} (PostgreSQL only).
+     */
+    protected static final String SQL_CHANGE_FEED_STATEMENTS =
+        "CREATE OR REPLACE FUNCTION pdbg_notify_change() RETURNS trigger AS $$\n" +
+                    "DECLARE\n" +
+                    " row_id BIGINT;\n" +
+                    "BEGIN\n" +
+                    " IF TG_OP = 'DELETE' THEN\n" +
+                    "  row_id := OLD.ID;\n" +
+                    " ELSE\n" +
+                    "  row_id := NEW.ID;\n" +
+                    " END IF;\n" +
+                    " PERFORM pg_notify('pdbg_changes', TG_TABLE_NAME || ':' || TG_OP || ':' || row_id);\n" +
+                    " RETURN NULL;\n" +
+                    "END;\n" +
+                    "$$ LANGUAGE plpgsql;\n" +
+                    "CREATE TRIGGER person_change_feed AFTER INSERT OR UPDATE OR DELETE ON Person\n" +
+                    "FOR EACH ROW EXECUTE FUNCTION pdbg_notify_change();\n" +
+                    "CREATE TRIGGER patient_change_feed AFTER INSERT OR UPDATE OR DELETE ON Patient\n" +
+                    "FOR EACH ROW EXECUTE FUNCTION pdbg_notify_change();\n" +
+                    "CREATE TRIGGER station_change_feed AFTER INSERT OR UPDATE OR DELETE ON Station\n" +
+                    "FOR EACH ROW EXECUTE FUNCTION pdbg_notify_change();\n" +
+                    "CREATE TRIGGER aufenthalt_change_feed AFTER INSERT OR UPDATE OR DELETE ON Aufenthalt\n" +
+                    "FOR EACH ROW EXECUTE FUNCTION pdbg_notify_change();\n";
+
+    /**
+     * Secondary indexes, executed on their own, because HSQLDB resolves the table of a {@code CREATE INDEX} before
+     * the preceding statements of the same batch have run.
+     * <ul>
+     *     <li>{@code person_name}: the first page of patients sorted by name, read in index order.</li>
+     *     <li>{@code patient_insurance_number}: the lookup by insurance number; not unique, as old data has
+     *     duplicates.</li>
+     * </ul>
+     */
+    protected static final String SQL_INDEX_STATEMENTS =
+        "CREATE INDEX person_name ON Person (Nachname, Vorname, ID);\n" +
+                    "CREATE INDEX patient_insurance_number ON Patient (Versicherungsnummer)";
+
+    /**
+     * Index on the patient of the stays, for the stays of a patient and their admission date range (PostgreSQL,
+     * which does not index foreign keys). HSQLDB indexes {@code PID} for the foreign key already and its planner
+     * reads the stays of a patient from that index, so the index is not created there.
+     */
+    protected static final String SQL_STAY_PATIENT_INDEX_STATEMENTS =
+        "CREATE INDEX aufenthalt_pid_dates ON Aufenthalt (PID, Aufnahmedatum, Entlassdatum)";
+
+    /**
+     * Partial index over the open stays of every ward in admission order, for the ward census and the bed counts,
+     * which then do not read the discharged stays (PostgreSQL).
+     */
+    protected static final String SQL_OPEN_STAY_INDEX_STATEMENTS =
+        "CREATE INDEX aufenthalt_open_by_ward ON Aufenthalt (SID, Aufnahmedatum) WHERE Entlassdatum IS NULL";
+
+    /**
+     * The same for databases without partial indexes: the open stays of a ward are the range of the index
+     * without discharge date.
+     */
+    protected static final String SQL_OPEN_STAY_INDEX_STATEMENTS_GENERIC =
+        "CREATE INDEX aufenthalt_open_by_ward ON Aufenthalt (SID, Entlassdatum, Aufnahmedatum)";
+
+    /**
+     * GiST index on the stay period of every patient, used by overlap queries on {@code daterange}
+     * (PostgreSQL only, needs the {@code btree_gist} extension for the {@code BIGINT} column). It is skipped if
+     * the extension cannot be installed, e.g. for lack of privileges; the overlap queries then run without it.
+     */
+    protected static final String SQL_RANGE_INDEX_STATEMENTS =
+        "CREATE EXTENSION IF NOT EXISTS btree_gist;\n" +
+                    "CREATE INDEX aufenthalt_stay_range ON Aufenthalt USING gist " +
+                    "(PID, daterange(Aufnahmedatum, Entlassdatum, '[]'));\n";
+
     @Override
     public boolean createDatabase(String s, String s1, String s2) {
         try (Connection conn = createConnection(s, s1, s2
@@ -66,6 +143,18 @@ public final class DBCreator implements SchemaGenerator {
         ) {
             //stmt.executeUpdate(SQL_DDL_STATEMENTS[0]);
             stmt.executeUpdate(SQL_DDL_STATEMENTS[1]);
+            stmt.executeUpdate(SQL_INDEX_STATEMENTS);
+            stmt.executeUpdate(SqlDialect.of(conn) == SqlDialect.POSTGRESQL ? SQL_OPEN_STAY_INDEX_STATEMENTS
+                    : SQL_OPEN_STAY_INDEX_STATEMENTS_GENERIC);
+            if (SqlDialect.of(conn) == SqlDialect.POSTGRESQL) {
+                stmt.executeUpdate(SQL_STAY_PATIENT_INDEX_STATEMENTS);
+                stmt.executeUpdate(SQL_CHANGE_FEED_STATEMENTS);
+                try {
+                    stmt.executeUpdate(SQL_RANGE_INDEX_STATEMENTS);
+                } catch (SQLException ignored) {
+                    // overlap queries still work without the index, just slower
+                }
+            }
             // stmt.executeUpdate(SQL_DDL_STATEMENTS[2]);
 
             System.out.println("Database created successfully...");
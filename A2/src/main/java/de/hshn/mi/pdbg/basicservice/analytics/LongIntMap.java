@@ -0,0 +1,84 @@
+package de.hshn.mi.pdbg.basicservice.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} keys to {@code int} values, used for the dictionary encoding of IDs
+ * while loading a snapshot. Unlike a {@code HashMap<Long, Integer>} it does not box a key for every lookup.
+ * Not thread-safe.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+final class LongIntMap {
+
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of a key, or {@link #MISSING}.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Stores a value, which must not be negative.
+     */
+    void put(long key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != MISSING) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
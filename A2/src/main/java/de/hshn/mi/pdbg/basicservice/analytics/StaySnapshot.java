@@ -0,0 +1,322 @@
+package de.hshn.mi.pdbg.basicservice.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Immutable column-oriented copy of {@code Aufenthalt} and {@code Station} for reports. Every stay is a position
+ * in a set of primitive arrays, ordered by stay ID; dates are epoch days, wards and patients are dictionary
+ * encoded as dense {@code int} codes. A stay takes about 30 bytes instead of several hundred for a
+ * {@code HospitalStayImpl} with its {@code Date} objects.
+ * <p>
+ * The aggregation operators scan the columns in parallel on the common fork-join pool. Snapshots are created and
+ * refreshed by {@link StaySnapshotLoader}; a refresh creates a new snapshot and leaves this one untouched, so a
+ * report can keep using the snapshot it started with.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class StaySnapshot {
+
+    /**
+     * The discharge day of stays that are still open.
+     */
+    public static final int OPEN = Integer.MAX_VALUE;
+
+    /**
+     * Ranges smaller than this are scanned by a single task.
+     */
+    private static final int SCAN_THRESHOLD = 1 << 16;
+
+    final long[] stayIds;
+    final long[] versions;
+    final int[] admissionDays;
+    final int[] dischargeDays;
+    final int[] wardCodes;
+    final int[] patientCodes;
+    final long[] wardIds;
+    final String[] wardNames;
+    final int[] wardBeds;
+    final long[] patientIds;
+    private final Map<Long, Integer> wardCodeById;
+
+    StaySnapshot(long[] stayIds, long[] versions, int[] admissionDays, int[] dischargeDays, int[] wardCodes,
+                 int[] patientCodes, long[] wardIds, String[] wardNames, int[] wardBeds, long[] patientIds) {
+        this.stayIds = stayIds;
+        this.versions = versions;
+        this.admissionDays = admissionDays;
+        this.dischargeDays = dischargeDays;
+        this.wardCodes = wardCodes;
+        this.patientCodes = patientCodes;
+        this.wardIds = wardIds;
+        this.wardNames = wardNames;
+        this.wardBeds = wardBeds;
+        this.patientIds = patientIds;
+        this.wardCodeById = new HashMap<>();
+        for (int code = 0; code < wardIds.length; code++) {
+            wardCodeById.put(wardIds[code], code);
+        }
+    }
+
+    /**
+     * Returns the number of stays.
+     *
+     * @return the number of stays
+     */
+    public int size() {
+        return stayIds.length;
+    }
+
+    /**
+     * Returns the number of wards in the ward dictionary.
+     *
+     * @return the number of wards
+     */
+    public int wardCount() {
+        return wardIds.length;
+    }
+
+    public long getWardId(int wardCode) {
+        return wardIds[wardCode];
+    }
+
+    public String getWardName(int wardCode) {
+        return wardNames[wardCode];
+    }
+
+    public int getWardBeds(int wardCode) {
+        return wardBeds[wardCode];
+    }
+
+    /**
+     * Returns the dictionary code of a ward.
+     *
+     * @param wardId the ID of the ward
+     * @return the code, or -1 if the ward is unknown
+     */
+    public int getWardCode(long wardId) {
+        Integer code = wardCodeById.get(wardId);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Counts the discharged stays by their length in days (discharge day minus admission day).
+     *
+     * @param maxDays  the last bucket; longer stays are counted in it as well
+     * @param wardCode the ward to count, or -1 for all wards
+     * @return the number of stays per length, index = days
+     */
+    public long[] lengthOfStayHistogram(int maxDays, int wardCode) {
+        if (maxDays < 0) {
+            throw new AssertionError("The number of days must not be negative");
+        }
+        return scan(() -> new long[maxDays + 1], (histogram, from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (dischargeDays[i] != OPEN && (wardCode < 0 || wardCodes[i] == wardCode)) {
+                    int days = Math.max(0, dischargeDays[i] - admissionDays[i]);
+                    histogram[Math.min(days, maxDays)]++;
+                }
+            }
+        }, StaySnapshot::add);
+    }
+
+    /**
+     * Returns the average length in days of the discharged stays of every ward.
+     *
+     * @return the average per ward code, NaN for wards without discharged stays
+     */
+    public double[] averageLengthOfStayPerWard() {
+        int wards = wardCount();
+        long[] sums = scan(() -> new long[2 * wards], (acc, from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (dischargeDays[i] != OPEN && wardCodes[i] >= 0) {
+                    acc[2 * wardCodes[i]] += dischargeDays[i] - admissionDays[i];
+                    acc[2 * wardCodes[i] + 1]++;
+                }
+            }
+        }, StaySnapshot::add);
+        double[] averages = new double[wards];
+        for (int code = 0; code < wards; code++) {
+            averages[code] = sums[2 * code + 1] == 0 ? Double.NaN : (double) sums[2 * code] / sums[2 * code + 1];
+        }
+        return averages;
+    }
+
+    /**
+     * Counts admissions and discharges per ward within a range of days (ward turnover).
+     *
+     * @param fromDay the first epoch day
+     * @param toDay   the last epoch day
+     * @return {@code [0][wardCode]} admissions and {@code [1][wardCode]} discharges
+     */
+    public long[][] turnoverPerWard(long fromDay, long toDay) {
+        int wards = wardCount();
+        long[] counts = scan(() -> new long[2 * wards], (acc, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int ward = wardCodes[i];
+                if (ward < 0) {
+                    continue;
+                }
+                if (admissionDays[i] >= fromDay && admissionDays[i] <= toDay) {
+                    acc[ward]++;
+                }
+                if (dischargeDays[i] != OPEN && dischargeDays[i] >= fromDay && dischargeDays[i] <= toDay) {
+                    acc[wards + ward]++;
+                }
+            }
+        }, StaySnapshot::add);
+        return new long[][] {Arrays.copyOfRange(counts, 0, wards), Arrays.copyOfRange(counts, wards, 2 * wards)};
+    }
+
+    /**
+     * Returns the number of patients per ward on every day of a range.
+     *
+     * @param wardCode the ward
+     * @param fromDay  the first epoch day
+     * @param toDay    the last epoch day
+     * @return the occupancy per day, index 0 being {@code fromDay}
+     */
+    public int[] dailyOccupancy(int wardCode, long fromDay, long toDay) {
+        if (fromDay > toDay) {
+            throw new AssertionError("The start date cannot be later than the enddate!");
+        }
+        int days = (int) (toDay - fromDay + 1);
+        long[] delta = scan(() -> new long[days + 1], (acc, from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (wardCodes[i] == wardCode && admissionDays[i] <= toDay && dischargeDays[i] >= fromDay) {
+                    acc[(int) Math.max(0, admissionDays[i] - fromDay)]++;
+                    acc[(int) Math.min(days, (long) dischargeDays[i] - fromDay + 1)]--;
+                }
+            }
+        }, StaySnapshot::add);
+        int[] occupancy = new int[days];
+        long current = 0;
+        for (int day = 0; day < days; day++) {
+            current += delta[day];
+            occupancy[day] = (int) current;
+        }
+        return occupancy;
+    }
+
+    /**
+     * Returns the share of discharged stays that were followed by another admission of the same patient within
+     * the given number of days after the discharge.
+     *
+     * @param withinDays the readmission window
+     * @return the readmission rate between 0 and 1, 0 if there are no discharged stays
+     */
+    public double readmissionRate(int withinDays) {
+        int patients = patientIds.length;
+        // group the stays by patient (counting sort), then order every group by admission
+        int[] start = new int[patients + 1];
+        for (int code : patientCodes) {
+            if (code >= 0) {
+                start[code + 1]++;
+            }
+        }
+        for (int code = 0; code < patients; code++) {
+            start[code + 1] += start[code];
+        }
+        int[] order = new int[start[patients]];
+        int[] next = Arrays.copyOf(start, patients);
+        for (int i = 0; i < patientCodes.length; i++) {
+            if (patientCodes[i] >= 0) {
+                order[next[patientCodes[i]]++] = i;
+            }
+        }
+        long[] counts = scan(patients, () -> new long[2], (acc, from, to) -> {
+            for (int patient = from; patient < to; patient++) {
+                sortByAdmission(order, start[patient], start[patient + 1]);
+                for (int k = start[patient]; k < start[patient + 1]; k++) {
+                    int stay = order[k];
+                    if (dischargeDays[stay] == OPEN) {
+                        continue;
+                    }
+                    acc[1]++;
+                    if (k + 1 < start[patient + 1]) {
+                        long gap = (long) admissionDays[order[k + 1]] - dischargeDays[stay];
+                        if (gap >= 0 && gap <= withinDays) {
+                            acc[0]++;
+                        }
+                    }
+                }
+            }
+        }, StaySnapshot::add);
+        return counts[1] == 0 ? 0 : (double) counts[0] / counts[1];
+    }
+
+    private void sortByAdmission(int[] order, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int stay = order[i];
+            int j = i - 1;
+            while (j >= from && admissionDays[order[j]] > admissionDays[stay]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = stay;
+        }
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    /**
+     * Scans a range of positions and adds its result to an accumulator.
+     *
+     * @param <A> the type of the accumulator
+     */
+    @FunctionalInterface
+    interface RangeScan<A> {
+        void scan(A accumulator, int from, int to);
+    }
+
+    private <A> A scan(Supplier<A> create, RangeScan<A> scan, BinaryOperator<A> merge) {
+        return scan(size(), create, scan, merge);
+    }
+
+    private static <A> A scan(int size, Supplier<A> create, RangeScan<A> scan, BinaryOperator<A> merge) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(0, size, create, scan, merge));
+    }
+
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient Supplier<A> create;
+        private final transient RangeScan<A> scan;
+        private final transient BinaryOperator<A> merge;
+
+        private ScanTask(int from, int to, Supplier<A> create, RangeScan<A> scan, BinaryOperator<A> merge) {
+            this.from = from;
+            this.to = to;
+            this.create = create;
+            this.scan = scan;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= SCAN_THRESHOLD) {
+                A accumulator = create.get();
+                scan.scan(accumulator, from, to);
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(from, middle, create, scan, merge);
+            left.fork();
+            A right = new ScanTask<>(middle, to, create, scan, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package de.hshn.mi.pdbg.basicservice.analytics;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads {@code Aufenthalt} and {@code Station} into a {@link StaySnapshot}.
+ * <p>
+ * {@link #load(Connection)} streams the whole table once, ordered by ID, with a large fetch size and auto-commit
+ * disabled so that PostgreSQL uses a cursor instead of materializing the result. {@link #refresh(StaySnapshot,
+ * Connection)} only reads the {@code ID} and {@code Version} columns, fetches the rows that are new or have a
+ * different version, drops the deleted ones and merges the result into a new snapshot. Patient codes of the old
+ * snapshot stay valid in the new one.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class StaySnapshotLoader {
+
+    /**
+     * The number of rows fetched per round trip.
+     */
+    public static final int FETCH_SIZE = 10_000;
+
+    /**
+     * The maximum number of stay IDs bound to one refresh query.
+     */
+    public static final int REFRESH_BATCH_SIZE = 500;
+
+    private static final String WARD_QUERY = "SELECT ID, Bezeichnung, Bettenzahl FROM Station ORDER BY ID";
+    private static final String STAY_QUERY =
+            "SELECT ID, PID, SID, Aufnahmedatum, Entlassdatum, Version FROM Aufenthalt";
+    private static final String VERSION_QUERY = "SELECT ID, Version FROM Aufenthalt ORDER BY ID";
+
+    private StaySnapshotLoader() {
+    }
+
+    /**
+     * Loads a snapshot of all wards and stays.
+     *
+     * @param connection the connection to read from; its auto-commit mode is restored afterwards
+     * @return the snapshot
+     * @throws SQLException if the tables cannot be read
+     */
+    public static StaySnapshot load(Connection connection) throws SQLException {
+        return inReadTransaction(connection, () -> {
+            Wards wards = readWards(connection);
+            Rows rows = new Rows(FETCH_SIZE);
+            LongIntMap patientCodes = new LongIntMap(FETCH_SIZE);
+            List<Long> patientIds = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(STAY_QUERY + " ORDER BY ID")) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows.add(resultSet, wards, patientCodes, patientIds);
+                    }
+                }
+            }
+            return rows.toSnapshot(wards, toArray(patientIds));
+        });
+    }
+
+    /**
+     * Creates a snapshot with the current content of the database, reading only the rows that changed since the
+     * given snapshot was taken. The given snapshot is not modified.
+     *
+     * @param previous   the snapshot to update
+     * @param connection the connection to read from; its auto-commit mode is restored afterwards
+     * @return the new snapshot
+     * @throws SQLException if the tables cannot be read
+     */
+    public static StaySnapshot refresh(StaySnapshot previous, Connection connection) throws SQLException {
+        return inReadTransaction(connection, () -> {
+            Wards wards = readWards(connection);
+
+            // merge the (ID, Version) list of the table with the sorted IDs of the snapshot
+            long[] oldIds = previous.stayIds;
+            int[] kept = new int[oldIds.length];
+            int keptCount = 0;
+            List<Long> changed = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(VERSION_QUERY)) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    int position = 0;
+                    while (resultSet.next()) {
+                        long id = resultSet.getLong(1);
+                        while (position < oldIds.length && oldIds[position] < id) {
+                            position++;
+                        }
+                        if (position < oldIds.length && oldIds[position] == id
+                                && previous.versions[position] == resultSet.getLong(2)) {
+                            kept[keptCount++] = position++;
+                        } else {
+                            changed.add(id);
+                        }
+                    }
+                }
+            }
+
+            LongIntMap patientCodes = new LongIntMap(previous.patientIds.length + changed.size());
+            List<Long> patientIds = new ArrayList<>(previous.patientIds.length);
+            for (int code = 0; code < previous.patientIds.length; code++) {
+                patientCodes.put(previous.patientIds[code], code);
+                patientIds.add(previous.patientIds[code]);
+            }
+            Rows fetched = new Rows(changed.size());
+            for (int from = 0; from < changed.size(); from += REFRESH_BATCH_SIZE) {
+                List<Long> batch = changed.subList(from, Math.min(changed.size(), from + REFRESH_BATCH_SIZE));
+                String query = STAY_QUERY + " WHERE ID IN ("
+                        + String.join(", ", Collections.nCopies(batch.size(), "?")) + ") ORDER BY ID";
+                try (PreparedStatement statement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        statement.setLong(i + 1, batch.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            fetched.add(resultSet, wards, patientCodes, patientIds);
+                        }
+                    }
+                }
+            }
+
+            // ward codes may have moved, so the kept rows are translated into the new ward dictionary
+            int[] wardCodeMapping = new int[previous.wardIds.length];
+            for (int code = 0; code < wardCodeMapping.length; code++) {
+                wardCodeMapping[code] = wards.codes.get(previous.wardIds[code]);
+            }
+            Rows merged = new Rows(keptCount + fetched.size);
+            int k = 0;
+            int f = 0;
+            while (k < keptCount || f < fetched.size) {
+                if (f == fetched.size || k < keptCount && oldIds[kept[k]] < fetched.stayIds[f]) {
+                    int p = kept[k++];
+                    int wardCode = previous.wardCodes[p];
+                    merged.add(oldIds[p], previous.versions[p], previous.patientCodes[p],
+                            wardCode >= 0 ? wardCodeMapping[wardCode] : LongIntMap.MISSING,
+                            previous.admissionDays[p], previous.dischargeDays[p]);
+                } else {
+                    merged.add(fetched.stayIds[f], fetched.versions[f], fetched.patientCodes[f],
+                            fetched.wardCodes[f], fetched.admissionDays[f], fetched.dischargeDays[f]);
+                    f++;
+                }
+            }
+            return merged.toSnapshot(wards, toArray(patientIds));
+        });
+    }
+
+    private interface Read<T> {
+        T run() throws SQLException;
+    }
+
+    private static <T> T inReadTransaction(Connection connection, Read<T> read) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            return read.run();
+        } finally {
+            if (autoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Wards readWards(Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> beds = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(WARD_QUERY)) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+                names.add(resultSet.getString(2));
+                beds.add(resultSet.getInt(3));
+            }
+        }
+        Wards wards = new Wards(ids.size());
+        for (int code = 0; code < ids.size(); code++) {
+            wards.ids[code] = ids.get(code);
+            wards.names[code] = names.get(code);
+            wards.beds[code] = beds.get(code);
+            wards.codes.put(ids.get(code), code);
+        }
+        return wards;
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static final class Wards {
+        private final long[] ids;
+        private final String[] names;
+        private final int[] beds;
+        private final LongIntMap codes;
+
+        private Wards(int count) {
+            ids = new long[count];
+            names = new String[count];
+            beds = new int[count];
+            codes = new LongIntMap(count);
+        }
+    }
+
+    /**
+     * Growable columns of stay rows.
+     */
+    private static final class Rows {
+        private long[] stayIds;
+        private long[] versions;
+        private int[] patientCodes;
+        private int[] wardCodes;
+        private int[] admissionDays;
+        private int[] dischargeDays;
+        private int size;
+
+        private Rows(int capacity) {
+            capacity = Math.max(16, capacity);
+            stayIds = new long[capacity];
+            versions = new long[capacity];
+            patientCodes = new int[capacity];
+            wardCodes = new int[capacity];
+            admissionDays = new int[capacity];
+            dischargeDays = new int[capacity];
+        }
+
+        private void add(ResultSet resultSet, Wards wards, LongIntMap patientCodeById, List<Long> patientIds)
+                throws SQLException {
+            long patientId = resultSet.getLong("PID");
+            int patientCode = patientCodeById.get(patientId);
+            if (patientCode == LongIntMap.MISSING) {
+                patientCode = patientIds.size();
+                patientCodeById.put(patientId, patientCode);
+                patientIds.add(patientId);
+            }
+            Date discharge = resultSet.getDate("Entlassdatum");
+            add(resultSet.getLong("ID"), resultSet.getLong("Version"), patientCode,
+                    wards.codes.get(resultSet.getLong("SID")), toDay(resultSet.getDate("Aufnahmedatum")),
+                    discharge != null ? toDay(discharge) : StaySnapshot.OPEN);
+        }
+
+        private void add(long stayId, long version, int patientCode, int wardCode, int admissionDay,
+                         int dischargeDay) {
+            if (size == stayIds.length) {
+                int capacity = size + (size >> 1);
+                stayIds = Arrays.copyOf(stayIds, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                patientCodes = Arrays.copyOf(patientCodes, capacity);
+                wardCodes = Arrays.copyOf(wardCodes, capacity);
+                admissionDays = Arrays.copyOf(admissionDays, capacity);
+                dischargeDays = Arrays.copyOf(dischargeDays, capacity);
+            }
+            stayIds[size] = stayId;
+            versions[size] = version;
+            patientCodes[size] = patientCode;
+            wardCodes[size] = wardCode;
+            admissionDays[size] = admissionDay;
+            dischargeDays[size] = dischargeDay;
+            size++;
+        }
+
+        private StaySnapshot toSnapshot(Wards wards, long[] patientIds) {
+            return new StaySnapshot(Arrays.copyOf(stayIds, size), Arrays.copyOf(versions, size),
+                    Arrays.copyOf(admissionDays, size), Arrays.copyOf(dischargeDays, size),
+                    Arrays.copyOf(wardCodes, size), Arrays.copyOf(patientCodes, size), wards.ids, wards.names,
+                    wards.beds, patientIds);
+        }
+
+        private static int toDay(Date date) {
+            return Math.toIntExact(date.toLocalDate().toEpochDay());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.hshn.mi.pdbg.basicservice.bootstrap;
+
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+
+import java.sql.SQLException;
+
+/**
+ * An isolated database created from a {@link DatabaseTemplate}. Every copy has its own URL, so tests can run in
+ * parallel, each against its own copy. {@link #reset()} brings the copy back to the content of the template.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class DatabaseCopy implements AutoCloseable {
+
+    private final DatabaseTemplate template;
+    private final String name;
+    private final String url;
+
+    DatabaseCopy(DatabaseTemplate template, String name, String url) {
+        this.template = template;
+        this.name = name;
+        this.url = url;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return template.getUser();
+    }
+
+    public String getPassword() {
+        return template.getPassword();
+    }
+
+    /**
+     * Opens a service on this copy.
+     *
+     * @return a new service; the caller has to close it
+     */
+    public BasicDBServiceImpl openService() {
+        return new BasicDBServiceImpl(url, getUser(), getPassword());
+    }
+
+    /**
+     * Discards all changes made to this copy. Connections opened before the reset are terminated by the
+     * database, so services on the copy have to be closed and opened again with {@link #openService()}.
+     *
+     * @throws SQLException if the copy cannot be restored
+     */
+    public void reset() throws SQLException {
+        template.reset(this);
+    }
+
+    /**
+     * Drops the copy.
+     *
+     * @throws SQLException if the copy cannot be dropped
+     */
+    @Override
+    public void close() throws SQLException {
+        template.drop(this);
+    }
+}
@@ -0,0 +1,302 @@
+package de.hshn.mi.pdbg.basicservice.bootstrap;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Creates the schema and the seed data of a test database once and hands out isolated copies of it, so that a
+ * test does not have to run {@link DBCreator#createDatabase(String, String, String)} and its fixtures again.
+ * <p>
+ * On PostgreSQL the template is a database of its own ({@code <name>_template}) and every copy is created with
+ * {@code CREATE DATABASE ... TEMPLATE}, which copies the files of the template instead of replaying SQL. A reset
+ * drops and recreates the copy. This needs the right to create databases; the database named in the URL is not
+ * touched. The template carries a {@code COMMENT ON DATABASE} marker: an existing {@code <name>_template} is only
+ * replaced if it has the marker, i.e. if it was created by this class, otherwise {@link #create} fails.
+ * </p>
+ * <p>
+ * On HSQLDB the template is exported with {@code SCRIPT} into a temporary directory. Every copy gets its own
+ * copy of the script file and is opened with {@code files_readonly=true}: the content is loaded into memory and
+ * changes are never written back, so a reset is a {@code SHUTDOWN} of the copy, after which the next connection
+ * loads the pristine script again. The reset itself takes milliseconds; the cost of loading the seed data is paid
+ * by the first connection after it.
+ * </p>
+ * <pre>
+ * try (DatabaseTemplate template = DatabaseTemplate.create(url, user, password, service -> ...)) {
+ *     try (DatabaseCopy copy = template.newCopy()) {
+ *         BasicDBServiceImpl service = copy.openService();
+ *         ...
+ *         copy.reset();
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class DatabaseTemplate implements AutoCloseable {
+
+    /**
+     * Fills the freshly created schema with the seed data.
+     */
+    @FunctionalInterface
+    public interface Seeder {
+        void seed(BasicDBServiceImpl service) throws SQLException;
+    }
+
+    private static final String MAINTENANCE_DATABASE = "postgres";
+    private static final String TEMPLATE_SUFFIX = "_template";
+    private static final String MARKER = "pdbg database template";
+    private static final String MARKER_QUERY =
+            "SELECT shobj_description(oid, 'pg_database') FROM pg_database WHERE datname = ?";
+
+    private final SqlDialect dialect;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String templateName;
+    private final Path scriptDirectory;
+    private final String prefix = "c" + UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicInteger copies = new AtomicInteger();
+
+    private DatabaseTemplate(SqlDialect dialect, String url, String user, String password, String templateName,
+                             Path scriptDirectory) {
+        this.dialect = dialect;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.templateName = templateName;
+        this.scriptDirectory = scriptDirectory;
+    }
+
+    /**
+     * Creates the schema and the seed data.
+     *
+     * @param url      the URL of the database the template is derived from; on PostgreSQL the template database
+     *                 is created next to it, on HSQLDB the schema is created in it
+     * @param user     the user
+     * @param password the password
+     * @param seeder   the seed data, or null for an empty schema
+     * @return the template
+     * @throws SQLException if the template cannot be created
+     */
+    public static DatabaseTemplate create(String url, String user, String password, Seeder seeder)
+            throws SQLException {
+        SqlDialect dialect;
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            dialect = SqlDialect.of(connection);
+        }
+        switch (dialect) {
+            case POSTGRESQL:
+                return createPostgreSQL(url, user, password, seeder);
+            case HSQLDB:
+                return createHSQLDB(url, user, password, seeder);
+            default:
+                throw new SQLException("Database templates are not supported by this database");
+        }
+    }
+
+    private static DatabaseTemplate createPostgreSQL(String url, String user, String password, Seeder seeder)
+            throws SQLException {
+        String templateName = databaseName(url) + TEMPLATE_SUFFIX;
+        DatabaseTemplate template = new DatabaseTemplate(SqlDialect.POSTGRESQL, url, user, password, templateName,
+                null);
+        template.dropIfOwned(templateName);
+        template.maintenance("CREATE DATABASE " + quote(templateName),
+                "COMMENT ON DATABASE " + quote(templateName) + " IS '" + MARKER + "'");
+        String templateUrl = withDatabaseName(url, templateName);
+        seed(templateUrl, user, password, seeder);
+        template.maintenance("ALTER DATABASE " + quote(templateName) + " WITH IS_TEMPLATE true");
+        return template;
+    }
+
+    private static DatabaseTemplate createHSQLDB(String url, String user, String password, Seeder seeder)
+            throws SQLException {
+        seed(url, user, password, seeder);
+        Path directory;
+        try {
+            directory = Files.createTempDirectory("pdbg-template");
+        } catch (IOException e) {
+            throw new SQLException("Cannot create the template directory", e);
+        }
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SCRIPT '" + directory.resolve("template.script").toAbsolutePath()
+                    .toString().replace("'", "''") + "'");
+        }
+        return new DatabaseTemplate(SqlDialect.HSQLDB, url, user, password, null, directory);
+    }
+
+    private static void seed(String url, String user, String password, Seeder seeder) throws SQLException {
+        new DBCreator().createDatabase(url, user, password);
+        if (seeder != null) {
+            BasicDBServiceImpl service = new BasicDBServiceImpl(url, user, password);
+            try {
+                seeder.seed(service);
+            } finally {
+                service.close();
+            }
+        }
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    /**
+     * Creates a new isolated copy of the template. Copies may be created from several threads at once.
+     *
+     * @return the copy
+     * @throws SQLException if the copy cannot be created
+     */
+    public DatabaseCopy newCopy() throws SQLException {
+        String name = prefix + "_" + copies.incrementAndGet();
+        if (dialect == SqlDialect.POSTGRESQL) {
+            String copyName = templateName + "_" + name;
+            DatabaseCopy copy = new DatabaseCopy(this, copyName, withDatabaseName(url, copyName));
+            createPostgreSQLCopy(copy);
+            return copy;
+        }
+        Path base = scriptDirectory.resolve(name);
+        try {
+            Files.copy(scriptDirectory.resolve("template.script"), Path.of(base + ".script"));
+        } catch (IOException e) {
+            throw new SQLException("Cannot copy the template script", e);
+        }
+        return new DatabaseCopy(this, name, "jdbc:hsqldb:file:" + base.toAbsolutePath() + ";files_readonly=true");
+    }
+
+    private void createPostgreSQLCopy(DatabaseCopy copy) throws SQLException {
+        // CREATE DATABASE ... TEMPLATE fails while another session copies the same template
+        synchronized (this) {
+            maintenance("CREATE DATABASE " + quote(copy.getName()) + " TEMPLATE " + quote(templateName));
+        }
+    }
+
+    /**
+     * Drops a database left over by an earlier template, e.g. of a test run that was killed. A template database
+     * cannot be dropped, so it is turned into a regular database first.
+     *
+     * @param name the name of the database
+     * @throws SQLException if the database exists without the marker of this class or cannot be dropped
+     */
+    private void dropIfOwned(String name) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(withDatabaseName(url, MAINTENANCE_DATABASE),
+                user, password);
+             PreparedStatement statement = connection.prepareStatement(MARKER_QUERY)) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return;
+                }
+                if (!MARKER.equals(resultSet.getString(1))) {
+                    throw new SQLException("The database " + name + " exists but was not created as a template; "
+                            + "drop it or use another database name");
+                }
+            }
+        }
+        maintenance("ALTER DATABASE " + quote(name) + " WITH IS_TEMPLATE false",
+                "DROP DATABASE IF EXISTS " + quote(name) + " WITH (FORCE)");
+    }
+
+    void reset(DatabaseCopy copy) throws SQLException {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            maintenance("DROP DATABASE IF EXISTS " + quote(copy.getName()) + " WITH (FORCE)");
+            createPostgreSQLCopy(copy);
+        } else {
+            shutdown(copy);
+        }
+    }
+
+    void drop(DatabaseCopy copy) throws SQLException {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            maintenance("DROP DATABASE IF EXISTS " + quote(copy.getName()) + " WITH (FORCE)");
+        } else {
+            shutdown(copy);
+            try (Stream<Path> files = Files.list(scriptDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().startsWith(copy.getName() + ".")) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                throw new SQLException("Cannot delete the copy " + copy.getName(), e);
+            }
+        }
+    }
+
+    private void shutdown(DatabaseCopy copy) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(copy.getUrl(), user, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    /**
+     * Drops the template and all files of the copies. Copies still in use become invalid.
+     *
+     * @throws SQLException if the template cannot be dropped
+     */
+    @Override
+    public void close() throws SQLException {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            maintenance("ALTER DATABASE " + quote(templateName) + " WITH IS_TEMPLATE false",
+                    "DROP DATABASE IF EXISTS " + quote(templateName) + " WITH (FORCE)");
+            return;
+        }
+        try (Stream<Path> files = Files.walk(scriptDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cannot delete the template directory", e);
+        }
+    }
+
+    private void maintenance(String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(withDatabaseName(url, MAINTENANCE_DATABASE),
+                user, password);
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the database in a PostgreSQL URL ({@code jdbc:postgresql://host:port/name?options}).
+     */
+    static String databaseName(String url) {
+        int start = url.lastIndexOf('/') + 1;
+        int end = url.indexOf('?', start);
+        return url.substring(start, end < 0 ? url.length() : end);
+    }
+
+    static String withDatabaseName(String url, String name) {
+        int start = url.lastIndexOf('/') + 1;
+        int end = url.indexOf('?', start);
+        return url.substring(0, start) + name + (end < 0 ? "" : url.substring(end));
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
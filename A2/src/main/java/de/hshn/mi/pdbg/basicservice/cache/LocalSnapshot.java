@@ -0,0 +1,488 @@
+package de.hshn.mi.pdbg.basicservice.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only file with all wards and patient summaries, read through a {@link MappedByteBuffer} so that a client
+ * can show its first screen without asking the database.
+ * <p>
+ * Opening a snapshot only maps the file and checks its header; rows are decoded when they are accessed, so the
+ * cost of {@link #open(Path)} does not depend on the number of rows. The file consists of a header, an offset
+ * table for the wards and one for the patients, and the records, each ordered by ID:
+ * </p>
+ * <pre>
+ * header   int magic, int format, long createdAt, int wardCount, int patientCount
+ * offsets  int[wardCount], int[patientCount]
+ * ward     long id, long version, int beds, string name
+ * patient  long id, long version, long birth (Long.MIN_VALUE if unknown), string firstname, string lastname,
+ *          string healthInsurance, string insuranceNumber
+ * string   int length in bytes (-1 for null), UTF-8 bytes
+ * </pre>
+ * <p>
+ * {@link #reconcile(LocalSnapshot, Connection, Path)} brings a snapshot up to date by reading the ID and version
+ * of every patient and fetching only the new or changed rows, all in one read-only transaction.
+ * </p>
+ * <p>
+ * A snapshot file {@code name} is stored as generations {@code name.0}, {@code name.1}, ... Every write creates
+ * the next generation under a new name and {@link #open(Path)} maps the newest one, so a file is never replaced
+ * while it is mapped, and a client that crashes while writing keeps the old snapshot. Older generations are
+ * deleted after a write; where a mapped file cannot be deleted (Windows), a later write removes it.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class LocalSnapshot {
+
+    /**
+     * The maximum number of patient IDs bound to one reconcile query.
+     */
+    public static final int RECONCILE_BATCH_SIZE = 500;
+
+    private static final int MAGIC = 0x50444253;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final long NO_BIRTH_DATE = Long.MIN_VALUE;
+
+    private static final String WARD_QUERY = "SELECT ID, Bezeichnung, Bettenzahl, Version FROM Station ORDER BY ID";
+    private static final String PATIENT_VERSION_QUERY =
+            "SELECT p.ID, pe.Version FROM Patient p JOIN Person pe ON pe.ID = p.ID ORDER BY p.ID";
+    private static final String PATIENT_QUERY = "SELECT p.ID, Vorname, Nachname, Geburtsdatum, Krankenkasse, "
+            + "Versicherungsnummer, pe.Version FROM Patient p JOIN Person pe ON pe.ID = p.ID";
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long createdAt;
+    private final int wardCount;
+    private final int patientCount;
+
+    private LocalSnapshot(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        if (buffer.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported snapshot format " + buffer.getInt(4) + ": " + file);
+        }
+        this.createdAt = buffer.getLong(8);
+        this.wardCount = buffer.getInt(16);
+        this.patientCount = buffer.getInt(20);
+        if (wardCount < 0 || patientCount < 0
+                || HEADER_SIZE + 4L * (wardCount + (long) patientCount) > buffer.capacity()) {
+            throw new IOException("Corrupt snapshot file: " + file);
+        }
+    }
+
+    /**
+     * Maps the newest generation of a snapshot file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws NoSuchFileException if the snapshot file has not been written yet
+     * @throws IOException         if the file cannot be read or is not a snapshot
+     */
+    public static LocalSnapshot open(Path file) throws IOException {
+        long generation = newestGeneration(file);
+        if (generation < 0) {
+            throw new NoSuchFileException(file.toString());
+        }
+        return map(generationFile(file, generation));
+    }
+
+    /**
+     * Tells whether a generation of the snapshot file has been written.
+     *
+     * @param file the snapshot file
+     * @return true if {@link #open(Path)} finds a file to map
+     * @throws IOException if the directory cannot be read
+     */
+    public static boolean exists(Path file) throws IOException {
+        return newestGeneration(file) >= 0;
+    }
+
+    private static LocalSnapshot map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file too large: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new LocalSnapshot(file, buffer);
+        }
+    }
+
+    /**
+     * Writes the next generation of a snapshot file and deletes the older ones.
+     *
+     * @param file     the snapshot file
+     * @param wards    the wards, ordered by ID
+     * @param patients the patients, ordered by ID
+     * @return the new snapshot
+     * @throws IOException if the file cannot be written
+     */
+    public static LocalSnapshot write(Path file, List<WardRow> wards, List<PatientRow> patients)
+            throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        long generation = newestGeneration(file) + 1;
+        Path target = generationFile(file, generation);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                long dataStart = HEADER_SIZE + 4L * (wards.size() + patients.size());
+                ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+                header.putInt(MAGIC).putInt(FORMAT).putLong(System.currentTimeMillis())
+                        .putInt(wards.size()).putInt(patients.size());
+
+                channel.position(dataStart);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(channel), 1 << 16));
+                for (WardRow ward : wards) {
+                    header.putInt(offset(dataStart, out));
+                    out.writeLong(ward.getId());
+                    out.writeLong(ward.getVersion());
+                    out.writeInt(ward.getNumberOfBeds());
+                    writeString(out, ward.getName());
+                }
+                for (PatientRow patient : patients) {
+                    header.putInt(offset(dataStart, out));
+                    out.writeLong(patient.getId());
+                    out.writeLong(patient.getVersion());
+                    out.writeLong(patient.getDateOfBirth() != null
+                            ? patient.getDateOfBirth().getTime() : NO_BIRTH_DATE);
+                    writeString(out, patient.getFirstname());
+                    writeString(out, patient.getLastname());
+                    writeString(out, patient.getHealthInsurance());
+                    writeString(out, patient.getInsuranceNumber());
+                }
+                out.flush();
+                header.flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            // a new name: the file of the previous generation may still be mapped
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        LocalSnapshot snapshot = map(target);
+        for (long older : generations(file)) {
+            if (older < generation) {
+                try {
+                    Files.deleteIfExists(generationFile(file, older));
+                } catch (IOException ignored) {
+                    // still mapped on a platform that forbids that; the next write tries again
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static Path generationFile(Path file, long generation) {
+        return file.toAbsolutePath().resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    private static long newestGeneration(Path file) throws IOException {
+        long newest = -1;
+        for (long generation : generations(file)) {
+            newest = Math.max(newest, generation);
+        }
+        return newest;
+    }
+
+    private static List<Long> generations(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return generations;
+        }
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+                entry -> entry.getFileName().toString().startsWith(prefix))) {
+            for (Path entry : entries) {
+                String suffix = entry.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) && suffix.length() < 19) {
+                    generations.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static int offset(long dataStart, DataOutputStream out) throws IOException {
+        long offset = dataStart + out.size();
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds 2 GB");
+        }
+        return (int) offset;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes a snapshot with the current wards and patients of the database. Wards are read completely; of the
+     * patients only the rows that are missing in {@code previous} or have another version are fetched.
+     * <p>
+     * All rows are read in one read-only {@code REPEATABLE READ} transaction, so the snapshot is consistent even
+     * if rows change while it is read. If the connection is already in a transaction, that transaction is used.
+     * </p>
+     *
+     * @param previous   the snapshot to update, or null to read everything
+     * @param connection the connection to read from
+     * @param file       the snapshot file, may be the file of {@code previous}
+     * @return the new snapshot
+     * @throws SQLException if the database cannot be read
+     * @throws IOException  if the file cannot be written
+     */
+    public static LocalSnapshot reconcile(LocalSnapshot previous, Connection connection, Path file)
+            throws SQLException, IOException {
+        boolean ownTransaction = connection.getAutoCommit();
+        boolean readOnly = connection.isReadOnly();
+        int isolation = connection.getTransactionIsolation();
+        List<WardRow> wards;
+        List<PatientRow> patients;
+        if (ownTransaction) {
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+        }
+        try {
+            wards = readWards(connection);
+            patients = readPatients(previous, connection);
+            if (ownTransaction) {
+                connection.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+                connection.setTransactionIsolation(isolation);
+                connection.setReadOnly(readOnly);
+            }
+        }
+        return write(file, wards, patients);
+    }
+
+    private static List<WardRow> readWards(Connection connection) throws SQLException {
+        List<WardRow> wards = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(WARD_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                wards.add(new WardRow(resultSet.getLong(1), resultSet.getString(2), resultSet.getInt(3),
+                        resultSet.getLong(4)));
+            }
+        }
+        return wards;
+    }
+
+    private static List<PatientRow> readPatients(LocalSnapshot previous, Connection connection)
+            throws SQLException {
+        List<PatientRow> old = previous != null ? previous.patients() : Collections.emptyList();
+        List<PatientRow> kept = new ArrayList<>();
+        List<Long> changed = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(PATIENT_VERSION_QUERY)) {
+            statement.setFetchSize(RECONCILE_BATCH_SIZE * 20);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int position = 0;
+                PatientRow current = old.isEmpty() ? null : old.get(0);
+                while (resultSet.next()) {
+                    long id = resultSet.getLong(1);
+                    while (current != null && current.getId() < id) {
+                        current = ++position < old.size() ? old.get(position) : null;
+                    }
+                    if (current != null && current.getId() == id && current.getVersion() == resultSet.getLong(2)) {
+                        kept.add(current);
+                    } else {
+                        changed.add(id);
+                    }
+                }
+            }
+        }
+
+        List<PatientRow> fetched = new ArrayList<>(changed.size());
+        for (int from = 0; from < changed.size(); from += RECONCILE_BATCH_SIZE) {
+            List<Long> batch = changed.subList(from, Math.min(changed.size(), from + RECONCILE_BATCH_SIZE));
+            String query = PATIENT_QUERY + " WHERE p.ID IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "?")) + ") ORDER BY p.ID";
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    statement.setLong(i + 1, batch.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        fetched.add(new PatientRow(resultSet.getLong(1), resultSet.getString(2),
+                                resultSet.getString(3), resultSet.getDate(4), resultSet.getString(5),
+                                resultSet.getString(6), resultSet.getLong(7)));
+                    }
+                }
+            }
+        }
+
+        List<PatientRow> patients = new ArrayList<>(kept.size() + fetched.size());
+        int k = 0;
+        int f = 0;
+        while (k < kept.size() || f < fetched.size()) {
+            if (f == fetched.size() || k < kept.size() && kept.get(k).getId() < fetched.get(f).getId()) {
+                patients.add(kept.get(k++));
+            } else {
+                patients.add(fetched.get(f++));
+            }
+        }
+        return patients;
+    }
+
+    /**
+     * Returns the generation file the snapshot was mapped from.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns when the snapshot was written.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Returns the wards, ordered by ID. Rows are decoded on access.
+     *
+     * @return an unmodifiable view of the wards
+     */
+    public List<WardRow> wards() {
+        return new AbstractList<>() {
+            @Override
+            public WardRow get(int index) {
+                return readWard(recordOffset(index, wardCount, 0));
+            }
+
+            @Override
+            public int size() {
+                return wardCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the patients, ordered by ID. Rows are decoded on access.
+     *
+     * @return an unmodifiable view of the patients
+     */
+    public List<PatientRow> patients() {
+        return new AbstractList<>() {
+            @Override
+            public PatientRow get(int index) {
+                return readPatient(recordOffset(index, patientCount, wardCount));
+            }
+
+            @Override
+            public int size() {
+                return patientCount;
+            }
+        };
+    }
+
+    /**
+     * Looks up a patient by binary search over the offset table.
+     *
+     * @param id the ID of the patient
+     * @return the patient, or null if the snapshot does not contain it
+     */
+    public PatientRow findPatient(long id) {
+        int low = 0;
+        int high = patientCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = recordOffset(middle, patientCount, wardCount);
+            long middleId = buffer.getLong(offset);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return readPatient(offset);
+            }
+        }
+        return null;
+    }
+
+    private int recordOffset(int index, int count, int tableStart) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+        }
+        return buffer.getInt(HEADER_SIZE + 4 * (tableStart + index));
+    }
+
+    private WardRow readWard(int offset) {
+        int[] position = {offset + 20};
+        return new WardRow(buffer.getLong(offset), readString(position), buffer.getInt(offset + 16),
+                buffer.getLong(offset + 8));
+    }
+
+    private PatientRow readPatient(int offset) {
+        long birth = buffer.getLong(offset + 16);
+        int[] position = {offset + 24};
+        String firstname = readString(position);
+        String lastname = readString(position);
+        String healthInsurance = readString(position);
+        String insuranceNumber = readString(position);
+        return new PatientRow(buffer.getLong(offset), firstname, lastname,
+                birth != NO_BIRTH_DATE ? new java.sql.Date(birth) : null, healthInsurance, insuranceNumber,
+                buffer.getLong(offset + 8));
+    }
+
+    /**
+     * Reads a string at {@code position[0]} and moves the position behind it. Only absolute reads are used, so
+     * the buffer can be shared between threads.
+     */
+    private String readString(int[] position) {
+        int length = buffer.getInt(position[0]);
+        position[0] += 4;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position[0], bytes);
+        position[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
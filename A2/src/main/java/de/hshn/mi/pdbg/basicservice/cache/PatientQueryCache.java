@@ -0,0 +1,314 @@
+package de.hshn.mi.pdbg.basicservice.cache;
+
+import de.hshn.mi.pdbg.basicservice.changefeed.ChangeEvent;
+import de.hshn.mi.pdbg.basicservice.changefeed.ChangeListener;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache for the results of {@code getPatients(lastname, firstname, startDate, endDate)}. Entries are
+ * keyed by the normalized filter and hold immutable {@link PatientRow} projections.
+ * <p>
+ * When a patient is written, exactly those entries are evicted that either contain the patient or whose filter
+ * matches the new values, so a cached result never misses or shows a stale row written through the same cache.
+ * Results computed while a write was in progress are not cached (see {@link #currentGeneration()}). Changes made
+ * by other processes are only seen if the cache is registered at a
+ * {@link de.hshn.mi.pdbg.basicservice.changefeed.ChangeFeed}, in which case they clear the whole cache.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class PatientQueryCache implements ChangeListener {
+
+    /**
+     * The number of filters cached by default.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final int maxEntries;
+    private final LinkedHashMap<Filter, Entry> entries;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_MAX_ENTRIES} results.
+     */
+    public PatientQueryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache holding up to the given number of results.
+     *
+     * @param maxEntries the maximum number of cached filters
+     */
+    public PatientQueryCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new AssertionError("The cache size must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Normalizes the parameters of a search into a cache key.
+     *
+     * @param lastname  the last name pattern or null
+     * @param firstname the first name pattern or null
+     * @param startDate the earliest birth date or null
+     * @param endDate   the latest birth date or null
+     * @return the key
+     */
+    public static Filter filter(String lastname, String firstname, Date startDate, Date endDate) {
+        return new Filter(lastname, firstname, toDay(startDate), toDay(endDate));
+    }
+
+    /**
+     * Returns the cached result of a search.
+     *
+     * @param filter the search
+     * @return the rows, or null if the search is not cached
+     */
+    public synchronized List<PatientRow> get(Filter filter) {
+        Entry entry = entries.get(filter);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.rows;
+    }
+
+    /**
+     * Returns a counter that changes with every write seen by the cache. Read it before running a query and pass
+     * it to {@link #put(Filter, List, long)}, so a result that may have missed a concurrent write is discarded.
+     *
+     * @return the current write generation
+     */
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the result of a search unless a write happened since the given generation was read.
+     *
+     * @param filter     the search
+     * @param rows       the result
+     * @param generation the value of {@link #currentGeneration()} before the query was run
+     */
+    public synchronized void put(Filter filter, List<PatientRow> rows, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        entries.put(filter, new Entry(rows));
+        if (entries.size() > maxEntries) {
+            Iterator<Filter> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Evicts every entry the written patient appears in or would now appear in. Has to be called after the
+     * write is committed.
+     *
+     * @param row the new state of the patient
+     */
+    public synchronized void onPatientWritten(PatientRow row) {
+        generation++;
+        Iterator<Map.Entry<Filter, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Filter, Entry> entry = iterator.next();
+            if (entry.getValue().contains(row.getId()) || entry.getKey().matches(row)) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * A change notification only carries the ID, not the new values, so any cached search may be affected.
+     *
+     * @param event the change
+     */
+    @Override
+    public void onChange(ChangeEvent event) {
+        if (event.getTable() == ChangeEvent.Table.PERSON || event.getTable() == ChangeEvent.Table.PATIENT) {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void onResync() {
+        invalidateAll();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries dropped because the cache was full.
+     *
+     * @return the number of LRU evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because of writes.
+     *
+     * @return the number of invalidated entries
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache.
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static Long toDay(Date date) {
+        return date != null ? new java.sql.Date(date.getTime()).toLocalDate().toEpochDay() : null;
+    }
+
+    /**
+     * The normalized parameters of a search.
+     */
+    public static final class Filter {
+        private final String lastname;
+        private final String firstname;
+        private final Long startDay;
+        private final Long endDay;
+
+        private Filter(String lastname, String firstname, Long startDay, Long endDay) {
+            this.lastname = lastname;
+            this.firstname = firstname;
+            this.startDay = startDay;
+            this.endDay = endDay;
+        }
+
+        /**
+         * Evaluates the WHERE clause of the search against a row, like the database would.
+         */
+        private boolean matches(PatientRow row) {
+            if (!like(row.getLastname(), lastname) || !like(row.getFirstname(), firstname)) {
+                return false;
+            }
+            if (startDay == null && endDay == null) {
+                return true;
+            }
+            Date dateOfBirth = row.getDateOfBirth();
+            if (dateOfBirth == null) {
+                return false;
+            }
+            long day = toDay(dateOfBirth);
+            return (startDay == null || day >= startDay) && (endDay == null || day <= endDay);
+        }
+
+        private static boolean like(String value, String pattern) {
+            if (pattern == null) {
+                return true;
+            }
+            if (value == null) {
+                return false;
+            }
+            if (pattern.indexOf('\\') >= 0) {
+                // escape handling differs between the databases, so err on the side of eviction
+                return true;
+            }
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : pattern.toCharArray()) {
+                if (c == '%' || c == '_') {
+                    regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+                    literal.setLength(0);
+                } else {
+                    literal.append(c);
+                }
+            }
+            regex.append(Pattern.quote(literal.toString()));
+            return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(value).matches();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            Filter other = (Filter) o;
+            return Objects.equals(lastname, other.lastname) && Objects.equals(firstname, other.firstname)
+                    && Objects.equals(startDay, other.startDay) && Objects.equals(endDay, other.endDay);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastname, firstname, startDay, endDay);
+        }
+
+        @Override
+        public String toString() {
+            return "Filter{lastname=" + lastname + ", firstname=" + firstname + ", from="
+                    + (startDay != null ? LocalDate.ofEpochDay(startDay) : null) + ", to="
+                    + (endDay != null ? LocalDate.ofEpochDay(endDay) : null) + "}";
+        }
+    }
+
+    private static final class Entry {
+        private final List<PatientRow> rows;
+        private final long[] sortedIds;
+
+        private Entry(List<PatientRow> rows) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.sortedIds = rows.stream().mapToLong(PatientRow::getId).sorted().toArray();
+        }
+
+        private boolean contains(long id) {
+            return Arrays.binarySearch(sortedIds, id) >= 0;
+        }
+    }
+}
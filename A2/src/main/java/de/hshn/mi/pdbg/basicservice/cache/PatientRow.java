@@ -0,0 +1,101 @@
+package de.hshn.mi.pdbg.basicservice.cache;
+
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+
+import java.util.Date;
+
+/**
+ * Immutable copy of a row of the {@code Person JOIN Patient} query. The {@link PatientQueryCache} stores these
+ * projections instead of the patient objects, because the objects handed out by the service can be modified
+ * by the caller at any time.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class PatientRow {
+
+    private final long id;
+    private final String firstname;
+    private final String lastname;
+    private final Long dateOfBirth;
+    private final String healthInsurance;
+    private final String insuranceNumber;
+    private final long version;
+
+    /**
+     * Creates a projection from the column values.
+     *
+     * @param id              the ID of the patient
+     * @param firstname       the first name
+     * @param lastname        the last name
+     * @param dateOfBirth     the birth date, may be null
+     * @param healthInsurance the health insurance
+     * @param insuranceNumber the insurance number
+     * @param version         the row version
+     */
+    public PatientRow(long id, String firstname, String lastname, Date dateOfBirth, String healthInsurance,
+                      String insuranceNumber, long version) {
+        this.id = id;
+        this.firstname = firstname;
+        this.lastname = lastname;
+        this.dateOfBirth = dateOfBirth != null ? dateOfBirth.getTime() : null;
+        this.healthInsurance = healthInsurance;
+        this.insuranceNumber = insuranceNumber;
+        this.version = version;
+    }
+
+    /**
+     * Copies the current state of a patient.
+     *
+     * @param patient the patient
+     * @return the projection
+     */
+    public static PatientRow of(PatientImpl patient) {
+        return new PatientRow(patient.getObjectID(), patient.getFirstname(), patient.getLastname(),
+                patient.getDateOfBirth(), patient.getHealthInsurance(), patient.getInsuranceNumber(),
+                patient.getVersion());
+    }
+
+    /**
+     * Creates a new patient object with the values of this row.
+     *
+     * @param service the service the patient belongs to
+     * @return a new patient object
+     */
+    public Patient toPatient(BasicDBService service) {
+        PatientImpl patient = new PatientImpl(service, id, healthInsurance, insuranceNumber, lastname, firstname,
+                getDateOfBirth());
+        patient.setVersion(version);
+        return patient;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getFirstname() {
+        return firstname;
+    }
+
+    public String getLastname() {
+        return lastname;
+    }
+
+    public Date getDateOfBirth() {
+        return dateOfBirth != null ? new java.sql.Date(dateOfBirth) : null;
+    }
+
+    public String getHealthInsurance() {
+        return healthInsurance;
+    }
+
+    public String getInsuranceNumber() {
+        return insuranceNumber;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
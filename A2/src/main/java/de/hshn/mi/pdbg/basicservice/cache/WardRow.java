@@ -0,0 +1,62 @@
+package de.hshn.mi.pdbg.basicservice.cache;
+
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+
+/**
+ * Immutable copy of a row of the {@code Station} table, the ward counterpart of {@link PatientRow}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class WardRow {
+
+    private final long id;
+    private final String name;
+    private final int numberOfBeds;
+    private final long version;
+
+    /**
+     * Creates a projection from the column values.
+     *
+     * @param id           the ID of the ward
+     * @param name         the name
+     * @param numberOfBeds the number of beds
+     * @param version      the row version
+     */
+    public WardRow(long id, String name, int numberOfBeds, long version) {
+        this.id = id;
+        this.name = name;
+        this.numberOfBeds = numberOfBeds;
+        this.version = version;
+    }
+
+    /**
+     * Creates a new ward object with the values of this row.
+     *
+     * @param service the service the ward belongs to
+     * @return a new ward object
+     */
+    public Ward toWard(BasicDBService service) {
+        WardImpl ward = new WardImpl(service, id, numberOfBeds, name);
+        ward.setVersion(version);
+        return ward;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumberOfBeds() {
+        return numberOfBeds;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
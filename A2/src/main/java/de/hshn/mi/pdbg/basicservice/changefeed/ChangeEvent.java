@@ -0,0 +1,85 @@
+package de.hshn.mi.pdbg.basicservice.changefeed;
+
+/**
+ * A single row change reported by the database. The event only carries the affected table, the kind of change
+ * and the primary key of the row, so a listener can refresh exactly that row instead of reloading a whole table.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class ChangeEvent {
+
+    /**
+     * The tables of the hospital schema that emit change notifications.
+     */
+    public enum Table {
+        PERSON,
+        PATIENT,
+        STATION,
+        AUFENTHALT
+    }
+
+    /**
+     * The kind of change applied to a row.
+     */
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private final Table table;
+    private final Operation operation;
+    private final long id;
+
+    /**
+     * Creates a new change event.
+     *
+     * @param table     the table the changed row belongs to
+     * @param operation the kind of change
+     * @param id        the primary key of the changed row
+     */
+    public ChangeEvent(Table table, Operation operation, long id) {
+        this.table = table;
+        this.operation = operation;
+        this.id = id;
+    }
+
+    /**
+     * Parses the payload sent by the {@code pdbg_notify_change} trigger function,
+     * which has the form {@code table:operation:id}.
+     *
+     * @param payload the notification payload
+     * @return the parsed event
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public static ChangeEvent parse(String payload) {
+        String[] parts = payload == null ? new String[0] : payload.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed change notification: " + payload);
+        }
+        try {
+            return new ChangeEvent(Table.valueOf(parts[0].trim().toUpperCase()),
+                    Operation.valueOf(parts[1].trim().toUpperCase()), Long.parseLong(parts[2].trim()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed change notification: " + payload, e);
+        }
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return table + ":" + operation + ":" + id;
+    }
+}
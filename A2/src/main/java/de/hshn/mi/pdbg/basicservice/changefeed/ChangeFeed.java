@@ -0,0 +1,260 @@
+package de.hshn.mi.pdbg.basicservice.changefeed;
+
+import de.hshn.mi.pdbg.exception.FetchException;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Client side of the change feed. The feed holds a dedicated PostgreSQL connection that {@code LISTEN}s on the
+ * channel written to by the triggers created in {@link de.hshn.mi.pdbg.basicservice.DBCreator} and dispatches
+ * every notification as a typed {@link ChangeEvent} to the registered listeners.
+ * <p>
+ * If the connection breaks, the feed reconnects and calls {@link ChangeListener#onResync()} on all listeners,
+ * because notifications sent in the meantime are not delivered by PostgreSQL.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    /**
+     * The notification channel used by the {@code pdbg_notify_change} trigger function.
+     */
+    public static final String CHANNEL = "pdbg_changes";
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final String dbUrl;
+    private final String user;
+    private final String pass;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private volatile Consumer<? super Exception> errorHandler;
+    private Thread dispatcher;
+    private volatile Connection connection;
+
+    /**
+     * Creates a new change feed. The feed does not connect before {@link #start()} is called.
+     *
+     * @param dbUrl The connection-String of the database.
+     * @param user  The login credentials for accessing the database.
+     * @param pass  The password for accessing the database.
+     */
+    public ChangeFeed(String dbUrl, String user, String pass) {
+        this.dbUrl = dbUrl;
+        this.user = user;
+        this.pass = pass;
+    }
+
+    /**
+     * Registers a listener for the changes of all tables.
+     *
+     * @param listener the listener to register
+     */
+    public void addListener(ChangeListener listener) {
+        addListener(listener, EnumSet.allOf(ChangeEvent.Table.class));
+    }
+
+    /**
+     * Registers a listener for the changes of the given tables only.
+     *
+     * @param listener the listener to register
+     * @param tables   the tables the listener is interested in
+     */
+    public void addListener(ChangeListener listener, Set<ChangeEvent.Table> tables) {
+        if (listener == null || tables == null || tables.isEmpty()) {
+            throw new AssertionError("Listener and tables must not be null or empty");
+        }
+        subscriptions.add(new Subscription(listener, EnumSet.copyOf(tables)));
+    }
+
+    /**
+     * Removes a listener registered with one of the {@code addListener} methods.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(ChangeListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+
+    /**
+     * Registers a callback for the errors the feed cannot throw to a caller: failures of a listener, payloads
+     * that cannot be parsed and failures while closing the connection. The callback runs on the thread that
+     * hit the error, usually the dispatcher thread.
+     *
+     * @param handler the callback, or null to ignore such errors
+     */
+    public void setErrorHandler(Consumer<? super Exception> handler) {
+        this.errorHandler = handler;
+    }
+
+    /**
+     * Connects to the database, subscribes to the change channel and starts the dispatcher thread.
+     *
+     * @throws FetchException if the feed cannot connect to the database
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            connect();
+        } catch (SQLException e) {
+            running = false;
+            throw new FetchException(e);
+        }
+        dispatcher = new Thread(this::dispatchLoop, "pdbg-change-feed");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = dispatcher;
+            dispatcher = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(POLL_TIMEOUT_MILLIS * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeConnection();
+    }
+
+    private void connect() throws SQLException {
+        Connection opened = DriverManager.getConnection(dbUrl, user, pass);
+        try (Statement statement = opened.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            opened.close();
+            throw e;
+        }
+        synchronized (this) {
+            if (running) {
+                connection = opened;
+                return;
+            }
+        }
+        // close() ran while the dispatcher was reconnecting
+        opened.close();
+    }
+
+    private void closeConnection() {
+        Connection current;
+        synchronized (this) {
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                reportError(e);
+            }
+        }
+    }
+
+    private void reportError(Exception cause) {
+        Consumer<? super Exception> handler = errorHandler;
+        if (handler != null) {
+            try {
+                handler.accept(cause);
+            } catch (RuntimeException ignored) {
+                // a failing error handler must not stop the dispatcher
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Connection current = connection;
+            if (current == null) {
+                return;
+            }
+            try {
+                PGNotification[] notifications = current.unwrap(PGConnection.class)
+                        .getNotifications(POLL_TIMEOUT_MILLIS);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    reconnect();
+                }
+            }
+        }
+    }
+
+    private void reconnect() {
+        closeConnection();
+        while (running) {
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+                connect();
+                for (Subscription subscription : subscriptions) {
+                    subscription.listener.onResync();
+                }
+                return;
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException e) {
+                closeConnection();
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        ChangeEvent event;
+        try {
+            event = ChangeEvent.parse(payload);
+        } catch (IllegalArgumentException e) {
+            reportError(e);
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.tables.contains(event.getTable())) {
+                try {
+                    subscription.listener.onChange(event);
+                } catch (RuntimeException e) {
+                    // one failing listener must not stop the delivery to the others
+                    reportError(e);
+                }
+            }
+        }
+    }
+
+    private static final class Subscription {
+        private final ChangeListener listener;
+        private final Set<ChangeEvent.Table> tables;
+
+        private Subscription(ChangeListener listener, Set<ChangeEvent.Table> tables) {
+            this.listener = listener;
+            this.tables = tables;
+        }
+    }
+}
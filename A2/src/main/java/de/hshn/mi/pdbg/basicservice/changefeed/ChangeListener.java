@@ -0,0 +1,26 @@
+package de.hshn.mi.pdbg.basicservice.changefeed;
+
+/**
+ * Receives the row changes dispatched by a {@link ChangeFeed}. Listeners are called on the dispatcher thread
+ * of the feed and should therefore return quickly.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    /**
+     * Called for every row change the listener is subscribed to.
+     *
+     * @param event the change
+     */
+    void onChange(ChangeEvent event);
+
+    /**
+     * Called after the feed had to reconnect to the database. Notifications sent while the feed was
+     * disconnected are lost, so anything derived from earlier events must be considered stale.
+     */
+    default void onResync() {
+    }
+}
@@ -0,0 +1,17 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import java.sql.SQLException;
+
+/**
+ * Writes generated rows into the database on the bulk path of the respective database system. Implementations
+ * do not commit; the generator commits after every chunk.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+interface BulkSink {
+
+    void writeWards(long[] ids, String[] names, int[] beds) throws SQLException;
+
+    void writeChunk(GeneratedChunk chunk) throws SQLException;
+}
@@ -0,0 +1,93 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Streams the rows into PostgreSQL with {@code COPY ... FROM STDIN} in CSV format, which skips the parsing and
+ * planning of one {@code INSERT} per row.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+final class CopySink implements BulkSink {
+
+    private static final String COPY_WARD = "COPY Station (ID, Bezeichnung, Bettenzahl) FROM STDIN WITH (FORMAT csv)";
+    private static final String COPY_PERSON =
+            "COPY Person (ID, Vorname, Nachname, Geburtsdatum) FROM STDIN WITH (FORMAT csv)";
+    private static final String COPY_PATIENT =
+            "COPY Patient (ID, Krankenkasse, Versicherungsnummer) FROM STDIN WITH (FORMAT csv)";
+    private static final String COPY_STAY =
+            "COPY Aufenthalt (ID, PID, SID, Aufnahmedatum, Entlassdatum) FROM STDIN WITH (FORMAT csv)";
+
+    private final CopyManager copyManager;
+    private final StringBuilder buffer = new StringBuilder(1 << 20);
+
+    CopySink(Connection connection) throws SQLException {
+        this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    @Override
+    public void writeWards(long[] ids, String[] names, int[] beds) throws SQLException {
+        buffer.setLength(0);
+        for (int i = 0; i < ids.length; i++) {
+            buffer.append(ids[i]).append(',');
+            appendString(names[i]).append(',').append(beds[i]).append('\n');
+        }
+        copy(COPY_WARD);
+    }
+
+    @Override
+    public void writeChunk(GeneratedChunk chunk) throws SQLException {
+        buffer.setLength(0);
+        for (int i = 0; i < chunk.patientCount; i++) {
+            buffer.append(chunk.patientIds[i]).append(',');
+            appendString(chunk.firstnames[i]).append(',');
+            appendString(chunk.lastnames[i]).append(',');
+            buffer.append(LocalDate.ofEpochDay(chunk.birthDays[i])).append('\n');
+        }
+        copy(COPY_PERSON);
+
+        buffer.setLength(0);
+        for (int i = 0; i < chunk.patientCount; i++) {
+            buffer.append(chunk.patientIds[i]).append(',');
+            appendString(chunk.healthInsurances[i]).append(',');
+            appendString(chunk.insuranceNumbers[i]).append('\n');
+        }
+        copy(COPY_PATIENT);
+
+        buffer.setLength(0);
+        for (int i = 0; i < chunk.stayCount; i++) {
+            buffer.append(chunk.stayIds[i]).append(',').append(chunk.stayPatientIds[i]).append(',')
+                    .append(chunk.stayWardIds[i]).append(',').append(LocalDate.ofEpochDay(chunk.admissionDays[i]))
+                    .append(',');
+            if (chunk.dischargeDays[i] != GeneratedChunk.OPEN) {
+                // an unquoted empty value is NULL in CSV format
+                buffer.append(LocalDate.ofEpochDay(chunk.dischargeDays[i]));
+            }
+            buffer.append('\n');
+        }
+        copy(COPY_STAY);
+    }
+
+    private StringBuilder appendString(String value) {
+        if (value != null) {
+            buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return buffer;
+    }
+
+    private void copy(String sql) throws SQLException {
+        try {
+            copyManager.copyIn(sql, new StringReader(buffer.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY failed", e);
+        }
+    }
+}
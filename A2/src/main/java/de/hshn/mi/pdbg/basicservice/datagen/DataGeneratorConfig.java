@@ -0,0 +1,158 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import java.time.LocalDate;
+
+/**
+ * Settings of a data generator run, parsed from {@code --key=value} command line arguments.
+ * <p>
+ * Supported keys: {@code url}, {@code user}, {@code password}, {@code create-schema}, {@code seed},
+ * {@code patients}, {@code wards}, {@code stays-per-patient} (mean of the geometric distribution; patients get
+ * fewer stays if their history reaches the reference date first), {@code open-ratio} (share of patients admitted
+ * within the last two weeks and not yet discharged), {@code years} (length of the history), {@code today} (the
+ * reference date, ISO format) and {@code chunk} (patients written per transaction).
+ * </p>
+ * <p>
+ * The same seed, sizes, distributions and reference date always produce the same rows, independent of the
+ * chunk size. Only the IDs depend on the state of the ID sequence of the target database.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class DataGeneratorConfig {
+
+    private String url = "jdbc:hsqldb:mem:datagen";
+    private String user = "SA";
+    private String password = "";
+    private boolean createSchema = true;
+    private long seed = 42;
+    private int patients = 10_000;
+    private int wards = 50;
+    private double staysPerPatient = 3.0;
+    private double openRatio = 0.03;
+    private int years = 5;
+    private LocalDate today = LocalDate.of(2024, 4, 1);
+    private int chunk = 10_000;
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments in the form {@code --key=value}
+     * @return the configuration
+     * @throws IllegalArgumentException if an argument is unknown or malformed
+     */
+    public static DataGeneratorConfig parse(String[] args) {
+        DataGeneratorConfig config = new DataGeneratorConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            String key = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "url":
+                    config.url = value;
+                    break;
+                case "user":
+                    config.user = value;
+                    break;
+                case "password":
+                    config.password = value;
+                    break;
+                case "create-schema":
+                    config.createSchema = Boolean.parseBoolean(value);
+                    break;
+                case "seed":
+                    config.seed = Long.parseLong(value);
+                    break;
+                case "patients":
+                    config.patients = positive(key, value);
+                    break;
+                case "wards":
+                    config.wards = positive(key, value);
+                    break;
+                case "stays-per-patient":
+                    config.staysPerPatient = Double.parseDouble(value);
+                    if (config.staysPerPatient < 1) {
+                        throw new IllegalArgumentException("--" + key + " must be at least 1");
+                    }
+                    break;
+                case "open-ratio":
+                    config.openRatio = Double.parseDouble(value);
+                    if (config.openRatio < 0 || config.openRatio > 1) {
+                        throw new IllegalArgumentException("--" + key + " must be between 0 and 1");
+                    }
+                    break;
+                case "years":
+                    config.years = positive(key, value);
+                    break;
+                case "today":
+                    config.today = LocalDate.parse(value);
+                    break;
+                case "chunk":
+                    config.chunk = positive(key, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + key);
+            }
+        }
+        return config;
+    }
+
+    private static int positive(String key, String value) {
+        int number = Integer.parseInt(value);
+        if (number <= 0) {
+            throw new IllegalArgumentException("--" + key + " must be greater than 0");
+        }
+        return number;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isCreateSchema() {
+        return createSchema;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    public int getWards() {
+        return wards;
+    }
+
+    public double getStaysPerPatient() {
+        return staysPerPatient;
+    }
+
+    public double getOpenRatio() {
+        return openRatio;
+    }
+
+    public int getYears() {
+        return years;
+    }
+
+    public LocalDate getToday() {
+        return today;
+    }
+
+    public int getChunk() {
+        return chunk;
+    }
+}
@@ -0,0 +1,66 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import java.util.Arrays;
+
+/**
+ * The patients and stays generated for one transaction, as parallel arrays. Discharge days of open stays are
+ * {@link #OPEN}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+final class GeneratedChunk {
+
+    static final long OPEN = Long.MIN_VALUE;
+
+    final long[] patientIds;
+    final String[] firstnames;
+    final String[] lastnames;
+    final long[] birthDays;
+    final String[] healthInsurances;
+    final String[] insuranceNumbers;
+    int patientCount;
+
+    long[] stayIds;
+    long[] stayPatientIds;
+    long[] stayWardIds;
+    long[] admissionDays;
+    long[] dischargeDays;
+    int stayCount;
+
+    GeneratedChunk(int patients) {
+        patientIds = new long[patients];
+        firstnames = new String[patients];
+        lastnames = new String[patients];
+        birthDays = new long[patients];
+        healthInsurances = new String[patients];
+        insuranceNumbers = new String[patients];
+        int stays = Math.max(16, patients * 4);
+        stayIds = new long[stays];
+        stayPatientIds = new long[stays];
+        stayWardIds = new long[stays];
+        admissionDays = new long[stays];
+        dischargeDays = new long[stays];
+    }
+
+    void clear() {
+        patientCount = 0;
+        stayCount = 0;
+    }
+
+    void addStay(long patientId, long wardId, long admissionDay, long dischargeDay) {
+        if (stayCount == stayIds.length) {
+            int capacity = stayCount * 2;
+            stayIds = Arrays.copyOf(stayIds, capacity);
+            stayPatientIds = Arrays.copyOf(stayPatientIds, capacity);
+            stayWardIds = Arrays.copyOf(stayWardIds, capacity);
+            admissionDays = Arrays.copyOf(admissionDays, capacity);
+            dischargeDays = Arrays.copyOf(dischargeDays, capacity);
+        }
+        stayPatientIds[stayCount] = patientId;
+        stayWardIds[stayCount] = wardId;
+        admissionDays[stayCount] = admissionDay;
+        dischargeDays[stayCount] = dischargeDay;
+        stayCount++;
+    }
+}
@@ -0,0 +1,268 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.services.IdAllocator;
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Fills a database with synthetic but realistically shaped hospital data: Zipf-distributed names, an elderly
+ * heavy age structure, weighted health insurances, wards of different size and a geometric number of stays per
+ * patient with log-normal lengths of stay. Bigger wards receive proportionally more stays, and a configurable
+ * share of the patients is currently in hospital.
+ * <p>
+ * The data is generated in chunks of patients with their stays and written with {@code COPY} on PostgreSQL and
+ * JDBC batches elsewhere, one transaction per chunk, so memory use does not grow with the number of rows. IDs are
+ * reserved from the ID sequence of the service, so a service can keep inserting objects afterwards.
+ * </p>
+ * <p>
+ * Run it from the {@code A2} directory with
+ * {@code mvn -P tool-datagen compile exec:java -Dgenerator.args="--patients=1000000 --url=..."}; see
+ * {@link DataGeneratorConfig} for all options.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class HospitalDataGenerator {
+
+    private static final String[] LASTNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+        "Wagner", "Becker", "Schulz", "Hoffmann", "Schäfer", "Koch", "Bauer", "Richter", "Klein", "Wolf",
+        "Schröder", "Neumann", "Schwarz", "Zimmermann", "Braun", "Krüger", "Hofmann", "Hartmann", "Lange",
+        "Schmitt", "Werner", "Schmitz", "Krause", "Meier", "Lehmann", "Schmid", "Schulze", "Maier", "Köhler",
+        "Herrmann", "König", "Walter", "Mayer", "Huber", "Kaiser", "Fuchs", "Peters", "Lang", "Scholz", "Möller",
+        "Weiß", "Jung", "Hahn", "Schubert", "Yilmaz", "Kaya", "Nowak", "Kowalski", "Popescu", "Ivanov"};
+    private static final String[] FIRSTNAMES = {"Maria", "Ursula", "Monika", "Petra", "Elisabeth", "Sabine",
+        "Renate", "Helga", "Karin", "Brigitte", "Ingrid", "Erika", "Andrea", "Gisela", "Claudia", "Susanne",
+        "Anna", "Emma", "Mia", "Sophie", "Lea", "Hanna", "Peter", "Michael", "Thomas", "Andreas", "Wolfgang",
+        "Klaus", "Jürgen", "Günter", "Stefan", "Christian", "Uwe", "Werner", "Horst", "Frank", "Dieter",
+        "Manfred", "Gerhard", "Hans", "Ben", "Paul", "Jonas", "Lukas", "Felix", "Noah", "Elias", "Leon",
+        "Mehmet", "Ali", "Olga", "Natalia"};
+    private static final String[] INSURANCES = {"AOK", "Techniker Krankenkasse", "BARMER", "DAK-Gesundheit",
+        "IKK classic", "KKH", "hkk", "BKK", "Knappschaft", "privat"};
+    private static final double[] INSURANCE_WEIGHTS = {35, 20, 13, 8, 5, 2, 2, 7, 2, 6};
+    private static final String[] DEPARTMENTS = {"Innere Medizin", "Chirurgie", "Kardiologie", "Neurologie",
+        "Orthopädie", "Geriatrie", "Gynäkologie", "Pädiatrie", "Urologie", "Onkologie", "Intensivstation",
+        "Psychiatrie", "HNO", "Dermatologie", "Gastroenterologie"};
+
+    /**
+     * Upper bound of age groups in years and their share of the patients.
+     */
+    private static final int[] AGE_LIMITS = {18, 40, 65, 80, 100};
+    private static final double[] AGE_WEIGHTS = {10, 18, 30, 27, 15};
+
+    private static final double MEDIAN_LENGTH_OF_STAY = 4.0;
+    private static final double LENGTH_OF_STAY_SIGMA = 0.8;
+    private static final int MAX_LENGTH_OF_STAY = 365;
+    private static final double MEAN_DAYS_BETWEEN_STAYS = 180;
+    private static final int MAX_STAYS_PER_PATIENT = 100;
+    private static final int RECENT_ADMISSION_DAYS = 14;
+
+    private final DataGeneratorConfig config;
+    private final SplittableRandom random;
+    private final double[] lastnameWeights = zipf(LASTNAMES.length);
+    private final double[] firstnameWeights = zipf(FIRSTNAMES.length);
+    private final double[] ageWeights = cumulative(AGE_WEIGHTS);
+    private final double[] insuranceWeights = cumulative(INSURANCE_WEIGHTS);
+    private long[] wardIds;
+    private double[] wardWeights;
+    private long patientsWritten;
+    private long staysWritten;
+    private long openStays;
+
+    /**
+     * Creates a generator for the given configuration.
+     *
+     * @param config the settings of the run
+     */
+    public HospitalDataGenerator(DataGeneratorConfig config) {
+        this.config = config;
+        this.random = new SplittableRandom(config.getSeed());
+    }
+
+    /**
+     * Entry point of the generator.
+     *
+     * @param args the options described in {@link DataGeneratorConfig}
+     * @throws SQLException if the data cannot be written
+     */
+    public static void main(String[] args) throws SQLException {
+        DataGeneratorConfig config = DataGeneratorConfig.parse(args);
+        if (config.isCreateSchema()) {
+            new DBCreator().createDatabase(config.getUrl(), config.getUser(), config.getPassword());
+        }
+        HospitalDataGenerator generator = new HospitalDataGenerator(config);
+        long start = System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(),
+                config.getPassword())) {
+            generator.generate(connection);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = config.getWards() + 2 * generator.getPatientsWritten() + generator.getStaysWritten();
+        System.out.printf("%d wards, %d patients, %d stays (%d open) in %.1f s, %.0f rows/s%n", config.getWards(),
+                generator.getPatientsWritten(), generator.getStaysWritten(), generator.getOpenStays(), seconds,
+                rows / seconds);
+    }
+
+    /**
+     * Generates and writes all wards, patients and stays.
+     *
+     * @param connection the connection to write to; its auto-commit mode is restored afterwards
+     * @throws SQLException if the data cannot be written
+     */
+    public void generate(Connection connection) throws SQLException {
+        BulkSink sink = SqlDialect.of(connection) == SqlDialect.POSTGRESQL
+                ? new CopySink(connection) : new JdbcBatchSink(connection);
+        IdAllocator ids = new IdAllocator();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            writeWards(connection, sink, ids);
+            GeneratedChunk chunk = new GeneratedChunk(Math.min(config.getChunk(), config.getPatients()));
+            for (int done = 0; done < config.getPatients(); done += chunk.patientCount) {
+                chunk.clear();
+                int count = Math.min(config.getChunk(), config.getPatients() - done);
+                for (int i = 0; i < count; i++) {
+                    generatePatient(chunk);
+                }
+                assignIds(chunk, ids.nextIds(connection, chunk.patientCount + chunk.stayCount));
+                sink.writeChunk(chunk);
+                connection.commit();
+                patientsWritten += chunk.patientCount;
+                staysWritten += chunk.stayCount;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void writeWards(Connection connection, BulkSink sink, IdAllocator ids) throws SQLException {
+        int count = config.getWards();
+        wardIds = ids.nextIds(connection, count);
+        String[] names = new String[count];
+        int[] beds = new int[count];
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = DEPARTMENTS[i % DEPARTMENTS.length] + " " + (i / DEPARTMENTS.length + 1);
+            // mostly 20 to 40 beds, a few large wards
+            beds[i] = (int) Math.min(120, Math.max(6, Math.round(Math.exp(Math.log(28) + 0.35 * gaussian()))));
+            weights[i] = beds[i];
+        }
+        wardWeights = cumulative(weights);
+        sink.writeWards(wardIds, names, beds);
+        connection.commit();
+    }
+
+    private void generatePatient(GeneratedChunk chunk) {
+        int index = chunk.patientCount++;
+        long today = config.getToday().toEpochDay();
+        chunk.firstnames[index] = FIRSTNAMES[pick(firstnameWeights)];
+        chunk.lastnames[index] = LASTNAMES[pick(lastnameWeights)];
+        int group = pick(ageWeights);
+        int minAge = group == 0 ? 0 : AGE_LIMITS[group - 1];
+        long ageDays = (long) ((minAge + random.nextDouble() * (AGE_LIMITS[group] - minAge)) * 365.25);
+        chunk.birthDays[index] = today - ageDays;
+        int insurance = pick(insuranceWeights);
+        chunk.healthInsurances[index] = INSURANCES[insurance];
+        // the format of the German health insurance number: one letter and nine digits
+        chunk.insuranceNumbers[index] = (char) ('A' + random.nextInt(26))
+                + String.format("%09d", random.nextInt(1_000_000_000));
+
+        double p = 1.0 / config.getStaysPerPatient();
+        int stays = p >= 1 ? 1 : (int) Math.min(MAX_STAYS_PER_PATIENT,
+                1 + Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p)));
+        boolean inHospital = random.nextDouble() < config.getOpenRatio();
+        long historyStart = Math.max(chunk.birthDays[index], today - config.getYears() * 365L);
+        long admission = historyStart + random.nextLong(Math.max(1, today - historyStart));
+        long lastDischarge = Long.MIN_VALUE;
+        for (int s = 0; s < stays && admission <= today; s++) {
+            long discharge = admission + lengthOfStay();
+            if (discharge > today) {
+                chunk.addStay(index, pickWard(), admission, GeneratedChunk.OPEN);
+                openStays++;
+                return;
+            }
+            chunk.addStay(index, pickWard(), admission, discharge);
+            lastDischarge = discharge;
+            admission = discharge + 1 + (long) (-Math.log(1 - random.nextDouble()) * MEAN_DAYS_BETWEEN_STAYS);
+        }
+        if (inHospital) {
+            long recent = Math.max(lastDischarge + 1, today - random.nextInt(RECENT_ADMISSION_DAYS));
+            if (recent <= today) {
+                chunk.addStay(index, pickWard(), recent, GeneratedChunk.OPEN);
+                openStays++;
+            }
+        }
+    }
+
+    private long lengthOfStay() {
+        double days = Math.exp(Math.log(MEDIAN_LENGTH_OF_STAY) + LENGTH_OF_STAY_SIGMA * gaussian());
+        return Math.min(MAX_LENGTH_OF_STAY, Math.round(days));
+    }
+
+    private long pickWard() {
+        return wardIds[pick(wardWeights)];
+    }
+
+    /**
+     * Replaces the patient positions of the stays by the reserved patient IDs.
+     */
+    private static void assignIds(GeneratedChunk chunk, long[] ids) {
+        System.arraycopy(ids, 0, chunk.patientIds, 0, chunk.patientCount);
+        for (int i = 0; i < chunk.stayCount; i++) {
+            chunk.stayIds[i] = ids[chunk.patientCount + i];
+            chunk.stayPatientIds[i] = chunk.patientIds[(int) chunk.stayPatientIds[i]];
+        }
+    }
+
+    private double gaussian() {
+        // Box-Muller, so the sequence does not depend on the Java version
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    private int pick(double[] cumulativeWeights) {
+        double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, value);
+        return Math.min(cumulativeWeights.length - 1, index >= 0 ? index + 1 : -index - 1);
+    }
+
+    private static double[] zipf(int count) {
+        double[] weights = new double[count];
+        for (int rank = 1; rank <= count; rank++) {
+            weights[rank - 1] = 1.0 / rank;
+        }
+        return cumulative(weights);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] result = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            result[i] = sum;
+        }
+        return result;
+    }
+
+    public long getPatientsWritten() {
+        return patientsWritten;
+    }
+
+    public long getStaysWritten() {
+        return staysWritten;
+    }
+
+    public long getOpenStays() {
+        return openStays;
+    }
+}
@@ -0,0 +1,86 @@
+package de.hshn.mi.pdbg.basicservice.datagen;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+
+/**
+ * Writes the rows with one JDBC batch per table, for databases without a {@code COPY} command.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+final class JdbcBatchSink implements BulkSink {
+
+    private static final String INSERT_WARD = "INSERT INTO Station (ID, Bezeichnung, Bettenzahl) VALUES (?, ?, ?)";
+    private static final String INSERT_PERSON =
+            "INSERT INTO Person (ID, Vorname, Nachname, Geburtsdatum) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_PATIENT =
+            "INSERT INTO Patient (ID, Krankenkasse, Versicherungsnummer) VALUES (?, ?, ?)";
+    private static final String INSERT_STAY =
+            "INSERT INTO Aufenthalt (ID, PID, SID, Aufnahmedatum, Entlassdatum) VALUES (?, ?, ?, ?, ?)";
+
+    private final Connection connection;
+
+    JdbcBatchSink(Connection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void writeWards(long[] ids, String[] names, int[] beds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_WARD)) {
+            for (int i = 0; i < ids.length; i++) {
+                statement.setLong(1, ids[i]);
+                statement.setString(2, names[i]);
+                statement.setInt(3, beds[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @Override
+    public void writeChunk(GeneratedChunk chunk) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_PERSON)) {
+            for (int i = 0; i < chunk.patientCount; i++) {
+                statement.setLong(1, chunk.patientIds[i]);
+                statement.setString(2, chunk.firstnames[i]);
+                statement.setString(3, chunk.lastnames[i]);
+                statement.setDate(4, toDate(chunk.birthDays[i]));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_PATIENT)) {
+            for (int i = 0; i < chunk.patientCount; i++) {
+                statement.setLong(1, chunk.patientIds[i]);
+                statement.setString(2, chunk.healthInsurances[i]);
+                statement.setString(3, chunk.insuranceNumbers[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_STAY)) {
+            for (int i = 0; i < chunk.stayCount; i++) {
+                statement.setLong(1, chunk.stayIds[i]);
+                statement.setLong(2, chunk.stayPatientIds[i]);
+                statement.setLong(3, chunk.stayWardIds[i]);
+                statement.setDate(4, toDate(chunk.admissionDays[i]));
+                if (chunk.dischargeDays[i] == GeneratedChunk.OPEN) {
+                    statement.setNull(5, Types.DATE);
+                } else {
+                    statement.setDate(5, toDate(chunk.dischargeDays[i]));
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static Date toDate(long epochDay) {
+        return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+}
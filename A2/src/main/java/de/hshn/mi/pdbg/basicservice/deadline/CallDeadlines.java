@@ -0,0 +1,242 @@
+package de.hshn.mi.pdbg.basicservice.deadline;
+
+import de.hshn.mi.pdbg.basicservice.exception.DeadlineExceededException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-call deadlines of a service. {@link #call(long, Supplier)} runs an operation with a time budget; while it
+ * runs, {@link #guard(Connection)} hands out the connection of the service wrapped, so that every statement
+ * created on it
+ * <ul>
+ *     <li>fails right away if the budget is already used up,</li>
+ *     <li>gets the remaining budget as query timeout (rounded up to seconds, as JDBC counts it), and</li>
+ *     <li>is cancelled with {@code Statement.cancel()} when the deadline passes, which does not depend on the
+ *     driver honouring the query timeout.</li>
+ * </ul>
+ * Reading the rows of a result checks the deadline as well, so a call does not exceed its budget while it turns
+ * a large result into objects. A call that runs out of time fails with a {@link DeadlineExceededException}.
+ * Nested calls keep the earlier of the two deadlines.
+ * <p>
+ * The PostgreSQL driver cancels a running statement on the server. HSQLDB ignores {@code cancel()}; there a
+ * runaway statement is stopped by the query timeout only, i.e. after up to a second more than the budget.
+ * </p>
+ * <p>
+ * The numbers of calls, timeouts and cancelled statements are counted for monitoring.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class CallDeadlines implements AutoCloseable {
+
+    /**
+     * The deadline of the operation running on a thread.
+     */
+    private static final class Call {
+        final long deadlineNanos;
+        final long budgetMillis;
+
+        Call(long deadlineNanos, long budgetMillis) {
+            this.deadlineNanos = deadlineNanos;
+            this.budgetMillis = budgetMillis;
+        }
+
+        long remainingNanos() {
+            return deadlineNanos - System.nanoTime();
+        }
+    }
+
+    private final ThreadLocal<Call> call = new ThreadLocal<>();
+    // the thread is only started by the first statement that runs under a deadline
+    private final ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdbg-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong cancelledStatements = new AtomicLong();
+
+    /**
+     * Runs an operation with a deadline.
+     *
+     * @param timeoutMillis the time budget of the operation
+     * @param operation     the operation; its statements have to be created on connections passed through
+     *                      {@link #guard(Connection)}
+     * @param <T>           the result type
+     * @return the result of the operation
+     * @throws DeadlineExceededException if the operation did not complete within the budget
+     */
+    public <T> T call(long timeoutMillis, Supplier<T> operation) {
+        if (timeoutMillis <= 0 || operation == null) {
+            throw new AssertionError("An operation and a positive timeout are required");
+        }
+        Call outer = call.get();
+        Call current = new Call(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), timeoutMillis);
+        if (outer != null && outer.deadlineNanos - current.deadlineNanos <= 0) {
+            return operation.get();
+        }
+        calls.incrementAndGet();
+        call.set(current);
+        try {
+            return operation.get();
+        } finally {
+            if (outer != null) {
+                call.set(outer);
+            } else {
+                call.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the time left to the operation running on the current thread.
+     *
+     * @return the remaining milliseconds (0 if the deadline has passed), or -1 if no deadline is set
+     */
+    public long remainingMillis() {
+        Call current = call.get();
+        return current == null ? -1 : Math.max(0, TimeUnit.NANOSECONDS.toMillis(current.remainingNanos()));
+    }
+
+    /**
+     * Returns the connection to use on the current thread: wrapped as described above if an operation with a
+     * deadline is running, the connection itself otherwise.
+     *
+     * @param connection the connection of the service
+     * @return the connection to create statements on
+     */
+    public Connection guard(Connection connection) {
+        Call current = call.get();
+        if (current == null || connection == null) {
+            return connection;
+        }
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement ? guardStatement(current, (Statement) result, method) : result;
+        });
+    }
+
+    private Object guardStatement(Call current, Statement statement, Method factory) {
+        Class<?> type = factory.getReturnType();
+        Class<? extends Statement> api = CallableStatement.class.isAssignableFrom(type) ? CallableStatement.class
+                : PreparedStatement.class.isAssignableFrom(type) ? PreparedStatement.class : Statement.class;
+        return proxy(api, statement, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                return guardResult(current, execute(current, statement, method, args));
+            }
+            Object result = invoke(statement, method, args);
+            return method.getReturnType() == ResultSet.class ? guardResult(current, result) : result;
+        });
+    }
+
+    private Object execute(Call current, Statement statement, Method method, Object[] args) throws Throwable {
+        long remaining = current.remainingNanos();
+        if (remaining <= 0) {
+            throw expired(current, null);
+        }
+        statement.setQueryTimeout((int) Math.max(1, (TimeUnit.NANOSECONDS.toMillis(remaining) + 999) / 1000));
+        ScheduledFuture<?> cancel = canceller.schedule(() -> cancel(statement), remaining, TimeUnit.NANOSECONDS);
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            if (current.remainingNanos() <= 0) {
+                throw expired(current, e.getCause());
+            }
+            throw e.getCause();
+        } finally {
+            cancel.cancel(false);
+        }
+    }
+
+    private Object guardResult(Call current, Object result) {
+        if (!(result instanceof ResultSet)) {
+            return result;
+        }
+        ResultSet resultSet = (ResultSet) result;
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            if ("next".equals(method.getName()) && current.remainingNanos() <= 0) {
+                throw expired(current, null);
+            }
+            return invoke(resultSet, method, args);
+        });
+    }
+
+    private void cancel(Statement statement) {
+        cancelledStatements.incrementAndGet();
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            // the statement fails with its own error or completes; either way the caller sees the deadline
+        }
+    }
+
+    private DeadlineExceededException expired(Call current, Throwable cause) {
+        timeouts.incrementAndGet();
+        return new DeadlineExceededException(current.budgetMillis, cause);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T> T proxy(Class<T> api, Object target, InvocationHandler handler) {
+        return api.cast(Proxy.newProxyInstance(CallDeadlines.class.getClassLoader(), new Class<?>[] {api},
+                handler));
+    }
+
+    /**
+     * Returns the number of operations run with a deadline.
+     *
+     * @return the number of calls
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns the number of operations that failed because their deadline passed.
+     *
+     * @return the number of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Returns the number of statements cancelled because their deadline passed while they were running.
+     *
+     * @return the number of cancelled statements
+     */
+    public long getCancelledStatements() {
+        return cancelledStatements.get();
+    }
+
+    /**
+     * Stops the thread that cancels statements.
+     */
+    @Override
+    public void close() {
+        canceller.shutdownNow();
+    }
+}
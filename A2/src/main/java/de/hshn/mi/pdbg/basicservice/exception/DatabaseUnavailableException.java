@@ -0,0 +1,35 @@
+package de.hshn.mi.pdbg.basicservice.exception;
+
+import de.hshn.mi.pdbg.exception.FetchException;
+
+/**
+ * Thrown when the service gives up on the database: the connection could not be validated or re-established
+ * within the time budget of the call, or the circuit breaker of
+ * {@link de.hshn.mi.pdbg.basicservice.health.ConnectionHealth} is open because the previous attempts failed.
+ * The call was not executed; it can be repeated once the database is reachable again.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class DatabaseUnavailableException extends FetchException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param message          the reason
+     * @param retryAfterMillis how long the circuit breaker rejects calls from now on, 0 if it is not open
+     * @param cause            the last error reported by the database, or null
+     */
+    public DatabaseUnavailableException(String message, long retryAfterMillis, Throwable cause) {
+        super(message, cause);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
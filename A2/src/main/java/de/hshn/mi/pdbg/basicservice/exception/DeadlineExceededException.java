@@ -0,0 +1,34 @@
+package de.hshn.mi.pdbg.basicservice.exception;
+
+import de.hshn.mi.pdbg.exception.FetchException;
+
+/**
+ * Thrown when a call run with {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl#withDeadline} used
+ * up its time budget. The statement that was running has been cancelled, so the connection is free for the next
+ * call; a cancelled write has not been applied.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class DeadlineExceededException extends FetchException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long budgetMillis;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param budgetMillis the time budget of the call
+     * @param cause        the error of the cancelled statement, or null if the budget was used up before a
+     *                     statement was sent
+     */
+    public DeadlineExceededException(long budgetMillis, Throwable cause) {
+        super("The call did not complete within its deadline of " + budgetMillis + " ms", cause);
+        this.budgetMillis = budgetMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
@@ -0,0 +1,31 @@
+package de.hshn.mi.pdbg.basicservice.exception;
+
+import de.hshn.mi.pdbg.exception.StoreException;
+
+/**
+ * Thrown by {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl#admit} when every bed of the ward is
+ * taken by a stay without discharge date. Nothing has been written in that case.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class NoFreeBedException extends StoreException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long wardID;
+
+    /**
+     * Creates a new exception for a rejected admission.
+     *
+     * @param wardID the ID of the full ward
+     */
+    public NoFreeBedException(long wardID) {
+        super("Station with id " + wardID + " has no free bed");
+        this.wardID = wardID;
+    }
+
+    public long getWardID() {
+        return wardID;
+    }
+}
@@ -0,0 +1,48 @@
+package de.hshn.mi.pdbg.basicservice.exception;
+
+import de.hshn.mi.pdbg.exception.StoreException;
+
+/**
+ * Thrown when an object is stored although its row has been changed by someone else since the object was read.
+ * The version column of the row no longer matches the version the object was loaded with, so the update was
+ * rejected instead of silently overwriting the other change. Reload the object and apply the change again,
+ * for example with {@link de.hshn.mi.pdbg.basicservice.services.OptimisticRetry}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class OptimisticLockException extends StoreException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String table;
+    private final long objectID;
+    private final long expectedVersion;
+
+    /**
+     * Creates a new exception for a rejected update.
+     *
+     * @param table           the table of the rejected row
+     * @param objectID        the ID of the rejected row
+     * @param expectedVersion the version the object was loaded with
+     */
+    public OptimisticLockException(String table, long objectID, long expectedVersion) {
+        super(table + " with id " + objectID + " was modified concurrently (expected version "
+                + expectedVersion + ")");
+        this.table = table;
+        this.objectID = objectID;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getObjectID() {
+        return objectID;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
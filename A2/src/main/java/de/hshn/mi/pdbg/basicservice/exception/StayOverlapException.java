@@ -0,0 +1,29 @@
+package de.hshn.mi.pdbg.basicservice.exception;
+
+import de.hshn.mi.pdbg.exception.StoreException;
+
+/**
+ * Thrown when a hospital stay is stored that overlaps another stay of the same patient and the overlap
+ * constraint of {@link de.hshn.mi.pdbg.basicservice.services.StayOverlapConstraint} is installed.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class StayOverlapException extends StoreException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The SQL state reported for a violated exclusion constraint.
+     */
+    public static final String SQL_STATE = "23P01";
+
+    /**
+     * Creates a new exception for a rejected stay.
+     *
+     * @param cause the error reported by the database
+     */
+    public StayOverlapException(Throwable cause) {
+        super("The hospital stay overlaps another stay of the same patient", cause);
+    }
+}
@@ -0,0 +1,489 @@
+package de.hshn.mi.pdbg.basicservice.health;
+
+import de.hshn.mi.pdbg.basicservice.exception.DatabaseUnavailableException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the connection of a service usable and bounds the time a call can hang on an unreachable database.
+ * <p>
+ * {@code Connection.isClosed()} only reports connections closed by the client, a socket that died with the
+ * network or with a failover of the database still looks open. {@link #ensureValid(Connection)} therefore checks a
+ * connection with {@code isValid} before it is used after a period of inactivity, or after a failure was seen,
+ * and replaces it if the check fails. Connection attempts are limited by the time budget of the call, and a
+ * statement that is still waiting for the database when the budget is used up has its connection aborted
+ * ({@code Connection.abort}). This does not depend on driver support for {@code setNetworkTimeout}, which e.g. the
+ * HSQLDB driver ignores. It does depend on an {@code abort} that closes the socket without waiting for the blocked
+ * statement: the PostgreSQL driver does that, the network driver of HSQLDB does not, so against an HSQLDB server
+ * only connection attempts, validations and the breaker are bounded.
+ * </p>
+ * <p>
+ * The abort is skipped for calls the owner declares as exempt when they start, see
+ * {@link #ConnectionHealth(HealthOptions, ConnectionFactory, BooleanSupplier)}: a slow statement is not
+ * necessarily a dead socket, and aborting the connection of a running transaction loses all of its work, while
+ * a call with a deadline of its own already has its statements cancelled when that deadline passes.
+ * </p>
+ * <p>
+ * After {@link HealthOptions#getFailureThreshold()} consecutive failures the circuit breaker opens: calls fail
+ * immediately with a {@link DatabaseUnavailableException} instead of waiting for the database again. The pause
+ * grows exponentially with the number of failures and is jittered, so that many clients do not reconnect in
+ * lockstep. When it has passed, the breaker is half-open and lets a call through; its success closes the breaker,
+ * its failure opens it again. A background probe with its own connection detects outages while the service is
+ * idle and closes the breaker as soon as the database answers again.
+ * </p>
+ * <p>
+ * {@link #retryRead(Supplier)} repeats reads that failed because the connection was lost. Writes run with
+ * {@link #bounded(Supplier)} and are never repeated, because the database may have committed them before the
+ * connection broke.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class ConnectionHealth implements AutoCloseable {
+
+    /**
+     * The states of the circuit breaker.
+     */
+    public enum State {
+        /** The database is reachable; calls go through. */
+        CLOSED,
+        /** The database failed repeatedly; calls fail immediately until the pause has passed. */
+        OPEN,
+        /** The pause has passed; the next call decides whether the breaker closes or opens again. */
+        HALF_OPEN
+    }
+
+    /**
+     * Opens a new connection to the database.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+    /**
+     * The time budget of the operation running on a thread and the connection it uses.
+     */
+    private static final class Call {
+        final long deadlineNanos;
+        volatile Connection connection;
+        volatile boolean aborted;
+
+        Call(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final HealthOptions options;
+    private final ConnectionFactory factory;
+    private final BooleanSupplier exempt;
+    private final ExecutorService connector = Executors.newCachedThreadPool(daemon("pdbg-connect"));
+    private final ScheduledExecutorService keepalive =
+            Executors.newSingleThreadScheduledExecutor(daemon("pdbg-keepalive"));
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(daemon("pdbg-watchdog"));
+    private final ThreadLocal<Call> call = new ThreadLocal<>();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long retryAtNanos;
+    private volatile boolean suspect;
+    private volatile long verifiedAtNanos = System.nanoTime();
+    private volatile Connection abandoned;
+    private Connection probe;
+
+    /**
+     * Creates the health checks and starts the background probe.
+     *
+     * @param options the timeouts and limits
+     * @param factory opens new connections, both for the service and for the probe
+     */
+    public ConnectionHealth(HealthOptions options, ConnectionFactory factory) {
+        this(options, factory, () -> false);
+    }
+
+    /**
+     * Creates the health checks and starts the background probe.
+     *
+     * @param options the timeouts and limits
+     * @param factory opens new connections, both for the service and for the probe
+     * @param exempt  asked on the calling thread when a call starts; if it returns true, the connection of the call
+     *                is not aborted when the budget is used up, e.g. because the call belongs to a transaction or
+     *                is bounded by a deadline of its own. Connection attempts and retries stay within the budget.
+     */
+    public ConnectionHealth(HealthOptions options, ConnectionFactory factory, BooleanSupplier exempt) {
+        if (options == null || factory == null || exempt == null) {
+            throw new AssertionError("The options, the connection factory and the exemption cannot be null");
+        }
+        this.options = options;
+        this.factory = factory;
+        this.exempt = exempt;
+        keepalive.scheduleWithFixedDelay(this::probe, options.getKeepaliveMillis(), options.getKeepaliveMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns a connection that has recently proven to work: the given one, or a new one if the given one is
+     * closed or fails the validation. A replaced connection is closed.
+     *
+     * @param connection the connection in use, or null
+     * @return the connection to use
+     * @throws DatabaseUnavailableException if the breaker is open or no working connection can be obtained
+     *                                      within the budget
+     */
+    public Connection ensureValid(Connection connection) {
+        admit();
+        long now = System.nanoTime();
+        if (connection != null && connection == abandoned) {
+            // given up on before; even isClosed() may block on it
+            connection = null;
+        }
+        try {
+            if (connection != null && !connection.isClosed()) {
+                if (!suspect && now - verifiedAtNanos < TimeUnit.MILLISECONDS.toNanos(options.getKeepaliveMillis())) {
+                    return inUse(connection);
+                }
+                if (connection.isValid(validationTimeoutSeconds())) {
+                    succeeded();
+                    return inUse(connection);
+                }
+            }
+        } catch (SQLException e) {
+            // treated like a failed validation
+        }
+        if (connection != null) {
+            abandon(connection);
+        }
+        Connection fresh = connect(remainingMillis());
+        succeeded();
+        return inUse(fresh);
+    }
+
+    private Connection inUse(Connection connection) {
+        Call current = call.get();
+        if (current != null) {
+            current.connection = connection;
+        }
+        return connection;
+    }
+
+    /**
+     * Runs a read within the time budget and repeats it if it failed because the connection was lost, as long as
+     * the retries and the budget allow. Errors unrelated to the connection are passed on unchanged.
+     *
+     * @param read the read; it has to obtain its connection through {@link #ensureValid(Connection)}
+     * @param <T>  the result type
+     * @return the result of the read
+     * @throws DatabaseUnavailableException if the read could not be completed within the budget
+     */
+    public <T> T retryRead(Supplier<T> read) {
+        return run(read, true);
+    }
+
+    /**
+     * Runs a write within the time budget, without repeating it. If the connection breaks, the error of the
+     * write is passed on and the connection is replaced before the next operation.
+     *
+     * @param write the write; it has to obtain its connection through {@link #ensureValid(Connection)}
+     * @param <T>   the result type
+     * @return the result of the write
+     */
+    public <T> T bounded(Supplier<T> write) {
+        return run(write, false);
+    }
+
+    private <T> T run(Supplier<T> operation, boolean retry) {
+        if (call.get() != null) {
+            // nested in another operation, which already watches the budget
+            return operation.get();
+        }
+        Call current = new Call(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getBudgetMillis()));
+        call.set(current);
+        ScheduledFuture<?> abort = exempt.getAsBoolean() ? null
+                : watchdog.schedule(() -> abort(current), options.getBudgetMillis(), TimeUnit.MILLISECONDS);
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    T result = operation.get();
+                    verifiedAtNanos = System.nanoTime();
+                    return result;
+                } catch (DatabaseUnavailableException e) {
+                    if (!retry || e.getRetryAfterMillis() > 0) {
+                        throw e;
+                    }
+                    pauseBeforeRetry(attempt, e);
+                } catch (RuntimeException e) {
+                    if (!current.aborted && !isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    failed(e);
+                    if (!retry) {
+                        throw e;
+                    }
+                    pauseBeforeRetry(attempt, e);
+                }
+            }
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            call.remove();
+        }
+    }
+
+    /**
+     * Runs on the watchdog thread when an operation has used up its budget: aborts its connection, so that a
+     * statement blocked on a dead socket returns with an error. Some drivers (HSQLDB) close the connection inside
+     * {@code abort} and wait for the blocked statement, so the abort runs on a thread of its own.
+     */
+    private void abort(Call expired) {
+        expired.aborted = true;
+        Connection connection = expired.connection;
+        if (connection == null) {
+            return;
+        }
+        abandoned = connection;
+        connector.execute(() -> {
+            try {
+                connection.abort(connector);
+            } catch (SQLException e) {
+                // the connection is replaced by the next validation anyway
+            }
+        });
+    }
+
+    /**
+     * Closes a broken connection in the background, because closing may block on a statement still stuck on
+     * the dead socket, and makes sure it is not touched again.
+     */
+    private void abandon(Connection connection) {
+        abandoned = connection;
+        connector.execute(() -> closeQuietly(connection));
+    }
+
+    private void pauseBeforeRetry(int attempt, RuntimeException cause) {
+        long remaining = remainingMillis();
+        if (attempt >= options.getReadRetries() || remaining <= 0) {
+            throw new DatabaseUnavailableException("The database did not answer within "
+                    + options.getBudgetMillis() + " ms", retryAfterMillis(), cause);
+        }
+        try {
+            Thread.sleep(Math.min(backoffMillis(attempt), remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseUnavailableException("Interrupted while waiting for the database", 0, cause);
+        }
+    }
+
+    /**
+     * Tells whether an error means that the connection is broken, i.e. whether the statement can be repeated on
+     * a new connection.
+     *
+     * @param error the error, usually a service exception wrapping an {@link SQLException}
+     * @return true for connection errors (SQL state class {@code 08} and the JDBC connection exceptions)
+     */
+    public static boolean isConnectionFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_CLASS)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private synchronized void admit() {
+        if (state == State.OPEN) {
+            long wait = retryAtNanos - System.nanoTime();
+            if (wait > 0) {
+                throw new DatabaseUnavailableException("The database is unavailable, retry in "
+                        + TimeUnit.NANOSECONDS.toMillis(wait) + " ms", Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)),
+                        null);
+            }
+            state = State.HALF_OPEN;
+        }
+    }
+
+    private synchronized void succeeded() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        suspect = false;
+        verifiedAtNanos = System.nanoTime();
+    }
+
+    private synchronized void failed(Throwable cause) {
+        suspect = true;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= options.getFailureThreshold()) {
+            state = State.OPEN;
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                    backoffMillis(consecutiveFailures - options.getFailureThreshold()));
+        }
+    }
+
+    private synchronized long retryAfterMillis() {
+        return state == State.OPEN ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(retryAtNanos - System.nanoTime())) : 0;
+    }
+
+    /**
+     * Returns the pause after the given number of failures: the base pause doubled per failure up to the limit,
+     * of which a random half is waited ("equal jitter").
+     */
+    private long backoffMillis(int failures) {
+        long base = options.getBackoffMillis() << Math.min(Math.max(failures, 0), 20);
+        base = Math.min(base, options.getMaxBackoffMillis());
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    private long remainingMillis() {
+        Call current = call.get();
+        if (current == null) {
+            return options.getBudgetMillis();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(current.deadlineNanos - System.nanoTime());
+    }
+
+    private int validationTimeoutSeconds() {
+        return (int) Math.max(1, (options.getValidationTimeoutMillis() + 999) / 1000);
+    }
+
+    /**
+     * Opens a connection on a separate thread, so that a connection attempt that hangs in the network stack
+     * cannot block the caller beyond the budget. A connection that arrives too late is closed.
+     */
+    private Connection connect(long timeoutMillis) {
+        CompletableFuture<Connection> attempt = CompletableFuture.supplyAsync(() -> {
+            try {
+                return factory.connect();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, connector);
+        try {
+            return attempt.get(Math.max(timeoutMillis, 1), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            attempt.thenAccept(ConnectionHealth::closeQuietly);
+            failed(e);
+            throw new DatabaseUnavailableException("No connection to the database within " + timeoutMillis + " ms",
+                    retryAfterMillis(), e);
+        } catch (ExecutionException e) {
+            failed(e.getCause());
+            throw new DatabaseUnavailableException("Cannot connect to the database", retryAfterMillis(),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            attempt.thenAccept(ConnectionHealth::closeQuietly);
+            throw new DatabaseUnavailableException("Interrupted while connecting to the database", 0, e);
+        }
+    }
+
+    /**
+     * Runs on the keepalive thread: validates the probe connection, reconnects it if necessary and updates the
+     * breaker. The connection of the service is only marked as suspect, it is checked by its own thread.
+     */
+    private void probe() {
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() < retryAtNanos) {
+                return;
+            }
+        }
+        try {
+            if (probe != null && probe.isValid(validationTimeoutSeconds())) {
+                reachable();
+                return;
+            }
+        } catch (SQLException e) {
+            // reconnect below
+        }
+        if (probe != null) {
+            closeQuietly(probe);
+            probe = null;
+            suspect = true;
+        }
+        try {
+            probe = connect(options.getBudgetMillis());
+            reachable();
+        } catch (DatabaseUnavailableException e) {
+            // recorded by connect
+        }
+    }
+
+    /**
+     * Closes the breaker after the probe reached the database. Unlike {@link #succeeded()} this leaves the
+     * connection of the service marked as suspect.
+     */
+    private synchronized void reachable() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Stops the background probe and closes its connection. The connection of the service is left alone.
+     */
+    @Override
+    public void close() {
+        keepalive.shutdownNow();
+        try {
+            keepalive.awaitTermination(options.getValidationTimeoutMillis() + 1_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watchdog.shutdownNow();
+        closeQuietly(probe);
+        connector.shutdownNow();
+    }
+}
@@ -0,0 +1,85 @@
+package de.hshn.mi.pdbg.basicservice.health;
+
+/**
+ * Tuning parameters of a {@link ConnectionHealth}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class HealthOptions {
+
+    private final long validationTimeoutMillis;
+    private final long keepaliveMillis;
+    private final int failureThreshold;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int readRetries;
+    private final long budgetMillis;
+
+    /**
+     * Creates a new set of options.
+     *
+     * @param validationTimeoutMillis how long {@code Connection.isValid} may take; JDBC counts this in seconds, so
+     *                                it is rounded up to full seconds
+     * @param keepaliveMillis         interval of the background probe, and the idle time after which a connection
+     *                                is validated before it is used again
+     * @param failureThreshold        consecutive failures after which the circuit breaker opens
+     * @param backoffMillis           first pause of the breaker and between read retries; doubled per failure
+     * @param maxBackoffMillis        upper limit of the pause
+     * @param readRetries             how often a read that lost its connection is repeated
+     * @param budgetMillis            time a call may spend connecting and retrying before it fails; also the
+     *                                network timeout of the connections
+     */
+    public HealthOptions(long validationTimeoutMillis, long keepaliveMillis, int failureThreshold, long backoffMillis,
+                         long maxBackoffMillis, int readRetries, long budgetMillis) {
+        if (validationTimeoutMillis <= 0 || keepaliveMillis <= 0 || failureThreshold <= 0 || backoffMillis <= 0
+                || maxBackoffMillis < backoffMillis || readRetries < 0 || budgetMillis <= 0) {
+            throw new AssertionError("Invalid health check options");
+        }
+        this.validationTimeoutMillis = validationTimeoutMillis;
+        this.keepaliveMillis = keepaliveMillis;
+        this.failureThreshold = failureThreshold;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.readRetries = readRetries;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Returns the default options: 1 s validation timeout, 5 s keepalive, the breaker opens after 3 failures,
+     * backoff from 200 ms up to 10 s, 2 read retries and a budget of 5 s per call.
+     *
+     * @return the default options
+     */
+    public static HealthOptions defaults() {
+        return new HealthOptions(1_000, 5_000, 3, 200, 10_000, 2, 5_000);
+    }
+
+    public long getValidationTimeoutMillis() {
+        return validationTimeoutMillis;
+    }
+
+    public long getKeepaliveMillis() {
+        return keepaliveMillis;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public int getReadRetries() {
+        return readRetries;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
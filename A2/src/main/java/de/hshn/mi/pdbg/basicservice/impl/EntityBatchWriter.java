@@ -0,0 +1,161 @@
+package de.hshn.mi.pdbg.basicservice.impl;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.services.IdAllocator;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts many new objects at once. All IDs are reserved from the {@link IdAllocator} up front, so the rows of
+ * each table can be sent as a single JDBC batch: persons, patients, wards and finally the stays referencing
+ * them. Patients and wards of new stays are inserted as well, just like {@link HospitalStayImpl#store} does.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class EntityBatchWriter {
+
+    private EntityBatchWriter() {
+    }
+
+    /**
+     * Inserts all objects of the collection that are not persistent yet. If the connection is in auto-commit
+     * mode, the inserts run in a transaction of their own; otherwise they become part of the caller's
+     * transaction. The IDs are assigned to the objects once the rows have been written.
+     *
+     * @param connection the connection to write to
+     * @param objects    the objects to insert; persistent objects are ignored
+     * @param allocator  the allocator the IDs are taken from
+     * @return the number of inserted objects, including cascaded patients and wards
+     * @throws SQLException   if a batch fails; in that case no object gets an ID
+     * @throws StoreException if the collection contains an unsupported object type
+     */
+    public static int insertAll(Connection connection, Collection<? extends PersistentObject> objects,
+                                IdAllocator allocator) throws SQLException {
+        Set<PatientImpl> patients = new LinkedHashSet<>();
+        Set<WardImpl> wards = new LinkedHashSet<>();
+        Set<HospitalStayImpl> stays = new LinkedHashSet<>();
+        for (PersistentObject object : objects) {
+            if (object == null) {
+                throw new AssertionError("The object should not be null!");
+            }
+            if (object.isPersistent()) {
+                continue;
+            }
+            if (object instanceof PatientImpl) {
+                patients.add((PatientImpl) object);
+            } else if (object instanceof WardImpl) {
+                wards.add((WardImpl) object);
+            } else if (object instanceof HospitalStayImpl) {
+                HospitalStayImpl stay = (HospitalStayImpl) object;
+                stays.add(stay);
+                if (!stay.getPatient().isPersistent()) {
+                    patients.add((PatientImpl) stay.getPatient());
+                }
+                if (!stay.getWard().isPersistent()) {
+                    wards.add((WardImpl) stay.getWard());
+                }
+            } else {
+                throw new StoreException("Unsupported type: " + object.getClass().getName());
+            }
+        }
+        int count = patients.size() + wards.size() + stays.size();
+        if (count == 0) {
+            return 0;
+        }
+
+        long[] ids = allocator.nextIds(connection, count);
+        Map<PersistentObject, Long> assigned = new IdentityHashMap<>();
+        int next = 0;
+        for (PatientImpl patient : patients) {
+            assigned.put(patient, ids[next++]);
+        }
+        for (WardImpl ward : wards) {
+            assigned.put(ward, ids[next++]);
+        }
+        for (HospitalStayImpl stay : stays) {
+            assigned.put(stay, ids[next++]);
+        }
+
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            if (!patients.isEmpty()) {
+                try (PreparedStatement persons = connection.prepareStatement(PatientImpl.INSERT_PERSON)) {
+                    for (PatientImpl patient : patients) {
+                        patient.bindPersonInsert(persons, 1, assigned.get(patient));
+                        persons.addBatch();
+                    }
+                    persons.executeBatch();
+                }
+                try (PreparedStatement patientRows = connection.prepareStatement(PatientImpl.INSERT_PATIENT)) {
+                    for (PatientImpl patient : patients) {
+                        patient.bindPatientInsert(patientRows, 1, assigned.get(patient));
+                        patientRows.addBatch();
+                    }
+                    patientRows.executeBatch();
+                }
+            }
+            if (!wards.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(WardImpl.INSERT)) {
+                    for (WardImpl ward : wards) {
+                        ward.bindInsert(statement, assigned.get(ward));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+            if (!stays.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(HospitalStayImpl.INSERT)) {
+                    for (HospitalStayImpl stay : stays) {
+                        stay.bindInsert(statement, assigned.get(stay), idOf(stay.getWard(), assigned),
+                                idOf(stay.getPatient(), assigned));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+            if (ownTransaction) {
+                connection.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        for (PatientImpl patient : patients) {
+            patient.setObjectID(assigned.get(patient));
+            patient.setVersion(0);
+        }
+        for (WardImpl ward : wards) {
+            ward.setObjectID(assigned.get(ward));
+            ward.setVersion(0);
+        }
+        for (HospitalStayImpl stay : stays) {
+            stay.setObjectID(assigned.get(stay));
+            stay.setVersion(0);
+        }
+        return count;
+    }
+
+    private static long idOf(PersistentObject object, Map<PersistentObject, Long> assigned) {
+        Long id = assigned.get(object);
+        return id != null ? id : object.getObjectID();
+    }
+}
@@ -5,15 +5,15 @@ import de.hshn.mi.pdbg.basicservice.BasicDBService;
 import de.hshn.mi.pdbg.basicservice.HospitalStay;
 import de.hshn.mi.pdbg.basicservice.Patient;
 import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
 import de.hshn.mi.pdbg.basicservice.jdbc.AbstractPersistentJDBCObject;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
 import de.hshn.mi.pdbg.exception.FetchException;
 
 import java.sql.Connection;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Date;
 /**
  * Implementation of the HospitalStay interface. This class represents a concrete implementation of a hospital stay
@@ -24,11 +24,19 @@ import java.util.Date;
  */
 
 public class HospitalStayImpl extends AbstractPersistentJDBCObject implements HospitalStay {
+    /**
+     * The statements of {@link #store(Connection)}: the insert of a new stay and the update of a stored one.
+     */
+    public static final String INSERT = "INSERT INTO Aufenthalt (ID, Aufnahmedatum, Entlassdatum, SID, PID) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    public static final String UPDATE = "UPDATE Aufenthalt SET Aufnahmedatum = ?, Entlassdatum = ?, SID = ?,"
+            + "PID = ?, Version = Version + 1 WHERE ID = ? AND Version = ?";
 
     private Date admissionDate;
     private Date dischargeDate;
     private Ward ward;
     private Patient patient;
+    private long version;
 
     /**
      * Creates a new hospital stay with the specified basic database service.
@@ -50,8 +58,8 @@ public class HospitalStayImpl extends AbstractPersistentJDBCObject implements Ho
      * @param id             The Unique identifier for the hospitalStay-object
      * @param admissionDate  The admission date of the patient.
      * @param dischargeDate  The discharge date of the patient.
-     * @param ward           The patient's treatment ward.
-     * @param patient        The patient associated with the hospital stay.
+     * @param ward           The patient's treatment ward, or null if the stay's ward was deleted.
+     * @param patient        The patient associated with the hospital stay, or null if it was deleted.
      */
 
     public HospitalStayImpl(BasicDBService basicDBService, long id, Date admissionDate, Date dischargeDate, Ward ward,
@@ -61,7 +69,9 @@ public class HospitalStayImpl extends AbstractPersistentJDBCObject implements Ho
         this.dischargeDate = dischargeDate;
         this.ward = ward;
         this.patient = patient;
-        patient.getHospitalStays().add(this);
+        if (patient != null) {
+            patient.getHospitalStays().add(this);
+        }
     }
 
     /**
@@ -146,18 +156,34 @@ public class HospitalStayImpl extends AbstractPersistentJDBCObject implements Ho
         return super.getObjectID();
     }
 
+    /**
+     * Returns the service the object was created by or loaded from, which is the service it is stored with.
+     *
+     * @return the owning service
+     */
+    @Override
+    public BasicDBService getBasicDBService() {
+        return super.getBasicDBService();
+    }
+
     @Override
     public long store(Connection connection) throws SQLException {
         if (isPersistent()) {
-            String updateQuery = "UPDATE Aufenthalt SET Aufnahmedatum = ?, Entlassdatum = ?, SID = ?," +
-                    "PID = ? WHERE ID = ?";
-            try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
                 statement.setDate(1, new java.sql.Date(admissionDate.getTime()));
-                statement.setDate(2, new java.sql.Date(dischargeDate.getTime()));
+                if (dischargeDate != null) {
+                    statement.setDate(2, new java.sql.Date(dischargeDate.getTime()));
+                } else {
+                    statement.setNull(2, java.sql.Types.DATE);
+                }
                 statement.setLong(3, ward.getObjectID());
                 statement.setLong(4, patient.getObjectID());
                 statement.setLong(5, getObjectID());
-                statement.executeUpdate();
+                statement.setLong(6, version);
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Aufenthalt", getObjectID(), version);
+                }
+                version++;
 
                 return getObjectID();
             }
@@ -168,36 +194,59 @@ public class HospitalStayImpl extends AbstractPersistentJDBCObject implements Ho
             if (ward.getObjectID() == INVALID_OBJECT_ID) {
                 this.getBasicDBService().store(ward);
             }
-            String insertQuery = "INSERT INTO Aufenthalt (Aufnahmedatum, Entlassdatum, SID, PID) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(insertQuery, Statement.RETURN_GENERATED_KEYS)
-            ) {
-                statement.setDate(1, new java.sql.Date(admissionDate.getTime()));
-                if (dischargeDate != null) {
-                    statement.setDate(2, new java.sql.Date(dischargeDate.getTime()));
-                } else  {
-                    statement.setDate(2, null);
-                }
-                if (!patient.isPersistent()) {
-                    this.getBasicDBService().store(patient);
-                }
-                if (!ward.isPersistent()) {
-                    this.getBasicDBService().store(ward);
-                }
-                statement.setLong(3, ward.getObjectID());
-                statement.setLong(4, patient.getObjectID());
-                int rowsAffected = statement.executeUpdate();
-                if (rowsAffected > 0) {
-                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            long generatedID = generatedKeys.getLong(1);
-                            setObjectID(generatedID);
-                            return generatedID;
-                        }
-                    }
-                }
-                return 0;
+            long key = ((BasicDBServiceImpl) getBasicDBService()).nextObjectID(connection);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                bindInsert(statement, key, ward.getObjectID(), patient.getObjectID());
+                statement.executeUpdate();
             }
+            setObjectID(key);
+            version = 0;
+            return key;
+        }
+    }
+
+    /**
+     * Binds the values of this stay to the parameters of {@link #INSERT}.
+     *
+     * @param statement the statement to bind
+     * @param id        the ID of the new row
+     * @param wardID    the ID of the ward of the stay
+     * @param patientID the ID of the patient of the stay
+     * @throws SQLException if a parameter cannot be set
+     */
+    void bindInsert(PreparedStatement statement, long id, long wardID, long patientID) throws SQLException {
+        statement.setLong(1, id);
+        statement.setDate(2, new java.sql.Date(admissionDate.getTime()));
+        if (dischargeDate != null) {
+            statement.setDate(3, new java.sql.Date(dischargeDate.getTime()));
+        } else {
+            statement.setNull(3, java.sql.Types.DATE);
         }
+        statement.setLong(4, wardID);
+        statement.setLong(5, patientID);
+    }
+
+    @Override
+    protected void setObjectID(long id) {
+        super.setObjectID(id);
+    }
+
+    /**
+     * Returns the version of the Aufenthalt row as known to this stay.
+     *
+     * @return the row version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the Aufenthalt row this stay was read from.
+     *
+     * @param version the row version
+     */
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     @Override
@@ -4,13 +4,14 @@ import de.hshn.mi.pdbg.PersistentObject;
 import de.hshn.mi.pdbg.basicservice.BasicDBService;
 import de.hshn.mi.pdbg.basicservice.HospitalStay;
 import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
 import de.hshn.mi.pdbg.basicservice.jdbc.AbstractPersistentJDBCObject;
 import de.hshn.mi.pdbg.exception.FetchException;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.sql.Connection;
 import java.time.Instant;
 import java.util.Date;
@@ -30,6 +31,18 @@ import java.util.Set;
  * @see AbstractPersistentJDBCObject
  */
 public class PatientImpl extends PersonImpl implements Patient {
+    /**
+     * The statements of {@link #store(Connection)}: the inserts of a new patient and the updates of a stored one.
+     */
+    public static final String INSERT_PERSON =
+            "INSERT INTO Person (ID, Vorname, Nachname, Geburtsdatum) VALUES (?, ?, ?, ?)";
+    public static final String INSERT_PATIENT =
+            "INSERT INTO Patient (ID, Krankenkasse, Versicherungsnummer) VALUES (?, ?, ?)";
+    public static final String UPDATE_PERSON = "UPDATE Person SET Vorname = ?, Nachname = ?, Geburtsdatum = ?, "
+            + "Version = Version + 1 WHERE id = ? AND Version = ?";
+    public static final String UPDATE_PATIENT =
+            "UPDATE Patient SET Krankenkasse = ?, Versicherungsnummer = ? WHERE id = ?";
+
     private String healthInsurance;
     private String insuranceNumber;
     private Set<HospitalStay> hospitalStays;
@@ -133,59 +146,101 @@ public class PatientImpl extends PersonImpl implements Patient {
         return super.getObjectID();
     }
 
+    /**
+     * Returns the service the object was created by or loaded from, which is the service it is stored with.
+     *
+     * @return the owning service
+     */
+    @Override
+    public BasicDBService getBasicDBService() {
+        return super.getBasicDBService();
+    }
+
     @Override
     public long store(Connection connection) throws SQLException {
 
         if (!this.isPersistent()) {
-            String sql = "Insert INTO Person (Vorname, Nachname) Values (?, ?);";
-
-            if (!(getDateOfBirth() == null)) {
-                sql = "Insert INTO Person (Vorname, Nachname, Geburtsdatum) Values (?, ?, ?);";
-            }
-            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            statement.setString(1, getFirstname());
-            statement.setString(2, getLastname());
-            if (!(getDateOfBirth() == null)) {
-                statement.setDate(3, new java.sql.Date(getDateOfBirth().getTime()));
-            }
-
-            statement.executeUpdate();
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            long key;
-            if (generatedKeys.next()) {
-                key = generatedKeys.getLong(1);
-            } else  {
-                throw new SQLException("Failed to retrieve generated ID.");
+            long key = ((BasicDBServiceImpl) getBasicDBService()).nextObjectID(connection);
+            if (SqlDialect.of(connection) == SqlDialect.POSTGRESQL) {
+                // the ID is known up front, so both rows can be sent in a single round trip
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_PERSON + ";" + INSERT_PATIENT)) {
+                    bindPersonInsert(statement, 1, key);
+                    bindPatientInsert(statement, 5, key);
+                    statement.executeUpdate();
+                }
+            } else {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_PERSON)) {
+                    bindPersonInsert(statement, 1, key);
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_PATIENT)) {
+                    bindPatientInsert(statement, 1, key);
+                    statement.executeUpdate();
+                }
             }
             setObjectID(key);
-            sql = "Insert INTO Patient (ID, krankenkasse, versicherungsnummer) Values(?, ?, ?)";
-            statement = connection.prepareStatement(sql);
-            statement.setLong(1, getObjectID());
-            statement.setString(2, this.getHealthInsurance());
-            statement.setString(3, this.getInsuranceNumber());
-            statement.executeUpdate();
+            setVersion(0);
             return key;
         } else {
 
-            String sql = "UPDATE Person SET Vorname = ?, Nachname = ?, Geburtsdatum = ? WHERE id = ?;" +
-                   "UPDATE Patient SET Krankenkasse = ?, Versicherungsnummer = ? WHERE id = ?;    ";
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setString(1, getFirstname());
-            statement.setString(2, getLastname());
-            if (getDateOfBirth() != null) {
-                statement.setDate(3, new java.sql.Date(getDateOfBirth().getTime()));
-            } else {
-                statement.setNull(3, java.sql.Types.DATE);
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_PERSON)) {
+                statement.setString(1, getFirstname());
+                statement.setString(2, getLastname());
+                if (getDateOfBirth() != null) {
+                    statement.setDate(3, new java.sql.Date(getDateOfBirth().getTime()));
+                } else {
+                    statement.setNull(3, java.sql.Types.DATE);
+                }
+                statement.setLong(4, getObjectID());
+                statement.setLong(5, getVersion());
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Patient", getObjectID(), getVersion());
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_PATIENT)) {
+                statement.setString(1, getHealthInsurance());
+                statement.setString(2, getInsuranceNumber());
+                statement.setLong(3, getObjectID());
+                statement.executeUpdate();
             }
-            statement.setLong(4, getObjectID());
-            statement.setString(5, getHealthInsurance() == null ? null : getHealthInsurance());
-            statement.setString(6, getInsuranceNumber() == null ? null : getInsuranceNumber());
-            statement.setLong(7, getObjectID());
-            statement.executeUpdate();
+            setVersion(getVersion() + 1);
             return getObjectID();
         }
     }
 
+    /**
+     * Binds the values of this patient to the parameters of {@link #INSERT_PERSON}.
+     *
+     * @param statement the statement to bind
+     * @param offset    the index of the first parameter
+     * @param id        the ID of the new row
+     * @throws SQLException if a parameter cannot be set
+     */
+    void bindPersonInsert(PreparedStatement statement, int offset, long id) throws SQLException {
+        statement.setLong(offset, id);
+        statement.setString(offset + 1, getFirstname());
+        statement.setString(offset + 2, getLastname());
+        if (getDateOfBirth() != null) {
+            statement.setDate(offset + 3, new java.sql.Date(getDateOfBirth().getTime()));
+        } else {
+            statement.setNull(offset + 3, java.sql.Types.DATE);
+        }
+    }
+
+    /**
+     * Binds the values of this patient to the parameters of {@link #INSERT_PATIENT}.
+     *
+     * @param statement the statement to bind
+     * @param offset    the index of the first parameter
+     * @param id        the ID of the new row
+     * @throws SQLException if a parameter cannot be set
+     */
+    void bindPatientInsert(PreparedStatement statement, int offset, long id) throws SQLException {
+        statement.setLong(offset, id);
+        statement.setString(offset + 1, getHealthInsurance());
+        statement.setString(offset + 2, getInsuranceNumber());
+    }
+
     @Override
     public boolean isPersistent() {
         return getObjectID() != PersistentObject.INVALID_OBJECT_ID;
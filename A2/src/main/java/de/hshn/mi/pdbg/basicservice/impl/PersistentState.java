@@ -0,0 +1,60 @@
+package de.hshn.mi.pdbg.basicservice.impl;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+/**
+ * Updates the persistence state of objects that were written by another process, e.g. by the server behind a
+ * {@link de.hshn.mi.pdbg.basicservice.server.RemoteBasicDBService}, or whose write was rolled back. Objects stored
+ * through {@code store(Connection)} maintain this state themselves.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class PersistentState {
+
+    private PersistentState() {
+    }
+
+    /**
+     * Sets the ID and row version of an object after it has been written.
+     *
+     * @param object  the written object
+     * @param id      the ID of its row
+     * @param version the version of its row
+     * @throws StoreException if the object is not one of the implementation classes
+     */
+    public static void assign(PersistentObject object, long id, long version) {
+        if (object instanceof PersonImpl) {
+            ((PersonImpl) object).setObjectID(id);
+            ((PersonImpl) object).setVersion(version);
+        } else if (object instanceof WardImpl) {
+            ((WardImpl) object).setObjectID(id);
+            ((WardImpl) object).setVersion(version);
+        } else if (object instanceof HospitalStayImpl) {
+            ((HospitalStayImpl) object).setObjectID(id);
+            ((HospitalStayImpl) object).setVersion(version);
+        } else {
+            throw new StoreException("Unsupported type: " + object.getClass().getName());
+        }
+    }
+
+    /**
+     * Returns the row version of an object as known to it.
+     *
+     * @param object the object
+     * @return the row version
+     * @throws StoreException if the object is not one of the implementation classes
+     */
+    public static long versionOf(PersistentObject object) {
+        if (object instanceof PersonImpl) {
+            return ((PersonImpl) object).getVersion();
+        } else if (object instanceof WardImpl) {
+            return ((WardImpl) object).getVersion();
+        } else if (object instanceof HospitalStayImpl) {
+            return ((HospitalStayImpl) object).getVersion();
+        } else {
+            throw new StoreException("Unsupported type: " + object.getClass().getName());
+        }
+    }
+}
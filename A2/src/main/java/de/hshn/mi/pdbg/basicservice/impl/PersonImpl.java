@@ -20,6 +20,7 @@ public abstract class PersonImpl extends AbstractPersistentJDBCObject implements
     private String lastname;
     private String firstname;
     private Date dateOfBirth;
+    private long version;
 
     /**
      * Constructs a new Person-object with the specified BasicDBService.
@@ -43,6 +44,11 @@ public abstract class PersonImpl extends AbstractPersistentJDBCObject implements
         super(basicDBService, id);
     }
 
+    @Override
+    protected void setObjectID(long id) {
+        super.setObjectID(id);
+    }
+
     @Override
     public String getLastname() {
         return lastname;
@@ -79,4 +85,23 @@ public abstract class PersonImpl extends AbstractPersistentJDBCObject implements
         this.dateOfBirth = dateOfBirth;
     }
 
+    /**
+     * Returns the version of the row this object was read from or last written to.
+     * The version is used to detect concurrent updates.
+     *
+     * @return the row version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the row version. Used by the service when the object is read from the database.
+     *
+     * @param version the row version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package de.hshn.mi.pdbg.basicservice.impl;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Immutable copy of the column values, ID and row version of a persistent object. A snapshot can be written on
+ * another thread than the one that modifies the object, because writing it never touches the object itself;
+ * it runs the same updates as {@code store(Connection)} of the implementation classes.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public abstract class RowSnapshot {
+
+    private final long id;
+    private final long version;
+
+    private RowSnapshot(long id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    /**
+     * Takes a snapshot of the current state of a persistent object.
+     *
+     * @param object  the object
+     * @param version the row version the update is based on
+     * @return the snapshot
+     * @throws StoreException if the object is not persistent or not one of the implementation classes
+     */
+    public static RowSnapshot of(PersistentObject object, long version) {
+        if (!object.isPersistent()) {
+            throw new StoreException("Only persistent objects can be snapshotted");
+        }
+        if (object instanceof PatientImpl) {
+            return new PatientRow((PatientImpl) object, version);
+        } else if (object instanceof WardImpl) {
+            return new WardRow((WardImpl) object, version);
+        } else if (object instanceof HospitalStayImpl) {
+            return new StayRow((HospitalStayImpl) object, version);
+        } else {
+            throw new StoreException("Unsupported type: " + object.getClass().getName());
+        }
+    }
+
+    public long getObjectID() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Updates the row to the values of the snapshot, provided it still has the version of the snapshot.
+     *
+     * @param connection the connection to write to
+     * @return the version of the row after the update
+     * @throws SQLException           if an update fails
+     * @throws OptimisticLockException if the row was changed or deleted since the snapshot's version
+     */
+    public abstract long write(Connection connection) throws SQLException;
+
+    private static Date copy(java.util.Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    private static void setDate(PreparedStatement statement, int index, Date date) throws SQLException {
+        if (date != null) {
+            statement.setDate(index, date);
+        } else {
+            statement.setNull(index, Types.DATE);
+        }
+    }
+
+    private static final class PatientRow extends RowSnapshot {
+        private final String firstname;
+        private final String lastname;
+        private final Date dateOfBirth;
+        private final String healthInsurance;
+        private final String insuranceNumber;
+
+        private PatientRow(PatientImpl patient, long version) {
+            super(patient.getObjectID(), version);
+            this.firstname = patient.getFirstname();
+            this.lastname = patient.getLastname();
+            this.dateOfBirth = copy(patient.getDateOfBirth());
+            this.healthInsurance = patient.getHealthInsurance();
+            this.insuranceNumber = patient.getInsuranceNumber();
+        }
+
+        @Override
+        public long write(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(PatientImpl.UPDATE_PERSON)) {
+                statement.setString(1, firstname);
+                statement.setString(2, lastname);
+                setDate(statement, 3, dateOfBirth);
+                statement.setLong(4, getObjectID());
+                statement.setLong(5, getVersion());
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Patient", getObjectID(), getVersion());
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(PatientImpl.UPDATE_PATIENT)) {
+                statement.setString(1, healthInsurance);
+                statement.setString(2, insuranceNumber);
+                statement.setLong(3, getObjectID());
+                statement.executeUpdate();
+            }
+            return getVersion() + 1;
+        }
+    }
+
+    private static final class WardRow extends RowSnapshot {
+        private final String name;
+        private final int numberOfBeds;
+
+        private WardRow(WardImpl ward, long version) {
+            super(ward.getObjectID(), version);
+            this.name = ward.getName();
+            this.numberOfBeds = ward.getNumberOfBeds();
+        }
+
+        @Override
+        public long write(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(WardImpl.UPDATE)) {
+                statement.setString(1, name);
+                statement.setInt(2, numberOfBeds);
+                statement.setLong(3, getObjectID());
+                statement.setLong(4, getVersion());
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Station", getObjectID(), getVersion());
+                }
+            }
+            return getVersion() + 1;
+        }
+    }
+
+    private static final class StayRow extends RowSnapshot {
+        private final Date admissionDate;
+        private final Date dischargeDate;
+        private final long wardID;
+        private final long patientID;
+
+        private StayRow(HospitalStayImpl stay, long version) {
+            super(stay.getObjectID(), version);
+            this.admissionDate = copy(stay.getAdmissionDate());
+            this.dischargeDate = copy(stay.getDischargeDate());
+            this.wardID = stay.getWard().getObjectID();
+            this.patientID = stay.getPatient().getObjectID();
+        }
+
+        @Override
+        public long write(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(HospitalStayImpl.UPDATE)) {
+                setDate(statement, 1, admissionDate);
+                setDate(statement, 2, dischargeDate);
+                statement.setLong(3, wardID);
+                statement.setLong(4, patientID);
+                statement.setLong(5, getObjectID());
+                statement.setLong(6, getVersion());
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Aufenthalt", getObjectID(), getVersion());
+                }
+            }
+            return getVersion() + 1;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package de.hshn.mi.pdbg.basicservice.impl;
 import de.hshn.mi.pdbg.PersistentObject;
 import de.hshn.mi.pdbg.basicservice.BasicDBService;
 import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
 import de.hshn.mi.pdbg.basicservice.jdbc.AbstractPersistentJDBCObject;
 import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
 
@@ -11,8 +12,6 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.ResultSet;
-import java.sql.Statement;
 
 /**
  * Implementation of the Ward interface. Represents a ward in the medical database service.
@@ -26,9 +25,16 @@ import java.sql.Statement;
  */
 
 public class WardImpl extends AbstractPersistentJDBCObject implements Ward {
+    /**
+     * The statements of {@link #store(Connection)}: the insert of a new ward and the update of a stored one.
+     */
+    public static final String INSERT = "INSERT INTO Station (ID, Bezeichnung, Bettenzahl) VALUES (?, ?, ?)";
+    public static final String UPDATE = "UPDATE Station SET Bezeichnung = ?, Bettenzahl = ?, Version = Version + 1 "
+            + "WHERE ID = ? AND Version = ?";
 
     private String name;
     private int numberOfBeds;
+    private long version;
 
     /**
      * Constructs a new Ward-object with the specified database service. The ID contains the default value.
@@ -92,6 +98,16 @@ public class WardImpl extends AbstractPersistentJDBCObject implements Ward {
         return super.getObjectID();
     }
 
+    /**
+     * Returns the service the object was created by or loaded from, which is the service it is stored with.
+     *
+     * @return the owning service
+     */
+    @Override
+    public BasicDBService getBasicDBService() {
+        return super.getBasicDBService();
+    }
+
     @Override
     public long store(Connection connection) throws SQLException {
         if (connection.isClosed()) {
@@ -99,33 +115,60 @@ public class WardImpl extends AbstractPersistentJDBCObject implements Ward {
             connection = DriverManager.getConnection(service.getDB_URL(), service.getUSER(), service.getPASS());
         }
         if (this.isPersistent()) {
-            String updateQuery = "UPDATE Station SET Bezeichnung = ?, Bettenzahl = ? WHERE ID = ?";
-            try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
                 statement.setString(1, name);
                 statement.setInt(2, numberOfBeds);
                 statement.setLong(3, super.getObjectID());
-                statement.executeUpdate();
+                statement.setLong(4, version);
+                if (statement.executeUpdate() == 0) {
+                    throw new OptimisticLockException("Station", getObjectID(), version);
+                }
             }
+            version++;
             return this.getObjectID();
         } else {
-            String insertQuery = "INSERT INTO Station (Bezeichnung, Bettenzahl) VALUES (?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(insertQuery,
-                    Statement.RETURN_GENERATED_KEYS)) {
-                statement.setString(1, name);
-                statement.setInt(2, numberOfBeds);
+            long key = ((BasicDBServiceImpl) getBasicDBService()).nextObjectID(connection);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                bindInsert(statement, key);
                 statement.executeUpdate();
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    setObjectID(generatedKeys.getLong(1));
-
-                    return getObjectID();
-                } else {
-                    throw new SQLException("Failed to retrieve generated ID.");
-                }
             }
+            setObjectID(key);
+            version = 0;
+            return key;
         }
     }
 
+    /**
+     * Binds the values of this ward to the parameters of {@link #INSERT}.
+     *
+     * @param statement the statement to bind
+     * @param id        the ID of the new row
+     * @throws SQLException if a parameter cannot be set
+     */
+    void bindInsert(PreparedStatement statement, long id) throws SQLException {
+        statement.setLong(1, id);
+        statement.setString(2, name);
+        statement.setInt(3, numberOfBeds);
+    }
+
+    /**
+     * Returns the version of the Station row as known to this ward.
+     *
+     * @return the row version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the Station row this ward was read from.
+     *
+     * @param version the row version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean isPersistent() {
         return getObjectID() != PersistentObject.INVALID_OBJECT_ID;
@@ -0,0 +1,177 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bloom filter over the insurance numbers of the patients, used by bulk imports to recognize new patients without
+ * asking the database. {@link #mightContain(String)} never answers false for a number that was added, and
+ * answers true for a number that was not added with about the false-positive rate given at construction time.
+ * An import therefore only has to look up the numbers the filter reports as possibly known.
+ * <p>
+ * The filter is loaded once with {@link #load(Connection, double)} and has to be told about every number stored
+ * afterwards (see {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl#importPatients}). Numbers stored
+ * by other clients are not seen, so a filter should only be kept for one import run. Numbers cannot be removed.
+ * All methods are thread-safe.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class InsuranceNumberFilter {
+
+    private static final String COUNT_QUERY =
+            "SELECT COUNT(*) FROM Patient WHERE Versicherungsnummer IS NOT NULL";
+    private static final String LOAD_QUERY =
+            "SELECT Versicherungsnummer FROM Patient WHERE Versicherungsnummer IS NOT NULL";
+    private static final int FETCH_SIZE = 10_000;
+    private static final int MIN_CAPACITY = 1_024;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashes;
+    private long added;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedNumbers   the number of insurance numbers the filter is sized for; more can be added, at the
+     *                          cost of a growing false-positive rate
+     * @param falsePositiveRate the share of unknown numbers that may be reported as possibly known, between 0
+     *                          and 1 (exclusive)
+     */
+    public InsuranceNumberFilter(long expectedNumbers, double falsePositiveRate) {
+        if (expectedNumbers <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new AssertionError("The filter needs a positive size and a false-positive rate between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long size = (long) Math.ceil(-expectedNumbers * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (size + 63) / 64)];
+        bitCount = bits.length * 64L;
+        hashes = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / expectedNumbers * ln2)));
+    }
+
+    /**
+     * Creates a filter with all insurance numbers of the database, sized for twice their number so that an
+     * import can add as many again at the given false-positive rate.
+     *
+     * @param connection        the connection to read from
+     * @param falsePositiveRate the false-positive rate of the filter
+     * @return the loaded filter
+     * @throws SQLException if the numbers cannot be read
+     */
+    public static InsuranceNumberFilter load(Connection connection, double falsePositiveRate) throws SQLException {
+        long count;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(COUNT_QUERY)) {
+            resultSet.next();
+            count = resultSet.getLong(1);
+        }
+        InsuranceNumberFilter filter = new InsuranceNumberFilter(Math.max(MIN_CAPACITY, 2 * count),
+                falsePositiveRate);
+        // PostgreSQL only streams a result with a fetch size outside of auto-commit mode
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(LOAD_QUERY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    filter.add(resultSet.getString(1));
+                }
+            }
+        } finally {
+            if (autoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Adds an insurance number.
+     *
+     * @param insuranceNumber the number; null is ignored
+     */
+    public synchronized void add(String insuranceNumber) {
+        if (insuranceNumber == null) {
+            return;
+        }
+        long hash1 = hash(insuranceNumber);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        added++;
+    }
+
+    /**
+     * Tells whether an insurance number may have been added.
+     *
+     * @param insuranceNumber the number
+     * @return false if the number has certainly not been added, true if it probably has
+     */
+    public synchronized boolean mightContain(String insuranceNumber) {
+        if (insuranceNumber == null) {
+            return false;
+        }
+        long hash1 = hash(insuranceNumber);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of insurance numbers added so far, including duplicates.
+     *
+     * @return the number of additions
+     */
+    public synchronized long getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the false-positive rate expected for the current content, which grows once more numbers have been
+     * added than the filter was sized for.
+     *
+     * @return the expected false-positive rate
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * added / bitCount), hashes);
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, finished with {@link #mix(long)}, so that numbers differing in one digit land
+     * on unrelated bits.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of SplitMix64.
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,184 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import java.util.List;
+
+/**
+ * AVL tree of stay intervals ordered by start day (and stay ID), where every node also stores the largest end
+ * day of its subtree. Subtrees whose largest end lies before the queried day can therefore be skipped, so
+ * stabbing and overlap queries take O(log n + k) for k results. Not thread-safe.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+class IntervalTree {
+
+    private Node root;
+    private int size;
+
+    private static final class Node {
+        private final StayInterval interval;
+        private Node left;
+        private Node right;
+        private int height = 1;
+        private long maxEnd;
+
+        private Node(StayInterval interval) {
+            this.interval = interval;
+            this.maxEnd = interval.getEndDay();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void insert(StayInterval interval) {
+        root = insert(root, interval);
+        size++;
+    }
+
+    /**
+     * Removes an interval; it has to be the same start day and stay ID as an inserted one.
+     */
+    void remove(StayInterval interval) {
+        int before = size;
+        root = remove(root, interval);
+        if (size == before) {
+            throw new IllegalStateException("Interval not found: " + interval);
+        }
+    }
+
+    /**
+     * Adds all intervals that contain the given day to the result.
+     */
+    void stab(long day, List<StayInterval> result) {
+        overlapping(root, day, day, result);
+    }
+
+    /**
+     * Adds all intervals that share at least one day with the given range to the result.
+     */
+    void overlapping(long fromDay, long toDay, List<StayInterval> result) {
+        overlapping(root, fromDay, toDay, result);
+    }
+
+    private static void overlapping(Node node, long fromDay, long toDay, List<StayInterval> result) {
+        while (node != null && node.maxEnd >= fromDay) {
+            overlapping(node.left, fromDay, toDay, result);
+            if (node.interval.getStartDay() > toDay) {
+                // everything to the right starts even later
+                return;
+            }
+            if (node.interval.getEndDay() >= fromDay) {
+                result.add(node.interval);
+            }
+            node = node.right;
+        }
+    }
+
+    private static int compare(StayInterval a, StayInterval b) {
+        int result = Long.compare(a.getStartDay(), b.getStartDay());
+        return result != 0 ? result : Long.compare(a.getStayID(), b.getStayID());
+    }
+
+    private Node insert(Node node, StayInterval interval) {
+        if (node == null) {
+            return new Node(interval);
+        }
+        if (compare(interval, node.interval) < 0) {
+            node.left = insert(node.left, interval);
+        } else {
+            node.right = insert(node.right, interval);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, StayInterval interval) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(interval, node.interval);
+        if (comparison < 0) {
+            node.left = remove(node.left, interval);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, interval);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            Node replacement = new Node(successor.interval);
+            replacement.right = removeMin(node.right);
+            replacement.left = node.left;
+            return balance(replacement);
+        }
+        return balance(node);
+    }
+
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.interval.getEndDay();
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+}
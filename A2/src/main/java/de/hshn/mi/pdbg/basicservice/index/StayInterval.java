@@ -0,0 +1,108 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * The time span of a hospital stay on a ward, in days. Both ends are inclusive: a patient counts as present on
+ * the day of admission and on the day of discharge. A stay without discharge date is open-ended.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class StayInterval {
+
+    /**
+     * The end day of stays that have not been discharged yet.
+     */
+    public static final long OPEN_END = Long.MAX_VALUE;
+
+    private final long stayID;
+    private final long wardID;
+    private final long patientID;
+    private final long startDay;
+    private final long endDay;
+
+    /**
+     * Creates an interval.
+     *
+     * @param stayID    the ID of the stay
+     * @param wardID    the ID of the ward
+     * @param patientID the ID of the patient
+     * @param startDay  the admission day as epoch day
+     * @param endDay    the discharge day as epoch day, or {@link #OPEN_END}
+     */
+    public StayInterval(long stayID, long wardID, long patientID, long startDay, long endDay) {
+        if (endDay < startDay) {
+            throw new AssertionError("The discharge cannot be before the admission");
+        }
+        this.stayID = stayID;
+        this.wardID = wardID;
+        this.patientID = patientID;
+        this.startDay = startDay;
+        this.endDay = endDay;
+    }
+
+    /**
+     * Creates an interval from the dates of a stay.
+     *
+     * @param stayID        the ID of the stay
+     * @param wardID        the ID of the ward
+     * @param patientID     the ID of the patient
+     * @param admissionDate the admission date
+     * @param dischargeDate the discharge date or null
+     * @return the interval
+     */
+    public static StayInterval of(long stayID, long wardID, long patientID, Date admissionDate, Date dischargeDate) {
+        return new StayInterval(stayID, wardID, patientID, toDay(admissionDate),
+                dischargeDate != null ? toDay(dischargeDate) : OPEN_END);
+    }
+
+    /**
+     * Converts a date into an epoch day, the same way the JDBC driver converts it into a {@code DATE}.
+     *
+     * @param date the date
+     * @return the epoch day
+     */
+    public static long toDay(Date date) {
+        return new java.sql.Date(date.getTime()).toLocalDate().toEpochDay();
+    }
+
+    public long getStayID() {
+        return stayID;
+    }
+
+    public long getWardID() {
+        return wardID;
+    }
+
+    public long getPatientID() {
+        return patientID;
+    }
+
+    public long getStartDay() {
+        return startDay;
+    }
+
+    public long getEndDay() {
+        return endDay;
+    }
+
+    public boolean isOpen() {
+        return endDay == OPEN_END;
+    }
+
+    public boolean contains(long day) {
+        return startDay <= day && day <= endDay;
+    }
+
+    public boolean overlaps(long fromDay, long toDay) {
+        return startDay <= toDay && fromDay <= endDay;
+    }
+
+    @Override
+    public String toString() {
+        return "StayInterval{stay=" + stayID + ", ward=" + wardID + ", patient=" + patientID + ", "
+                + LocalDate.ofEpochDay(startDay) + ".." + (isOpen() ? "" : LocalDate.ofEpochDay(endDay)) + "}";
+    }
+}
@@ -0,0 +1,234 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of all hospital stays, with one {@link IntervalTree} per ward. It answers "who was on ward X
+ * on day D", daily occupancy series and overlap queries without touching the database.
+ * <p>
+ * The index is loaded once with {@link #load(Connection)} and then kept current by the service that owns it
+ * (see {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl#enableStayIndex()}). Changes made by
+ * other processes are not seen before the next {@link #load(Connection)}. All methods are thread-safe.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class StayIntervalIndex {
+
+    private static final String LOAD_QUERY = "SELECT ID, SID, PID, Aufnahmedatum, Entlassdatum FROM Aufenthalt";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IntervalTree> wards = new HashMap<>();
+    private final Map<Long, StayInterval> stays = new HashMap<>();
+
+    /**
+     * Replaces the content of the index with all stays of the database.
+     *
+     * @param connection the connection to read from
+     * @throws SQLException if the stays cannot be read
+     */
+    public void load(Connection connection) throws SQLException {
+        List<StayInterval> loaded = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(LOAD_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                loaded.add(StayInterval.of(resultSet.getLong("ID"), resultSet.getLong("SID"),
+                        resultSet.getLong("PID"), resultSet.getDate("Aufnahmedatum"),
+                        resultSet.getDate("Entlassdatum")));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            wards.clear();
+            stays.clear();
+            for (StayInterval interval : loaded) {
+                add(interval);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a stored stay or updates it after a change of its dates or ward.
+     *
+     * @param stay the persistent stay
+     */
+    public void put(HospitalStay stay) {
+        put(StayInterval.of(stay.getObjectID(), stay.getWard().getObjectID(), stay.getPatient().getObjectID(),
+                stay.getAdmissionDate(), stay.getDischargeDate()));
+    }
+
+    /**
+     * Adds an interval, replacing an earlier interval of the same stay.
+     *
+     * @param interval the interval
+     */
+    public void put(StayInterval interval) {
+        lock.writeLock().lock();
+        try {
+            removeStay(interval.getStayID());
+            add(interval);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted stay.
+     *
+     * @param stayID the ID of the stay
+     */
+    public void remove(long stayID) {
+        lock.writeLock().lock();
+        try {
+            removeStay(stayID);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(StayInterval interval) {
+        wards.computeIfAbsent(interval.getWardID(), id -> new IntervalTree()).insert(interval);
+        stays.put(interval.getStayID(), interval);
+    }
+
+    private void removeStay(long stayID) {
+        StayInterval old = stays.remove(stayID);
+        if (old != null) {
+            IntervalTree tree = wards.get(old.getWardID());
+            tree.remove(old);
+            if (tree.size() == 0) {
+                wards.remove(old.getWardID());
+            }
+        }
+    }
+
+    /**
+     * Returns the stays on a ward on the given day.
+     *
+     * @param wardID the ID of the ward
+     * @param day    the day
+     * @return the stays, ordered by admission
+     */
+    public List<StayInterval> staysAt(long wardID, LocalDate day) {
+        return overlapping(wardID, day, day);
+    }
+
+    /**
+     * Returns the number of patients on a ward on the given day.
+     *
+     * @param wardID the ID of the ward
+     * @param day    the day
+     * @return the occupancy
+     */
+    public int occupancyAt(long wardID, LocalDate day) {
+        return staysAt(wardID, day).size();
+    }
+
+    /**
+     * Returns the stays on a ward that share at least one day with the given range.
+     *
+     * @param wardID the ID of the ward
+     * @param from   the first day of the range
+     * @param to     the last day of the range
+     * @return the stays, ordered by admission
+     */
+    public List<StayInterval> overlapping(long wardID, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new AssertionError("The start date cannot be later than the enddate!");
+        }
+        List<StayInterval> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = wards.get(wardID);
+            if (tree != null) {
+                tree.overlapping(from.toEpochDay(), to.toEpochDay(), result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the stays on all wards that share at least one day with the given range.
+     *
+     * @param from the first day of the range
+     * @param to   the last day of the range
+     * @return the stays, ordered by ward and admission
+     */
+    public List<StayInterval> overlapping(LocalDate from, LocalDate to) {
+        List<Long> wardIDs;
+        lock.readLock().lock();
+        try {
+            wardIDs = new ArrayList<>(wards.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        wardIDs.sort(Comparator.naturalOrder());
+        List<StayInterval> result = new ArrayList<>();
+        for (Long wardID : wardIDs) {
+            result.addAll(overlapping(wardID, from, to));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the occupancy of a ward for every day of a range. The stays of the range are fetched from the tree
+     * once and summed up with a difference array, so the cost is linear in the number of days and stays.
+     *
+     * @param wardID the ID of the ward
+     * @param from   the first day
+     * @param to     the last day
+     * @return the occupancy per day, index 0 being {@code from}
+     */
+    public int[] dailyOccupancy(long wardID, LocalDate from, LocalDate to) {
+        List<StayInterval> intervals = overlapping(wardID, from, to);
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        int days = (int) (last - first + 1);
+        int[] delta = new int[days + 1];
+        for (StayInterval interval : intervals) {
+            int start = (int) Math.max(0, interval.getStartDay() - first);
+            int end = interval.getEndDay() >= last ? days - 1 : (int) (interval.getEndDay() - first);
+            delta[start]++;
+            delta[end + 1]--;
+        }
+        int[] occupancy = new int[days];
+        int current = 0;
+        for (int i = 0; i < days; i++) {
+            current += delta[i];
+            occupancy[i] = current;
+        }
+        return occupancy;
+    }
+
+    /**
+     * Returns the number of indexed stays.
+     *
+     * @return the number of stays
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return stays.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package de.hshn.mi.pdbg.basicservice.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets (eight sub-buckets per power of two, i.e. a relative
+ * error below 12.5 %). Values are recorded in microseconds.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single latency.
+     *
+     * @param micros the latency in microseconds
+     */
+    public void record(long micros) {
+        long value = Math.max(micros, 0);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in microseconds, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Copies the recorded values into a new histogram and clears this one.
+     *
+     * @return a histogram holding the values recorded since the last reset
+     */
+    public LatencyHistogram snapshotAndReset() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = counts.getAndSet(i, 0);
+            snapshot.counts.set(i, value);
+            snapshot.count.addAndGet(value);
+        }
+        count.addAndGet(-snapshot.count.get());
+        snapshot.max.set(max.getAndSet(0));
+        return snapshot;
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (msb - 3)) & (SUB_BUCKETS - 1));
+        return Math.min((msb - 2) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int msb = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1L) << (msb - 3)) - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package de.hshn.mi.pdbg.basicservice.loadtest;
+
+/**
+ * The operations a load-test worker can issue against the service, modelled after the daily work of the clerks
+ * (admissions, transfers, discharges) and the dashboards (free beds, searches, stay lists). {@link #ADMIT}
+ * stores a stay without looking at the free beds, {@link #ATOMIC_ADMIT} reserves a bed with
+ * {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl#admit}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum LoadOperation {
+    ADMIT("admit"),
+    ATOMIC_ADMIT("atomicadmit"),
+    TRANSFER("transfer"),
+    DISCHARGE("discharge"),
+    FREE_BEDS("freebeds"),
+    SEARCH_PATIENTS("search"),
+    READ_STAYS("stays");
+
+    private final String shortName;
+
+    LoadOperation(String shortName) {
+        this.shortName = shortName;
+    }
+
+    public String getShortName() {
+        return shortName;
+    }
+
+    /**
+     * Resolves an operation from its command line name, e.g. {@code freebeds} or {@code free_beds}.
+     *
+     * @param name the name of the operation
+     * @return the operation
+     * @throws IllegalArgumentException if there is no such operation
+     */
+    public static LoadOperation fromName(String name) {
+        String normalized = name.trim().replace("-", "").replace("_", "").toUpperCase();
+        for (LoadOperation operation : values()) {
+            if (operation.name().replace("_", "").equals(normalized)
+                    || operation.shortName.equalsIgnoreCase(normalized)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+}
@@ -0,0 +1,190 @@
+package de.hshn.mi.pdbg.basicservice.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of a load-test run, parsed from {@code --key=value} command line arguments.
+ * <p>
+ * Supported keys: {@code url}, {@code user}, {@code password}, {@code threads}, {@code duration} (seconds),
+ * {@code rate} (operations per second over all threads, 0 = as fast as possible), {@code report} (seconds
+ * between reports), {@code wards}, {@code patients}, {@code create-schema} and {@code mix}, e.g.
+ * {@code --mix=admit:10,transfer:5,discharge:5,freebeds:40,search:30,stays:10}.
+ * </p>
+ * <p>
+ * To measure the contention of bed allocation, run few wards and atomic admissions against discharges, e.g.
+ * {@code --wards=4 --mix=atomicadmit:50,discharge:50}; the summary reports rejected admissions and overbooked
+ * wards.
+ * </p>
+ * <p>
+ * {@code max-error-rate} (percent) and {@code max-p99} (milliseconds) turn the run into a gate: if one of the
+ * limits is exceeded, the harness exits with a non-zero status.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class LoadTestConfig {
+
+    private String url = "jdbc:hsqldb:mem:loadtest";
+    private String user = "SA";
+    private String password = "";
+    private int threads = 8;
+    private int durationSeconds = 60;
+    private int targetRate;
+    private int reportSeconds = 5;
+    private int wards = 20;
+    private int patients = 1000;
+    private boolean createSchema = true;
+    private double maxErrorRate;
+    private long maxP99Millis;
+    private final Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+
+    /**
+     * Creates a configuration with the default settings: eight threads for one minute against an embedded
+     * in-memory HSQLDB database.
+     */
+    public LoadTestConfig() {
+        parseMix("admit:10,transfer:5,discharge:5,freebeds:40,search:30,stays:10");
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments in the form {@code --key=value}
+     * @return the configuration
+     * @throws IllegalArgumentException if an argument is unknown or malformed
+     */
+    public static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            String key = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "url":
+                    config.url = value;
+                    break;
+                case "user":
+                    config.user = value;
+                    break;
+                case "password":
+                    config.password = value;
+                    break;
+                case "threads":
+                    config.threads = positive(key, value);
+                    break;
+                case "duration":
+                    config.durationSeconds = positive(key, value);
+                    break;
+                case "rate":
+                    config.targetRate = Integer.parseInt(value);
+                    break;
+                case "report":
+                    config.reportSeconds = positive(key, value);
+                    break;
+                case "wards":
+                    config.wards = positive(key, value);
+                    break;
+                case "patients":
+                    config.patients = positive(key, value);
+                    break;
+                case "create-schema":
+                    config.createSchema = Boolean.parseBoolean(value);
+                    break;
+                case "mix":
+                    config.parseMix(value);
+                    break;
+                case "max-error-rate":
+                    config.maxErrorRate = Double.parseDouble(value);
+                    break;
+                case "max-p99":
+                    config.maxP99Millis = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + key);
+            }
+        }
+        return config;
+    }
+
+    private static int positive(String key, String value) {
+        int number = Integer.parseInt(value);
+        if (number <= 0) {
+            throw new IllegalArgumentException("--" + key + " must be greater than 0");
+        }
+        return number;
+    }
+
+    private void parseMix(String value) {
+        mix.clear();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight but got " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(LoadOperation.fromName(parts[0]), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The operation mix must not be empty");
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public int getReportSeconds() {
+        return reportSeconds;
+    }
+
+    public int getWards() {
+        return wards;
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    public boolean isCreateSchema() {
+        return createSchema;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    public long getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    public Map<LoadOperation, Integer> getMix() {
+        return mix;
+    }
+}
@@ -0,0 +1,376 @@
+package de.hshn.mi.pdbg.basicservice.loadtest;
+
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.NoFreeBedException;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a {@link BasicDBServiceImpl} with a configurable mix of concurrent operations and reports throughput,
+ * latency percentiles, error, deadlock and update-conflict counts and admissions rejected for a full ward while
+ * the test is running and as a summary at the end, followed by the number of overbooked wards. Every worker
+ * thread uses its own service instance, i.e. its own connection, just like the clerk terminals do.
+ * <p>
+ * Run it from the {@code A2} directory with
+ * {@code mvn -P tool-loadtest compile exec:java -Dloadtest.args="--threads=32 --duration=120"}; see
+ * {@link LoadTestConfig} for all options. Without arguments it runs against an embedded in-memory HSQLDB.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class LoadTestHarness {
+
+    private static final String[] LASTNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+        "Wagner", "Becker", "Schulz", "Hoffmann", "Koch", "Richter", "Klein", "Wolf", "Neumann", "Schwarz"};
+    private static final String[] FIRSTNAMES = {"Anna", "Ben", "Clara", "David", "Emma", "Felix", "Hanna",
+        "Jonas", "Lea", "Lukas", "Mia", "Noah", "Paul", "Sophie"};
+
+    private final LoadTestConfig config;
+    private final Map<LoadOperation, Stats> stats = new EnumMap<>(LoadOperation.class);
+    private final Stats overall = new Stats();
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private final List<Long> patientIDs = new ArrayList<>();
+    private volatile boolean running;
+    private long startNanos;
+
+    /**
+     * Creates a harness for the given configuration.
+     *
+     * @param config the settings of the run
+     */
+    public LoadTestHarness(LoadTestConfig config) {
+        this.config = config;
+        Map<LoadOperation, Integer> mix = config.getMix();
+        operations = mix.keySet().toArray(new LoadOperation[0]);
+        cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulativeWeights[i] = sum;
+            stats.put(operations[i], new Stats());
+        }
+    }
+
+    /**
+     * Entry point of the load test.
+     *
+     * @param args the options described in {@link LoadTestConfig}
+     * @throws InterruptedException if the main thread is interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestHarness harness = new LoadTestHarness(LoadTestConfig.parse(args));
+        boolean passed = harness.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Prepares the database, runs the workers for the configured duration and prints the results.
+     *
+     * @return true if the run stayed within the configured error-rate and latency limits
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public boolean run() throws InterruptedException {
+        prepareDatabase();
+        System.out.printf("Running %s with %d threads for %d s%s%n", config.getMix(), config.getThreads(),
+                config.getDurationSeconds(),
+                config.getTargetRate() > 0 ? " at " + config.getTargetRate() + " ops/s" : "");
+
+        running = true;
+        startNanos = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < config.getThreads(); i++) {
+            Thread worker = new Thread(new Worker(i), "pdbg-load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(this::reportInterval, config.getReportSeconds(), config.getReportSeconds(),
+                TimeUnit.SECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.getDurationSeconds()));
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        reporter.shutdownNow();
+        return reportSummary();
+    }
+
+    private void prepareDatabase() {
+        if (config.isCreateSchema()) {
+            new DBCreator().createDatabase(config.getUrl(), config.getUser(), config.getPassword());
+        }
+        BasicDBServiceImpl service = new BasicDBServiceImpl(config.getUrl(), config.getUser(), config.getPassword());
+        try {
+            Random random = new Random(42);
+            int existingWards = service.getWards().size();
+            for (int i = existingWards; i < config.getWards(); i++) {
+                service.store(service.createWard("Station " + (i + 1), 10 + random.nextInt(31)));
+            }
+            for (Patient patient : service.getPatients(null, null, null, null)) {
+                patientIDs.add(patient.getObjectID());
+            }
+            List<Patient> newPatients = new ArrayList<>();
+            for (int i = patientIDs.size(); i < config.getPatients(); i++) {
+                Patient patient = service.createPatient(LASTNAMES[random.nextInt(LASTNAMES.length)],
+                        FIRSTNAMES[random.nextInt(FIRSTNAMES.length)]);
+                Calendar birth = Calendar.getInstance();
+                birth.set(1930 + random.nextInt(90), random.nextInt(12), 1 + random.nextInt(28));
+                patient.setDateOfBirth(birth.getTime());
+                patient.setHealthInsurance("AOK");
+                patient.setInsuranceNumber("L" + (100000000 + random.nextInt(900000000)));
+                newPatients.add(patient);
+            }
+            service.storeAll(newPatients);
+            for (Patient patient : newPatients) {
+                patientIDs.add(patient.getObjectID());
+            }
+        } finally {
+            service.close();
+        }
+    }
+
+    private LoadOperation pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void execute(LoadOperation operation, BasicDBServiceImpl service, List<Ward> wards, Random random) {
+        Ward ward = wards.get(random.nextInt(wards.size()));
+        long patientID = patientIDs.get(random.nextInt(patientIDs.size()));
+        switch (operation) {
+            case ADMIT:
+                service.store(service.createHospitalStay(service.getPatient(patientID), ward, new Date()));
+                break;
+            case ATOMIC_ADMIT:
+                service.admit(service.getPatient(patientID), ward, new Date());
+                break;
+            case TRANSFER:
+                HospitalStay transferred = findOpenStay(service, patientID);
+                if (transferred != null) {
+                    transferred.setWard(ward);
+                    service.store(transferred);
+                }
+                break;
+            case DISCHARGE:
+                HospitalStay discharged = findOpenStay(service, patientID);
+                if (discharged != null) {
+                    discharged.setDischargeDate(new Date());
+                    service.store(discharged);
+                }
+                break;
+            case FREE_BEDS:
+                service.getFreeBeds(random.nextInt(4) == 0 ? null : ward);
+                break;
+            case SEARCH_PATIENTS:
+                service.getPatients(LASTNAMES[random.nextInt(LASTNAMES.length)], null, null, null);
+                break;
+            case READ_STAYS:
+                service.getHospitalStays(patientID);
+                break;
+            default:
+                throw new AssertionError("Unsupported operation " + operation);
+        }
+    }
+
+    private static HospitalStay findOpenStay(BasicDBService service, long patientID) {
+        for (HospitalStay stay : service.getHospitalStays(patientID)) {
+            if (stay.getDischargeDate() == null) {
+                return stay;
+            }
+        }
+        return null;
+    }
+
+    private void recordFailure(Stats target, Throwable failure) {
+        if (failure instanceof NoFreeBedException) {
+            target.full.incrementAndGet();
+            overall.full.incrementAndGet();
+        } else if (failure instanceof OptimisticLockException) {
+            target.conflicts.incrementAndGet();
+            overall.conflicts.incrementAndGet();
+        } else if (isDeadlock(failure)) {
+            target.deadlocks.incrementAndGet();
+            overall.deadlocks.incrementAndGet();
+        } else {
+            target.errors.incrementAndGet();
+            overall.errors.incrementAndGet();
+        }
+    }
+
+    private static boolean isDeadlock(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // 40P01: deadlock detected (PostgreSQL), 40001: serialization failure / deadlock (HSQLDB)
+                if ("40P01".equals(state) || "40001".equals(state)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void reportInterval() {
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        print(String.format("[%4ds]", elapsed), overall.interval.snapshotAndReset(), overall.takeIntervalFailures(),
+                config.getReportSeconds());
+        for (Map.Entry<LoadOperation, Stats> entry : stats.entrySet()) {
+            print(String.format("  %-15s", entry.getKey()), entry.getValue().interval.snapshotAndReset(),
+                    entry.getValue().takeIntervalFailures(), config.getReportSeconds());
+        }
+    }
+
+    private boolean reportSummary() {
+        System.out.println("Summary");
+        print(String.format("  %-15s", "ALL"), overall.total, overall.totalFailures(), config.getDurationSeconds());
+        for (Map.Entry<LoadOperation, Stats> entry : stats.entrySet()) {
+            print(String.format("  %-15s", entry.getKey()), entry.getValue().total,
+                    entry.getValue().totalFailures(), config.getDurationSeconds());
+        }
+        reportOverbooking();
+        long attempts = overall.total.getCount() + overall.errors.get() + overall.deadlocks.get();
+        double errorRate = attempts == 0 ? 0 : 100.0 * (overall.errors.get() + overall.deadlocks.get()) / attempts;
+        boolean passed = true;
+        if (config.getMaxErrorRate() > 0 && errorRate > config.getMaxErrorRate()) {
+            System.out.printf("FAILED: error rate %.2f %% exceeds %.2f %%%n", errorRate, config.getMaxErrorRate());
+            passed = false;
+        }
+        long p99Millis = overall.total.percentile(99) / 1000;
+        if (config.getMaxP99Millis() > 0 && p99Millis > config.getMaxP99Millis()) {
+            System.out.printf("FAILED: p99 latency %d ms exceeds %d ms%n", p99Millis, config.getMaxP99Millis());
+            passed = false;
+        }
+        return passed;
+    }
+
+    /**
+     * Reports the wards with more open stays than beds. Plain admissions and transfers do not look at the free
+     * beds and may overbook; atomic admissions alone never do.
+     */
+    private void reportOverbooking() {
+        BasicDBServiceImpl service = new BasicDBServiceImpl(config.getUrl(), config.getUser(), config.getPassword());
+        try {
+            int overbooked = 0;
+            int excess = 0;
+            for (Ward ward : service.getWards()) {
+                int free = service.getFreeBeds(ward);
+                if (free < 0) {
+                    overbooked++;
+                    excess -= free;
+                }
+            }
+            System.out.printf("  overbooked wards %d, %d stays beyond the beds%n", overbooked, excess);
+        } finally {
+            service.close();
+        }
+    }
+
+    private static void print(String label, LatencyHistogram histogram, long[] failures, int seconds) {
+        System.out.printf("%s %9.1f ops/s  p50 %8.2f ms  p95 %8.2f ms  p99 %8.2f ms  max %8.2f ms"
+                        + "  errors %d  deadlocks %d  conflicts %d  full %d%n",
+                label, histogram.getCount() / (double) seconds, histogram.percentile(50) / 1000.0,
+                histogram.percentile(95) / 1000.0, histogram.percentile(99) / 1000.0,
+                histogram.getMax() / 1000.0, failures[0], failures[1], failures[2], failures[3]);
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            Random random = new Random(1000L + index);
+            long interval = config.getTargetRate() > 0
+                    ? TimeUnit.SECONDS.toNanos(config.getThreads()) / config.getTargetRate() : 0;
+            BasicDBServiceImpl service = new BasicDBServiceImpl(config.getUrl(), config.getUser(),
+                    config.getPassword());
+            try {
+                List<Ward> wards = service.getWards();
+                long next = System.nanoTime();
+                while (running) {
+                    if (interval > 0) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                    }
+                    // with a target rate the latency is measured from the intended start time, so a stalled
+                    // database also shows up in the numbers of the requests that queued up behind it
+                    long start = interval > 0 ? next : System.nanoTime();
+                    next += interval;
+                    LoadOperation operation = pick(random);
+                    Stats target = stats.get(operation);
+                    try {
+                        execute(operation, service, wards, random);
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                        target.record(micros);
+                        overall.record(micros);
+                    } catch (RuntimeException | AssertionError e) {
+                        recordFailure(target, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                service.close();
+            }
+        }
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram interval = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong deadlocks = new AtomicLong();
+        private final AtomicLong conflicts = new AtomicLong();
+        private final AtomicLong full = new AtomicLong();
+        private final long[] reported = new long[4];
+
+        private void record(long micros) {
+            interval.record(micros);
+            total.record(micros);
+        }
+
+        private long[] totalFailures() {
+            return new long[] {errors.get(), deadlocks.get(), conflicts.get(), full.get()};
+        }
+
+        private synchronized long[] takeIntervalFailures() {
+            long[] now = totalFailures();
+            long[] delta = new long[4];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = now[i] - reported[i];
+                reported[i] = now[i];
+            }
+            return delta;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+/**
+ * The columns a page of hospital stays can be sorted by. Every order ends with the stay ID.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum HospitalStaySort {
+    ID("a.ID"),
+    ADMISSION_DATE("a.Aufnahmedatum", "a.ID"),
+    DISCHARGE_DATE("a.Entlassdatum", "a.ID"),
+    WARD("s.Bezeichnung", "a.ID");
+
+    private final String[] columns;
+
+    HospitalStaySort(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the {@code ORDER BY} clause of this order.
+     *
+     * @param direction the direction
+     * @return the clause, starting with a space
+     */
+    public String orderBy(SortDirection direction) {
+        return direction.orderBy(columns);
+    }
+}
@@ -0,0 +1,35 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+/**
+ * The columns a page of patients can be sorted by. Every order ends with the patient ID, so that rows with equal
+ * values keep their position from one page to the next. The columns refer to the {@code Person} table where
+ * possible, because the page query reads that table first.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum PatientSort {
+    ID("pe.ID"),
+    /** Last name, then first name; answered by the {@code person_name} index. */
+    LASTNAME("pe.Nachname", "pe.Vorname", "pe.ID"),
+    FIRSTNAME("pe.Vorname", "pe.ID"),
+    DATE_OF_BIRTH("pe.Geburtsdatum", "pe.ID"),
+    HEALTH_INSURANCE("p.Krankenkasse", "pe.ID"),
+    INSURANCE_NUMBER("p.Versicherungsnummer", "pe.ID");
+
+    private final String[] columns;
+
+    PatientSort(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the {@code ORDER BY} clause of this order.
+     *
+     * @param direction the direction
+     * @return the clause, starting with a space
+     */
+    public String orderBy(SortDirection direction) {
+        return direction.orderBy(columns);
+    }
+}
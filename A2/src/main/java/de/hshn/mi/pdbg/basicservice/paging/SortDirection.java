@@ -0,0 +1,32 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+/**
+ * The direction of a sorted page query.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum SortDirection {
+    ASCENDING("ASC"),
+    DESCENDING("DESC");
+
+    private final String sql;
+
+    SortDirection(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Returns the {@code ORDER BY} clause for the given columns in this direction.
+     *
+     * @param columns the sort columns, the last one has to be unique
+     * @return the clause, starting with a space
+     */
+    public String orderBy(String... columns) {
+        StringBuilder clause = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < columns.length; i++) {
+            clause.append(i == 0 ? "" : ", ").append(columns[i]).append(' ').append(sql);
+        }
+        return clause.toString();
+    }
+}
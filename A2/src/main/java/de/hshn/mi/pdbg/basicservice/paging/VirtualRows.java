@@ -0,0 +1,176 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row access for a virtual table ({@code SWT.VIRTUAL}): rows are loaded page by page as the table asks for them,
+ * and only a few pages are kept. On a miss, the requested page is loaded together with the next pages in the
+ * direction the user scrolls, in a single query, so scrolling through a window does not cost a round trip per
+ * page.
+ * <p>
+ * The total number of rows is not counted up front, because a {@code COUNT(*)} reads the whole result and would
+ * make opening a table as slow as loading it. {@link #getRowCount()} reports the rows seen so far plus one page
+ * until the end of the result has been loaded; the table grows while it is scrolled.
+ * </p>
+ * <pre>
+ * VirtualRows&lt;Patient&gt; rows = new VirtualRows&lt;&gt;((offset, limit) -&gt;
+ *         service.getPatients(null, null, null, null, PatientSort.LASTNAME, SortDirection.ASCENDING, offset, limit));
+ * table.addListener(SWT.SetData, event -&gt; {
+ *     Patient patient = rows.get(event.index);
+ *     ...
+ *     table.setItemCount(rows.getRowCount());
+ * });
+ * table.setItemCount(rows.getRowCount());
+ * </pre>
+ * <p>
+ * Instances are not thread-safe; they are meant to be used from the UI thread only.
+ * </p>
+ *
+ * @param <T> the row type
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class VirtualRows<T> {
+
+    /**
+     * Loads a window of a sorted result.
+     *
+     * @param <T> the row type
+     */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        List<T> load(int offset, int limit);
+    }
+
+    /**
+     * The default number of rows per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int LOOK_AHEAD_PAGES = 1;
+    private static final int CACHED_PAGES = 8;
+
+    private final PageLoader<T> loader;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private int knownRows;
+    private boolean complete;
+    private int lastMissedPage;
+
+    /**
+     * Creates a row access with the default page size. No rows are loaded before the first call of
+     * {@link #get(int)} or {@link #getRowCount()}.
+     *
+     * @param loader loads the rows of the sorted result
+     */
+    public VirtualRows(PageLoader<T> loader) {
+        this(loader, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a row access.
+     *
+     * @param loader   loads the rows of the sorted result
+     * @param pageSize the number of rows per page
+     */
+    public VirtualRows(PageLoader<T> loader, int pageSize) {
+        if (loader == null || pageSize <= 0) {
+            throw new AssertionError("A loader and a positive page size are required");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns a row, loading its page if it is not cached.
+     *
+     * @param index the index of the row in the sorted result
+     * @return the row, or null if the result has fewer rows
+     */
+    public T get(int index) {
+        if (index < 0) {
+            throw new AssertionError("The row index cannot be negative");
+        }
+        if (complete && index >= knownRows) {
+            return null;
+        }
+        int page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            load(page);
+            rows = pages.get(page);
+        }
+        int offset = index - page * pageSize;
+        return rows != null && offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    /**
+     * Returns the number of rows the table should show: the exact number once the end of the result has been
+     * loaded, otherwise the rows seen so far plus one page.
+     *
+     * @return the row count
+     */
+    public int getRowCount() {
+        if (!complete && knownRows == 0) {
+            load(0);
+        }
+        return complete ? knownRows : knownRows + pageSize;
+    }
+
+    /**
+     * Tells whether the end of the result has been loaded, i.e. whether {@link #getRowCount()} is exact.
+     *
+     * @return true if the row count is exact
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Drops all cached rows, e.g. after rows were stored or removed. The next access loads the rows again.
+     */
+    public void invalidate() {
+        pages.clear();
+        knownRows = 0;
+        complete = false;
+        lastMissedPage = 0;
+    }
+
+    /**
+     * Loads the given page and the look-ahead pages in the direction of the previous miss with one query. One
+     * more row than needed is requested to find out whether the result continues.
+     */
+    private void load(int page) {
+        int first = page >= lastMissedPage ? page : Math.max(0, page - LOOK_AHEAD_PAGES);
+        int count = page >= lastMissedPage ? 1 + LOOK_AHEAD_PAGES : page - first + 1;
+        lastMissedPage = page;
+        int offset = first * pageSize;
+        int limit = count * pageSize;
+        List<T> rows = loader.load(offset, limit + 1);
+        boolean more = rows.size() > limit;
+        int loaded = Math.min(rows.size(), limit);
+        for (int i = 0; i < count; i++) {
+            int from = i * pageSize;
+            if (from >= loaded && i > 0) {
+                break;
+            }
+            pages.put(first + i, List.copyOf(rows.subList(Math.min(from, loaded), Math.min(from + pageSize, loaded))));
+        }
+        if (more) {
+            knownRows = Math.max(knownRows, offset + loaded);
+        } else if (loaded > 0 || offset == 0) {
+            knownRows = offset + loaded;
+            complete = true;
+        } else {
+            // the window starts behind the end, which lies somewhere after the rows seen so far
+            knownRows = Math.min(knownRows, offset);
+        }
+    }
+}
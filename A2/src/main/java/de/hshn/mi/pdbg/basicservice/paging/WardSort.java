@@ -0,0 +1,29 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+/**
+ * The columns a page of wards can be sorted by. Every order ends with the ward ID.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum WardSort {
+    ID("ID"),
+    NAME("Bezeichnung", "ID"),
+    NUMBER_OF_BEDS("Bettenzahl", "ID");
+
+    private final String[] columns;
+
+    WardSort(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the {@code ORDER BY} clause of this order.
+     *
+     * @param direction the direction
+     * @return the clause, starting with a space
+     */
+    public String orderBy(SortDirection direction) {
+        return direction.orderBy(columns);
+    }
+}
@@ -0,0 +1,217 @@
+package de.hshn.mi.pdbg.basicservice.plancheck;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * The parts of an execution plan that are compared against the baseline: the plan nodes in depth-first order,
+ * the indexes used, the relations that are read completely and, on PostgreSQL, the estimated total cost.
+ * <p>
+ * On PostgreSQL the summary is taken from {@code EXPLAIN (FORMAT JSON)}. HSQLDB has no JSON output and no cost
+ * model, so its summary is parsed from the text of {@code EXPLAIN PLAN FOR}; the cost is always null. HSQLDB
+ * names the indexes of primary and foreign keys {@code SYS_PK_<n>} and {@code SYS_FK_<n>}, where the number
+ * changes whenever the schema is created in a different order, so these names are replaced by the indexed
+ * columns, e.g. {@code PK:STATION(ID)}.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+final class PlanSummary {
+
+    private static final String HSQLDB_END_OF_PLAN = "PARAMETERS=[";
+
+    private final List<String> nodes;
+    private final TreeSet<String> indexes;
+    private final TreeSet<String> fullScans;
+    private final Double cost;
+
+    private PlanSummary(List<String> nodes, TreeSet<String> indexes, TreeSet<String> fullScans, Double cost) {
+        this.nodes = nodes;
+        this.indexes = indexes;
+        this.fullScans = fullScans;
+        this.cost = cost;
+    }
+
+    List<String> getNodes() {
+        return nodes;
+    }
+
+    TreeSet<String> getIndexes() {
+        return indexes;
+    }
+
+    TreeSet<String> getFullScans() {
+        return fullScans;
+    }
+
+    Double getCost() {
+        return cost;
+    }
+
+    /**
+     * Summarizes the output of {@code EXPLAIN (FORMAT JSON)}.
+     *
+     * @param explain the parsed output, an array with one object holding the {@code Plan}
+     * @return the summary
+     */
+    @SuppressWarnings("unchecked")
+    static PlanSummary fromPostgreSQL(Object explain) {
+        Map<String, Object> root = (Map<String, Object>) ((List<Object>) explain).get(0);
+        Map<String, Object> plan = (Map<String, Object>) root.get("Plan");
+        PlanSummary summary = new PlanSummary(new ArrayList<>(), new TreeSet<>(), new TreeSet<>(),
+                ((Number) plan.get("Total Cost")).doubleValue());
+        summary.addPostgreSQLNode(plan);
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addPostgreSQLNode(Map<String, Object> plan) {
+        String type = (String) plan.get("Node Type");
+        String relation = (String) plan.get("Relation Name");
+        String index = (String) plan.get("Index Name");
+        nodes.add(type + (relation == null && index == null ? ""
+                : "[" + (relation == null ? "" : relation) + (index == null ? "" : "/" + index) + "]"));
+        if ("Seq Scan".equals(type)) {
+            fullScans.add(relation);
+        }
+        if (index != null) {
+            indexes.add(index);
+        }
+        Object children = plan.get("Plans");
+        if (children != null) {
+            for (Object child : (List<Object>) children) {
+                addPostgreSQLNode((Map<String, Object>) child);
+            }
+        }
+    }
+
+    /**
+     * Summarizes the output of {@code EXPLAIN PLAN FOR}. Only the lines up to the parameter list are read,
+     * because HSQLDB repeats the plans of subqueries after it.
+     *
+     * @param explain      the lines of the plan
+     * @param indexColumns the stable names of the system indexes, see {@link #hsqldbIndexName(String, String, Map)}
+     * @return the summary
+     */
+    static PlanSummary fromHSQLDB(List<String> explain, Map<String, String> indexColumns) {
+        PlanSummary summary = new PlanSummary(new ArrayList<>(), new TreeSet<>(), new TreeSet<>(), null);
+        String table = null;
+        String access = null;
+        for (String line : explain) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith(HSQLDB_END_OF_PLAN)) {
+                break;
+            }
+            if (trimmed.startsWith("table=")) {
+                summary.addHSQLDBNode(table, access, null);
+                table = trimmed.substring("table=".length());
+                access = null;
+            } else if (trimmed.startsWith("access=") && table != null) {
+                access = trimmed.substring("access=".length());
+            } else if (trimmed.startsWith("join condition = [index=") && table != null) {
+                String index = trimmed.substring("join condition = [index=".length()).trim();
+                summary.addHSQLDBNode(table, access, hsqldbIndexName(table, index, indexColumns));
+                table = null;
+            }
+        }
+        summary.addHSQLDBNode(table, access, null);
+        return summary;
+    }
+
+    private void addHSQLDBNode(String table, String access, String index) {
+        if (table == null) {
+            return;
+        }
+        // a full scan names the index that gives the order of the rows; it does not restrict the rows read, but
+        // a named index means that a sort (and with LIMIT, most of the scan) is avoided
+        if ("FULL SCAN".equals(access)) {
+            boolean ordered = index != null && !index.startsWith("PK:") && !index.startsWith("IDX:");
+            nodes.add(access + "[" + table + (ordered ? "/" + index : "") + "]");
+            fullScans.add(table);
+            if (ordered) {
+                indexes.add(index);
+            }
+        } else {
+            nodes.add(access + "[" + table + (index == null ? "" : "/" + index) + "]");
+            if (index != null) {
+                indexes.add(index);
+            }
+        }
+    }
+
+    /**
+     * Returns the name under which an HSQLDB index is recorded: the name itself for indexes created by the
+     * schema, {@code PK:<table>(<columns>)} or {@code FK:<table>(<columns>)} for system indexes of the schema and
+     * {@code IDX:<table>} for the indexes HSQLDB creates on the fly, e.g. for the values of an {@code IN} list.
+     *
+     * @param table        the table the index belongs to
+     * @param index        the name from the plan
+     * @param indexColumns the table and columns of every system index, e.g. {@code SYS_PK_10107 -> STATION(ID)}
+     * @return the stable name
+     */
+    static String hsqldbIndexName(String table, String index, Map<String, String> indexColumns) {
+        if (!index.startsWith("SYS_")) {
+            return index;
+        }
+        String columns = indexColumns.get(index);
+        if (columns == null) {
+            return "IDX:" + table;
+        }
+        return index.substring("SYS_".length(), "SYS_".length() + 2) + ":" + columns;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("nodes", nodes);
+        map.put("indexes", new ArrayList<>(indexes));
+        map.put("fullScans", new ArrayList<>(fullScans));
+        map.put("cost", cost);
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    static PlanSummary fromMap(Map<String, Object> map) {
+        List<String> nodes = new ArrayList<>();
+        for (Object node : (List<Object>) map.get("nodes")) {
+            nodes.add((String) node);
+        }
+        TreeSet<String> indexes = new TreeSet<>();
+        for (Object index : (List<Object>) map.get("indexes")) {
+            indexes.add((String) index);
+        }
+        TreeSet<String> fullScans = new TreeSet<>();
+        for (Object relation : (List<Object>) map.get("fullScans")) {
+            fullScans.add((String) relation);
+        }
+        Number cost = (Number) map.get("cost");
+        return new PlanSummary(nodes, indexes, fullScans, cost == null ? null : cost.doubleValue());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PlanSummary)) {
+            return false;
+        }
+        PlanSummary that = (PlanSummary) o;
+        return nodes.equals(that.nodes) && indexes.equals(that.indexes) && fullScans.equals(that.fullScans)
+                && Objects.equals(cost, that.cost);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nodes, indexes, fullScans, cost);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" -> ", nodes) + (cost == null ? "" : String.format(" (cost %.2f)", cost));
+    }
+}
@@ -0,0 +1,267 @@
+package de.hshn.mi.pdbg.basicservice.plancheck;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.datagen.DataGeneratorConfig;
+import de.hshn.mi.pdbg.basicservice.datagen.HospitalDataGenerator;
+import de.hshn.mi.pdbg.basicservice.server.Json;
+import de.hshn.mi.pdbg.basicservice.services.QueryShape;
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Captures the execution plan of every {@link QueryShape} and compares it against a checked-in baseline, so that
+ * a schema change which turns an index lookup into a sequential scan fails the build instead of showing up under
+ * production load.
+ * <p>
+ * A plan counts as a regression if it reads a relation completely that the baseline reads through an index, if
+ * it no longer uses an index of the baseline, or if its estimated cost exceeds the baseline cost by more than
+ * the configured tolerance. Other changes of the plan nodes are reported as warnings. Shapes without a baseline
+ * fail as well, so new statements have to be baselined explicitly.
+ * </p>
+ * <p>
+ * The HSQLDB baseline {@code queryplans/hsqldb.json} is checked by {@code QueryPlanCheckTestCase} in every
+ * build. Run the check by hand with {@code mvn -P tool-queryplans verify}; after an intended change of the schema
+ * or the SQL, write a new baseline with {@code mvn -P tool-queryplans verify -Dqueryplans.args=--rebaseline=true}
+ * and commit it together with the change. Other databases are selected with {@code --url}, {@code --user} and
+ * {@code --password}; every dialect has its own baseline file, which has to be written with {@code --rebaseline}
+ * first. No PostgreSQL baseline is checked in.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class QueryPlanCheck {
+
+    private static final Path BASELINE_DIRECTORY = Path.of("queryplans");
+
+    private final QueryPlanCheckConfig config;
+
+    /**
+     * Creates a check.
+     *
+     * @param config the settings of the run
+     */
+    public QueryPlanCheck(QueryPlanCheckConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Entry point of the check.
+     *
+     * @param args the options described in {@link QueryPlanCheckConfig}
+     * @throws SQLException if the plans cannot be captured
+     * @throws IOException  if the baseline cannot be read or written
+     */
+    public static void main(String[] args) throws SQLException, IOException {
+        if (!new QueryPlanCheck(QueryPlanCheckConfig.parse(args)).run()) {
+            throw new IllegalStateException("Query plans regressed; if the new plans are intended, run the check "
+                    + "with --rebaseline=true and commit the new baseline");
+        }
+    }
+
+    /**
+     * Prepares the database, captures the plans and compares them against the baseline, or writes them as the
+     * new baseline.
+     *
+     * @return true if no plan regressed
+     * @throws SQLException if the plans cannot be captured
+     * @throws IOException  if the baseline cannot be read or written
+     */
+    public boolean run() throws SQLException, IOException {
+        if (config.isCreateSchema()) {
+            new DBCreator().createDatabase(config.getUrl(), config.getUser(), config.getPassword());
+        }
+        Map<String, PlanSummary> plans;
+        SqlDialect dialect;
+        try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(),
+                config.getPassword())) {
+            dialect = SqlDialect.of(connection);
+            if (dialect == SqlDialect.OTHER) {
+                throw new SQLException("Query plans can only be checked on PostgreSQL and HSQLDB");
+            }
+            seed(connection, dialect);
+            plans = capture(connection, dialect);
+        }
+
+        Path baseline = config.getBaseline() != null ? config.getBaseline()
+                : BASELINE_DIRECTORY.resolve(dialect.name().toLowerCase() + ".json");
+        if (config.isRebaseline()) {
+            writeBaseline(baseline, dialect, plans);
+            System.out.printf("Wrote %d plans to %s%n", plans.size(), baseline);
+            return true;
+        }
+        if (!Files.exists(baseline)) {
+            System.out.printf("No baseline %s; run with --rebaseline=true to create it%n", baseline);
+            return false;
+        }
+        return compare(readBaseline(baseline), plans);
+    }
+
+    private void seed(Connection connection, SqlDialect dialect) throws SQLException {
+        if (config.getPatients() == 0) {
+            return;
+        }
+        DataGeneratorConfig generatorConfig = DataGeneratorConfig.parse(
+                new String[] {"--patients=" + config.getPatients()});
+        new HospitalDataGenerator(generatorConfig).generate(connection);
+        if (dialect == SqlDialect.POSTGRESQL) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE");
+            }
+        }
+    }
+
+    private static Map<String, PlanSummary> capture(Connection connection, SqlDialect dialect)
+            throws SQLException {
+        long patientID = sample(connection, "SELECT MIN(PID) FROM Aufenthalt");
+        long wardID = sample(connection, "SELECT MIN(ID) FROM Station");
+        Map<String, String> indexColumns = dialect == SqlDialect.HSQLDB ? hsqldbIndexColumns(connection) : null;
+
+        Map<String, PlanSummary> plans = new LinkedHashMap<>();
+        for (QueryShape shape : QueryShape.canonical(dialect, patientID, wardID)) {
+            if (dialect == SqlDialect.POSTGRESQL) {
+                try (PreparedStatement statement = connection.prepareStatement("EXPLAIN (FORMAT JSON) "
+                        + shape.getSql())) {
+                    Object[] parameters = shape.getParameters();
+                    for (int i = 0; i < parameters.length; i++) {
+                        statement.setObject(i + 1, parameters[i]);
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        plans.put(shape.getName(), PlanSummary.fromPostgreSQL(Json.parse(resultSet.getString(1))));
+                    }
+                }
+            } else {
+                // HSQLDB plans a statement without looking at the parameter values
+                List<String> lines = new ArrayList<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("EXPLAIN PLAN FOR " + shape.getSql())) {
+                    while (resultSet.next()) {
+                        lines.add(resultSet.getString(1));
+                    }
+                }
+                plans.put(shape.getName(), PlanSummary.fromHSQLDB(lines, indexColumns));
+            }
+        }
+        return plans;
+    }
+
+    private static long sample(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Reads {@code <table>(<columns>)} for every system index of the schema.
+     */
+    private static Map<String, String> hsqldbIndexColumns(Connection connection) throws SQLException {
+        Map<String, String> indexColumns = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT INDEX_NAME, TABLE_NAME, COLUMN_NAME "
+                     + "FROM INFORMATION_SCHEMA.SYSTEM_INDEXINFO WHERE INDEX_NAME LIKE 'SYS\\_%' ESCAPE '\\' "
+                     + "ORDER BY INDEX_NAME, ORDINAL_POSITION")) {
+            while (resultSet.next()) {
+                String index = resultSet.getString(1);
+                String columns = indexColumns.get(index);
+                indexColumns.put(index, columns == null
+                        ? resultSet.getString(2) + "(" + resultSet.getString(3) + ")"
+                        : columns.substring(0, columns.length() - 1) + "," + resultSet.getString(3) + ")");
+            }
+        }
+        return indexColumns;
+    }
+
+    private boolean compare(Map<String, PlanSummary> baseline, Map<String, PlanSummary> plans) {
+        int regressions = 0;
+        for (Map.Entry<String, PlanSummary> entry : plans.entrySet()) {
+            String name = entry.getKey();
+            PlanSummary plan = entry.getValue();
+            PlanSummary expected = baseline.get(name);
+            if (expected == null) {
+                System.out.printf("FAIL %s: no baseline, plan %s%n", name, plan);
+                regressions++;
+                continue;
+            }
+            List<String> problems = new ArrayList<>();
+            TreeSet<String> newFullScans = new TreeSet<>(plan.getFullScans());
+            newFullScans.removeAll(expected.getFullScans());
+            if (!newFullScans.isEmpty()) {
+                problems.add("full scan of " + String.join(", ", newFullScans));
+            }
+            TreeSet<String> lostIndexes = new TreeSet<>(expected.getIndexes());
+            lostIndexes.removeAll(plan.getIndexes());
+            if (!lostIndexes.isEmpty()) {
+                problems.add("index " + String.join(", ", lostIndexes) + " no longer used");
+            }
+            if (expected.getCost() != null && plan.getCost() != null
+                    && plan.getCost() > expected.getCost() * (1 + config.getCostTolerance())) {
+                problems.add(String.format("cost %.2f instead of %.2f", plan.getCost(), expected.getCost()));
+            }
+
+            if (!problems.isEmpty()) {
+                System.out.printf("FAIL %s: %s%n     expected %s%n     actual   %s%n", name,
+                        String.join("; ", problems), expected, plan);
+                regressions++;
+            } else if (!plan.getNodes().equals(expected.getNodes())) {
+                System.out.printf("WARN %s: plan changed%n     expected %s%n     actual   %s%n", name, expected,
+                        plan);
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!plans.containsKey(name)) {
+                System.out.printf("WARN %s: baseline of a shape that no longer exists%n", name);
+            }
+        }
+        System.out.printf("%d plans checked, %d regressions%n", plans.size(), regressions);
+        return regressions == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, PlanSummary> readBaseline(Path file) throws IOException {
+        Map<String, Object> document = Json.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+        Map<String, PlanSummary> baseline = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) document.get("plans")).entrySet()) {
+            baseline.put(entry.getKey(), PlanSummary.fromMap((Map<String, Object>) entry.getValue()));
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes one plan per line, so that a change of the baseline shows up as a readable diff.
+     */
+    private static void writeBaseline(Path file, SqlDialect dialect, Map<String, PlanSummary> plans)
+            throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("{\n  \"dialect\": ").append(Json.write(dialect.name())).append(",\n  \"plans\": {");
+        String separator = "\n";
+        for (Map.Entry<String, PlanSummary> entry : plans.entrySet()) {
+            out.append(separator).append("    ").append(Json.write(entry.getKey())).append(": ")
+                    .append(Json.write(entry.getValue().toMap()));
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        Files.writeString(file, out, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+package de.hshn.mi.pdbg.basicservice.plancheck;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of a query plan check, parsed from {@code --key=value} command line arguments.
+ * <p>
+ * Supported keys: {@code url}, {@code user}, {@code password}, {@code create-schema}, {@code patients} (size of
+ * the data set seeded with the data generator before the plans are captured, 0 = use the data already in the
+ * database), {@code baseline} (the baseline file, by default {@code queryplans/<dialect>.json}),
+ * {@code rebaseline} (write the captured plans to the baseline file instead of comparing them) and
+ * {@code cost-tolerance} (how much the estimated cost of a plan may grow before it counts as a regression, as a
+ * fraction of the baseline cost).
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class QueryPlanCheckConfig {
+
+    private String url = "jdbc:hsqldb:mem:queryplans";
+    private String user = "SA";
+    private String password = "";
+    private boolean createSchema = true;
+    private int patients = 20_000;
+    private Path baseline;
+    private boolean rebaseline;
+    private double costTolerance = 0.5;
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments in the form {@code --key=value}
+     * @return the configuration
+     * @throws IllegalArgumentException if an argument is unknown or malformed
+     */
+    public static QueryPlanCheckConfig parse(String[] args) {
+        QueryPlanCheckConfig config = new QueryPlanCheckConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            String key = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "url":
+                    config.url = value;
+                    break;
+                case "user":
+                    config.user = value;
+                    break;
+                case "password":
+                    config.password = value;
+                    break;
+                case "create-schema":
+                    config.createSchema = Boolean.parseBoolean(value);
+                    break;
+                case "patients":
+                    config.patients = Integer.parseInt(value);
+                    if (config.patients < 0) {
+                        throw new IllegalArgumentException("--" + key + " must not be negative");
+                    }
+                    break;
+                case "baseline":
+                    config.baseline = Path.of(value);
+                    break;
+                case "rebaseline":
+                    config.rebaseline = Boolean.parseBoolean(value);
+                    break;
+                case "cost-tolerance":
+                    config.costTolerance = Double.parseDouble(value);
+                    if (config.costTolerance < 0) {
+                        throw new IllegalArgumentException("--" + key + " must not be negative");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + key);
+            }
+        }
+        return config;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isCreateSchema() {
+        return createSchema;
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    /**
+     * Returns the baseline file set with {@code --baseline}.
+     *
+     * @return the file, or null for the default file of the dialect
+     */
+    public Path getBaseline() {
+        return baseline;
+    }
+
+    public boolean isRebaseline() {
+        return rebaseline;
+    }
+
+    public double getCostTolerance() {
+        return costTolerance;
+    }
+}
@@ -0,0 +1,275 @@
+package de.hshn.mi.pdbg.basicservice.reactive;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a query to {@link Flow.Subscriber}s, reading them through a database cursor.
+ * <p>
+ * Every subscription opens its own connection with auto-commit disabled, so the driver fetches the result in
+ * portions instead of loading it completely. Nothing is read before the subscriber requests it: the fetch size
+ * follows the outstanding demand (capped at {@code maxFetchSize}), and at most that many rows are buffered.
+ * The connection is closed when the result is exhausted, when an error occurs or when the subscription is
+ * cancelled. If closing fails, the subscriber receives the failure through {@code onError} instead of
+ * {@code onComplete}, or as a suppressed exception of the error it is signalled anyway; after a cancellation
+ * the subscriber is not signalled any more.
+ * </p>
+ * <p>
+ * All database work of a subscription runs on the given executor, one task at a time, and the subscriber is
+ * signalled from there.
+ * </p>
+ *
+ * @param <T> the type of the published objects
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class CursorPublisher<T> implements Flow.Publisher<T> {
+
+    /**
+     * Binds the parameters of the query.
+     */
+    @FunctionalInterface
+    public interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Converts the current row of the result set into an object.
+     *
+     * @param <T> the type of the object
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * The largest fetch size used by default.
+     */
+    public static final int DEFAULT_MAX_FETCH_SIZE = 256;
+
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "pdbg-cursor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String dbUrl;
+    private final String user;
+    private final String pass;
+    private final String sql;
+    private final Binder binder;
+    private final RowMapper<T> mapper;
+    private final Executor executor;
+    private final int maxFetchSize;
+
+    /**
+     * Creates a publisher for a query that runs on a shared pool of daemon threads and fetches up to
+     * {@link #DEFAULT_MAX_FETCH_SIZE} rows per round trip.
+     *
+     * @param dbUrl  The connection-String of the database.
+     * @param user   The login credentials for accessing the database.
+     * @param pass   The password for accessing the database.
+     * @param sql    the query
+     * @param binder binds the query parameters
+     * @param mapper converts a row into the published object
+     */
+    public CursorPublisher(String dbUrl, String user, String pass, String sql, Binder binder, RowMapper<T> mapper) {
+        this(dbUrl, user, pass, sql, binder, mapper, DEFAULT_EXECUTOR, DEFAULT_MAX_FETCH_SIZE);
+    }
+
+    /**
+     * Creates a publisher for a query.
+     *
+     * @param dbUrl        The connection-String of the database.
+     * @param user         The login credentials for accessing the database.
+     * @param pass         The password for accessing the database.
+     * @param sql          the query
+     * @param binder       binds the query parameters
+     * @param mapper       converts a row into the published object
+     * @param executor     runs the database work of the subscriptions
+     * @param maxFetchSize the largest number of rows fetched in one round trip
+     */
+    public CursorPublisher(String dbUrl, String user, String pass, String sql, Binder binder, RowMapper<T> mapper,
+                           Executor executor, int maxFetchSize) {
+        if (sql == null || binder == null || mapper == null || executor == null || maxFetchSize <= 0) {
+            throw new AssertionError("Invalid publisher arguments");
+        }
+        this.dbUrl = dbUrl;
+        this.user = user;
+        this.pass = pass;
+        this.sql = sql;
+        this.binder = binder;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        CursorSubscription subscription = new CursorSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class CursorSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile Throwable invalidRequest;
+
+        private boolean done;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+
+        private CursorSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("The number of requested rows must be positive");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Runs on the executor; the counter guarantees that only one drain is active per subscription.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                if (cancelled.get()) {
+                    // a cancelled subscriber must not be signalled, not even with a failure to close
+                    finish();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    fail(invalidRequest);
+                    return;
+                }
+                long requested = demand.get();
+                if (requested == 0) {
+                    return;
+                }
+                if (resultSet == null) {
+                    open((int) Math.min(requested, maxFetchSize));
+                } else {
+                    resultSet.setFetchSize((int) Math.min(requested, maxFetchSize));
+                }
+                long emitted = 0;
+                while (emitted < requested && !cancelled.get()) {
+                    if (!resultSet.next()) {
+                        SQLException closeFailure = finish();
+                        if (closeFailure != null) {
+                            subscriber.onError(closeFailure);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                    subscriber.onNext(mapper.map(resultSet));
+                    emitted++;
+                }
+                if (cancelled.get()) {
+                    finish();
+                } else if (demand.addAndGet(-emitted) > 0) {
+                    schedule();
+                }
+            } catch (SQLException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            SQLException closeFailure = finish();
+            if (closeFailure != null) {
+                cause.addSuppressed(closeFailure);
+            }
+            subscriber.onError(cause);
+        }
+
+        private void open(int fetchSize) throws SQLException {
+            connection = DriverManager.getConnection(dbUrl, user, pass);
+            // most drivers (PostgreSQL in particular) only use a cursor outside of auto-commit mode
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            binder.bind(statement);
+            resultSet = statement.executeQuery();
+        }
+
+        /**
+         * Closes the result set, the statement and the connection. Each is closed even if closing the previous
+         * one failed.
+         *
+         * @return the first failure, or null if everything was closed
+         */
+        private SQLException finish() {
+            done = true;
+            try (Connection current = connection) {
+                try {
+                    if (resultSet != null) {
+                        resultSet.close();
+                    }
+                } finally {
+                    if (statement != null) {
+                        statement.close();
+                    }
+                }
+                if (current != null) {
+                    current.rollback();
+                }
+                return null;
+            } catch (SQLException e) {
+                return e;
+            } finally {
+                resultSet = null;
+                statement = null;
+                connection = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package de.hshn.mi.pdbg.basicservice.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUpOptions;
+import de.hshn.mi.pdbg.exception.FetchException;
+import de.hshn.mi.pdbg.exception.ServiceException;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the operations of {@link de.hshn.mi.pdbg.basicservice.BasicDBService} as JSON over HTTP, so that many
+ * clients share a small pool of database connections instead of opening one each.
+ * <p>
+ * Every operation is a {@code POST /api/<operation>} with a JSON object of arguments, e.g.
+ * {@code POST /api/getPatient {"id": 42}}; the response is the JSON result. {@code POST /api/batch} takes
+ * {@code {"calls": [{"op": ..., "args": {...}}, ...]}} and executes the calls one after another on a single
+ * pooled connection, returning {@code {"results": [{"status": ..., "result"|"error": ...}, ...]}}, so a client can
+ * pipeline a whole screen worth of requests in one round trip. Connections are kept alive between requests.
+ * Responses are gzip-compressed if the client accepts it; gzip-compressed request bodies are accepted as well.
+ * </p>
+ * <p>
+ * Errors are reported with status 400 for invalid arguments, 409 for {@link OptimisticLockException}s and 500
+ * otherwise; the body names the exception type so {@link RemoteBasicDBService} can rethrow it.
+ * </p>
+ * <p>
+ * The server does not authenticate its clients. It therefore listens on the loopback interface only, unless a
+ * wider bind address is given explicitly, e.g. for a front-end behind an authenticating proxy.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class BasicDBServiceServer implements AutoCloseable {
+
+    /**
+     * Responses smaller than this are not compressed.
+     */
+    private static final int GZIP_THRESHOLD = 512;
+    private static final long BORROW_TIMEOUT_MILLIS = 5000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ServicePool pool;
+    private final Map<String, Operation> operations = new HashMap<>();
+    private volatile Consumer<? super Exception> errorHandler;
+
+    /**
+     * An operation of the service, executed with a pooled service instance.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        Object execute(BasicDBServiceImpl service, Map<String, Object> args);
+    }
+
+    /**
+     * Creates a server listening on the loopback interface. It does not accept requests before {@link #start()}
+     * is called.
+     *
+     * @param dbUrl    The connection-String of the database.
+     * @param user     The login credentials for accessing the database.
+     * @param pass     The password for accessing the database.
+     * @param port     the port to listen on, 0 for any free port
+     * @param poolSize the number of database connections
+     * @param threads  the number of request threads
+     * @throws IOException if the port cannot be bound
+     */
+    public BasicDBServiceServer(String dbUrl, String user, String pass, int port, int poolSize, int threads)
+            throws IOException {
+        this(dbUrl, user, pass, InetAddress.getLoopbackAddress(), port, poolSize, threads);
+    }
+
+    /**
+     * Creates a server listening on the given address. It does not accept requests before {@link #start()} is
+     * called.
+     *
+     * @param dbUrl       The connection-String of the database.
+     * @param user        The login credentials for accessing the database.
+     * @param pass        The password for accessing the database.
+     * @param bindAddress the address to listen on; the wildcard address exposes the unauthenticated operations
+     *                    on all interfaces
+     * @param port        the port to listen on, 0 for any free port
+     * @param poolSize    the number of database connections
+     * @param threads     the number of request threads
+     * @throws IOException if the port cannot be bound
+     */
+    public BasicDBServiceServer(String dbUrl, String user, String pass, InetAddress bindAddress, int port,
+                                int poolSize, int threads) throws IOException {
+        if (bindAddress == null) {
+            throw new AssertionError("The bind address should not be null!");
+        }
+        this.pool = new ServicePool(dbUrl, user, pass, poolSize);
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "pdbg-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        registerOperations();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ServicePool getPool() {
+        return pool;
+    }
+
+    /**
+     * Registers a callback for the failures answered with status 500. The client only receives the type and
+     * message of the exception; the callback gets the exception itself, e.g. to log it. It runs on the request
+     * thread.
+     *
+     * @param handler the callback, or null to ignore such failures
+     */
+    public void setErrorHandler(Consumer<? super Exception> handler) {
+        this.errorHandler = handler;
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.close();
+    }
+
+    private void registerOperations() {
+        operations.put("getPatients", (service, args) -> list(service.getPatients(
+                EntityJson.string(args, "lastname"), EntityJson.string(args, "firstname"),
+                EntityJson.toDate(args.get("startDate")), EntityJson.toDate(args.get("endDate")))));
+        operations.put("getPatient", (service, args) -> {
+            Patient patient = service.getPatient(EntityJson.longValue(args, "id"));
+            return patient != null ? EntityJson.patient(patient) : null;
+        });
+        operations.put("getWards", (service, args) -> list(service.getWards()));
+        operations.put("getWard", (service, args) -> {
+            Ward ward = service.getWard(EntityJson.longValue(args, "id"));
+            return ward != null ? EntityJson.ward(ward) : null;
+        });
+        operations.put("getHospitalStays", (service, args) -> list(service.getHospitalStays(
+                EntityJson.longValue(args, "patientId"), EntityJson.toDate(args.get("startDate")),
+                EntityJson.toDate(args.get("endDate")))));
+        operations.put("removeHospitalStay", (service, args) -> {
+            service.removeHospitalStay(EntityJson.longValue(args, "id"));
+            return null;
+        });
+        operations.put("getAverageHospitalStayDuration", (service, args) ->
+                service.getAverageHospitalStayDuration(EntityJson.longValue(args, "wardId")));
+        operations.put("getAllocatedBeds", (service, args) -> service.getAllocatedBeds(
+                EntityJson.toWard(service, EntityJson.object(args, "ward"))));
+        operations.put("getFreeBeds", (service, args) -> service.getFreeBeds(
+                EntityJson.toWard(service, EntityJson.object(args, "ward"))));
+        operations.put("store", this::store);
+    }
+
+    private Object store(BasicDBServiceImpl service, Map<String, Object> args) {
+        String type = EntityJson.string(args, "type");
+        if (type == null) {
+            throw new AssertionError("store needs a type and an object");
+        }
+        Map<String, Object> json = EntityJson.object(args, "object");
+        PersistentObject object;
+        switch (type) {
+            case "patient":
+                object = EntityJson.toPatient(service, json);
+                break;
+            case "ward":
+                object = EntityJson.toWard(service, json);
+                break;
+            case "hospitalStay":
+                object = EntityJson.toHospitalStay(service, json, null, null);
+                break;
+            default:
+                throw new AssertionError("Unsupported type: " + type);
+        }
+        service.store(object);
+        Map<String, Object> result = written(object);
+        if (object instanceof HospitalStayImpl) {
+            result.put("ward", written(((HospitalStay) object).getWard()));
+            result.put("patient", written(((HospitalStay) object).getPatient()));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> written(PersistentObject object) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", object.getObjectID());
+        result.put("version", EntityJson.versionOf(object));
+        return result;
+    }
+
+    private static List<Object> list(List<?> objects) {
+        List<Object> json = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            if (object instanceof Patient) {
+                json.add(EntityJson.patient((Patient) object));
+            } else if (object instanceof Ward) {
+                json.add(EntityJson.ward((Ward) object));
+            } else {
+                json.add(EntityJson.hospitalStay((HospitalStay) object));
+            }
+        }
+        return json;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("MethodNotAllowed", "Use POST"));
+                return;
+            }
+            String name = exchange.getRequestURI().getPath().substring("/api/".length());
+            Map<String, Object> args;
+            try {
+                String body = readBody(exchange);
+                args = body.isBlank() ? new HashMap<>() : Json.parseObject(body);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error("AssertionError", e.getMessage()));
+                return;
+            }
+            BasicDBServiceImpl service;
+            try {
+                service = pool.borrow(BORROW_TIMEOUT_MILLIS);
+            } catch (FetchException e) {
+                respond(exchange, 503, error("FetchException", e.getMessage()));
+                return;
+            }
+            Map<String, Object> response;
+            try {
+                response = "batch".equals(name) ? batch(service, args) : call(service, name, args);
+            } finally {
+                pool.release(service);
+            }
+            int status = response.containsKey("status") ? ((Number) response.remove("status")).intValue() : 200;
+            respond(exchange, status, response);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> batch(BasicDBServiceImpl service, Map<String, Object> args) {
+        Object calls = args.get("calls");
+        if (!(calls instanceof List)) {
+            Map<String, Object> response = error("AssertionError", "batch needs a list of calls");
+            response.put("status", 400);
+            return response;
+        }
+        List<Object> results = new ArrayList<>();
+        for (Object call : (List<Object>) calls) {
+            Map<String, Object> result;
+            if (call instanceof Map) {
+                Map<String, Object> callJson = (Map<String, Object>) call;
+                Object op = callJson.get("op");
+                Object callArgs = callJson.get("args");
+                result = call(service, op instanceof String ? (String) op : null,
+                        callArgs instanceof Map ? (Map<String, Object>) callArgs : new HashMap<>());
+            } else {
+                result = error("AssertionError", "A call must be an object with op and args");
+                result.put("status", 400);
+            }
+            if (!result.containsKey("status")) {
+                result.put("status", 200);
+            }
+            results.add(result);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        return response;
+    }
+
+    /**
+     * Executes one operation and wraps its result or error; the map contains a status unless it is 200.
+     */
+    private Map<String, Object> call(BasicDBServiceImpl service, String name, Map<String, Object> args) {
+        Map<String, Object> response;
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            response = error("AssertionError", "Unknown operation: " + name);
+            response.put("status", 404);
+            return response;
+        }
+        try {
+            response = new LinkedHashMap<>();
+            response.put("result", operation.execute(service, args));
+            return response;
+        } catch (AssertionError | IllegalArgumentException e) {
+            response = error("AssertionError", e.getMessage());
+            response.put("status", 400);
+        } catch (OptimisticLockException e) {
+            response = error("OptimisticLockException", e.getMessage());
+            response.put("table", e.getTable());
+            response.put("objectID", e.getObjectID());
+            response.put("expectedVersion", e.getExpectedVersion());
+            response.put("status", 409);
+        } catch (StoreException e) {
+            response = error("StoreException", String.valueOf(e.getMessage()));
+            response.put("status", 500);
+        } catch (ServiceException e) {
+            reportError(e);
+            response = error("FetchException", String.valueOf(e.getMessage()));
+            response.put("status", 500);
+        } catch (RuntimeException e) {
+            reportError(e);
+            response = error("ServiceException", e.toString());
+            response.put("status", 500);
+        }
+        return response;
+    }
+
+    private void reportError(Exception cause) {
+        Consumer<? super Exception> handler = errorHandler;
+        if (handler != null) {
+            try {
+                handler.accept(cause);
+            } catch (RuntimeException ignored) {
+                // the client gets its 500 response regardless of the handler
+            }
+        }
+    }
+
+    private static Map<String, Object> error(String type, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", type);
+        error.put("message", message);
+        return error;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (bytes.length >= GZIP_THRESHOLD && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts a server. Arguments in the form {@code --key=value}: {@code url}, {@code user}, {@code password},
+     * {@code bind} (the address to listen on, default the loopback interface; {@code 0.0.0.0} listens on all),
+     * {@code port} (default 8080), {@code pool} (connections, default 16), {@code threads} (default 64),
+     * {@code create-schema} (default false), {@code warmup} (default false) to open and warm up all connections
+     * before the first request is accepted, and {@code warmup-timeout} (milliseconds, default 10000).
+     *
+     * @param args the command line arguments
+     * @throws IOException if the bind address is unknown or the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        String url = options.getOrDefault("url", "jdbc:hsqldb:mem:server");
+        String user = options.getOrDefault("user", "SA");
+        String password = options.getOrDefault("password", "");
+        if (Boolean.parseBoolean(options.getOrDefault("create-schema", "false"))) {
+            new DBCreator().createDatabase(url, user, password);
+        }
+        String bind = options.get("bind");
+        BasicDBServiceServer server = new BasicDBServiceServer(url, user, password,
+                bind != null ? InetAddress.getByName(bind) : InetAddress.getLoopbackAddress(),
+                Integer.parseInt(options.getOrDefault("port", "8080")),
+                Integer.parseInt(options.getOrDefault("pool", "16")),
+                Integer.parseInt(options.getOrDefault("threads", "64")));
+        if (Boolean.parseBoolean(options.getOrDefault("warmup", "false"))) {
+            WarmUpOptions warmUp = new WarmUpOptions(WarmUpOptions.defaults().getRounds(),
+                    Long.parseLong(options.getOrDefault("warmup-timeout",
+                            String.valueOf(WarmUpOptions.defaults().getTimeoutMillis()))));
+            System.out.println(server.getPool().warmUp(warmUp));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.setErrorHandler(e -> System.err.println("Request failed: " + e));
+        server.start();
+        System.out.println("Listening on " + server.server.getAddress());
+    }
+}
@@ -0,0 +1,204 @@
+package de.hshn.mi.pdbg.basicservice.server;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PersonImpl;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Converts patients, wards and hospital stays to and from their JSON representation. Dates are written as
+ * ISO dates ({@code yyyy-MM-dd}), which is the precision of the database columns.
+ * <p>
+ * The readers check the JSON types of the members and throw an {@link AssertionError} for a member of the
+ * wrong type, like the service does for invalid arguments.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class EntityJson {
+
+    private EntityJson() {
+    }
+
+    public static Map<String, Object> patient(Patient patient) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", patient.getObjectID());
+        json.put("version", versionOf(patient));
+        json.put("lastname", patient.getLastname());
+        json.put("firstname", patient.getFirstname());
+        json.put("dateOfBirth", date(patient.getDateOfBirth()));
+        json.put("healthInsurance", patient.getHealthInsurance());
+        json.put("insuranceNumber", patient.getInsuranceNumber());
+        return json;
+    }
+
+    public static Map<String, Object> ward(Ward ward) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", ward.getObjectID());
+        json.put("version", versionOf(ward));
+        json.put("name", ward.getName());
+        json.put("beds", ward.getNumberOfBeds());
+        return json;
+    }
+
+    public static Map<String, Object> hospitalStay(HospitalStay stay) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", stay.getObjectID());
+        json.put("version", versionOf(stay));
+        json.put("admissionDate", date(stay.getAdmissionDate()));
+        json.put("dischargeDate", date(stay.getDischargeDate()));
+        json.put("ward", ward(stay.getWard()));
+        json.put("patient", patient(stay.getPatient()));
+        return json;
+    }
+
+    /**
+     * Creates a patient object owned by the given service from its JSON representation.
+     *
+     * @param service the service the object belongs to
+     * @param json    the JSON object
+     * @return the patient
+     */
+    public static PatientImpl toPatient(BasicDBService service, Map<String, Object> json) {
+        PatientImpl patient = new PatientImpl(service, longValue(json, "id"), string(json, "healthInsurance"),
+                string(json, "insuranceNumber"), string(json, "lastname"), string(json, "firstname"),
+                toDate(json.get("dateOfBirth")));
+        patient.setVersion(longValue(json, "version"));
+        return patient;
+    }
+
+    /**
+     * Creates a ward object owned by the given service from its JSON representation.
+     *
+     * @param service the service the object belongs to
+     * @param json    the JSON object
+     * @return the ward
+     */
+    public static WardImpl toWard(BasicDBService service, Map<String, Object> json) {
+        WardImpl ward = new WardImpl(service, longValue(json, "id"), intValue(json, "beds"),
+                string(json, "name"));
+        ward.setVersion(longValue(json, "version"));
+        return ward;
+    }
+
+    /**
+     * Creates a hospital stay owned by the given service from its JSON representation. The nested ward and
+     * patient are taken from the given maps if an object with the same ID was decoded before, so the objects of
+     * one response are shared like in the results of the local service.
+     *
+     * @param service  the service the object belongs to
+     * @param json     the JSON object
+     * @param wards    the wards decoded so far, by ID
+     * @param patients the patients decoded so far, by ID
+     * @return the hospital stay
+     */
+    public static HospitalStayImpl toHospitalStay(BasicDBService service, Map<String, Object> json,
+                                                  Map<Long, Ward> wards, Map<Long, Patient> patients) {
+        Map<String, Object> wardJson = object(json, "ward");
+        Map<String, Object> patientJson = object(json, "patient");
+        Ward ward = shared(wards, longValue(wardJson, "id"), () -> toWard(service, wardJson));
+        Patient patient = shared(patients, longValue(patientJson, "id"), () -> toPatient(service, patientJson));
+        HospitalStayImpl stay = new HospitalStayImpl(service, longValue(json, "id"),
+                toDate(json.get("admissionDate")), toDate(json.get("dischargeDate")), ward, patient);
+        stay.setVersion(longValue(json, "version"));
+        return stay;
+    }
+
+    private static <T> T shared(Map<Long, T> known, long id, Supplier<T> decoder) {
+        if (id == PersistentObject.INVALID_OBJECT_ID || known == null) {
+            return decoder.get();
+        }
+        return known.computeIfAbsent(id, key -> decoder.get());
+    }
+
+    /**
+     * Returns the row version of an object of the implementation classes, 0 for other objects.
+     *
+     * @param object the object
+     * @return its version
+     */
+    public static long versionOf(PersistentObject object) {
+        if (object instanceof PersonImpl) {
+            return ((PersonImpl) object).getVersion();
+        } else if (object instanceof WardImpl) {
+            return ((WardImpl) object).getVersion();
+        } else if (object instanceof HospitalStayImpl) {
+            return ((HospitalStayImpl) object).getVersion();
+        }
+        return 0;
+    }
+
+    public static String date(Date date) {
+        return date != null ? new java.sql.Date(date.getTime()).toString() : null;
+    }
+
+    /**
+     * Parses an ISO date.
+     *
+     * @param value the JSON value, or null
+     * @return the date, or null for null
+     * @throws AssertionError if the value is not a string of the form {@code yyyy-mm-dd}
+     */
+    public static Date toDate(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return java.sql.Date.valueOf((String) value);
+        } catch (ClassCastException | IllegalArgumentException e) {
+            throw new AssertionError("Dates must be strings of the form yyyy-mm-dd: " + value);
+        }
+    }
+
+    public static long longValue(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (!(value instanceof Number)) {
+            throw new AssertionError("Missing numeric member '" + key + "'");
+        }
+        return ((Number) value).longValue();
+    }
+
+    public static int intValue(Map<String, Object> json, String key) {
+        long value = longValue(json, key);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new AssertionError("Member '" + key + "' is out of range");
+        }
+        return (int) value;
+    }
+
+    public static String string(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw new AssertionError("Member '" + key + "' must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Returns a nested JSON object.
+     *
+     * @param json the enclosing object
+     * @param key  the name of the member
+     * @return the nested object
+     * @throws AssertionError if the member is missing or not an object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> object(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (!(value instanceof Map)) {
+            throw new AssertionError("Missing object member '" + key + "'");
+        }
+        return (Map<String, Object>) value;
+    }
+}
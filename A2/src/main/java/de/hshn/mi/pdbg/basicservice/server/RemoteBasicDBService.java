@@ -0,0 +1,331 @@
+package de.hshn.mi.pdbg.basicservice.server;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PersistentState;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+import de.hshn.mi.pdbg.exception.FetchException;
+import de.hshn.mi.pdbg.exception.ServiceException;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Thin client for a {@link BasicDBServiceServer}. It implements {@link BasicDBService}, so it can replace a
+ * {@link de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl} without holding a database connection itself.
+ * The objects it returns are the usual implementation classes; storing them sends them to the server.
+ * <p>
+ * The client is thread-safe; the underlying HTTP client keeps its connections to the server alive.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class RemoteBasicDBService implements BasicDBService {
+
+    private final URI baseUri;
+    private final HttpClient client;
+    private final Duration timeout;
+
+    /**
+     * Creates a client for the server at the given address.
+     *
+     * @param baseUri the address of the server, e.g. {@code http://localhost:8080}
+     */
+    public RemoteBasicDBService(String baseUri) {
+        this(baseUri, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a client for the server at the given address.
+     *
+     * @param baseUri the address of the server, e.g. {@code http://localhost:8080}
+     * @param timeout the timeout of a single request
+     */
+    public RemoteBasicDBService(String baseUri, Duration timeout) {
+        this.baseUri = URI.create(baseUri.endsWith("/") ? baseUri : baseUri + "/");
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public Patient createPatient(String nachname, String vorname) {
+        Patient patient = new PatientImpl(this);
+        patient.setFirstname(vorname);
+        patient.setLastname(nachname);
+        return patient;
+    }
+
+    @Override
+    public Ward createWard(String bezeichnung, int bettenzahl) {
+        Ward ward = new WardImpl(this);
+        ward.setName(bezeichnung);
+        ward.setNumberOfBeds(bettenzahl);
+        return ward;
+    }
+
+    @Override
+    public HospitalStay createHospitalStay(Patient patient, Ward ward, Date date) {
+        if (date == null || patient == null || ward == null) {
+            throw new AssertionError("Null parameter");
+        }
+        return new HospitalStayImpl(this, date, null, ward, patient);
+    }
+
+    @Override
+    public void removeHospitalStay(long id) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("id", id);
+        call("removeHospitalStay", args, false);
+    }
+
+    @Override
+    public List<Patient> getPatients(String lastname, String firstname, Date startDate, Date endDate) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("lastname", lastname);
+        args.put("firstname", firstname);
+        args.put("startDate", EntityJson.date(startDate));
+        args.put("endDate", EntityJson.date(endDate));
+        List<Patient> patients = new ArrayList<>();
+        for (Map<String, Object> json : objects(call("getPatients", args, false))) {
+            patients.add(EntityJson.toPatient(this, json));
+        }
+        return patients;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Patient getPatient(long patientID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("id", patientID);
+        Object json = call("getPatient", args, false);
+        return json != null ? EntityJson.toPatient(this, (Map<String, Object>) json) : null;
+    }
+
+    @Override
+    public List<Ward> getWards() {
+        List<Ward> wards = new ArrayList<>();
+        for (Map<String, Object> json : objects(call("getWards", new HashMap<>(), false))) {
+            wards.add(EntityJson.toWard(this, json));
+        }
+        return wards;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Ward getWard(long wardID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("id", wardID);
+        Object json = call("getWard", args, false);
+        return json != null ? EntityJson.toWard(this, (Map<String, Object>) json) : null;
+    }
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID) {
+        return getHospitalStays(patientID, null, null);
+    }
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID, Date startDate, Date endDate) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("patientId", patientID);
+        args.put("startDate", EntityJson.date(startDate));
+        args.put("endDate", EntityJson.date(endDate));
+        Map<Long, Ward> wards = new HashMap<>();
+        Map<Long, Patient> patients = new HashMap<>();
+        List<HospitalStay> stays = new ArrayList<>();
+        for (Map<String, Object> json : objects(call("getHospitalStays", args, false))) {
+            stays.add(EntityJson.toHospitalStay(this, json, wards, patients));
+        }
+        return stays;
+    }
+
+    @Override
+    public double getAverageHospitalStayDuration(long wardID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("wardId", wardID);
+        return ((Number) call("getAverageHospitalStayDuration", args, false)).doubleValue();
+    }
+
+    @Override
+    public int getAllocatedBeds(Ward ward) {
+        if (ward == null) {
+            throw new AssertionError("The ward should not be null!");
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put("ward", EntityJson.ward(ward));
+        return ((Number) call("getAllocatedBeds", args, false)).intValue();
+    }
+
+    @Override
+    public int getFreeBeds(Ward ward) {
+        if (ward == null) {
+            throw new AssertionError("The ward should not be null!");
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put("ward", EntityJson.ward(ward));
+        return ((Number) call("getFreeBeds", args, false)).intValue();
+    }
+
+    /**
+     * Returns the free beds of many wards with a single request, using the batch endpoint of the server.
+     *
+     * @param wards the wards
+     * @return the number of free beds by ward ID
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, Integer> getFreeBeds(Collection<? extends Ward> wards) {
+        List<Object> calls = new ArrayList<>();
+        for (Ward ward : wards) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("ward", EntityJson.ward(ward));
+            Map<String, Object> call = new LinkedHashMap<>();
+            call.put("op", "getFreeBeds");
+            call.put("args", args);
+            calls.add(call);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("calls", calls);
+        List<Object> results = (List<Object>) send("batch", body, false).get("results");
+        Map<Long, Integer> freeBeds = new LinkedHashMap<>();
+        int index = 0;
+        for (Ward ward : wards) {
+            Map<String, Object> result = (Map<String, Object>) results.get(index++);
+            freeBeds.put(ward.getObjectID(), ((Number) unwrap(result, false)).intValue());
+        }
+        return freeBeds;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long store(PersistentObject persistentObject) {
+        if (persistentObject == null) {
+            throw new AssertionError("The object should not be null!");
+        }
+        Map<String, Object> args = new HashMap<>();
+        if (persistentObject instanceof Patient) {
+            args.put("type", "patient");
+            args.put("object", EntityJson.patient((Patient) persistentObject));
+        } else if (persistentObject instanceof Ward) {
+            args.put("type", "ward");
+            args.put("object", EntityJson.ward((Ward) persistentObject));
+        } else if (persistentObject instanceof HospitalStay) {
+            args.put("type", "hospitalStay");
+            args.put("object", EntityJson.hospitalStay((HospitalStay) persistentObject));
+        } else {
+            throw new StoreException("Unsupported type: " + persistentObject.getClass().getName());
+        }
+        Map<String, Object> written = (Map<String, Object>) call("store", args, true);
+        if (persistentObject instanceof HospitalStay) {
+            HospitalStay stay = (HospitalStay) persistentObject;
+            assign(stay.getWard(), (Map<String, Object>) written.get("ward"));
+            assign(stay.getPatient(), (Map<String, Object>) written.get("patient"));
+        }
+        assign(persistentObject, written);
+        return persistentObject.getObjectID();
+    }
+
+    private static void assign(PersistentObject object, Map<String, Object> written) {
+        PersistentState.assign(object, EntityJson.longValue(written, "id"), EntityJson.longValue(written, "version"));
+    }
+
+    /**
+     * Does nothing; the client holds no resources besides idle keep-alive connections, which are closed by the
+     * HTTP client.
+     */
+    @Override
+    public void close() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> objects(Object json) {
+        List<Map<String, Object>> objects = new ArrayList<>();
+        for (Object object : (List<Object>) json) {
+            objects.add((Map<String, Object>) object);
+        }
+        return objects;
+    }
+
+    private Object call(String operation, Map<String, Object> args, boolean store) {
+        return unwrap(send(operation, args, store), store);
+    }
+
+    private Map<String, Object> send(String operation, Map<String, Object> body, boolean store) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("api/" + operation))
+                .timeout(timeout)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .header("Accept-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8))
+                .build();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            InputStream in = response.body();
+            if (response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip")) {
+                in = new GZIPInputStream(in);
+            }
+            String text;
+            try (InputStream stream = in) {
+                text = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            return text.isEmpty() ? new HashMap<>() : Json.parseObject(text);
+        } catch (IOException e) {
+            throw store ? new StoreException(e) : new FetchException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw store ? new StoreException("Interrupted", e) : new FetchException("Interrupted", e);
+        }
+    }
+
+    /**
+     * Returns the result of a call or rethrows the exception reported by the server.
+     */
+    private static Object unwrap(Map<String, Object> response, boolean store) {
+        Object error = response.get("error");
+        if (error == null) {
+            return response.get("result");
+        }
+        String message = EntityJson.string(response, "message");
+        switch (error.toString()) {
+            case "AssertionError":
+                throw new AssertionError(message);
+            case "OptimisticLockException":
+                throw new OptimisticLockException(EntityJson.string(response, "table"),
+                        EntityJson.longValue(response, "objectID"), EntityJson.longValue(response, "expectedVersion"));
+            case "StoreException":
+                throw new StoreException(message);
+            case "FetchException":
+                throw new FetchException(message);
+            default:
+                throw store ? new StoreException(message) : new ServiceException(message);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteBasicDBService{" + baseUri + "}";
+    }
+}
@@ -0,0 +1,158 @@
+package de.hshn.mi.pdbg.basicservice.server;
+
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUp;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUpOptions;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUpReport;
+import de.hshn.mi.pdbg.exception.FetchException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size pool of {@link BasicDBServiceImpl} instances, i.e. of database connections, shared by all requests
+ * of the {@link BasicDBServiceServer}. Services are created lazily up to the configured size. A service is used
+ * by one request at a time, because its connection is not thread-safe.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class ServicePool implements AutoCloseable {
+
+    private final String dbUrl;
+    private final String user;
+    private final String pass;
+    private final int size;
+    private final BlockingQueue<BasicDBServiceImpl> idle;
+    private final List<BasicDBServiceImpl> all = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param dbUrl The connection-String of the database.
+     * @param user  The login credentials for accessing the database.
+     * @param pass  The password for accessing the database.
+     * @param size  the maximum number of services and therefore connections
+     */
+    public ServicePool(String dbUrl, String user, String pass, int size) {
+        if (size <= 0) {
+            throw new AssertionError("The pool size must be greater than 0");
+        }
+        this.dbUrl = dbUrl;
+        this.user = user;
+        this.pass = pass;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Takes a service from the pool, creating one if the pool is not exhausted yet.
+     *
+     * @param timeoutMillis how long to wait for a service to be returned
+     * @return the service
+     * @throws FetchException if no service becomes available in time or the pool is closed
+     */
+    public BasicDBServiceImpl borrow(long timeoutMillis) {
+        BasicDBServiceImpl service = idle.poll();
+        if (service != null) {
+            return service;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new FetchException("The service pool is closed");
+            }
+            if (all.size() < size) {
+                service = new BasicDBServiceImpl(dbUrl, user, pass);
+                all.add(service);
+                return service;
+            }
+        }
+        try {
+            service = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchException("Interrupted while waiting for a database connection", e);
+        }
+        if (service == null) {
+            throw new FetchException("No database connection available within " + timeoutMillis + " ms");
+        }
+        return service;
+    }
+
+    /**
+     * Opens all connections of the pool and warms them up (see {@link WarmUp}), so that the first requests after
+     * a start do not pay for connection setup, statement preparation and cold JIT. Meant to be called before the
+     * server accepts requests.
+     *
+     * @param options the rounds and the timeout of the warm-up; the timeout includes opening the connections
+     * @return the report
+     */
+    public WarmUpReport warmUp(WarmUpOptions options) {
+        long start = System.nanoTime();
+        List<BasicDBServiceImpl> services = new ArrayList<>();
+        try {
+            while (services.size() < size) {
+                services.add(borrow(0));
+            }
+            return WarmUp.run(services, options, start);
+        } finally {
+            services.forEach(this::release);
+        }
+    }
+
+    /**
+     * Returns a borrowed service to the pool.
+     *
+     * @param service the service
+     */
+    public void release(BasicDBServiceImpl service) {
+        synchronized (this) {
+            if (closed) {
+                service.close();
+                return;
+            }
+        }
+        idle.offer(service);
+    }
+
+    /**
+     * Returns the number of services created so far.
+     *
+     * @return the number of open connections
+     */
+    public synchronized int getOpenCount() {
+        return all.size();
+    }
+
+    /**
+     * Closes all services of the pool. Every service is closed even if closing another one failed.
+     *
+     * @throws RuntimeException the failure of the first service that could not be closed, with the failures of
+     *                          the others as suppressed exceptions
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        RuntimeException failure = null;
+        for (BasicDBServiceImpl service : all) {
+            try {
+                service.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        all.clear();
+        idle.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
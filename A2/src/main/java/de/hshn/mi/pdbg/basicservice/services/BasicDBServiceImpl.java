@@ -2,24 +2,71 @@ package de.hshn.mi.pdbg.basicservice.services;
 
 import de.hshn.mi.pdbg.PersistentObject;
 import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.analytics.StaySnapshot;
+import de.hshn.mi.pdbg.basicservice.analytics.StaySnapshotLoader;
+import de.hshn.mi.pdbg.basicservice.cache.LocalSnapshot;
+import de.hshn.mi.pdbg.basicservice.cache.PatientQueryCache;
+import de.hshn.mi.pdbg.basicservice.cache.PatientRow;
+import de.hshn.mi.pdbg.basicservice.cache.WardRow;
+import de.hshn.mi.pdbg.basicservice.changefeed.ChangeFeed;
+import de.hshn.mi.pdbg.basicservice.deadline.CallDeadlines;
+import de.hshn.mi.pdbg.basicservice.exception.NoFreeBedException;
+import de.hshn.mi.pdbg.basicservice.exception.StayOverlapException;
+import de.hshn.mi.pdbg.basicservice.health.ConnectionHealth;
+import de.hshn.mi.pdbg.basicservice.health.HealthOptions;
+import de.hshn.mi.pdbg.basicservice.impl.EntityBatchWriter;
 import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
 import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PersistentState;
 
 import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+import de.hshn.mi.pdbg.basicservice.index.InsuranceNumberFilter;
+import de.hshn.mi.pdbg.basicservice.index.StayIntervalIndex;
+import de.hshn.mi.pdbg.basicservice.jdbc.AbstractPersistentJDBCObject;
+import de.hshn.mi.pdbg.basicservice.paging.HospitalStaySort;
+import de.hshn.mi.pdbg.basicservice.paging.PatientSort;
+import de.hshn.mi.pdbg.basicservice.paging.SortDirection;
+import de.hshn.mi.pdbg.basicservice.paging.VirtualRows;
+import de.hshn.mi.pdbg.basicservice.paging.WardSort;
+import de.hshn.mi.pdbg.basicservice.reactive.CursorPublisher;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUp;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUpOptions;
+import de.hshn.mi.pdbg.basicservice.warmup.WarmUpReport;
+import de.hshn.mi.pdbg.basicservice.writebehind.WriteBehindErrorHandler;
+import de.hshn.mi.pdbg.basicservice.writebehind.WriteBehindOptions;
+import de.hshn.mi.pdbg.basicservice.writebehind.WriteBehindQueue;
 import de.hshn.mi.pdbg.basicservice.HospitalStay;
 import de.hshn.mi.pdbg.basicservice.Patient;
 import de.hshn.mi.pdbg.basicservice.Ward;
 import de.hshn.mi.pdbg.exception.FetchException;
 import de.hshn.mi.pdbg.exception.StoreException;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 /**
  * Implementation of the BasicDBService interface. Provides methods to interact with the medical database service.
  * Manages the creation, retrieval, and removal of patients, wards, and hospital stays.
@@ -34,6 +81,127 @@ public class BasicDBServiceImpl implements BasicDBService {
     private  String user;
     private String pass;
     private Connection conn;
+    private WriteBehindQueue writeBehind;
+    private final IdAllocator idAllocator = new IdAllocator();
+    private volatile PatientQueryCache patientQueryCache;
+    private volatile StayIntervalIndex stayIndex;
+    private volatile LocalSnapshot localSnapshot;
+    private volatile ConnectionHealth health;
+    private final CallDeadlines deadlines = new CallDeadlines();
+    private WarmUpReport warmUpReport;
+    private Transaction transaction;
+
+    /**
+     * The maximum number of patient IDs bound to one graph query.
+     */
+    public static final int GRAPH_BATCH_SIZE = 500;
+
+    private static final String GRAPH_COLUMNS = "SELECT p.ID AS PatientID, pe.Vorname, pe.Nachname, "
+            + "pe.Geburtsdatum, p.Krankenkasse, p.Versicherungsnummer, pe.Version AS PatientVersion, "
+            + "a.ID AS StayID, a.Aufnahmedatum, a.Entlassdatum, a.Version AS StayVersion, "
+            + "s.ID AS WardID, s.Bezeichnung, s.Bettenzahl, s.Version AS WardVersion ";
+    private static final String PATIENT_COLUMNS = GRAPH_COLUMNS.substring(0, GRAPH_COLUMNS.indexOf(", a.ID"));
+    /**
+     * The join behind {@link #getPatientGraphs(Collection)}, without its {@code WHERE} clause.
+     */
+    public static final String PATIENT_GRAPH_QUERY = GRAPH_COLUMNS
+            + "FROM Patient p JOIN Person pe ON pe.ID = p.ID "
+            + "LEFT JOIN Aufenthalt a ON a.PID = p.ID LEFT JOIN Station s ON s.ID = a.SID";
+    /**
+     * The join behind {@link #getHospitalStays(long, Date, Date, StayRangeMode)}, without its {@code WHERE} clause.
+     * Ward and patient are outer joined: a stay whose SID or PID is NULL is read with a null ward or patient.
+     */
+    public static final String STAY_GRAPH_QUERY = GRAPH_COLUMNS
+            + "FROM Aufenthalt a LEFT JOIN Station s ON s.ID = a.SID "
+            + "LEFT JOIN Patient p ON p.ID = a.PID LEFT JOIN Person pe ON pe.ID = p.ID";
+
+    /**
+     * The open stays of a ward with their patients in admission order, read from the index
+     * {@code aufenthalt_open_by_ward}.
+     */
+    public static final String WARD_CENSUS_QUERY = STAY_GRAPH_QUERY
+            + " WHERE a.SID = ? AND a.Entlassdatum IS NULL ORDER BY a.Aufnahmedatum, a.ID";
+
+    /**
+     * The open stays of all wards with their patients, by ward and admission date. Station comes first, so that
+     * databases without partial indexes (HSQLDB) look up the open stays ward by ward in
+     * {@code aufenthalt_open_by_ward} instead of scanning all stays.
+     */
+    public static final String CENSUS_QUERY = GRAPH_COLUMNS
+            + "FROM Station s JOIN Aufenthalt a ON a.SID = s.ID AND a.Entlassdatum IS NULL "
+            + "LEFT JOIN Patient p ON p.ID = a.PID LEFT JOIN Person pe ON pe.ID = p.ID "
+            + "ORDER BY s.ID, a.Aufnahmedatum, a.ID";
+
+    private static final String PATIENT_ROW_QUERY = "SELECT p.ID, Vorname, Nachname, Geburtsdatum, Krankenkasse,"
+            + "Versicherungsnummer, pe.Version FROM Patient p JOIN Person pe ON p.ID = pe.ID";
+
+    /**
+     * The query of {@link #getPatient(long)}.
+     */
+    public static final String PATIENT_QUERY = PATIENT_ROW_QUERY + " WHERE p.ID = ?";
+
+    /**
+     * The query of {@link #getPatientByInsuranceNumber(String)}. Patient comes first, so that HSQLDB starts with
+     * the index on the number.
+     */
+    public static final String INSURANCE_NUMBER_QUERY = PATIENT_COLUMNS + " FROM Patient p JOIN Person pe "
+            + "ON pe.ID = p.ID WHERE p.Versicherungsnummer = ? ORDER BY p.ID";
+
+    private static final String EXISTING_INSURANCE_NUMBERS_QUERY =
+            "SELECT DISTINCT Versicherungsnummer FROM Patient WHERE Versicherungsnummer ";
+
+    /**
+     * The query of {@link #getWards()}.
+     */
+    public static final String WARDS_QUERY = "SELECT ID, Bezeichnung, Bettenzahl, Version FROM Station";
+
+    /**
+     * The query of {@link #getWard(long)}.
+     */
+    public static final String WARD_QUERY = "SELECT Bezeichnung, Bettenzahl, Version FROM Station WHERE ID = ?";
+
+    /**
+     * The statement of {@link #removeHospitalStay(long)}.
+     */
+    public static final String DELETE_STAY = "DELETE FROM Aufenthalt WHERE ID = ?";
+
+    /**
+     * The query of {@link #getAverageHospitalStayDuration(long)}.
+     */
+    public static final String AVERAGE_STAY_DURATION_QUERY = "SELECT AVG(Entlassdatum - Aufnahmedatum) AS avg_duration "
+            + "FROM Aufenthalt WHERE SID = ? AND Aufnahmedatum IS NOT NULL AND Entlassdatum IS NOT NULL";
+
+    /**
+     * The queries of {@link #getAllocatedBeds(Ward)} for all wards and for one ward.
+     */
+    public static final String ALLOCATED_BEDS_QUERY =
+            "SELECT COUNT(*) AS allocated_beds FROM Aufenthalt WHERE Entlassdatum IS NULL";
+    public static final String WARD_ALLOCATED_BEDS_QUERY =
+            "SELECT COUNT(*) AS allocated_beds FROM Aufenthalt WHERE SID = ? AND Entlassdatum IS NULL";
+
+    private static final String OPEN_STAYS_OF_WARD = "SELECT COUNT(*) FROM Aufenthalt "
+            + "WHERE Aufenthalt.SID = Station.ID AND Aufenthalt.Entlassdatum IS NULL";
+
+    /**
+     * The queries of {@link #getFreeBeds(Ward)} for all wards and for one ward.
+     */
+    public static final String FREE_BEDS_QUERY =
+            "SELECT SUM(Bettenzahl - (" + OPEN_STAYS_OF_WARD + ")) AS free_beds FROM Station";
+    public static final String WARD_FREE_BEDS_QUERY =
+            "SELECT Bettenzahl - (" + OPEN_STAYS_OF_WARD + ") AS free_beds FROM Station WHERE Station.ID = ?";
+
+    /**
+     * The statements that lock the row of a ward during an admission: PostgreSQL locks rows read with
+     * {@code FOR UPDATE}, HSQLDB only rows that are written, so the row is written without a change there.
+     */
+    public static final String WARD_LOCK_QUERY = "SELECT ID FROM Station WHERE ID = ? FOR UPDATE";
+    public static final String WARD_LOCK_UPDATE = "UPDATE Station SET Bettenzahl = Bettenzahl WHERE ID = ?";
+
+    /**
+     * The query counting the free beds of a ward once it has been locked for an admission.
+     */
+    public static final String ADMIT_FREE_BEDS_QUERY =
+            "SELECT Bettenzahl - (" + OPEN_STAYS_OF_WARD + ") FROM Station WHERE ID = ?";
 
     public String getDB_URL() {
         return dbUrl;
@@ -66,8 +234,596 @@ public class BasicDBServiceImpl implements BasicDBService {
         }
     }
 
+    /**
+     * Constructs a database service and warms it up before it is returned (see {@link WarmUp}), so that its first
+     * calls run at steady-state speed. Takes at most the timeout of the options longer than the plain constructor.
+     *
+     * @param dbUrl  The connection-String of the database.
+     * @param user   The login credentials for accessing the database.
+     * @param pass   The password for accessing the database.
+     * @param warmUp the rounds and the timeout of the warm-up
+     */
+    public BasicDBServiceImpl(String dbUrl, String user, String pass, WarmUpOptions warmUp) {
+        this(dbUrl, user, pass);
+        long start = System.nanoTime();
+        warmUpReport = WarmUp.run(List.of(this), warmUp, start);
+    }
+
+    /**
+     * Returns the report of the warm-up run at construction time.
+     *
+     * @return the report, or null if the service was not warmed up
+     */
+    public WarmUpReport getWarmUpReport() {
+        return warmUpReport;
+    }
+
+    /**
+     * Returns the connection of the service. Within {@link #withDeadline(long, Supplier)} the statements created
+     * on it are bounded by the deadline of the call.
+     *
+     * @return the connection
+     */
     public Connection getConnection() {
-        return conn;
+        return deadlines.guard(conn);
+    }
+
+    /**
+     * Returns a new object ID from the block reserved by this service, reserving the next block if necessary.
+     *
+     * @param connection the connection used to reserve a block
+     * @return a new object ID
+     * @throws SQLException if no block can be reserved
+     */
+    public long nextObjectID(Connection connection) throws SQLException {
+        return idAllocator.nextId(connection);
+    }
+
+    /**
+     * Stores a collection of objects. New objects (including the new patients and wards of new stays) are
+     * inserted in one transaction with one JDBC batch per table; objects that are already persistent are stored
+     * one by one as with {@link #store(PersistentObject)}.
+     *
+     * @param objects the objects to store
+     * @return the number of objects written
+     * @throws StoreException if the objects cannot be stored
+     */
+    public int storeAll(Collection<? extends PersistentObject> objects) {
+        if (objects == null) {
+            throw new AssertionError("The objects should not be null!");
+        }
+        restoreConnection();
+        List<PersistentObject> persistent = new ArrayList<>();
+        for (PersistentObject object : objects) {
+            recordUndo(object);
+            if (object != null && object.isPersistent()) {
+                persistent.add(object);
+            }
+        }
+        int written;
+        try {
+            written = EntityBatchWriter.insertAll(getConnection(), objects, idAllocator);
+        } catch (SQLException e) {
+            throw new StoreException(e);
+        }
+        for (PersistentObject object : objects) {
+            if (!persistent.contains(object)) {
+                objectWritten(object);
+            }
+        }
+        for (PersistentObject object : persistent) {
+            store(object);
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Enables caching of {@link #getPatients(String, String, Date, Date)} results. A cache may be shared by
+     * several services on the same database; writes of every sharing service then invalidate it. To see writes
+     * of other processes, register the cache at a change feed, e.g.
+     * {@code openChangeFeed().addListener(cache)}.
+     *
+     * @param cache the cache to use, or null to disable caching
+     */
+    public void setPatientQueryCache(PatientQueryCache cache) {
+        this.patientQueryCache = cache;
+    }
+
+    public PatientQueryCache getPatientQueryCache() {
+        return patientQueryCache;
+    }
+
+    /**
+     * Loads all hospital stays into an in-memory {@link StayIntervalIndex}, which this service keeps current on
+     * every stored or removed stay. Calling it again reloads the index.
+     *
+     * @return the index
+     * @throws FetchException if the stays cannot be read
+     */
+    public StayIntervalIndex enableStayIndex() {
+        restoreConnection();
+        StayIntervalIndex index = stayIndex != null ? stayIndex : new StayIntervalIndex();
+        try {
+            index.load(getConnection());
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+        stayIndex = index;
+        return index;
+    }
+
+    public StayIntervalIndex getStayIndex() {
+        return stayIndex;
+    }
+
+    /**
+     * Loads a columnar snapshot of all wards and hospital stays for reports.
+     *
+     * @return the snapshot
+     * @throws FetchException if the tables cannot be read
+     */
+    public StaySnapshot loadStaySnapshot() {
+        restoreConnection();
+        try {
+            return StaySnapshotLoader.load(getConnection());
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+    }
+
+    /**
+     * Brings a snapshot up to date, reading only the stays that were added or changed since it was taken.
+     *
+     * @param snapshot the snapshot to refresh; it is not modified
+     * @return the new snapshot
+     * @throws FetchException if the tables cannot be read
+     */
+    public StaySnapshot refreshStaySnapshot(StaySnapshot snapshot) {
+        if (snapshot == null) {
+            throw new AssertionError("The snapshot cannot be null");
+        }
+        restoreConnection();
+        try {
+            return StaySnapshotLoader.refresh(snapshot, getConnection());
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+    }
+
+    /**
+     * Serves {@link #getWards()} and the unfiltered {@code getPatients(null, null, null, null)} from a local
+     * snapshot file, if one exists, and brings the file up to date in the background. Only new and changed
+     * patients are fetched for that (see {@link LocalSnapshot#reconcile(LocalSnapshot, Connection, Path)}).
+     * <p>
+     * Reads go to the database again once the reconciliation has finished or failed, or as soon as this service
+     * writes an object, so the snapshot only bridges the start of a client. An unreadable file is not served
+     * and rebuilt from scratch; if that fails as well, the read failure is a suppressed exception of the failure
+     * the future completes with.
+     * </p>
+     *
+     * @param file the snapshot file
+     * @return a future completed with the reconciled snapshot when the file has been rewritten
+     */
+    public CompletableFuture<LocalSnapshot> enableLocalSnapshot(Path file) {
+        if (file == null) {
+            throw new AssertionError("The snapshot file cannot be null");
+        }
+        LocalSnapshot previous = null;
+        IOException unreadable = null;
+        try {
+            if (LocalSnapshot.exists(file)) {
+                previous = LocalSnapshot.open(file);
+            }
+        } catch (IOException e) {
+            unreadable = e;
+        }
+        localSnapshot = previous;
+        IOException openFailure = unreadable;
+        LocalSnapshot base = previous;
+        CompletableFuture<LocalSnapshot> reconciled = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            // own connection, the connection of the service is not shared between threads
+            LocalSnapshot result = null;
+            Exception failure = null;
+            try (Connection connection = DriverManager.getConnection(getDB_URL(), getUSER(), getPASS())) {
+                result = LocalSnapshot.reconcile(base, connection, file);
+            } catch (SQLException | IOException | RuntimeException e) {
+                if (openFailure != null) {
+                    e.addSuppressed(openFailure);
+                }
+                failure = e;
+            }
+            localSnapshot = null;
+            if (failure == null) {
+                reconciled.complete(result);
+            } else {
+                reconciled.completeExceptionally(failure);
+            }
+        }, "pdbg-snapshot-reconcile");
+        thread.setDaemon(true);
+        thread.start();
+        return reconciled;
+    }
+
+    /**
+     * Returns the snapshot reads are currently served from.
+     *
+     * @return the snapshot, or null if reads go to the database
+     */
+    public LocalSnapshot getLocalSnapshot() {
+        return localSnapshot;
+    }
+
+    /**
+     * Returns the patients of a snapshot as a read-only list that creates a patient object when it is first
+     * accessed, so the cost of the call does not grow with the number of patients.
+     */
+    private List<Patient> snapshotPatients(LocalSnapshot snapshot) {
+        List<PatientRow> rows = snapshot.patients();
+        Patient[] patients = new Patient[rows.size()];
+        return new AbstractList<>() {
+            @Override
+            public Patient get(int index) {
+                if (patients[index] == null) {
+                    patients[index] = rows.get(index).toPatient(BasicDBServiceImpl.this);
+                }
+                return patients[index];
+            }
+
+            @Override
+            public int size() {
+                return patients.length;
+            }
+        };
+    }
+
+    /**
+     * Tells the query cache and the stay index about a write of this service; within a transaction not before it
+     * has been committed, so that a rollback leaves them untouched.
+     */
+    private void objectWritten(PersistentObject object) {
+        Transaction current = transaction;
+        if (current != null) {
+            current.written.add(object);
+        } else {
+            notifyWritten(object);
+        }
+    }
+
+    /**
+     * Tells the query cache and the stay index about a committed write. Storing a stay cascades to its patient,
+     * so a stay is passed on to the cache as a write of its patient.
+     */
+    private void notifyWritten(PersistentObject object) {
+        if (!object.isPersistent()) {
+            return;
+        }
+        localSnapshot = null;
+        StayIntervalIndex index = stayIndex;
+        if (index != null && object instanceof HospitalStay) {
+            index.put((HospitalStay) object);
+        }
+        PatientQueryCache cache = patientQueryCache;
+        if (cache != null) {
+            if (object instanceof HospitalStayImpl) {
+                object = ((HospitalStayImpl) object).getPatient();
+            }
+            if (object instanceof PatientImpl && object.isPersistent()) {
+                cache.onPatientWritten(PatientRow.of((PatientImpl) object));
+            }
+        }
+    }
+
+    /**
+     * Opens a change feed on the database of this service. The feed uses its own connection, so it does not
+     * interfere with the statements issued by the service. The caller is responsible for closing the feed.
+     *
+     * @return a started change feed
+     * @throws FetchException if the feed cannot connect to the database
+     */
+    public ChangeFeed openChangeFeed() {
+        ChangeFeed feed = new ChangeFeed(getDB_URL(), getUSER(), getPASS());
+        feed.start();
+        return feed;
+    }
+
+    /**
+     * Switches the service to write-behind mode. From now on {@link #store(PersistentObject)} only queues updates
+     * of objects that are already persistent and returns immediately; a background thread writes them in batched
+     * transactions. New objects are still inserted synchronously, because their ID is needed right away.
+     * Reads do not see queued updates before they are written, call {@link #flush()} where that matters.
+     *
+     * @param options      the queue parameters
+     * @param errorHandler receives the objects that could not be written
+     */
+    public synchronized void enableWriteBehind(WriteBehindOptions options, WriteBehindErrorHandler errorHandler) {
+        if (writeBehind != null) {
+            throw new AssertionError("Write-behind mode is already enabled");
+        }
+        writeBehind = new WriteBehindQueue(getDB_URL(), getUSER(), getPASS(), options, errorHandler);
+        // the queue commits on its own connection, independent of a transaction of this service
+        writeBehind.setWriteListener(this::notifyWritten);
+    }
+
+    /**
+     * Enables health checks of the connection. From now on the connection is validated with {@code isValid}
+     * before it is used after a pause, replaced if it is broken, and calls fail fast with a
+     * {@link de.hshn.mi.pdbg.basicservice.exception.DatabaseUnavailableException} while the database is
+     * unreachable instead of waiting for TCP timeouts. Reads that lose their connection are repeated on a new one
+     * within the time budget of the options; writes are not repeated. Calls in an explicit transaction or within
+     * {@link #withDeadline(long, Supplier)} do not have their connection aborted when the budget is used up: that
+     * would lose the transaction, and the deadline cancels its statements itself.
+     *
+     * @param options the timeouts and limits
+     * @return the health checks, e.g. to inspect the state of the circuit breaker
+     */
+    public synchronized ConnectionHealth enableHealthChecks(HealthOptions options) {
+        if (health != null) {
+            throw new AssertionError("Health checks are already enabled");
+        }
+        health = new ConnectionHealth(options, () -> DriverManager.getConnection(getDB_URL(), getUSER(), getPASS()),
+                () -> transaction != null || deadlines.remainingMillis() >= 0);
+        return health;
+    }
+
+    /**
+     * Returns the health checks of the connection.
+     *
+     * @return the health checks, or null if they are not enabled
+     */
+    public ConnectionHealth getConnectionHealth() {
+        return health;
+    }
+
+    /**
+     * Runs calls of this service with a deadline, e.g.
+     * {@code service.withDeadline(200, () -> service.getPatients(null, null, null, null))}. Every statement the
+     * calls send gets the remaining time as query timeout and is cancelled when the deadline passes, so a
+     * runaway query cannot hold the connection beyond the budget. Nested calls keep the earlier deadline.
+     * Statements of the write-behind queue and of publishers run on their own connections and are not bounded.
+     *
+     * @param timeoutMillis the time budget
+     * @param calls         the calls to run
+     * @param <T>           the result type
+     * @return the result of the calls
+     * @throws de.hshn.mi.pdbg.basicservice.exception.DeadlineExceededException if the budget was used up
+     */
+    public <T> T withDeadline(long timeoutMillis, Supplier<T> calls) {
+        return deadlines.call(timeoutMillis, calls);
+    }
+
+    /**
+     * Returns the deadlines of this service, e.g. to read the number of timeouts.
+     *
+     * @return the deadlines
+     */
+    public CallDeadlines getCallDeadlines() {
+        return deadlines;
+    }
+
+    /**
+     * Runs a read, repeating it on a new connection if the health checks are enabled and the connection broke.
+     */
+    private <T> T read(Supplier<T> read) {
+        ConnectionHealth checks = health;
+        return checks == null ? read.get() : checks.retryRead(read);
+    }
+
+    /**
+     * Runs a write within the time budget of the health checks, if they are enabled. Writes are not repeated.
+     */
+    private <T> T write(Supplier<T> write) {
+        ConnectionHealth checks = health;
+        return checks == null ? write.get() : checks.bounded(write);
+    }
+
+    /**
+     * The state of an explicit transaction: the persistence state of the objects written in it, to be restored
+     * on rollback, and the notifications of the query cache and the stay index that wait for the commit.
+     */
+    private static final class Transaction {
+        final Map<PersistentObject, long[]> undo = new IdentityHashMap<>();
+        final List<PersistentObject> written = new ArrayList<>();
+        final List<Long> removedStays = new ArrayList<>();
+    }
+
+    /**
+     * Starts a transaction with full durability, see {@link #begin(Durability)}.
+     */
+    public void begin() {
+        begin(Durability.FULL);
+    }
+
+    /**
+     * Starts a transaction. Until {@link #commit()} or {@link #rollback()}, all writes of this service run in it
+     * and become visible to other connections at once on commit. A series of stores then costs a single commit
+     * (and disk flush) instead of one per row. Writes of the write-behind queue are not part of the transaction,
+     * so {@link #store(PersistentObject)} writes directly while a transaction is running; the query cache and the
+     * local snapshot are bypassed, so that reads see the writes of the transaction and uncommitted rows are not
+     * cached. {@link #inTransaction(Durability, Supplier)} is the safer form, as it cannot leave a transaction open.
+     *
+     * @param durability whether the commit waits for the disk flush
+     * @throws StoreException if the transaction cannot be started
+     */
+    public void begin(Durability durability) {
+        if (durability == null) {
+            throw new AssertionError("The durability should not be null!");
+        }
+        if (transaction != null) {
+            throw new AssertionError("A transaction is already running");
+        }
+        restoreConnection();
+        Connection connection = this.conn;
+        try {
+            connection.setAutoCommit(false);
+            if (durability == Durability.RELAXED && SqlDialect.of(connection) == SqlDialect.POSTGRESQL) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL synchronous_commit = off");
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new StoreException(e);
+        }
+        transaction = new Transaction();
+    }
+
+    /**
+     * Commits the running transaction. The query cache and the stay index learn about its writes now.
+     *
+     * @throws StoreException if the commit fails; the transaction has been rolled back then
+     */
+    public void commit() {
+        Transaction current = endTransaction();
+        Connection connection = this.conn;
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            undo(current);
+            throw new StoreException(e);
+        } finally {
+            resetAutoCommit(connection);
+        }
+        StayIntervalIndex index = stayIndex;
+        if (index != null) {
+            current.removedStays.forEach(index::remove);
+        }
+        current.written.forEach(this::notifyWritten);
+    }
+
+    /**
+     * Rolls the running transaction back. Objects inserted in it are not persistent anymore and updated objects
+     * get their previous row version back, so they can be stored again.
+     *
+     * @throws StoreException if the database reports an error; the objects are reset anyway
+     */
+    public void rollback() {
+        Transaction current = endTransaction();
+        Connection connection = this.conn;
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            throw new StoreException(e);
+        } finally {
+            resetAutoCommit(connection);
+            undo(current);
+        }
+    }
+
+    /**
+     * Tells whether a transaction is running.
+     *
+     * @return true between {@link #begin()} and {@link #commit()} or {@link #rollback()}
+     */
+    public boolean isInTransaction() {
+        return transaction != null;
+    }
+
+    /**
+     * Runs calls of this service in a transaction with full durability, see
+     * {@link #inTransaction(Durability, Supplier)}.
+     *
+     * @param calls the calls to run
+     * @param <T>   the result type
+     * @return the result of the calls
+     */
+    public <T> T inTransaction(Supplier<T> calls) {
+        return inTransaction(Durability.FULL, calls);
+    }
+
+    /**
+     * Runs calls of this service in a transaction, e.g.
+     * {@code service.inTransaction(Durability.RELAXED, () -> service.storeAll(feed))}. The transaction is
+     * committed if the calls complete and rolled back if they throw. Within a running transaction the calls just
+     * join it.
+     *
+     * @param durability whether the commit waits for the disk flush
+     * @param calls      the calls to run
+     * @param <T>        the result type
+     * @return the result of the calls
+     */
+    public <T> T inTransaction(Durability durability, Supplier<T> calls) {
+        if (calls == null) {
+            throw new AssertionError("The calls should not be null!");
+        }
+        if (transaction != null) {
+            return calls.get();
+        }
+        begin(durability);
+        T result;
+        try {
+            result = calls.get();
+        } catch (RuntimeException | Error e) {
+            try {
+                rollback();
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        commit();
+        return result;
+    }
+
+    private static void resetAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            // the connection is broken; the next call replaces it
+        }
+    }
+
+    private Transaction endTransaction() {
+        Transaction current = transaction;
+        if (current == null) {
+            throw new AssertionError("No transaction is running");
+        }
+        transaction = null;
+        return current;
+    }
+
+    /**
+     * Remembers the persistence state of an object written in the running transaction, including the patient
+     * and ward a stay cascades to.
+     */
+    private void recordUndo(PersistentObject object) {
+        Transaction current = transaction;
+        if (current == null || object == null || current.undo.containsKey(object)) {
+            return;
+        }
+        current.undo.put(object, new long[] {object.getObjectID(), PersistentState.versionOf(object)});
+        if (object instanceof HospitalStay) {
+            recordUndo(((HospitalStay) object).getPatient());
+            recordUndo(((HospitalStay) object).getWard());
+        }
+    }
+
+    private static void undo(Transaction rolledBack) {
+        for (Map.Entry<PersistentObject, long[]> entry : rolledBack.undo.entrySet()) {
+            PersistentState.assign(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Blocks until every update queued in write-behind mode before this call has been written.
+     * Does nothing if write-behind mode is not enabled.
+     */
+    public void flush() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.flush();
+        }
     }
 
     @Override
@@ -102,47 +858,89 @@ public class BasicDBServiceImpl implements BasicDBService {
         if (id <= 0 || id == PersistentObject.INVALID_OBJECT_ID) {
             throw new AssertionError("The Hospital Stay ID should be greate than 0");
         }
-        String sqlDelete = "DELETE FROM Aufenthalt WHERE ID = ?";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sqlDelete)) {
-            pstmt.setLong(1, id);
-
-            int rowsDeleted = pstmt.executeUpdate();
-
-            if (rowsDeleted <= 0) {
-                throw new StoreException("Hospital Stay with id " + id + " does not exist");
+        int rowsDeleted = write(() -> {
+            try (PreparedStatement pstmt = getConnection().prepareStatement(DELETE_STAY)) {
+                pstmt.setLong(1, id);
+                return pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new FetchException(e);
             }
-        } catch (SQLException e) {
-            throw new FetchException(e);
+        });
+        if (rowsDeleted <= 0) {
+            throw new StoreException("Hospital Stay with id " + id + " does not exist");
+        }
+        Transaction current = transaction;
+        StayIntervalIndex index = stayIndex;
+        if (current != null) {
+            current.removedStays.add(id);
+        } else if (index != null) {
+            index.remove(id);
         }
     }
 
     @Override
     public List<Patient> getPatients(String lastname, String firstname, Date startDate, Date endDate) {
+        // inside a transaction, the snapshot and the cache know neither its writes nor may they keep its reads
+        boolean shared = transaction == null;
+        LocalSnapshot snapshot = localSnapshot;
+        if (shared && snapshot != null && lastname == null && firstname == null && startDate == null
+                && endDate == null) {
+            return snapshotPatients(snapshot);
+        }
+        PatientQueryCache cache = shared ? patientQueryCache : null;
+        List<PatientRow> rows;
+        if (cache == null) {
+            rows = read(() -> queryPatients(lastname, firstname, startDate, endDate));
+        } else {
+            PatientQueryCache.Filter filter = PatientQueryCache.filter(lastname, firstname, startDate, endDate);
+            rows = cache.get(filter);
+            if (rows == null) {
+                long generation = cache.currentGeneration();
+                rows = read(() -> queryPatients(lastname, firstname, startDate, endDate));
+                cache.put(filter, rows, generation);
+            }
+        }
+        List<Patient> patients = new ArrayList<>(rows.size());
+        for (PatientRow row : rows) {
+            patients.add(row.toPatient(this));
+        }
+        return patients;
+    }
+
+    /**
+     * Returns the query of {@link #getPatients(String, String, Date, Date)} for the filter values that are set.
+     *
+     * @param lastname  the last name pattern or null
+     * @param firstname the first name pattern or null
+     * @param startDate the earliest birth date or null
+     * @param endDate   the latest birth date or null
+     * @return the query; its parameters are the filter values that are not null, in this order
+     */
+    public static String patientsQuery(String lastname, String firstname, Date startDate, Date endDate) {
+        StringBuilder query = new StringBuilder(PATIENT_ROW_QUERY).append(" WHERE 1=1");
+        if (lastname != null) {
+            query.append(" AND Nachname LIKE ?");
+        }
+        if (firstname != null) {
+            query.append(" AND Vorname LIKE ?");
+        }
+        if (startDate != null) {
+            query.append(" AND Geburtsdatum >= ?");
+        }
+        if (endDate != null) {
+            query.append(" AND Geburtsdatum <= ?");
+        }
+        return query.toString();
+    }
+
+    private List<PatientRow> queryPatients(String lastname, String firstname, Date startDate, Date endDate) {
         restoreConnection();
         PreparedStatement pstmt = null;
         ResultSet resultSet = null;
-        List<Patient> patients = new ArrayList<>();
+        List<PatientRow> patients = new ArrayList<>();
 
         try {
-            StringBuilder queryBuilder = new StringBuilder("SELECT p.ID, Vorname, Nachname, Geburtsdatum, Krankenkasse,"
-                    + "Versicherungsnummer FROM Patient p ");
-            queryBuilder.append("JOIN Person pe ON p.ID = pe.ID WHERE 1=1");
-
-            if (lastname != null) {
-                queryBuilder.append(" AND Nachname LIKE ?");
-            }
-            if (firstname != null) {
-                queryBuilder.append(" AND Vorname LIKE ?");
-            }
-            if (startDate != null) {
-                queryBuilder.append(" AND Geburtsdatum >= ?");
-            }
-            if (endDate != null) {
-                queryBuilder.append(" AND Geburtsdatum <= ?");
-            }
-
-            pstmt = getConnection().prepareStatement(queryBuilder.toString());
+            pstmt = getConnection().prepareStatement(patientsQuery(lastname, firstname, startDate, endDate));
 
             int paramIndex = 1;
             if (lastname != null) {
@@ -167,10 +965,8 @@ public class BasicDBServiceImpl implements BasicDBService {
                 Date dateOfBirth = resultSet.getDate("Geburtsdatum");
                 String healthInsurance = resultSet.getString("Krankenkasse");
                 String insuranceNumber = resultSet.getString("Versicherungsnummer");
-                Patient patient = new PatientImpl(this, patientID, healthInsurance, insuranceNumber, lastName,
-                        firstName, dateOfBirth);
-
-                patients.add(patient);
+                patients.add(new PatientRow(patientID, firstName, lastName, dateOfBirth, healthInsurance,
+                        insuranceNumber, resultSet.getLong("Version")));
             }
         } catch (SQLException e) {
             throw new FetchException(e);
@@ -180,7 +976,11 @@ public class BasicDBServiceImpl implements BasicDBService {
     }
 
     @Override
-        public Patient getPatient(long patientID) {
+    public Patient getPatient(long patientID) {
+        return read(() -> fetchPatient(patientID));
+    }
+
+    private Patient fetchPatient(long patientID) {
         restoreConnection();
         if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
             throw new AssertionError("The Patient ID should be greate than 0");
@@ -190,10 +990,7 @@ public class BasicDBServiceImpl implements BasicDBService {
         Patient patient = null;
 
         try {
-            String query = "SELECT p.ID, Vorname, Nachname, Geburtsdatum, Krankenkasse," +
-                    "Versicherungsnummer FROM Patient p " + "JOIN Person pe ON p.ID = pe.ID WHERE p.ID = ?";
-
-            pstmt = getConnection().prepareStatement(query);
+            pstmt = getConnection().prepareStatement(PATIENT_QUERY);
             pstmt.setLong(1, patientID);
             resultSet = pstmt.executeQuery();
 
@@ -203,8 +1000,10 @@ public class BasicDBServiceImpl implements BasicDBService {
                 Date dateOfBirth = resultSet.getDate("Geburtsdatum");
                 String healthInsurance = resultSet.getString("Krankenkasse");
                 String insuranceNumber = resultSet.getString("Versicherungsnummer");
-                patient = new PatientImpl(this, patientID, healthInsurance, insuranceNumber,
+                PatientImpl loaded = new PatientImpl(this, patientID, healthInsurance, insuranceNumber,
                         lastName, firstName, dateOfBirth);
+                loaded.setVersion(resultSet.getLong("Version"));
+                patient = loaded;
 
             }
         } catch (SQLException e) {
@@ -213,8 +1012,194 @@ public class BasicDBServiceImpl implements BasicDBService {
         return patient;
     }
 
+    /**
+     * Returns the patient with the given insurance number, read through the index on the number. Numbers are not
+     * unique in the schema, because older data contains duplicates; if several patients share the number, the
+     * one stored first is returned.
+     *
+     * @param insuranceNumber the insurance number
+     * @return the patient, or null if no patient has the number
+     * @throws FetchException if the query fails
+     */
+    public Patient getPatientByInsuranceNumber(String insuranceNumber) {
+        if (insuranceNumber == null) {
+            throw new AssertionError("The insurance number should not be null!");
+        }
+        return read(() -> {
+            restoreConnection();
+            try (PreparedStatement pstmt = getConnection().prepareStatement(INSURANCE_NUMBER_QUERY)) {
+                pstmt.setString(1, insuranceNumber);
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    return resultSet.next() ? readPatient(resultSet) : null;
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+        });
+    }
+
+    /**
+     * Tells which of the given insurance numbers are already used by a patient. On PostgreSQL and HSQLDB the
+     * numbers are bound as one array parameter, so thousands of numbers are checked with a single query;
+     * elsewhere they are sent in lists of {@link #GRAPH_BATCH_SIZE}.
+     *
+     * @param insuranceNumbers the numbers to check
+     * @return the numbers that exist in the database
+     * @throws FetchException if the query fails
+     */
+    public Set<String> findExistingInsuranceNumbers(Collection<String> insuranceNumbers) {
+        if (insuranceNumbers == null) {
+            throw new AssertionError("The insurance numbers should not be null!");
+        }
+        List<String> numbers = new ArrayList<>(new LinkedHashSet<>(insuranceNumbers));
+        numbers.remove(null);
+        if (numbers.isEmpty()) {
+            return new HashSet<>();
+        }
+        return read(() -> {
+            restoreConnection();
+            Set<String> existing = new HashSet<>();
+            try {
+                SqlDialect dialect = dialect();
+                if (dialect == SqlDialect.OTHER) {
+                    for (int from = 0; from < numbers.size(); from += GRAPH_BATCH_SIZE) {
+                        List<String> chunk = numbers.subList(from, Math.min(from + GRAPH_BATCH_SIZE, numbers.size()));
+                        try (PreparedStatement pstmt = getConnection().prepareStatement(
+                                existingInsuranceNumbersQuery(dialect, chunk.size()))) {
+                            for (int i = 0; i < chunk.size(); i++) {
+                                pstmt.setString(i + 1, chunk.get(i));
+                            }
+                            readStrings(pstmt, existing);
+                        }
+                    }
+                    return existing;
+                }
+                Connection connection = getConnection();
+                Array array = connection.createArrayOf("VARCHAR", numbers.toArray());
+                try (PreparedStatement pstmt = connection.prepareStatement(existingInsuranceNumbersQuery(dialect, 1))) {
+                    pstmt.setArray(1, array);
+                    readStrings(pstmt, existing);
+                } finally {
+                    array.free();
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+            return existing;
+        });
+    }
+
+    /**
+     * Returns the query of {@link #findExistingInsuranceNumbers(Collection)}: on PostgreSQL and HSQLDB with the
+     * numbers as one array parameter, elsewhere with a list of parameters.
+     *
+     * @param dialect the database the query is sent to
+     * @param count   the number of parameters of the list; ignored for the array form
+     * @return the query
+     */
+    public static String existingInsuranceNumbersQuery(SqlDialect dialect, int count) {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            return EXISTING_INSURANCE_NUMBERS_QUERY + "= ANY (?)";
+        } else if (dialect == SqlDialect.HSQLDB) {
+            return EXISTING_INSURANCE_NUMBERS_QUERY + "IN (UNNEST(?))";
+        }
+        return EXISTING_INSURANCE_NUMBERS_QUERY + "IN (" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    private static void readStrings(PreparedStatement pstmt, Set<String> target) throws SQLException {
+        try (ResultSet resultSet = pstmt.executeQuery()) {
+            while (resultSet.next()) {
+                target.add(resultSet.getString(1));
+            }
+        }
+    }
+
+    /**
+     * Loads the insurance numbers of all patients into a Bloom filter for {@link #importPatients}.
+     *
+     * @param falsePositiveRate the share of new numbers the filter may report as possibly known, e.g. 0.01
+     * @return the filter
+     * @throws FetchException if the numbers cannot be read
+     */
+    public InsuranceNumberFilter loadInsuranceNumberFilter(double falsePositiveRate) {
+        return read(() -> {
+            restoreConnection();
+            try {
+                return InsuranceNumberFilter.load(getConnection(), falsePositiveRate);
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+        });
+    }
+
+    /**
+     * Stores new patients unless their insurance number is already taken, by a stored patient or by an earlier
+     * patient of the collection. With a filter, only the numbers the filter reports as possibly known are looked
+     * up, with one {@link #findExistingInsuranceNumbers(Collection)} query; all others are new for sure. The
+     * numbers of the stored patients are added to the filter, so one filter serves all batches of an import.
+     * Patients without insurance number are always stored. Concurrent imports of the same number are not
+     * detected, because the number is not unique in the schema.
+     *
+     * @param patients the new patients
+     * @param known    the numbers known to exist, from {@link #loadInsuranceNumberFilter(double)}, or null to
+     *                 look up every number
+     * @return the patients that were not stored because their number is taken
+     * @throws StoreException if the patients cannot be stored
+     */
+    public List<Patient> importPatients(Collection<Patient> patients, InsuranceNumberFilter known) {
+        if (patients == null) {
+            throw new AssertionError("The patients should not be null!");
+        }
+        Set<String> batchNumbers = new HashSet<>();
+        Set<String> lookups = new HashSet<>();
+        List<Patient> candidates = new ArrayList<>();
+        List<Patient> duplicates = new ArrayList<>();
+        for (Patient patient : patients) {
+            if (patient == null || patient.isPersistent()) {
+                throw new AssertionError("Only new patients can be imported");
+            }
+            String number = patient.getInsuranceNumber();
+            if (number != null && !batchNumbers.add(number)) {
+                duplicates.add(patient);
+                continue;
+            }
+            candidates.add(patient);
+            if (number != null && (known == null || known.mightContain(number))) {
+                lookups.add(number);
+            }
+        }
+        Set<String> existing = lookups.isEmpty() ? lookups : findExistingInsuranceNumbers(lookups);
+        List<Patient> stored = new ArrayList<>();
+        for (Patient patient : candidates) {
+            if (patient.getInsuranceNumber() != null && existing.contains(patient.getInsuranceNumber())) {
+                duplicates.add(patient);
+            } else {
+                stored.add(patient);
+            }
+        }
+        storeAll(stored);
+        if (known != null) {
+            for (Patient patient : stored) {
+                known.add(patient.getInsuranceNumber());
+            }
+        }
+        return duplicates;
+    }
+
     @Override
     public List<Ward> getWards() {
+        LocalSnapshot snapshot = localSnapshot;
+        if (snapshot != null && transaction == null) {
+            List<Ward> wards = new ArrayList<>();
+            for (WardRow row : snapshot.wards()) {
+                wards.add(row.toWard(this));
+            }
+            return wards;
+        }
+        return read(this::fetchWards);
+    }
+
+    private List<Ward> fetchWards() {
         restoreConnection();
         try {
             if (getConnection().isClosed()) {
@@ -230,9 +1215,7 @@ public class BasicDBServiceImpl implements BasicDBService {
 
         try {
             connection = getConnection();
-            String query = "SELECT ID, Bezeichnung, Bettenzahl FROM Station";
-
-            pstmt = connection.prepareStatement(query);
+            pstmt = connection.prepareStatement(WARDS_QUERY);
             resultSet = pstmt.executeQuery();
 
             while (resultSet.next()) {
@@ -240,7 +1223,8 @@ public class BasicDBServiceImpl implements BasicDBService {
                 String name = resultSet.getString("Bezeichnung");
                 int numberOfBeds = resultSet.getInt("Bettenzahl");
 
-                Ward ward = new WardImpl(this, wardID, numberOfBeds, name);
+                WardImpl ward = new WardImpl(this, wardID, numberOfBeds, name);
+                ward.setVersion(resultSet.getLong("Version"));
                 wards.add(ward);
             }
         } catch (SQLException e) {
@@ -252,6 +1236,10 @@ public class BasicDBServiceImpl implements BasicDBService {
 
     @Override
     public Ward getWard(long wardID) {
+        return read(() -> fetchWard(wardID));
+    }
+
+    private Ward fetchWard(long wardID) {
         restoreConnection();
         if (wardID <= 0 || wardID == PersistentObject.INVALID_OBJECT_ID) {
             throw new AssertionError("The Ward ID should be greate than 0");
@@ -263,125 +1251,575 @@ public class BasicDBServiceImpl implements BasicDBService {
 
         try {
             connection = getConnection();
-            String query = "SELECT Bezeichnung, Bettenzahl FROM Station WHERE ID = ?";
-            pstmt = connection.prepareStatement(query);
+            pstmt = connection.prepareStatement(WARD_QUERY);
             pstmt.setLong(1, wardID);
             resultSet = pstmt.executeQuery();
 
             if (resultSet.next()) {
                 String name = resultSet.getString("Bezeichnung");
                 int numberOfBeds = resultSet.getInt("Bettenzahl");
-                ward = new WardImpl(this, wardID, numberOfBeds, name);
+                WardImpl loaded = new WardImpl(this, wardID, numberOfBeds, name);
+                loaded.setVersion(resultSet.getLong("Version"));
+                ward = loaded;
+            }
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+        return ward;
+    }
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID) {
+        restoreConnection();
+        if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
+            throw new AssertionError("The patient ID should be greate than 0");
+        }
+
+        return getHospitalStays(patientID, null, null);
+    }
+    /**
+     * Checks if a patient exists with the given ID.
+     *
+     * @param patientID the ID of the patient to check
+     * @return true if the patient exists, false otherwise
+     * @throws SQLException if an SQL exception occurs
+     */
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID, Date startDate, Date endDate) {
+        return getHospitalStays(patientID, startDate, endDate, StayRangeMode.CONTAINED);
+    }
+
+    /**
+     * Returns the hospital stays of a patient within a date range.
+     * <p>
+     * With {@link StayRangeMode#OVERLAPPING} every stay that shares at least one day with the range is returned,
+     * including open stays. On PostgreSQL the range is compared as {@code daterange}, which is answered by the
+     * GiST index created by {@link de.hshn.mi.pdbg.basicservice.DBCreator}; elsewhere the equivalent comparison
+     * of the date columns uses the {@code (PID, Aufnahmedatum, Entlassdatum)} index.
+     * </p>
+     *
+     * @param patientID the ID of the patient
+     * @param startDate the first day of the range or null
+     * @param endDate   the last day of the range or null
+     * @param mode      how the range is applied
+     * @return the stays
+     * @throws FetchException if the query fails
+     */
+    public List<HospitalStay> getHospitalStays(long patientID, Date startDate, Date endDate, StayRangeMode mode) {
+        return read(() -> fetchHospitalStays(patientID, startDate, endDate, mode));
+    }
+
+    /**
+     * Returns the query of {@link #getHospitalStays(long, Date, Date, StayRangeMode)}. Its first parameter is the
+     * patient ID, the date parameters follow in the order they are added to {@code parameters}.
+     *
+     * @param dialect    the database the query is sent to
+     * @param mode       how the stays have to lie within the period
+     * @param startDate  the start of the period or null
+     * @param endDate    the end of the period or null
+     * @param parameters receives the date parameters after the patient ID; null stands for an open bound
+     * @return the query
+     */
+    public static String hospitalStaysQuery(SqlDialect dialect, StayRangeMode mode, Date startDate, Date endDate,
+                                            List<Date> parameters) {
+        StringBuilder query = new StringBuilder(STAY_GRAPH_QUERY);
+        query.append(" WHERE a.PID = ?");
+        if (mode == StayRangeMode.CONTAINED) {
+            if (startDate != null) {
+                query.append(" AND a.Aufnahmedatum >= ?");
+                parameters.add(startDate);
+            }
+            if (endDate != null) {
+                query.append(" AND a.Entlassdatum <= ?");
+                parameters.add(endDate);
+            }
+        } else if (startDate != null || endDate != null) {
+            if (dialect == SqlDialect.POSTGRESQL) {
+                query.append(" AND daterange(a.Aufnahmedatum, a.Entlassdatum, '[]')"
+                        + " && daterange(CAST(? AS date), CAST(? AS date), '[]')");
+                parameters.add(startDate);
+                parameters.add(endDate);
+            } else {
+                if (endDate != null) {
+                    query.append(" AND a.Aufnahmedatum <= ?");
+                    parameters.add(endDate);
+                }
+                if (startDate != null) {
+                    query.append(" AND (a.Entlassdatum IS NULL OR a.Entlassdatum >= ?)");
+                    parameters.add(startDate);
+                }
+            }
+        }
+        return query.toString();
+    }
+
+    private List<HospitalStay> fetchHospitalStays(long patientID, Date startDate, Date endDate, StayRangeMode mode) {
+        restoreConnection();
+        if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
+            throw new AssertionError("The patient ID should be greate than 0");
+        }
+        if (endDate != null && startDate != null && startDate.after(endDate)) {
+            throw new AssertionError("The start date cannot be later than the enddate!");
+        }
+        if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
+            throw new AssertionError("The patient ID should be greate than 0");
+        }
+
+        if (mode == null) {
+            throw new AssertionError("The range mode should not be null!");
+        }
+
+        List<HospitalStay> hospitalStays = new ArrayList<>();
+        List<Date> parameters = new ArrayList<>();
+        String query = hospitalStaysQuery(dialect(), mode, startDate, endDate, parameters);
+
+        // one query for the stays, their ward and their patient instead of a getWard and getPatient per stay
+        try (PreparedStatement pstmt = getConnection().prepareStatement(query)) {
+            pstmt.setLong(1, patientID);
+            int parameterIndex = 2;
+            for (Date date : parameters) {
+                if (date != null) {
+                    pstmt.setDate(parameterIndex++, new java.sql.Date(date.getTime()));
+                } else {
+                    pstmt.setNull(parameterIndex++, java.sql.Types.DATE);
+                }
+            }
+
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                PatientImpl patient = null;
+                Map<Long, WardImpl> wards = new HashMap<>();
+                while (resultSet.next()) {
+                    if (patient == null) {
+                        patient = readPatient(resultSet);
+                    }
+                    hospitalStays.add(readHospitalStay(resultSet, patient, wards));
+                }
             }
         } catch (SQLException e) {
             throw new FetchException(e);
         }
-        return ward;
+
+        return hospitalStays;
     }
 
-    @Override
-    public List<HospitalStay> getHospitalStays(long patientID) {
-        restoreConnection();
+    /**
+     * Loads a patient together with all of its hospital stays and their wards in a single query.
+     * The stays are available through {@link Patient#getHospitalStays()}; stays on the same ward share the
+     * ward object.
+     *
+     * @param patientID the ID of the patient
+     * @return the patient, or null if there is no patient with this ID
+     * @throws FetchException if the query fails
+     */
+    public Patient getPatientGraph(long patientID) {
         if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
-            throw new AssertionError("The patient ID should be greate than 0");
+            throw new AssertionError("The Patient ID should be greate than 0");
         }
+        return getPatientGraphs(List.of(patientID)).get(patientID);
+    }
 
-        List<HospitalStay> hospitalStays = new ArrayList<>();
-        Connection connection = null;
-        PreparedStatement pstmt = null;
-        ResultSet resultSet = null;
+    /**
+     * Loads many patients together with their hospital stays and wards, using one query per
+     * {@value #GRAPH_BATCH_SIZE} IDs. Within the result, every ward is represented by a single object.
+     *
+     * @param patientIDs the IDs of the patients
+     * @return the patients found, by ID, in the order of the given IDs
+     * @throws FetchException if the query fails
+     */
+    public Map<Long, Patient> getPatientGraphs(Collection<Long> patientIDs) {
+        return read(() -> fetchPatientGraphs(patientIDs));
+    }
 
+    private Map<Long, Patient> fetchPatientGraphs(Collection<Long> patientIDs) {
+        if (patientIDs == null) {
+            throw new AssertionError("The patient IDs should not be null!");
+        }
+        restoreConnection();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(patientIDs));
+        Map<Long, PatientImpl> loaded = new HashMap<>();
+        Map<Long, WardImpl> wards = new HashMap<>();
         try {
-            connection = getConnection();
-
-            String query = "SELECT ID, PID, SID, Aufnahmedatum, Entlassdatum FROM Aufenthalt WHERE PID = ?";
-
-            pstmt = connection.prepareStatement(query);
-            pstmt.setLong(1, patientID);
-
-            resultSet = pstmt.executeQuery();
-
-            while (resultSet.next()) {
-                long stayID = resultSet.getLong("ID");
-                long wardID = resultSet.getLong("SID");
-                long patientIDFromQuery = resultSet.getLong("PID");
-                Date admissionDate = resultSet.getDate("Aufnahmedatum");
-                Date dischargeDate = resultSet.getDate("Entlassdatum");
-                HospitalStay hospitalStay = new HospitalStayImpl(this, stayID, admissionDate,
-                        dischargeDate, getWard(wardID), getPatient(patientIDFromQuery));
-                hospitalStays.add(hospitalStay);
+            for (int from = 0; from < ids.size(); from += GRAPH_BATCH_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + GRAPH_BATCH_SIZE, ids.size()));
+                try (PreparedStatement pstmt = getConnection().prepareStatement(patientGraphQuery(chunk.size()))) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setLong(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = pstmt.executeQuery()) {
+                        while (resultSet.next()) {
+                            long patientID = resultSet.getLong("PatientID");
+                            PatientImpl patient = loaded.get(patientID);
+                            if (patient == null) {
+                                patient = readPatient(resultSet);
+                                loaded.put(patientID, patient);
+                            }
+                            resultSet.getLong("StayID");
+                            if (!resultSet.wasNull()) {
+                                readHospitalStay(resultSet, patient, wards);
+                            }
+                        }
+                    }
+                }
             }
         } catch (SQLException e) {
             throw new FetchException(e);
         }
-
-        return hospitalStays;
+        Map<Long, Patient> patients = new LinkedHashMap<>();
+        for (Long id : ids) {
+            PatientImpl patient = loaded.get(id);
+            if (patient != null) {
+                patients.put(id, patient);
+            }
+        }
+        return patients;
     }
+
     /**
-     * Checks if a patient exists with the given ID.
+     * Returns the census of a ward: who is currently admitted, i.e. every stay without discharge date together
+     * with its patient, ordered by admission date. One query over the open stays of the ward, so the cost depends
+     * on the occupancy of the ward, not on the number of patients or past stays.
      *
-     * @param patientID the ID of the patient to check
-     * @return true if the patient exists, false otherwise
-     * @throws SQLException if an SQL exception occurs
+     * @param ward the ward, or null for the census of all wards, ordered by ward and admission date
+     * @return the open stays; {@link HospitalStay#getPatient()} and {@link HospitalStay#getAdmissionDate()} give
+     *         the admitted patients and their admission dates
+     * @throws AssertionError if the ward is not persistent
+     * @throws FetchException if the query fails
      */
-
-    @Override
-    public List<HospitalStay> getHospitalStays(long patientID, Date startDate, Date endDate) {
-        restoreConnection();
-        if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
-            throw new AssertionError("The patient ID should be greate than 0");
+    public List<HospitalStay> getWardCensus(Ward ward) {
+        if (ward != null && !ward.isPersistent()) {
+            throw new AssertionError("The specified ward must be persistent");
         }
-        if (endDate != null && startDate != null && startDate.after(endDate)) {
-            throw new AssertionError("The start date cannot be later than the enddate!");
+        return read(() -> {
+            restoreConnection();
+            List<HospitalStay> stays = new ArrayList<>();
+            Map<Long, PatientImpl> patients = new HashMap<>();
+            Map<Long, WardImpl> wards = new HashMap<>();
+            try (PreparedStatement pstmt = getConnection().prepareStatement(ward != null ? WARD_CENSUS_QUERY
+                    : CENSUS_QUERY)) {
+                if (ward != null) {
+                    pstmt.setLong(1, ward.getObjectID());
+                }
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        PatientImpl patient = patients.get(resultSet.getLong("PatientID"));
+                        if (patient == null) {
+                            patient = readPatient(resultSet);
+                            if (patient != null) {
+                                patients.put(patient.getObjectID(), patient);
+                            }
+                        }
+                        stays.add(readHospitalStay(resultSet, patient, wards));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+            return stays;
+        });
+    }
+
+    /**
+     * Publishes the census of {@link #getWardCensus(Ward)} row by row, e.g. to render a handover screen of all
+     * wards while it is being read. Rows are only fetched as the subscriber requests them; see
+     * {@link CursorPublisher}.
+     *
+     * @param ward the ward, or null for all wards
+     * @return a publisher; every subscription runs the query on its own connection
+     */
+    public Flow.Publisher<HospitalStay> publishWardCensus(Ward ward) {
+        if (ward != null && !ward.isPersistent()) {
+            throw new AssertionError("The specified ward must be persistent");
         }
+        long wardID = ward != null ? ward.getObjectID() : PersistentObject.INVALID_OBJECT_ID;
+        return new CursorPublisher<>(getDB_URL(), getUSER(), getPASS(),
+                ward != null ? WARD_CENSUS_QUERY : CENSUS_QUERY, statement -> {
+                    if (ward != null) {
+                        statement.setLong(1, wardID);
+                    }
+                }, resultSet -> readHospitalStay(resultSet, readPatient(resultSet), new HashMap<>()));
+    }
+
+    /**
+     * Publishes all hospital stays with their patient and ward, ordered by ID, without loading them all into
+     * memory. Rows are only fetched as the subscriber requests them; see {@link CursorPublisher}.
+     *
+     * @return a publisher; every subscription runs the query on its own connection
+     */
+    public Flow.Publisher<HospitalStay> publishHospitalStays() {
+        return new CursorPublisher<>(getDB_URL(), getUSER(), getPASS(), STAY_GRAPH_QUERY + " ORDER BY a.ID",
+                statement -> { }, resultSet -> readHospitalStay(resultSet, readPatient(resultSet), new HashMap<>()));
+    }
+
+    /**
+     * Publishes the patients matching the filter of {@link #getPatients(String, String, Date, Date)}, ordered by
+     * ID, without loading them all into memory. Rows are only fetched as the subscriber requests them.
+     *
+     * @param lastname  the last name pattern or null
+     * @param firstname the first name pattern or null
+     * @param startDate the earliest birth date or null
+     * @param endDate   the latest birth date or null
+     * @return a publisher; every subscription runs the query on its own connection
+     */
+    public Flow.Publisher<Patient> publishPatients(String lastname, String firstname, Date startDate, Date endDate) {
+        StringBuilder query = patientQuery(lastname, firstname, startDate, endDate);
+        query.append(" ORDER BY p.ID");
+        return new CursorPublisher<>(getDB_URL(), getUSER(), getPASS(), query.toString(),
+                statement -> bindPatientFilter(statement, lastname, firstname, startDate, endDate), this::readPatient);
+    }
+
+    /**
+     * Returns a window of the patients matching the filter of {@link #getPatients(String, String, Date, Date)},
+     * sorted by the database. Only the rows of the window are transferred, so the cost of a call depends on the
+     * window and, for orders not backed by an index, on the number of matching rows, but not on loading them all.
+     * Use it with {@link VirtualRows} to back a virtual table.
+     *
+     * @param lastname  the last name pattern or null
+     * @param firstname the first name pattern or null
+     * @param startDate the earliest birth date or null
+     * @param endDate   the latest birth date or null
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @param offset    the number of rows to skip
+     * @param limit     the maximum number of rows to return
+     * @return the patients of the window
+     * @throws FetchException if the query fails
+     */
+    public List<Patient> getPatients(String lastname, String firstname, Date startDate, Date endDate,
+                                     PatientSort sort, SortDirection direction, int offset, int limit) {
+        checkWindow(sort, direction, offset, limit);
+        return read(() -> {
+            restoreConnection();
+            List<Patient> patients = new ArrayList<>();
+            String query = patientPageQuery(lastname, firstname, startDate, endDate, sort, direction);
+            try (PreparedStatement pstmt = getConnection().prepareStatement(query)) {
+                int paramIndex = bindPatientFilter(pstmt, lastname, firstname, startDate, endDate);
+                pstmt.setInt(paramIndex++, limit);
+                pstmt.setInt(paramIndex, offset);
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        patients.add(readPatient(resultSet));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+            return patients;
+        });
+    }
+
+    /**
+     * Returns a window of all wards, sorted by the database.
+     *
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @param offset    the number of rows to skip
+     * @param limit     the maximum number of rows to return
+     * @return the wards of the window
+     * @throws FetchException if the query fails
+     */
+    public List<Ward> getWards(WardSort sort, SortDirection direction, int offset, int limit) {
+        checkWindow(sort, direction, offset, limit);
+        return read(() -> {
+            restoreConnection();
+            List<Ward> wards = new ArrayList<>();
+            try (PreparedStatement pstmt = getConnection().prepareStatement(wardPageQuery(sort, direction))) {
+                pstmt.setInt(1, limit);
+                pstmt.setInt(2, offset);
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        WardImpl ward = new WardImpl(this, resultSet.getLong("ID"), resultSet.getInt("Bettenzahl"),
+                                resultSet.getString("Bezeichnung"));
+                        ward.setVersion(resultSet.getLong("Version"));
+                        wards.add(ward);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+            return wards;
+        });
+    }
+
+    /**
+     * Returns a window of the hospital stays of a patient, sorted by the database. The stays of the window share
+     * one patient object, and stays on the same ward share the ward object.
+     *
+     * @param patientID the ID of the patient
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @param offset    the number of rows to skip
+     * @param limit     the maximum number of rows to return
+     * @return the stays of the window
+     * @throws FetchException if the query fails
+     */
+    public List<HospitalStay> getHospitalStays(long patientID, HospitalStaySort sort, SortDirection direction,
+                                               int offset, int limit) {
         if (patientID <= 0 || patientID == PersistentObject.INVALID_OBJECT_ID) {
             throw new AssertionError("The patient ID should be greate than 0");
         }
+        checkWindow(sort, direction, offset, limit);
+        return read(() -> {
+            restoreConnection();
+            List<HospitalStay> stays = new ArrayList<>();
+            Map<Long, WardImpl> wards = new HashMap<>();
+            try (PreparedStatement pstmt = getConnection().prepareStatement(stayPageQuery(sort, direction))) {
+                pstmt.setLong(1, patientID);
+                pstmt.setInt(2, limit);
+                pstmt.setInt(3, offset);
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    PatientImpl patient = null;
+                    while (resultSet.next()) {
+                        if (patient == null) {
+                            patient = readPatient(resultSet);
+                        }
+                        stays.add(readHospitalStay(resultSet, patient, wards));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+            return stays;
+        });
+    }
 
-        List<HospitalStay> hospitalStays = new ArrayList<>();
-        Connection connection = null;
-        PreparedStatement pstmt = null;
-        ResultSet resultSet = null;
+    /**
+     * Returns the query of {@link #getPatientGraphs(Collection)} for a list of patient IDs.
+     *
+     * @param count the number of IDs, at most {@link #GRAPH_BATCH_SIZE}
+     * @return the query with one parameter per ID
+     */
+    public static String patientGraphQuery(int count) {
+        return PATIENT_GRAPH_QUERY + " WHERE p.ID IN (" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
 
-        try {
-            connection = getConnection();
-            StringBuilder queryBuilder = new StringBuilder();
-            queryBuilder.append("SELECT ID, PID, SID, Aufnahmedatum, Entlassdatum FROM Aufenthalt WHERE PID = ?");
-            if (startDate != null) {
-                queryBuilder.append(" AND Aufnahmedatum >= ?");
-            }
-            if (endDate != null) {
-                queryBuilder.append(" AND Entlassdatum <= ?");
-            }
+    /**
+     * Returns the query of {@link #getPatients(String, String, Date, Date, PatientSort, SortDirection, int, int)}.
+     *
+     * @param lastname  the last name pattern or null
+     * @param firstname the first name pattern or null
+     * @param startDate the earliest birth date or null
+     * @param endDate   the latest birth date or null
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @return the query; its parameters are the filter values that are not null, the limit and the offset
+     */
+    public static String patientPageQuery(String lastname, String firstname, Date startDate, Date endDate,
+                                          PatientSort sort, SortDirection direction) {
+        return patientQuery(lastname, firstname, startDate, endDate).append(sort.orderBy(direction))
+                .append(" LIMIT ? OFFSET ?").toString();
+    }
 
-            pstmt = connection.prepareStatement(queryBuilder.toString());
-            pstmt.setLong(1, patientID);
+    /**
+     * Returns the query of {@link #getWards(WardSort, SortDirection, int, int)}.
+     *
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @return the query; its parameters are the limit and the offset
+     */
+    public static String wardPageQuery(WardSort sort, SortDirection direction) {
+        return WARDS_QUERY + sort.orderBy(direction) + " LIMIT ? OFFSET ?";
+    }
 
-            int parameterIndex = 2;
-            if (startDate != null) {
-                pstmt.setDate(parameterIndex++, new java.sql.Date(startDate.getTime()));
-            }
-            if (endDate != null) {
-                pstmt.setDate(parameterIndex++, new java.sql.Date(endDate.getTime()));
-            }
+    /**
+     * Returns the query of {@link #getHospitalStays(long, HospitalStaySort, SortDirection, int, int)}.
+     *
+     * @param sort      the sort column
+     * @param direction the sort direction
+     * @return the query; its parameters are the patient ID, the limit and the offset
+     */
+    public static String stayPageQuery(HospitalStaySort sort, SortDirection direction) {
+        return STAY_GRAPH_QUERY + " WHERE a.PID = ?" + sort.orderBy(direction) + " LIMIT ? OFFSET ?";
+    }
 
-            resultSet = pstmt.executeQuery();
+    private static void checkWindow(Object sort, SortDirection direction, int offset, int limit) {
+        if (sort == null || direction == null) {
+            throw new AssertionError("The sort column and direction should not be null!");
+        }
+        if (offset < 0 || limit <= 0) {
+            throw new AssertionError("The offset cannot be negative and the limit has to be greater than 0");
+        }
+    }
 
-            while (resultSet.next()) {
-                long stayID = resultSet.getLong("ID");
-                long wardID = resultSet.getLong("SID");
-                Date admissionDate = resultSet.getDate("Aufnahmedatum");
-                Date dischargeDate = resultSet.getDate("Entlassdatum");
+    /**
+     * Returns the patient columns of the graph queries with the {@code WHERE} clause of the given filter.
+     */
+    private static StringBuilder patientQuery(String lastname, String firstname, Date startDate, Date endDate) {
+        StringBuilder query = new StringBuilder(PATIENT_COLUMNS);
+        // Person first: HSQLDB only reads the rows of a sorted page from an index of the first table
+        query.append(" FROM Person pe JOIN Patient p ON p.ID = pe.ID WHERE 1=1");
+        if (lastname != null) {
+            query.append(" AND pe.Nachname LIKE ?");
+        }
+        if (firstname != null) {
+            query.append(" AND pe.Vorname LIKE ?");
+        }
+        if (startDate != null) {
+            query.append(" AND pe.Geburtsdatum >= ?");
+        }
+        if (endDate != null) {
+            query.append(" AND pe.Geburtsdatum <= ?");
+        }
+        return query;
+    }
 
-                HospitalStay hospitalStay = new HospitalStayImpl(this, stayID, admissionDate,
-                        dischargeDate, getWard(wardID), getPatient(patientID));
-                hospitalStays.add(hospitalStay);
-            }
-        } catch (SQLException e) {
-            throw new FetchException(e);
+    /**
+     * Binds the filter of {@link #patientQuery(String, String, Date, Date)}.
+     *
+     * @return the index of the next parameter
+     */
+    private static int bindPatientFilter(PreparedStatement statement, String lastname, String firstname,
+                                         Date startDate, Date endDate) throws SQLException {
+        int paramIndex = 1;
+        if (lastname != null) {
+            statement.setString(paramIndex++, lastname);
         }
+        if (firstname != null) {
+            statement.setString(paramIndex++, firstname);
+        }
+        if (startDate != null) {
+            statement.setDate(paramIndex++, new java.sql.Date(startDate.getTime()));
+        }
+        if (endDate != null) {
+            statement.setDate(paramIndex++, new java.sql.Date(endDate.getTime()));
+        }
+        return paramIndex;
+    }
 
-        return hospitalStays;
+    /**
+     * Reads the patient columns of a graph query.
+     *
+     * @return the patient, or null if the row has no patient
+     */
+    private PatientImpl readPatient(ResultSet resultSet) throws SQLException {
+        long patientID = resultSet.getLong("PatientID");
+        if (resultSet.wasNull()) {
+            return null;
+        }
+        PatientImpl patient = new PatientImpl(this, patientID,
+                resultSet.getString("Krankenkasse"), resultSet.getString("Versicherungsnummer"),
+                resultSet.getString("Nachname"), resultSet.getString("Vorname"), resultSet.getDate("Geburtsdatum"));
+        patient.setVersion(resultSet.getLong("PatientVersion"));
+        return patient;
+    }
+
+    /**
+     * Reads the stay and ward columns of a graph query. A stay without a ward is read with a null ward.
+     */
+    private HospitalStayImpl readHospitalStay(ResultSet resultSet, PatientImpl patient, Map<Long, WardImpl> wards)
+            throws SQLException {
+        long wardID = resultSet.getLong("WardID");
+        boolean hasWard = !resultSet.wasNull();
+        WardImpl ward = hasWard ? wards.get(wardID) : null;
+        if (hasWard && ward == null) {
+            ward = new WardImpl(this, wardID, resultSet.getInt("Bettenzahl"), resultSet.getString("Bezeichnung"));
+            ward.setVersion(resultSet.getLong("WardVersion"));
+            wards.put(wardID, ward);
+        }
+        HospitalStayImpl hospitalStay = new HospitalStayImpl(this, resultSet.getLong("StayID"),
+                resultSet.getDate("Aufnahmedatum"), resultSet.getDate("Entlassdatum"), ward, patient);
+        hospitalStay.setVersion(resultSet.getLong("StayVersion"));
+        return hospitalStay;
     }
 
     /**
@@ -390,36 +1828,59 @@ public class BasicDBServiceImpl implements BasicDBService {
      * username, and password.
      * This method ensures that the database connection is available for use and prevents
      * SQLExceptions due to closed connections.
+     * With {@link #enableHealthChecks(HealthOptions)} an open connection is validated as well, see
+     * {@link ConnectionHealth#ensureValid(Connection)}. A running transaction is lost with its connection; that
+     * is reported with a {@link StoreException} instead of continuing on the new connection.
      *
      * @return The restored database connection.
      * @throws RuntimeException If an SQL exception occurs while restoring the connection.
      */
     public Connection restoreConnection() {
-        try {
-            if (getConnection().isClosed()) {
-                this.conn = DriverManager.getConnection(getDB_URL(), getUSER(), getPASS());
+        Connection previous = this.conn;
+        ConnectionHealth checks = health;
+        if (checks != null) {
+            this.conn = checks.ensureValid(this.conn);
+        } else {
+            try {
+                if (getConnection().isClosed()) {
+                    this.conn = DriverManager.getConnection(getDB_URL(), getUSER(), getPASS());
+                }
+            } catch (SQLException e) {
+                throw new FetchException(e);
             }
-        } catch (SQLException e) {
-            throw new FetchException(e);
+        }
+        if (this.conn != previous && transaction != null) {
+            // the database has rolled back the transaction with the old connection
+            undo(endTransaction());
+            throw new StoreException("The connection broke during the transaction, which has been rolled back");
         }
         return this.conn;
     }
 
 
 
+    private SqlDialect dialect() {
+        try {
+            return SqlDialect.of(getConnection());
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+    }
+
     @Override
     public double getAverageHospitalStayDuration(long wardID) {
+        return read(() -> fetchAverageHospitalStayDuration(wardID));
+    }
+
+    private double fetchAverageHospitalStayDuration(long wardID) {
         restoreConnection();
         if (wardID <= 0 || wardID == PersistentObject.INVALID_OBJECT_ID) {
             throw new AssertionError("Invalid ward ID");
         }
         double averageStayDuration = 0.0;
-        try (Connection connection = getConnection()) {
-            String query = "SELECT AVG(Entlassdatum - Aufnahmedatum) AS avg_duration " +
-                    "FROM Aufenthalt " +
-                    "WHERE SID = ? AND Aufnahmedatum IS NOT NULL AND Entlassdatum IS NOT NULL";
-
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
+        Connection connection = getConnection();
+        try {
+            try (PreparedStatement statement = connection.prepareStatement(AVERAGE_STAY_DURATION_QUERY)) {
                 statement.setLong(1, wardID);
 
                 try (ResultSet resultSet = statement.executeQuery()) {
@@ -437,23 +1898,19 @@ public class BasicDBServiceImpl implements BasicDBService {
 
     @Override
     public int getAllocatedBeds(Ward ward) {
+        return read(() -> fetchAllocatedBeds(ward));
+    }
+
+    private int fetchAllocatedBeds(Ward ward) {
         restoreConnection();
         if (ward != null && !ward.isPersistent()) {
             throw new AssertionError("The specified ward must be persistent");
         }
 
         int allocatedBedsCount = 0;
-        try (Connection connection = getConnection()) {
-            String query;
-            if (ward != null) {
-                query = "SELECT COUNT(*) AS allocated_beds " +
-                        "FROM Aufenthalt " +
-                        "WHERE SID = ? AND Entlassdatum IS NULL";
-            } else {
-                query = "SELECT COUNT(*) AS allocated_beds " +
-                        "FROM Aufenthalt " +
-                        "WHERE Entlassdatum IS NULL";
-            }
+        Connection connection = getConnection();
+        try {
+            String query = ward != null ? WARD_ALLOCATED_BEDS_QUERY : ALLOCATED_BEDS_QUERY;
             try (PreparedStatement statement = connection.prepareStatement(query)) {
                 if (ward != null) {
                     statement.setLong(1, ward.getObjectID());
@@ -484,6 +1941,10 @@ public class BasicDBServiceImpl implements BasicDBService {
      * @throws RuntimeException If an SQL exception occurs while querying the database.
      */
     public int getFreeBeds(Ward ward) {
+        return read(() -> fetchFreeBeds(ward));
+    }
+
+    private int fetchFreeBeds(Ward ward) {
         restoreConnection();
         if (ward != null && !ward.isPersistent()) {
             throw new AssertionError("The specified ward must be persistent");
@@ -491,24 +1952,9 @@ public class BasicDBServiceImpl implements BasicDBService {
 
         int freeBedsCount = 0;
 
-        try (Connection connection = getConnection()) {
-            String query;
-            if (ward != null) {
-                query = "SELECT Bettenzahl - (\n" +
-                    "    SELECT COUNT(*) \n" +
-                    "    FROM Aufenthalt \n" +
-                    "    WHERE Aufenthalt.SID = Station.ID AND Aufenthalt.Entlassdatum IS NULL\n" +
-                    ") AS free_beds\n" +
-                    "FROM Station\n" +
-                    "WHERE Station.ID = ?;";
-            } else {
-                query = "SELECT SUM(Bettenzahl - (\n" +
-                    "    SELECT COUNT(*)\n" +
-                    "    FROM Aufenthalt\n" +
-                    "    WHERE Aufenthalt.SID = Station.ID AND Aufenthalt.Entlassdatum IS NULL\n" +
-                    ")) AS free_beds\n" +
-                    "FROM Station;";;
-            }
+        Connection connection = getConnection();
+        try {
+            String query = ward != null ? WARD_FREE_BEDS_QUERY : FREE_BEDS_QUERY;
             try (PreparedStatement statement = connection.prepareStatement(query)) {
                 if (ward != null) {
                     statement.setLong(1, ward.getObjectID());
@@ -526,11 +1972,185 @@ public class BasicDBServiceImpl implements BasicDBService {
         return freeBedsCount;
     }
 
+    /**
+     * Admits a patient to a ward: checks for a free bed and inserts the stay in one transaction, so that
+     * concurrent admissions cannot overbook the ward. The ward row is locked until the transaction ends, which
+     * serializes admissions to the same ward only; on PostgreSQL, admissions to different wards do not wait for
+     * each other. A new patient is inserted in the same transaction.
+     *
+     * @param patient       the patient to admit
+     * @param ward          the ward; it has to be persistent
+     * @param admissionDate the admission date
+     * @return the new, stored stay without discharge date
+     * @throws NoFreeBedException if every bed of the ward is taken; nothing has been written then
+     * @throws StoreException     if the stay cannot be stored
+     */
+    public HospitalStay admit(Patient patient, Ward ward, Date admissionDate) {
+        HospitalStay stay = createHospitalStay(patient, ward, admissionDate);
+        if (!admitAll(List.of(stay)).isEmpty()) {
+            patient.getHospitalStays().remove(stay);
+            throw new NoFreeBedException(ward.getObjectID());
+        }
+        return stay;
+    }
+
+    /**
+     * Admits many patients at once, e.g. during a mass-casualty intake. All stays are inserted in one
+     * transaction with one batch; per ward, the stays are admitted in the order of the collection as long as
+     * the ward has free beds. The wards are locked in the order of their IDs, so concurrent batches cannot
+     * deadlock on them.
+     *
+     * @param stays new stays without discharge date, created with
+     *              {@link #createHospitalStay(Patient, Ward, Date)}; their wards have to be persistent
+     * @return the stays that were not admitted because their ward is full; they are not stored and can be
+     *         given another ward and admitted again
+     * @throws StoreException if the stays cannot be stored; nothing has been admitted then
+     */
+    public List<HospitalStay> admitAll(Collection<HospitalStay> stays) {
+        if (stays == null) {
+            throw new AssertionError("The stays should not be null!");
+        }
+        Map<Long, List<HospitalStay>> byWard = new TreeMap<>();
+        for (HospitalStay stay : stays) {
+            if (!(stay instanceof HospitalStayImpl) || stay.isPersistent() || stay.getDischargeDate() != null) {
+                throw new AssertionError("Only new stays without discharge date can be admitted");
+            }
+            if (!stay.getWard().isPersistent()) {
+                throw new AssertionError("The ward of an admission must be persistent");
+            }
+            byWard.computeIfAbsent(stay.getWard().getObjectID(), id -> new ArrayList<>()).add(stay);
+        }
+        if (byWard.isEmpty()) {
+            return new ArrayList<>();
+        }
+        stays.forEach(this::recordUndo);
+        List<HospitalStay> rejected = write(() -> admitDirectly(byWard));
+        for (HospitalStay stay : stays) {
+            if (stay.isPersistent()) {
+                objectWritten(stay);
+            }
+        }
+        return rejected;
+    }
+
+    private List<HospitalStay> admitDirectly(Map<Long, List<HospitalStay>> byWard) {
+        restoreConnection();
+        Connection connection = getConnection();
+        List<HospitalStay> admitted = new ArrayList<>();
+        List<HospitalStay> rejected = new ArrayList<>();
+        try {
+            boolean postgres = dialect() == SqlDialect.POSTGRESQL;
+            // within a transaction of the caller the ward locks are held until its end
+            boolean ownTransaction = connection.getAutoCommit();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                for (Map.Entry<Long, List<HospitalStay>> entry : byWard.entrySet()) {
+                    List<HospitalStay> wardStays = entry.getValue();
+                    int admissible = Math.max(0, Math.min(lockFreeBeds(connection, entry.getKey(), postgres),
+                            wardStays.size()));
+                    admitted.addAll(wardStays.subList(0, admissible));
+                    rejected.addAll(wardStays.subList(admissible, wardStays.size()));
+                }
+                EntityBatchWriter.insertAll(connection, admitted, idAllocator);
+                if (ownTransaction) {
+                    connection.commit();
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (ownTransaction) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (ownTransaction) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            if (StayOverlapException.SQL_STATE.equals(e.getSQLState())) {
+                throw new StayOverlapException(e);
+            }
+            throw new StoreException(e);
+        }
+        return rejected;
+    }
+
+    /**
+     * Locks the row of the ward until the end of the transaction and returns the number of its free beds. The
+     * beds are counted by a statement of its own after the lock has been granted: a statement that waits for
+     * the lock would count with the snapshot taken before the wait and miss the admissions of the previous
+     * holder of the lock.
+     */
+    private static int lockFreeBeds(Connection connection, long wardID, boolean postgres) throws SQLException {
+        // HSQLDB does not lock rows read with FOR UPDATE; writing the row (without a change) locks it as well
+        try (PreparedStatement statement = connection.prepareStatement(postgres ? WARD_LOCK_QUERY : WARD_LOCK_UPDATE)) {
+            statement.setLong(1, wardID);
+            boolean found;
+            if (statement.execute()) {
+                try (ResultSet resultSet = statement.getResultSet()) {
+                    found = resultSet.next();
+                }
+            } else {
+                found = statement.getUpdateCount() > 0;
+            }
+            if (!found) {
+                throw new StoreException("Station with id " + wardID + " does not exist");
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(ADMIT_FREE_BEDS_QUERY)) {
+            statement.setLong(1, wardID);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
     @Override
    public long store(PersistentObject persistentObject) {
         if (persistentObject == null) {
             throw new AssertionError("The object should not be null!");
         }
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null && transaction == null && persistentObject.isPersistent()
+                && persistentObject instanceof AbstractPersistentJDBCObject) {
+            queue.enqueue((AbstractPersistentJDBCObject) persistentObject);
+            return persistentObject.getObjectID();
+        }
+        long id = write(() -> writesSeveralRows(persistentObject)
+                ? inTransaction(() -> recordUndoAndStore(persistentObject))
+                : recordUndoAndStore(persistentObject));
+        objectWritten(persistentObject);
+        return id;
+    }
+
+    /**
+     * Stores an object, after remembering its persistence state in the running transaction. For objects that
+     * write several rows this runs within the transaction {@link #store(PersistentObject)} begins, so that a
+     * rollback resets e.g. the ID a patient got from its Person row when its Patient row fails.
+     */
+    private long recordUndoAndStore(PersistentObject persistentObject) {
+        recordUndo(persistentObject);
+        return storeDirectly(persistentObject);
+    }
+
+    /**
+     * Tells whether storing an object writes more than one row, which then have to be written atomically: a
+     * patient is a Person and a Patient row, a new stay may cascade to a new patient and ward.
+     */
+    private static boolean writesSeveralRows(PersistentObject persistentObject) {
+        if (persistentObject instanceof Patient) {
+            return true;
+        }
+        if (persistentObject instanceof HospitalStay && !persistentObject.isPersistent()) {
+            HospitalStay stay = (HospitalStay) persistentObject;
+            return !stay.getPatient().isPersistent() || !stay.getWard().isPersistent();
+        }
+        return false;
+    }
+
+    private long storeDirectly(PersistentObject persistentObject) {
         restoreConnection();
         try {
             if (persistentObject instanceof Patient) {
@@ -543,6 +2163,9 @@ public class BasicDBServiceImpl implements BasicDBService {
                 throw new StoreException("Unsupported type: " + persistentObject.getClass().getName());
             }
         } catch (SQLException e) {
+            if (StayOverlapException.SQL_STATE.equals(e.getSQLState())) {
+                throw new StayOverlapException(e);
+            }
             throw new StoreException(e);
         }
     }
@@ -550,6 +2173,24 @@ public class BasicDBServiceImpl implements BasicDBService {
 
     @Override
     public void close() {
+        WriteBehindQueue queue = writeBehind;
+        writeBehind = null;
+        if (queue != null) {
+            queue.close();
+        }
+        ConnectionHealth checks = health;
+        health = null;
+        if (checks != null) {
+            checks.close();
+        }
+        deadlines.close();
+        if (transaction != null) {
+            try {
+                rollback();
+            } catch (StoreException e) {
+                // the connection is closed anyway, which ends the transaction as well
+            }
+        }
         try {
             this.conn.close();
         } catch (SQLException e) {
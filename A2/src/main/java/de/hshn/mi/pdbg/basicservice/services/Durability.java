@@ -0,0 +1,24 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+/**
+ * When the commit of a transaction started with {@link BasicDBServiceImpl#begin(Durability)} returns.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum Durability {
+
+    /**
+     * The commit returns once the transaction has been flushed to disk. This is the default.
+     */
+    FULL,
+
+    /**
+     * The commit returns before the transaction has been flushed to disk; the database flushes the commits of
+     * many transactions together shortly afterwards (group commit). A crash of the database server may lose the
+     * transactions of the last fraction of a second, but never a part of one, so atomicity is kept. Meant for
+     * bulk feeds that can be repeated. PostgreSQL sets {@code synchronous_commit = off} for the transaction;
+     * other databases commit as they are configured.
+     */
+    RELAXED
+}
@@ -0,0 +1,130 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Hands out object IDs from blocks reserved on the {@code pdbg_id_seq} sequence (pooled-lo strategy). The
+ * sequence is incremented by the block size, so every value it returns is the first ID of a block that belongs
+ * to this allocator alone. IDs are therefore assigned on the client without a round trip per insert, which is
+ * what allows dependent rows to be sent to the database in one batch.
+ * <p>
+ * The block size has to match the {@code INCREMENT BY} of the sequence created by
+ * {@link de.hshn.mi.pdbg.basicservice.DBCreator}.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class IdAllocator {
+
+    /**
+     * The name of the sequence the blocks are reserved from.
+     */
+    public static final String SEQUENCE = "pdbg_id_seq";
+
+    /**
+     * The increment of the sequence and therefore the number of IDs per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private final int blockSize;
+    private final Deque<Long> reservedBlocks = new ArrayDeque<>();
+    private long next;
+    private long limit;
+
+    /**
+     * Creates an allocator using blocks of {@link #DEFAULT_BLOCK_SIZE} IDs.
+     */
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an allocator for a sequence with the given increment.
+     *
+     * @param blockSize the increment of the sequence
+     */
+    public IdAllocator(int blockSize) {
+        if (blockSize <= 0) {
+            throw new AssertionError("The block size must be greater than 0");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next free ID, reserving a new block if the current one is used up.
+     *
+     * @param connection the connection used to reserve a block
+     * @return a new object ID
+     * @throws SQLException if a block cannot be reserved
+     */
+    public synchronized long nextId(Connection connection) throws SQLException {
+        if (next >= limit && reservedBlocks.isEmpty()) {
+            reserveBlocks(connection, 1);
+        }
+        return take();
+    }
+
+    /**
+     * Returns the given number of free IDs, reserving all missing blocks in a single round trip where the
+     * database supports it.
+     *
+     * @param connection the connection used to reserve blocks
+     * @param count      the number of IDs needed
+     * @return the new object IDs
+     * @throws SQLException if the blocks cannot be reserved
+     */
+    public synchronized long[] nextIds(Connection connection, int count) throws SQLException {
+        long available = (limit - next) + (long) reservedBlocks.size() * blockSize;
+        if (available < count) {
+            reserveBlocks(connection, (int) ((count - available + blockSize - 1) / blockSize));
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = take();
+        }
+        return ids;
+    }
+
+    private long take() {
+        if (next >= limit) {
+            long start = reservedBlocks.poll();
+            next = start;
+            limit = start + blockSize;
+        }
+        return next++;
+    }
+
+    private void reserveBlocks(Connection connection, int blocks) throws SQLException {
+        int expected = reservedBlocks.size() + blocks;
+        if (SqlDialect.of(connection) == SqlDialect.POSTGRESQL) {
+            String sql = "SELECT nextval('" + SEQUENCE + "') FROM generate_series(1, ?)";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, blocks);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        reservedBlocks.add(resultSet.getLong(1));
+                    }
+                }
+            }
+        } else {
+            try (Statement statement = connection.createStatement()) {
+                for (int i = 0; i < blocks; i++) {
+                    try (ResultSet resultSet = statement.executeQuery("CALL NEXT VALUE FOR " + SEQUENCE)) {
+                        resultSet.next();
+                        reservedBlocks.add(resultSet.getLong(1));
+                    }
+                }
+            }
+        }
+        if (reservedBlocks.size() < expected) {
+            throw new SQLException("Failed to reserve ID blocks from " + SEQUENCE);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.exception.FetchException;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for the read-modify-write cycle under optimistic concurrency. An update that lost the race against
+ * another writer fails with an {@link OptimisticLockException}; these helpers reload the object, apply the
+ * change again and store it, until it succeeds or the attempts are used up.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class OptimisticRetry {
+
+    private static final long MAX_BACKOFF_MILLIS = 50;
+
+    private OptimisticRetry() {
+    }
+
+    /**
+     * Runs an action until it does not fail with an {@link OptimisticLockException}. The action has to read
+     * the current state itself, otherwise every attempt fails again.
+     *
+     * @param maxAttempts the maximum number of attempts, at least 1
+     * @param action      the read-modify-write action
+     * @param <T>         the result type of the action
+     * @return the result of the first successful attempt
+     * @throws OptimisticLockException if the last attempt failed as well
+     */
+    public static <T> T run(int maxAttempts, Supplier<T> action) {
+        if (maxAttempts < 1) {
+            throw new AssertionError("At least one attempt is required");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Loads a patient, applies the change and stores it, retrying on concurrent modification.
+     *
+     * @param service     the service to use
+     * @param patientID   the ID of the patient to change
+     * @param change      the change to apply to the freshly loaded patient
+     * @param maxAttempts the maximum number of attempts
+     * @return the stored patient
+     * @throws FetchException          if the patient does not exist
+     * @throws OptimisticLockException if the last attempt failed as well
+     */
+    public static Patient updatePatient(BasicDBService service, long patientID, Consumer<Patient> change,
+                                        int maxAttempts) {
+        return run(maxAttempts, () -> {
+            Patient patient = service.getPatient(patientID);
+            if (patient == null) {
+                throw new FetchException("Patient with id " + patientID + " does not exist");
+            }
+            change.accept(patient);
+            service.store(patient);
+            return patient;
+        });
+    }
+
+    /**
+     * Loads a ward, applies the change and stores it, retrying on concurrent modification.
+     *
+     * @param service     the service to use
+     * @param wardID      the ID of the ward to change
+     * @param change      the change to apply to the freshly loaded ward
+     * @param maxAttempts the maximum number of attempts
+     * @return the stored ward
+     * @throws FetchException          if the ward does not exist
+     * @throws OptimisticLockException if the last attempt failed as well
+     */
+    public static Ward updateWard(BasicDBService service, long wardID, Consumer<Ward> change, int maxAttempts) {
+        return run(maxAttempts, () -> {
+            Ward ward = service.getWard(wardID);
+            if (ward == null) {
+                throw new FetchException("Ward with id " + wardID + " does not exist");
+            }
+            change.accept(ward);
+            service.store(ward);
+            return ward;
+        });
+    }
+
+    private static void backOff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, 6));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while retrying a concurrent update", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+import de.hshn.mi.pdbg.basicservice.paging.HospitalStaySort;
+import de.hshn.mi.pdbg.basicservice.paging.PatientSort;
+import de.hshn.mi.pdbg.basicservice.paging.SortDirection;
+import de.hshn.mi.pdbg.basicservice.paging.WardSort;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A statement as issued by {@link BasicDBServiceImpl} or the {@code store} method of an entity, together with
+ * typical parameter values for {@code EXPLAIN}.
+ * <p>
+ * {@link #canonical(SqlDialect, long, long)} lists one shape per distinct SQL text the service can send. The text
+ * is taken from the constants and query builders of the service and the entities, so a change to their SQL is
+ * checked without touching this class; only a statement that is new has to be added here. The shapes are used by
+ * the plan check ({@code plancheck.QueryPlanCheck}) and by the warm-up of new connections
+ * ({@code warmup.WarmUp}).
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class QueryShape {
+
+    private final String name;
+    private final String sql;
+    private final Object[] parameters;
+
+    private QueryShape(String name, String sql, Object... parameters) {
+        this.name = name;
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Returns all statement shapes of the service.
+     *
+     * @param dialect   the database the statements are sent to
+     * @param patientID an existing patient, used as parameter
+     * @param wardID    an existing ward, used as parameter
+     * @return the shapes, ordered by name
+     */
+    public static List<QueryShape> canonical(SqlDialect dialect, long patientID, long wardID) {
+        Date from = Date.valueOf("2023-01-01");
+        Date to = Date.valueOf("2023-12-31");
+        Date birth = Date.valueOf("1950-01-01");
+        List<QueryShape> shapes = new ArrayList<>();
+
+        shapes.add(new QueryShape("admit.freeBeds", BasicDBServiceImpl.ADMIT_FREE_BEDS_QUERY, wardID));
+        shapes.add(new QueryShape("admit.lock", dialect == SqlDialect.POSTGRESQL
+                ? BasicDBServiceImpl.WARD_LOCK_QUERY : BasicDBServiceImpl.WARD_LOCK_UPDATE, wardID));
+        shapes.add(new QueryShape("findExistingInsuranceNumbers",
+                BasicDBServiceImpl.existingInsuranceNumbersQuery(dialect, 1), dialect == SqlDialect.OTHER
+                ? "A000000000" : new String[] {"A000000000", "B000000000"}));
+        shapes.add(new QueryShape("getAllocatedBeds.all", BasicDBServiceImpl.ALLOCATED_BEDS_QUERY));
+        shapes.add(new QueryShape("getAllocatedBeds.ward", BasicDBServiceImpl.WARD_ALLOCATED_BEDS_QUERY, wardID));
+        shapes.add(new QueryShape("getAverageHospitalStayDuration", BasicDBServiceImpl.AVERAGE_STAY_DURATION_QUERY,
+                wardID));
+        shapes.add(new QueryShape("getFreeBeds.all", BasicDBServiceImpl.FREE_BEDS_QUERY));
+        shapes.add(new QueryShape("getFreeBeds.ward", BasicDBServiceImpl.WARD_FREE_BEDS_QUERY, wardID));
+        shapes.add(stays("getHospitalStays.contained", dialect, StayRangeMode.CONTAINED, patientID, from, to));
+        shapes.add(stays("getHospitalStays.overlapping", dialect, StayRangeMode.OVERLAPPING, patientID, from, to));
+        shapes.add(new QueryShape("getHospitalStays.page", BasicDBServiceImpl.stayPageQuery(
+                HospitalStaySort.ADMISSION_DATE, SortDirection.DESCENDING), patientID, 100, 0));
+        shapes.add(stays("getHospitalStays.patient", dialect, StayRangeMode.CONTAINED, patientID, null, null));
+        shapes.add(new QueryShape("getPatient", BasicDBServiceImpl.PATIENT_QUERY, patientID));
+        shapes.add(new QueryShape("getPatientByInsuranceNumber", BasicDBServiceImpl.INSURANCE_NUMBER_QUERY,
+                "A000000000"));
+        shapes.add(new QueryShape("getPatientGraphs", BasicDBServiceImpl.patientGraphQuery(1), patientID));
+        shapes.add(new QueryShape("getPatients.all", BasicDBServiceImpl.patientsQuery(null, null, null, null)));
+        shapes.add(new QueryShape("getPatients.page.id", BasicDBServiceImpl.patientPageQuery(null, null, null, null,
+                PatientSort.ID, SortDirection.ASCENDING), 100, 0));
+        shapes.add(new QueryShape("getPatients.page.lastname", BasicDBServiceImpl.patientPageQuery(null, null, null,
+                null, PatientSort.LASTNAME, SortDirection.ASCENDING), 100, 0));
+        shapes.add(new QueryShape("getPatients.birthRange", BasicDBServiceImpl.patientsQuery(null, null, birth, from),
+                birth, from));
+        shapes.add(new QueryShape("getPatients.lastname", BasicDBServiceImpl.patientsQuery("Schmidt%", null, null,
+                null), "Schmidt%"));
+        shapes.add(new QueryShape("getPatients.name", BasicDBServiceImpl.patientsQuery("Schmidt%", "Anna%", null,
+                null), "Schmidt%", "Anna%"));
+        shapes.add(new QueryShape("getWard", BasicDBServiceImpl.WARD_QUERY, wardID));
+        shapes.add(new QueryShape("getWardCensus.all", BasicDBServiceImpl.CENSUS_QUERY));
+        shapes.add(new QueryShape("getWardCensus.ward", BasicDBServiceImpl.WARD_CENSUS_QUERY, wardID));
+        shapes.add(new QueryShape("getWards", BasicDBServiceImpl.WARDS_QUERY));
+        shapes.add(new QueryShape("getWards.page", BasicDBServiceImpl.wardPageQuery(WardSort.NAME,
+                SortDirection.ASCENDING), 100, 0));
+        shapes.add(new QueryShape("removeHospitalStay", BasicDBServiceImpl.DELETE_STAY, -1L));
+
+        shapes.add(new QueryShape("store.hospitalStay.insert", HospitalStayImpl.INSERT, -1L, from, to, wardID,
+                patientID));
+        shapes.add(new QueryShape("store.hospitalStay.update", HospitalStayImpl.UPDATE, from, to, wardID, patientID,
+                -1L, 0L));
+        shapes.add(new QueryShape("store.patient.insertPatient", PatientImpl.INSERT_PATIENT, -1L, "AOK",
+                "A123456789"));
+        shapes.add(new QueryShape("store.patient.insertPerson", PatientImpl.INSERT_PERSON, -1L, "Anna", "Schmidt",
+                birth));
+        shapes.add(new QueryShape("store.patient.updatePatient", PatientImpl.UPDATE_PATIENT, "AOK", "A123456789",
+                patientID));
+        shapes.add(new QueryShape("store.patient.updatePerson", PatientImpl.UPDATE_PERSON, "Anna", "Schmidt", birth,
+                patientID, 0L));
+        shapes.add(new QueryShape("store.ward.insert", WardImpl.INSERT, -1L, "Chirurgie 1", 30));
+        shapes.add(new QueryShape("store.ward.update", WardImpl.UPDATE, "Chirurgie 1", 30, wardID, 0L));
+        return shapes;
+    }
+
+    /**
+     * Returns the shape of a stay query with the parameters in the order the service binds them.
+     */
+    private static QueryShape stays(String name, SqlDialect dialect, StayRangeMode mode, long patientID,
+                                    Date startDate, Date endDate) {
+        List<java.util.Date> dates = new ArrayList<>();
+        String sql = BasicDBServiceImpl.hospitalStaysQuery(dialect, mode, startDate, endDate, dates);
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(patientID);
+        parameters.addAll(dates);
+        return new QueryShape(name, sql, parameters.toArray());
+    }
+}
@@ -0,0 +1,38 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The database systems the service knows how to talk to. Most of the SQL issued by the service is portable,
+ * but a few features (triggers, notifications, special index types) only exist on one of them.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum SqlDialect {
+    POSTGRESQL,
+    HSQLDB,
+    OTHER;
+
+    /**
+     * Determines the dialect of the database behind the given connection.
+     *
+     * @param connection an open connection
+     * @return the dialect of the connected database
+     * @throws SQLException if the database metadata cannot be read
+     */
+    public static SqlDialect of(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        if (product == null) {
+            return OTHER;
+        }
+        product = product.toLowerCase();
+        if (product.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (product.contains("hsql")) {
+            return HSQLDB;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,97 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Optional database constraint that rejects overlapping hospital stays of the same patient, so clients no longer
+ * have to read the stays of a patient and check them before storing a new one.
+ * <p>
+ * Stays are treated as closed ranges {@code [Aufnahmedatum, Entlassdatum]}, like in the overlap queries of
+ * {@link StayRangeMode#OVERLAPPING} and the {@code aufenthalt_stay_range} index: the day of discharge still
+ * belongs to a stay, so a stay admitted on that day conflicts with it, and a stay without discharge date blocks
+ * everything from its admission on. On PostgreSQL this is an {@code EXCLUDE USING gist} constraint on
+ * {@code (PID, daterange)}, which needs the {@code btree_gist} extension; on HSQLDB two triggers raise the same
+ * SQL state. Violations surface as {@link de.hshn.mi.pdbg.basicservice.exception.StayOverlapException}.
+ * </p>
+ * <p>
+ * Installing the constraint fails if the table already contains overlapping stays.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class StayOverlapConstraint {
+
+    private static final String POSTGRESQL_INSTALL =
+            "CREATE EXTENSION IF NOT EXISTS btree_gist;\n"
+            + "ALTER TABLE Aufenthalt ADD CONSTRAINT aufenthalt_no_overlap EXCLUDE USING gist "
+            + "(PID WITH =, daterange(Aufnahmedatum, Entlassdatum, '[]') WITH &&);\n";
+    private static final String POSTGRESQL_UNINSTALL =
+            "ALTER TABLE Aufenthalt DROP CONSTRAINT IF EXISTS aufenthalt_no_overlap";
+
+    private static final String HSQLDB_CONDITION = "REFERENCING NEW ROW AS n FOR EACH ROW "
+            + "WHEN (EXISTS (SELECT 1 FROM Aufenthalt o WHERE o.PID = n.PID AND o.ID <> n.ID "
+            + "AND o.Aufnahmedatum <= COALESCE(n.Entlassdatum, DATE '9999-12-31') "
+            + "AND n.Aufnahmedatum <= COALESCE(o.Entlassdatum, DATE '9999-12-31'))) "
+            + "SIGNAL SQLSTATE '23P01' SET MESSAGE_TEXT = 'aufenthalt_no_overlap'";
+    private static final String[] HSQLDB_INSTALL = {
+        "CREATE TRIGGER aufenthalt_no_overlap_insert BEFORE INSERT ON Aufenthalt " + HSQLDB_CONDITION,
+        "CREATE TRIGGER aufenthalt_no_overlap_update BEFORE UPDATE ON Aufenthalt " + HSQLDB_CONDITION
+    };
+    private static final String[] HSQLDB_UNINSTALL = {
+        "DROP TRIGGER aufenthalt_no_overlap_insert IF EXISTS",
+        "DROP TRIGGER aufenthalt_no_overlap_update IF EXISTS"
+    };
+
+    private StayOverlapConstraint() {
+    }
+
+    /**
+     * Adds the constraint to the schema.
+     *
+     * @param connection a connection to the database
+     * @throws SQLException if the constraint cannot be created, e.g. because of existing overlaps or a missing
+     *                      {@code btree_gist} extension
+     */
+    public static void install(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            switch (SqlDialect.of(connection)) {
+                case POSTGRESQL:
+                    statement.executeUpdate(POSTGRESQL_INSTALL);
+                    break;
+                case HSQLDB:
+                    for (String sql : HSQLDB_INSTALL) {
+                        statement.executeUpdate(sql);
+                    }
+                    break;
+                default:
+                    throw new SQLException("The stay overlap constraint is not supported by this database");
+            }
+        }
+    }
+
+    /**
+     * Removes the constraint from the schema if it exists.
+     *
+     * @param connection a connection to the database
+     * @throws SQLException if the constraint cannot be dropped
+     */
+    public static void uninstall(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            switch (SqlDialect.of(connection)) {
+                case POSTGRESQL:
+                    statement.executeUpdate(POSTGRESQL_UNINSTALL);
+                    break;
+                case HSQLDB:
+                    for (String sql : HSQLDB_UNINSTALL) {
+                        statement.executeUpdate(sql);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+/**
+ * How the date range of {@link BasicDBServiceImpl#getHospitalStays(long, java.util.Date, java.util.Date,
+ * StayRangeMode)} is applied to the stays.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public enum StayRangeMode {
+
+    /**
+     * Only stays admitted on or after the start date and discharged on or before the end date. Stays without
+     * discharge date are left out as soon as an end date is given. This is the behaviour of
+     * {@code getHospitalStays(long, Date, Date)}.
+     */
+    CONTAINED,
+
+    /**
+     * All stays that share at least one day with the range, including stays that begin before or end after it
+     * and stays that are still open. A missing start or end date leaves that side of the range unbounded.
+     */
+    OVERLAPPING
+}
@@ -0,0 +1,142 @@
+package de.hshn.mi.pdbg.basicservice.shard;
+
+import de.hshn.mi.pdbg.basicservice.services.IdAllocator;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The shard-aware encoding of object IDs. Every hospital database (shard) hands out IDs from its own range: the
+ * shard number is stored in the {@value #SHARD_BITS} bits below the sign bit, the remaining {@value #LOCAL_BITS}
+ * bits count within the shard. {@link #shardOf(long)} therefore tells from an ID alone which database holds the
+ * object, without a lookup table.
+ * <p>
+ * The range of shard 0 starts at 0, so an existing database keeps all its IDs and becomes shard 0 unchanged. Any
+ * other shard has to be moved into its range once with {@link #prepare(Connection, int)} before objects are
+ * stored in it; this restarts the {@code pdbg_id_seq} sequence at the first ID of the shard and refuses databases
+ * that already contain IDs of another range.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class ShardIds {
+
+    /**
+     * The number of bits encoding the shard.
+     */
+    public static final int SHARD_BITS = 8;
+
+    /**
+     * The number of bits of an ID within its shard.
+     */
+    public static final int LOCAL_BITS = Long.SIZE - 1 - SHARD_BITS;
+
+    /**
+     * The maximum number of shards.
+     */
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private static final String[] TABLES = {"Person", "Station", "Aufenthalt"};
+
+    private ShardIds() {
+    }
+
+    /**
+     * Returns the shard holding the object with the given ID.
+     *
+     * @param id the object ID
+     * @return the shard number
+     */
+    public static int shardOf(long id) {
+        if (id <= 0) {
+            throw new AssertionError("The ID should be greater than 0");
+        }
+        return (int) (id >>> LOCAL_BITS);
+    }
+
+    /**
+     * Returns the first ID of the range of a shard.
+     *
+     * @param shard the shard number
+     * @return the first ID; 0 for shard 0
+     */
+    public static long firstId(int shard) {
+        checkShard(shard);
+        return (long) shard << LOCAL_BITS;
+    }
+
+    /**
+     * Returns the first ID behind the range of a shard.
+     *
+     * @param shard the shard number
+     * @return the exclusive upper bound of the IDs of the shard
+     */
+    public static long limitId(int shard) {
+        checkShard(shard);
+        return shard + 1 < MAX_SHARDS ? firstId(shard + 1) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Moves a database into the ID range of a shard: the {@code pdbg_id_seq} sequence is restarted at the first
+     * ID of the range unless it already lies within it. This is a setup step like creating the tables and has to
+     * run before the first object is stored; running it again is harmless.
+     *
+     * @param connection a connection to the database of the shard
+     * @param shard      the shard number
+     * @throws SQLException          if the database cannot be read or altered
+     * @throws IllegalStateException if the database contains IDs outside of the range of the shard
+     */
+    public static void prepare(Connection connection, int shard) throws SQLException {
+        checkRows(connection, shard);
+        long next = new IdAllocator(1).nextId(connection);
+        if (next < firstId(shard)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER SEQUENCE " + IdAllocator.SEQUENCE + " RESTART WITH " + firstId(shard));
+            }
+        } else if (next >= limitId(shard)) {
+            throw new IllegalStateException("The ID sequence of shard " + shard + " has left the range of the shard");
+        }
+    }
+
+    /**
+     * Verifies that a database hands out IDs of the given shard. Reserves one ID block from the sequence to do so.
+     *
+     * @param connection a connection to the database of the shard
+     * @param shard      the shard number
+     * @throws SQLException          if the sequence cannot be read
+     * @throws IllegalStateException if the sequence lies outside of the range of the shard, i.e. if the database
+     *                               has not been prepared
+     */
+    public static void verify(Connection connection, int shard) throws SQLException {
+        long next = new IdAllocator(1).nextId(connection);
+        if (next < firstId(shard) || next >= limitId(shard)) {
+            throw new IllegalStateException("The database of shard " + shard + " hands out IDs of shard "
+                    + (next > 0 ? shardOf(next) : 0) + "; prepare it with ShardIds.prepare first");
+        }
+    }
+
+    private static void checkRows(Connection connection, int shard) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                String sql = "SELECT COUNT(*) FROM " + table + " WHERE ID < " + firstId(shard)
+                        + " OR ID >= " + limitId(shard);
+                try (ResultSet resultSet = statement.executeQuery(sql)) {
+                    resultSet.next();
+                    if (resultSet.getLong(1) > 0) {
+                        throw new IllegalStateException("Table " + table + " of shard " + shard
+                                + " contains IDs outside of the range of the shard");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkShard(int shard) {
+        if (shard < 0 || shard >= MAX_SHARDS) {
+            throw new AssertionError("The shard number must be between 0 and " + (MAX_SHARDS - 1));
+        }
+    }
+}
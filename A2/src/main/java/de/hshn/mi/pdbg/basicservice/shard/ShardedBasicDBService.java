@@ -0,0 +1,331 @@
+package de.hshn.mi.pdbg.basicservice.shard;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.BasicDBService;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.impl.HospitalStayImpl;
+import de.hshn.mi.pdbg.basicservice.impl.PatientImpl;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.exception.FetchException;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * A {@link BasicDBService} spread over several hospital databases (shards), one {@link BasicDBServiceImpl} each.
+ * The shard of an object is encoded in its ID (see {@link ShardIds}), so
+ * <ul>
+ *     <li>calls for one object ({@link #getPatient(long)}, {@link #getWard(long)}, {@link #getHospitalStays(long)},
+ *     {@link #removeHospitalStay(long)}, ...) go to the one database holding it,</li>
+ *     <li>objects are stored by the shard they were created by or loaded from, and</li>
+ *     <li>calls over all objects ({@link #getPatients}, {@link #getWards()}, {@link #getFreeBeds(Ward)} and
+ *     {@link #getAllocatedBeds(Ward)} without ward) are sent to all shards in parallel and their results merged:
+ *     lists are concatenated in shard order, counts are added up.</li>
+ * </ul>
+ * Each shard only carries its own load, so the capacity grows with the number of databases, and a scatter-gather
+ * call takes as long as the slowest shard instead of the sum of all.
+ * <p>
+ * New patients and wards are placed on the home shard; {@link #getShard(int)} creates them on another one. A
+ * hospital stay lives on the shard of its ward and patient, which therefore have to belong to the same shard.
+ * Every shard other than shard 0 has to be prepared with {@link ShardIds#prepare} once before it is used, which
+ * is also the way to run several embedded databases locally:
+ * </p>
+ * <pre>
+ * List&lt;BasicDBServiceImpl&gt; shards = new ArrayList&lt;&gt;();
+ * for (int i = 0; i &lt; 3; i++) {
+ *     String url = "jdbc:hsqldb:mem:hospital" + i;
+ *     new DBCreator().createDatabase(url, "sa", "");
+ *     BasicDBServiceImpl shard = new BasicDBServiceImpl(url, "sa", "");
+ *     ShardIds.prepare(shard.getConnection(), i);
+ *     shards.add(shard);
+ * }
+ * BasicDBService service = new ShardedBasicDBService(shards, 0);
+ * </pre>
+ * <p>
+ * Like {@link BasicDBServiceImpl}, an instance is meant to be used by one thread at a time.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class ShardedBasicDBService implements BasicDBService {
+
+    private final List<BasicDBServiceImpl> shards;
+    private final int homeShard;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a sharded service. Verifies that every shard hands out IDs of its range.
+     *
+     * @param shards    the services of the shards; the index in the list is the shard number
+     * @param homeShard the shard new patients and wards are placed on
+     * @throws IllegalStateException if a shard has not been prepared
+     */
+    public ShardedBasicDBService(List<BasicDBServiceImpl> shards, int homeShard) {
+        if (shards == null || shards.isEmpty() || shards.size() > ShardIds.MAX_SHARDS
+                || shards.stream().anyMatch(Objects::isNull)) {
+            throw new AssertionError("Between 1 and " + ShardIds.MAX_SHARDS + " shards are required");
+        }
+        if (homeShard < 0 || homeShard >= shards.size()) {
+            throw new AssertionError("The home shard must be one of the shards");
+        }
+        this.shards = List.copyOf(shards);
+        this.homeShard = homeShard;
+        for (int i = 0; i < this.shards.size(); i++) {
+            try {
+                ShardIds.verify(this.shards.get(i).getConnection(), i);
+            } catch (SQLException e) {
+                throw new FetchException(e);
+            }
+        }
+        this.executor = Executors.newFixedThreadPool(this.shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "pdbg-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the service of a shard, e.g. to create objects on a shard other than the home shard.
+     *
+     * @param shard the shard number
+     * @return the service of the shard
+     */
+    public BasicDBServiceImpl getShard(int shard) {
+        if (shard < 0 || shard >= shards.size()) {
+            throw new AssertionError("There is no shard " + shard);
+        }
+        return shards.get(shard);
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the shard an object belongs to: the shard encoded in its ID if it has been stored, otherwise the
+     * shard whose service created it.
+     *
+     * @param object the object
+     * @return the shard number
+     */
+    public int shardOf(PersistentObject object) {
+        if (object == null) {
+            throw new AssertionError("The object should not be null!");
+        }
+        if (object.isPersistent()) {
+            return ShardIds.shardOf(object.getObjectID());
+        }
+        BasicDBService owner;
+        if (object instanceof PatientImpl) {
+            owner = ((PatientImpl) object).getBasicDBService();
+        } else if (object instanceof WardImpl) {
+            owner = ((WardImpl) object).getBasicDBService();
+        } else if (object instanceof HospitalStayImpl) {
+            owner = ((HospitalStayImpl) object).getBasicDBService();
+        } else {
+            throw new StoreException("Unsupported type: " + object.getClass().getName());
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i) == owner) {
+                return i;
+            }
+        }
+        throw new AssertionError("The object was not created by a shard of this service");
+    }
+
+    @Override
+    public Patient createPatient(String nachname, String vorname) {
+        return shards.get(homeShard).createPatient(nachname, vorname);
+    }
+
+    @Override
+    public Ward createWard(String bezeichnung, int bettenzahl) {
+        return shards.get(homeShard).createWard(bezeichnung, bettenzahl);
+    }
+
+    @Override
+    public HospitalStay createHospitalStay(Patient patient, Ward ward, Date date) {
+        if (date == null || patient == null || ward == null) {
+            throw new AssertionError("Null parameter");
+        }
+        int shard = shardOf(ward);
+        if (shardOf(patient) != shard) {
+            throw new AssertionError("Patient and ward belong to different shards");
+        }
+        return shards.get(shard).createHospitalStay(patient, ward, date);
+    }
+
+    @Override
+    public void removeHospitalStay(long id) {
+        route(id).removeHospitalStay(id);
+    }
+
+    @Override
+    public List<Patient> getPatients(String lastname, String firstname, Date startDate, Date endDate) {
+        return concat(shard -> shard.getPatients(lastname, firstname, startDate, endDate));
+    }
+
+    @Override
+    public Patient getPatient(long patientID) {
+        return route(patientID).getPatient(patientID);
+    }
+
+    @Override
+    public List<Ward> getWards() {
+        return concat(BasicDBServiceImpl::getWards);
+    }
+
+    @Override
+    public Ward getWard(long wardID) {
+        return route(wardID).getWard(wardID);
+    }
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID) {
+        return route(patientID).getHospitalStays(patientID);
+    }
+
+    @Override
+    public List<HospitalStay> getHospitalStays(long patientID, Date startDate, Date endDate) {
+        return route(patientID).getHospitalStays(patientID, startDate, endDate);
+    }
+
+    @Override
+    public double getAverageHospitalStayDuration(long wardID) {
+        return route(wardID).getAverageHospitalStayDuration(wardID);
+    }
+
+    @Override
+    public int getAllocatedBeds(Ward ward) {
+        if (ward != null) {
+            return shards.get(shardOf(ward)).getAllocatedBeds(ward);
+        }
+        return sum(shard -> shard.getAllocatedBeds(null));
+    }
+
+    @Override
+    public int getFreeBeds(Ward ward) {
+        if (ward != null) {
+            return shards.get(shardOf(ward)).getFreeBeds(ward);
+        }
+        return sum(shard -> shard.getFreeBeds(null));
+    }
+
+    @Override
+    public long store(PersistentObject persistentObject) {
+        if (persistentObject == null) {
+            throw new AssertionError("The object should not be null!");
+        }
+        return shards.get(shardOf(persistentObject)).store(persistentObject);
+    }
+
+    /**
+     * Closes the services of all shards.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        RuntimeException failure = null;
+        for (BasicDBServiceImpl shard : shards) {
+            try {
+                shard.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private BasicDBServiceImpl route(long id) {
+        int shard = ShardIds.shardOf(id);
+        if (shard >= shards.size()) {
+            throw new AssertionError("The ID " + id + " belongs to shard " + shard + ", which is not configured");
+        }
+        return shards.get(shard);
+    }
+
+    private <T> List<T> concat(Function<BasicDBServiceImpl, List<T>> call) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> part : scatter(call)) {
+            merged.addAll(part);
+        }
+        return merged;
+    }
+
+    private int sum(Function<BasicDBServiceImpl, Integer> call) {
+        int total = 0;
+        for (int part : scatter(call)) {
+            total += part;
+        }
+        return total;
+    }
+
+    /**
+     * Runs a call on all shards in parallel and returns the results in shard order. If a shard fails, the call
+     * fails with its error once all shards are done, so that no shard is still busy when the caller continues.
+     */
+    private <T> List<T> scatter(Function<BasicDBServiceImpl, T> call) {
+        if (shards.size() == 1) {
+            return List.of(call.apply(shards.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (BasicDBServiceImpl shard : shards) {
+            futures.add(executor.submit(() -> call.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new FetchException(failure);
+        }
+        return results;
+    }
+}
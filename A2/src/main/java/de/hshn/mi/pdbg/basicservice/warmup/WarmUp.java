@@ -0,0 +1,227 @@
+package de.hshn.mi.pdbg.basicservice.warmup;
+
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.exception.DeadlineExceededException;
+import de.hshn.mi.pdbg.basicservice.paging.PatientSort;
+import de.hshn.mi.pdbg.basicservice.paging.SortDirection;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import de.hshn.mi.pdbg.basicservice.services.QueryShape;
+import de.hshn.mi.pdbg.basicservice.services.SqlDialect;
+import de.hshn.mi.pdbg.exception.FetchException;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings freshly opened services up to steady-state speed before they serve requests. The first calls after a
+ * start are several times slower than later ones, because the database parses and plans every statement for the
+ * first time and the JIT has not compiled the code that turns rows into objects yet. The warm-up
+ * <ol>
+ *     <li>executes every read-only statement of {@link QueryShape#canonical} once on each connection, so that the
+ *     database parses and plans it and loads the catalog and index pages it needs, and statements the schema does
+ *     not support are revealed, and</li>
+ *     <li>runs rounds of representative read-only calls ({@code getPatients}, {@code getPatient},
+ *     {@code getHospitalStays}, {@code getWards}, ...) spread over the connections, until the mapping code has been
+ *     compiled.</li>
+ * </ol>
+ * The whole warm-up is bounded by the timeout of the options: the running statement is cancelled with the
+ * deadline mechanism of the service and the remaining work is skipped, so a slow database delays a start by the
+ * timeout at most. Nothing is written: the statements of {@link QueryShape#canonical} that write are skipped, as
+ * preparing them without executing would not reach PostgreSQL, whose driver only sends a statement on execution.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class WarmUp {
+
+    private static final int PAGE_SIZE = 100;
+    private static final Date FROM = new Date(0);
+    private static final Date TO = new Date(TimeUnit.DAYS.toMillis(365L * 200));
+
+    private WarmUp() {
+    }
+
+    /**
+     * Warms up the given services.
+     *
+     * @param services   the services whose connections are warmed up
+     * @param options    the number of rounds and the timeout
+     * @param startNanos the {@link System#nanoTime()} at which the warm-up started, e.g. before the connections
+     *                   were opened; the timeout and the reported duration count from there
+     * @return the report
+     */
+    public static WarmUpReport run(List<BasicDBServiceImpl> services, WarmUpOptions options, long startNanos) {
+        if (services == null || services.isEmpty() || options == null) {
+            throw new AssertionError("Services and options are required");
+        }
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(options.getTimeoutMillis());
+        BasicDBServiceImpl first = services.get(0);
+        long[] sample = new long[2];
+        boolean timedOut = false;
+        long remainingForSample = remainingMillis(deadline);
+        if (remainingForSample <= 0) {
+            timedOut = true;
+        } else {
+            try {
+                sample = first.withDeadline(remainingForSample, () -> sample(first));
+            } catch (DeadlineExceededException e) {
+                timedOut = true;
+            }
+        }
+        long patientID = sample[0];
+        long wardID = sample[1];
+        int executed = 0;
+        int failed = 0;
+        for (BasicDBServiceImpl service : services) {
+            long remaining = remainingMillis(deadline);
+            if (timedOut || remaining <= 0) {
+                timedOut = true;
+                break;
+            }
+            try {
+                int[] counts = service.withDeadline(remaining, () -> execute(service, patientID, wardID));
+                executed += counts[0];
+                failed += counts[1];
+                if (counts[2] > 0) {
+                    timedOut = true;
+                    break;
+                }
+            } catch (DeadlineExceededException e) {
+                timedOut = true;
+                break;
+            }
+        }
+        String lastname = null;
+        if (!timedOut && patientID > 0) {
+            try {
+                Patient patient = first.withDeadline(Math.max(remainingMillis(deadline), 1),
+                        () -> first.getPatient(patientID));
+                lastname = patient == null ? null : patient.getLastname();
+            } catch (DeadlineExceededException e) {
+                timedOut = true;
+            }
+        }
+        int rounds = 0;
+        while (!timedOut && rounds < options.getRounds()) {
+            long remaining = remainingMillis(deadline);
+            if (remaining <= 0) {
+                timedOut = true;
+                break;
+            }
+            BasicDBServiceImpl service = services.get(rounds % services.size());
+            String name = lastname;
+            try {
+                service.withDeadline(remaining, () -> query(service, patientID, wardID, name));
+                rounds++;
+            } catch (DeadlineExceededException e) {
+                timedOut = true;
+            }
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new WarmUpReport(duration, services.size(), executed, failed, rounds, timedOut);
+    }
+
+    /**
+     * Executes every read-only canonical statement on the connection of the service with its sample parameters,
+     * fetching one row at most. A statement cancelled by the deadline counts as failed, so the deadline of the call
+     * is checked here between the statements.
+     *
+     * @return the numbers of executed and of refused statements, and 1 if the deadline stopped the execution
+     */
+    private static int[] execute(BasicDBServiceImpl service, long patientID, long wardID) {
+        Connection connection = service.getConnection();
+        int[] counts = new int[3];
+        try {
+            for (QueryShape shape : QueryShape.canonical(SqlDialect.of(connection), patientID, wardID)) {
+                if (!isReadOnly(shape)) {
+                    continue;
+                }
+                if (service.getCallDeadlines().remainingMillis() == 0) {
+                    counts[2] = 1;
+                    break;
+                }
+                try (PreparedStatement statement = connection.prepareStatement(shape.getSql())) {
+                    statement.setMaxRows(1);
+                    bind(connection, statement, shape.getParameters());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                    }
+                    counts[0]++;
+                } catch (SQLException e) {
+                    counts[1]++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+        return counts;
+    }
+
+    private static boolean isReadOnly(QueryShape shape) {
+        String sql = shape.getSql();
+        return sql.startsWith("SELECT") && !sql.contains("FOR UPDATE");
+    }
+
+    private static void bind(Connection connection, PreparedStatement statement, Object[] parameters)
+            throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] instanceof String[]) {
+                Array array = connection.createArrayOf("VARCHAR", (String[]) parameters[i]);
+                statement.setArray(i + 1, array);
+            } else {
+                statement.setObject(i + 1, parameters[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs one round of representative read-only calls.
+     */
+    private static Void query(BasicDBServiceImpl service, long patientID, long wardID, String lastname) {
+        service.getWards();
+        service.getPatients(null, null, null, null, PatientSort.LASTNAME, SortDirection.ASCENDING, 0, PAGE_SIZE);
+        if (wardID > 0) {
+            service.getWard(wardID);
+        }
+        if (patientID > 0) {
+            service.getPatient(patientID);
+            service.getHospitalStays(patientID);
+            service.getHospitalStays(patientID, FROM, TO);
+        }
+        if (lastname != null) {
+            service.getPatients(lastname, null, null, null);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a patient with stays and a ward to use as parameters, or 0 where the tables are empty. Runs within the
+     * deadline of the warm-up, like every other statement.
+     */
+    private static long[] sample(BasicDBServiceImpl service) {
+        long[] sample = new long[2];
+        String[] queries = {"SELECT MIN(PID) FROM Aufenthalt", "SELECT MIN(ID) FROM Station"};
+        try (Statement statement = service.getConnection().createStatement()) {
+            for (int i = 0; i < queries.length; i++) {
+                try (ResultSet resultSet = statement.executeQuery(queries[i])) {
+                    resultSet.next();
+                    sample[i] = resultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+        return sample;
+    }
+
+    private static long remainingMillis(long deadlineNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+}
@@ -0,0 +1,46 @@
+package de.hshn.mi.pdbg.basicservice.warmup;
+
+/**
+ * Tuning parameters of a {@link WarmUp}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class WarmUpOptions {
+
+    private final int rounds;
+    private final long timeoutMillis;
+
+    /**
+     * Creates a new set of options.
+     *
+     * @param rounds        how often the representative queries are run; the mapping code of the service is
+     *                      compiled by the JIT after a few thousand rows, i.e. after some ten rounds
+     * @param timeoutMillis upper limit of the whole warm-up; the queries still missing are skipped when it has
+     *                      passed, and a running statement is cancelled
+     */
+    public WarmUpOptions(int rounds, long timeoutMillis) {
+        if (rounds < 0 || timeoutMillis <= 0) {
+            throw new AssertionError("Invalid warm-up options");
+        }
+        this.rounds = rounds;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the default options: 50 rounds within at most 10 s.
+     *
+     * @return the default options
+     */
+    public static WarmUpOptions defaults() {
+        return new WarmUpOptions(50, 10_000);
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,89 @@
+package de.hshn.mi.pdbg.basicservice.warmup;
+
+/**
+ * The outcome of a {@link WarmUp}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class WarmUpReport {
+
+    private final long durationMillis;
+    private final int connections;
+    private final int executedStatements;
+    private final int failedStatements;
+    private final int rounds;
+    private final boolean timedOut;
+
+    WarmUpReport(long durationMillis, int connections, int executedStatements, int failedStatements, int rounds,
+                 boolean timedOut) {
+        this.durationMillis = durationMillis;
+        this.connections = connections;
+        this.executedStatements = executedStatements;
+        this.failedStatements = failedStatements;
+        this.rounds = rounds;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * Returns how long the warm-up took, including opening the connections.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Returns the number of connections that were warmed up.
+     *
+     * @return the number of connections
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns the number of read-only statements executed once, summed over all connections.
+     *
+     * @return the number of executed statements
+     */
+    public int getExecutedStatements() {
+        return executedStatements;
+    }
+
+    /**
+     * Returns the number of statements the database refused to execute, which points to a schema that does not
+     * match the service, or that were cancelled by the timeout.
+     *
+     * @return the number of failed statements
+     */
+    public int getFailedStatements() {
+        return failedStatements;
+    }
+
+    /**
+     * Returns the number of completed rounds of representative queries.
+     *
+     * @return the number of rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Tells whether the warm-up was stopped by its timeout.
+     *
+     * @return true if work was skipped because the timeout passed
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public String toString() {
+        return "Warm-up of " + connections + " connection(s) took " + durationMillis + " ms: "
+                + executedStatements + " statements executed (" + failedStatements + " failed), " + rounds
+                + " query rounds" + (timedOut ? ", stopped by the timeout" : "");
+    }
+}
@@ -0,0 +1,24 @@
+package de.hshn.mi.pdbg.basicservice.writebehind;
+
+import de.hshn.mi.pdbg.PersistentObject;
+
+/**
+ * Callback for objects a {@link WriteBehindQueue} could not write. The queue drops such objects after the
+ * handler returned, so the handler has to re-submit them if the change must not be lost.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface WriteBehindErrorHandler {
+
+    /**
+     * Called on the flusher thread for every object whose write failed. The queue also reports a failing write
+     * listener, with the written object, and a connection that could not be closed, with a null object.
+     * The handler must not throw; exceptions it throws are dropped.
+     *
+     * @param object the object that could not be written, or null if the error is not tied to an object
+     * @param cause  the reason of the failure
+     */
+    void onError(PersistentObject object, Exception cause);
+}
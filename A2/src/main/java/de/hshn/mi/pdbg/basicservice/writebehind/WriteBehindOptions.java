@@ -0,0 +1,58 @@
+package de.hshn.mi.pdbg.basicservice.writebehind;
+
+/**
+ * Tuning parameters of a {@link WriteBehindQueue}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public final class WriteBehindOptions {
+
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final long offerTimeoutMillis;
+
+    /**
+     * Creates a new set of options.
+     *
+     * @param capacity           maximum number of distinct objects waiting to be written
+     * @param batchSize          maximum number of objects written in one transaction
+     * @param lingerMillis       how long the flusher waits for a batch to fill up before writing it anyway
+     * @param offerTimeoutMillis how long a store blocks while the queue is full before it fails
+     */
+    public WriteBehindOptions(int capacity, int batchSize, long lingerMillis, long offerTimeoutMillis) {
+        if (capacity <= 0 || batchSize <= 0 || lingerMillis < 0 || offerTimeoutMillis < 0) {
+            throw new AssertionError("Invalid write-behind options");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    /**
+     * Returns the default options: 10000 queued objects, batches of 500, 50 ms linger and 5 s back-pressure.
+     *
+     * @return the default options
+     */
+    public static WriteBehindOptions defaults() {
+        return new WriteBehindOptions(10_000, 500, 50, 5_000);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public long getOfferTimeoutMillis() {
+        return offerTimeoutMillis;
+    }
+}
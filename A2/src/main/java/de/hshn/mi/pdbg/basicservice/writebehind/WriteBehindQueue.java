@@ -0,0 +1,352 @@
+package de.hshn.mi.pdbg.basicservice.writebehind;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.impl.PersistentState;
+import de.hshn.mi.pdbg.basicservice.impl.RowSnapshot;
+import de.hshn.mi.pdbg.basicservice.jdbc.AbstractPersistentJDBCObject;
+import de.hshn.mi.pdbg.exception.StoreException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of pending updates that a background thread writes to the database in batched transactions.
+ * <p>
+ * Only objects that are already persistent can be queued, because a new object needs its ID before
+ * {@code store()} returns. Queuing an object that is already waiting replaces the pending write, so rapid
+ * repeated edits of the same object are written once with their latest state.
+ * </p>
+ * <p>
+ * {@link #enqueue} copies the row values of the object into a {@link RowSnapshot}, so the caller may keep
+ * changing the object while the flusher writes. The flusher only hands the new row version back to the object,
+ * under the lock of the queue; the caller sees it after {@link #flush()}.
+ * </p>
+ * <p>
+ * {@link #flush()} is the durability boundary: when it returns, every write queued before the call has been
+ * committed or reported to the {@link WriteBehindErrorHandler}. {@link #close()} flushes before it stops.
+ * </p>
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private final String dbUrl;
+    private final String user;
+    private final String pass;
+    private final WriteBehindOptions options;
+    private final WriteBehindErrorHandler errorHandler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final Map<String, Long> inFlightVersions = new HashMap<>();
+    private final Thread flusher;
+
+    private long sequence;
+    private long inFlightMinSequence = Long.MAX_VALUE;
+    private boolean flushRequested;
+    private boolean closed;
+    private Connection connection;
+    private volatile Consumer<? super PersistentObject> writeListener;
+
+    /**
+     * Creates a write-behind queue and starts its flusher thread. The flusher writes over its own connection.
+     *
+     * @param dbUrl        The connection-String of the database.
+     * @param user         The login credentials for accessing the database.
+     * @param pass         The password for accessing the database.
+     * @param options      the queue parameters
+     * @param errorHandler receives the objects that could not be written
+     */
+    public WriteBehindQueue(String dbUrl, String user, String pass, WriteBehindOptions options,
+                            WriteBehindErrorHandler errorHandler) {
+        if (options == null || errorHandler == null) {
+            throw new AssertionError("Options and error handler must not be null");
+        }
+        this.dbUrl = dbUrl;
+        this.user = user;
+        this.pass = pass;
+        this.options = options;
+        this.errorHandler = errorHandler;
+        this.flusher = new Thread(this::flushLoop, "pdbg-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues the current state of a persistent object for writing. Blocks while the queue is full.
+     *
+     * @param object the object to write
+     * @throws StoreException if the queue is closed or stays full longer than the configured timeout
+     */
+    public void enqueue(AbstractPersistentJDBCObject object) {
+        if (object == null || !object.isPersistent()) {
+            throw new AssertionError("Only persistent objects can be written behind");
+        }
+        String key = object.getClass().getName() + ":" + object.getObjectID();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(options.getOfferTimeoutMillis());
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= options.getCapacity() && !pending.containsKey(key)) {
+                if (remaining <= 0) {
+                    throw new StoreException("Write-behind queue is full");
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            if (closed) {
+                throw new StoreException("Write-behind queue is closed");
+            }
+            // an update queued while the previous one is in flight is based on the version that one writes
+            Long inFlight = inFlightVersions.get(key);
+            long version = inFlight != null ? inFlight : PersistentState.versionOf(object);
+            pending.put(key, new Pending(key, object, RowSnapshot.of(object, version), ++sequence));
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while waiting for the write-behind queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a callback that is invoked on the flusher thread for every object after its write was committed.
+     *
+     * @param listener the callback, or null to remove it
+     */
+    public void setWriteListener(Consumer<? super PersistentObject> listener) {
+        this.writeListener = listener;
+    }
+
+    /**
+     * Blocks until every write queued before this call has been committed or reported as failed.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = sequence;
+            flushRequested = true;
+            notEmpty.signal();
+            while (!isWrittenUpTo(target) && flusher.isAlive()) {
+                written.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while flushing the write-behind queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct objects currently waiting to be written.
+     *
+     * @return the number of pending objects
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnection();
+    }
+
+    private boolean isWrittenUpTo(long target) {
+        if (inFlightMinSequence <= target) {
+            return false;
+        }
+        for (Pending entry : pending.values()) {
+            if (entry.sequence <= target) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Pending> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            List<Pending> stored = write(batch);
+            lock.lock();
+            try {
+                for (Pending entry : stored) {
+                    PersistentState.assign(entry.object, entry.snapshot.getObjectID(), entry.writtenVersion);
+                }
+                inFlightVersions.clear();
+                inFlightMinSequence = Long.MAX_VALUE;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<Pending> nextBatch() {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            long linger = TimeUnit.MILLISECONDS.toNanos(options.getLingerMillis());
+            while (!closed && !flushRequested && linger > 0 && pending.size() < options.getBatchSize()) {
+                linger = notEmpty.awaitNanos(linger);
+            }
+            List<Pending> batch = new ArrayList<>();
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < options.getBatchSize()) {
+                Pending entry = iterator.next();
+                iterator.remove();
+                batch.add(entry);
+                inFlightVersions.put(entry.key, entry.snapshot.getVersion() + 1);
+                inFlightMinSequence = Math.min(inFlightMinSequence, entry.sequence);
+            }
+            if (pending.isEmpty()) {
+                flushRequested = false;
+            }
+            notFull.signalAll();
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a batch and returns the entries whose write was committed. Writing only reads the snapshots, the
+     * new versions are handed to the objects by the caller under the lock.
+     */
+    private List<Pending> write(List<Pending> batch) {
+        List<Pending> stored = new ArrayList<>();
+        try {
+            Connection current = openConnection();
+            current.setAutoCommit(false);
+            try {
+                for (Pending entry : batch) {
+                    entry.writtenVersion = entry.snapshot.write(current);
+                }
+                current.commit();
+                for (Pending entry : batch) {
+                    stored.add(entry);
+                    notifyWritten(entry.object);
+                }
+                return stored;
+            } catch (SQLException | RuntimeException e) {
+                current.rollback();
+            }
+            // the batch failed as a whole: write each object in its own transaction to isolate the culprit
+            for (Pending entry : batch) {
+                try {
+                    entry.writtenVersion = entry.snapshot.write(current);
+                    current.commit();
+                    stored.add(entry);
+                    notifyWritten(entry.object);
+                } catch (SQLException | RuntimeException e) {
+                    current.rollback();
+                    reportError(entry.object, e);
+                }
+            }
+        } catch (SQLException e) {
+            closeConnection();
+            for (Pending entry : batch) {
+                if (!stored.contains(entry)) {
+                    reportError(entry.object, e);
+                }
+            }
+        }
+        return stored;
+    }
+
+    private Connection openConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(dbUrl, user, pass);
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                reportError(null, e);
+            }
+            connection = null;
+        }
+    }
+
+    private void notifyWritten(PersistentObject object) {
+        Consumer<? super PersistentObject> listener = writeListener;
+        if (listener != null) {
+            try {
+                listener.accept(object);
+            } catch (RuntimeException e) {
+                reportError(object, e);
+            }
+        }
+    }
+
+    private void reportError(PersistentObject object, Exception cause) {
+        try {
+            errorHandler.onError(object, cause);
+        } catch (RuntimeException ignored) {
+            // there is nobody left to report to, and the flusher must keep running
+        }
+    }
+
+    private static final class Pending {
+        private final String key;
+        private final AbstractPersistentJDBCObject object;
+        private final RowSnapshot snapshot;
+        private final long sequence;
+        private long writtenVersion;
+
+        private Pending(String key, AbstractPersistentJDBCObject object, RowSnapshot snapshot, long sequence) {
+            this.key = key;
+            this.object = object;
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+        }
+    }
+}
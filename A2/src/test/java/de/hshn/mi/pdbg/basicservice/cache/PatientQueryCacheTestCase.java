@@ -0,0 +1,141 @@
+package de.hshn.mi.pdbg.basicservice.cache;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.changefeed.ChangeEvent;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the eviction rules of {@link PatientQueryCache} and its use by {@link BasicDBServiceImpl}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class PatientQueryCacheTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:patientcache";
+
+    private static PatientRow row(long id, String firstname, String lastname, String dateOfBirth) {
+        return new PatientRow(id, firstname, lastname, Date.valueOf(dateOfBirth), "AOK", "A" + id, 0);
+    }
+
+    @Test
+    public void testWriteEvictsAffectedEntriesOnly() {
+        PatientQueryCache cache = new PatientQueryCache();
+        PatientQueryCache.Filter muster = PatientQueryCache.filter("Mu%", null, null, null);
+        PatientQueryCache.Filter schmidt = PatientQueryCache.filter("Schmidt", null, null, null);
+        PatientQueryCache.Filter born1980 = PatientQueryCache.filter(null, null, Date.valueOf("1980-01-01"), null);
+        PatientQueryCache.Filter born1960 = PatientQueryCache.filter(null, null, null, Date.valueOf("1960-12-31"));
+        long generation = cache.currentGeneration();
+        cache.put(muster, List.of(row(1, "Max", "Muster", "1970-01-01")), generation);
+        cache.put(schmidt, List.of(row(2, "Eva", "Schmidt", "1950-01-01")), generation);
+        cache.put(born1980, List.of(), generation);
+        cache.put(born1960, List.of(row(2, "Eva", "Schmidt", "1950-01-01")), generation);
+
+        // a new patient that matches the name pattern, but neither birth date range
+        cache.onPatientWritten(row(3, "Ute", "Mueller", "1970-06-01"));
+        assertNull(cache.get(muster));
+        assertNotNull(cache.get(schmidt));
+        assertNotNull(cache.get(born1980));
+        assertNotNull(cache.get(born1960));
+
+        // a patient renamed out of a cached result
+        cache.onPatientWritten(row(2, "Eva", "Schulz", "1950-01-01"));
+        assertNull(cache.get(schmidt));
+        assertNull(cache.get(born1960));
+        assertNotNull(cache.get(born1980));
+        assertEquals(3, cache.getInvalidations());
+    }
+
+    @Test
+    public void testResultOfConcurrentWriteIsNotCached() {
+        PatientQueryCache cache = new PatientQueryCache();
+        PatientQueryCache.Filter filter = PatientQueryCache.filter("Muster", null, null, null);
+        long generation = cache.currentGeneration();
+        cache.onPatientWritten(row(1, "Eva", "Schmidt", "1950-01-01"));
+        cache.put(filter, List.of(), generation);
+        assertNull(cache.get(filter));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        PatientQueryCache cache = new PatientQueryCache(2);
+        PatientQueryCache.Filter a = PatientQueryCache.filter("A", null, null, null);
+        PatientQueryCache.Filter b = PatientQueryCache.filter("B", null, null, null);
+        PatientQueryCache.Filter c = PatientQueryCache.filter("C", null, null, null);
+        cache.put(a, List.of(), cache.currentGeneration());
+        cache.put(b, List.of(), cache.currentGeneration());
+        cache.get(a);
+        cache.put(c, List.of(), cache.currentGeneration());
+
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testChangeOfPatientTableClearsCache() {
+        PatientQueryCache cache = new PatientQueryCache();
+        cache.put(PatientQueryCache.filter("A", null, null, null), List.of(), cache.currentGeneration());
+        cache.onChange(new ChangeEvent(ChangeEvent.Table.STATION, ChangeEvent.Operation.UPDATE, 1));
+        assertEquals(1, cache.size());
+        cache.onChange(new ChangeEvent(ChangeEvent.Table.PERSON, ChangeEvent.Operation.UPDATE, 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testServiceInvalidatesOnStore() throws SQLException {
+        new DBCreator().createDatabase(URL, "sa", "");
+        BasicDBServiceImpl service = new BasicDBServiceImpl(URL, "sa", "");
+        try {
+            PatientQueryCache cache = new PatientQueryCache();
+            service.setPatientQueryCache(cache);
+            Patient max = service.createPatient("Muster", "Max");
+            max.setDateOfBirth(Date.valueOf("1970-01-01"));
+            service.store(max);
+
+            assertEquals(1, service.getPatients("Muster", null, null, null).size());
+            assertEquals(1, service.getPatients("Muster", null, null, null).size());
+            assertEquals(1, cache.getHits());
+
+            Patient eva = service.createPatient("Muster", "Eva");
+            eva.setDateOfBirth(Date.valueOf("1980-01-01"));
+            service.store(eva);
+            assertEquals(2, service.getPatients("Muster", null, null, null).size());
+
+            max.setLastname("Schmidt");
+            service.store(max);
+            assertEquals(1, service.getPatients("Muster", null, null, null).size());
+            assertEquals(1, service.getPatients("Schmidt", null, null, null).size());
+
+            // within a transaction the cache is neither read nor filled
+            long hits = cache.getHits();
+            service.begin();
+            eva.setLastname("Schmidt");
+            service.store(eva);
+            assertEquals(2, service.getPatients("Schmidt", null, null, null).size());
+            service.rollback();
+            assertEquals(hits, cache.getHits());
+            assertEquals(1, service.getPatients("Schmidt", null, null, null).size());
+        } finally {
+            service.close();
+            try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+}
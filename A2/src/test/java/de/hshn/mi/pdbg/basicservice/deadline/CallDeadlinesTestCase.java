@@ -0,0 +1,145 @@
+package de.hshn.mi.pdbg.basicservice.deadline;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.exception.DeadlineExceededException;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the expiry of {@link CallDeadlines}: nesting, statements and result rows after the deadline, and the
+ * deadlines of {@link BasicDBServiceImpl#withDeadline}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class CallDeadlinesTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:deadlines";
+
+    private CallDeadlines deadlines;
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        new DBCreator().createDatabase(URL, "sa", "");
+        deadlines = new CallDeadlines();
+        connection = DriverManager.getConnection(URL, "sa", "");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        deadlines.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connection.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testNestedCallsKeepEarlierDeadline() {
+        assertEquals(-1, deadlines.remainingMillis());
+        assertSame(connection, deadlines.guard(connection));
+        deadlines.call(60_000, () -> {
+            assertTrue(deadlines.remainingMillis() > 50_000);
+            deadlines.call(120_000, () -> {
+                assertTrue(deadlines.remainingMillis() <= 60_000);
+                return null;
+            });
+            deadlines.call(1_000, () -> {
+                assertTrue(deadlines.remainingMillis() <= 1_000);
+                return null;
+            });
+            assertTrue(deadlines.remainingMillis() > 50_000);
+            return null;
+        });
+        assertEquals(-1, deadlines.remainingMillis());
+        assertEquals(2, deadlines.getCalls());
+    }
+
+    @Test
+    public void testStatementAfterDeadlineFails() {
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class, () -> deadlines.call(20, () -> {
+            sleep(60);
+            try (Statement statement = deadlines.guard(connection).createStatement()) {
+                statement.executeQuery("SELECT COUNT(*) FROM Station");
+                return null;
+            } catch (SQLException cause) {
+                throw new IllegalStateException(cause);
+            }
+        }));
+        assertEquals(20, e.getBudgetMillis());
+        assertEquals(1, deadlines.getTimeouts());
+    }
+
+    @Test
+    public void testStatementGetsRemainingTimeAsQueryTimeout() {
+        int timeout = deadlines.call(5_000, () -> {
+            try (PreparedStatement statement = deadlines.guard(connection)
+                    .prepareStatement("SELECT COUNT(*) FROM Station")) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                }
+                return statement.getQueryTimeout();
+            } catch (SQLException cause) {
+                throw new IllegalStateException(cause);
+            }
+        });
+        assertTrue(timeout >= 1 && timeout <= 5, "query timeout " + timeout);
+        assertEquals(0, deadlines.getTimeouts());
+    }
+
+    @Test
+    public void testReadingRowsAfterDeadlineFails() {
+        assertThrows(DeadlineExceededException.class, () -> deadlines.call(50, () -> {
+            try (Statement statement = deadlines.guard(connection).createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT * FROM Station")) {
+                sleep(100);
+                resultSet.next();
+                return null;
+            } catch (SQLException cause) {
+                throw new IllegalStateException(cause);
+            }
+        }));
+    }
+
+    @Test
+    public void testServiceCallWithDeadline() {
+        BasicDBServiceImpl service = new BasicDBServiceImpl(URL, "sa", "");
+        try {
+            service.store(service.createWard("Chirurgie", 10));
+            assertEquals(1, service.withDeadline(5_000, service::getWards).size());
+            assertThrows(DeadlineExceededException.class, () -> service.withDeadline(20, () -> {
+                sleep(60);
+                return service.getWards();
+            }));
+            assertEquals(1, service.getCallDeadlines().getTimeouts());
+            // the connection is not harmed by the timeout
+            assertEquals(1, service.getWards().size());
+        } finally {
+            service.close();
+        }
+    }
+}
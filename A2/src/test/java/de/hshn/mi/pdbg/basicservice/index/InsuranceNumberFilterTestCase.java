@@ -0,0 +1,116 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the Bloom filter over insurance numbers and the duplicate detection of
+ * {@link BasicDBServiceImpl#importPatients} with and without it.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class InsuranceNumberFilterTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:insurancenumbers";
+
+    private static String number(int i) {
+        return String.format("A%09d", i);
+    }
+
+    @Test
+    public void testNoFalseNegativesAndBoundedFalsePositives() {
+        InsuranceNumberFilter filter = new InsuranceNumberFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(number(i));
+        }
+        filter.add(null);
+        assertEquals(10_000, filter.getAdded());
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(number(i)));
+        }
+        assertFalse(filter.mightContain(null));
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            if (filter.mightContain(number(i))) {
+                falsePositives++;
+            }
+        }
+        // 1 % expected; allow for the spread of the hash
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    public void testImportSkipsKnownNumbers() throws SQLException {
+        new DBCreator().createDatabase(URL, "sa", "");
+        BasicDBServiceImpl service = new BasicDBServiceImpl(URL, "sa", "");
+        try {
+            for (int i = 0; i < 5; i++) {
+                service.store(patient(service, "Stored" + i, number(i)));
+            }
+            assertEquals(Set.of(number(0), number(4)),
+                    service.findExistingInsuranceNumbers(List.of(number(0), number(4), number(99))));
+            assertEquals("Stored3", service.getPatientByInsuranceNumber(number(3)).getLastname());
+            assertNull(service.getPatientByInsuranceNumber(number(99)));
+
+            InsuranceNumberFilter filter = service.loadInsuranceNumberFilter(0.01);
+            assertTrue(filter.mightContain(number(2)));
+
+            List<Patient> batch = new ArrayList<>();
+            Patient known = patient(service, "Known", number(2));
+            Patient fresh = patient(service, "Fresh", number(10));
+            Patient twice = patient(service, "Twice", number(10));
+            Patient without = patient(service, "Without", null);
+            batch.add(known);
+            batch.add(fresh);
+            batch.add(twice);
+            batch.add(without);
+
+            List<Patient> duplicates = service.importPatients(batch, filter);
+
+            assertEquals(2, duplicates.size());
+            assertTrue(duplicates.contains(known) && duplicates.contains(twice));
+            assertTrue(fresh.isPersistent() && without.isPersistent());
+            assertFalse(known.isPersistent() || twice.isPersistent());
+            assertTrue(filter.mightContain(number(10)));
+
+            // a second batch with the same filter, and one without a filter, see the first import
+            Patient again = patient(service, "Again", number(10));
+            assertEquals(List.of(again), service.importPatients(List.of(again), filter));
+            Patient unfiltered = patient(service, "Unfiltered", number(10));
+            assertEquals(List.of(unfiltered), service.importPatients(List.of(unfiltered), null));
+            assertEquals(7, service.getPatients(null, null, null, null).size());
+        } finally {
+            service.close();
+            try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+
+    private static Patient patient(BasicDBServiceImpl service, String lastname, String insuranceNumber) {
+        Patient patient = service.createPatient(lastname, "Vorname");
+        patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+        patient.setHealthInsurance("AOK");
+        patient.setInsuranceNumber(insuranceNumber);
+        return patient;
+    }
+}
@@ -0,0 +1,134 @@
+package de.hshn.mi.pdbg.basicservice.index;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the overlap queries of {@link StayIntervalIndex} against a linear scan, the inclusive ends of a stay and
+ * the maintenance of the index by {@link BasicDBServiceImpl}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class StayIntervalIndexTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:stayindex";
+    private static final LocalDate BASE = LocalDate.of(2023, 1, 1);
+
+    @Test
+    public void testOverlappingMatchesLinearScan() {
+        Random random = new Random(42);
+        StayIntervalIndex index = new StayIntervalIndex();
+        Map<Long, StayInterval> expected = new HashMap<>();
+        for (long stayID = 1; stayID <= 2_000; stayID++) {
+            long start = BASE.toEpochDay() + random.nextInt(365);
+            long end = random.nextInt(10) == 0 ? StayInterval.OPEN_END : start + random.nextInt(30);
+            StayInterval interval = new StayInterval(stayID, 1 + random.nextInt(3), stayID, start, end);
+            index.put(interval);
+            expected.put(stayID, interval);
+        }
+        for (long stayID = 1; stayID <= 2_000; stayID += 7) {
+            index.remove(stayID);
+            expected.remove(stayID);
+        }
+        // moves a stay to another ward and changes its dates
+        StayInterval moved = new StayInterval(2, 3, 2, BASE.toEpochDay() + 100, BASE.toEpochDay() + 110);
+        index.put(moved);
+        expected.put(2L, moved);
+        assertEquals(expected.size(), index.size());
+
+        for (int query = 0; query < 200; query++) {
+            LocalDate from = BASE.plusDays(random.nextInt(400) - 20);
+            LocalDate to = from.plusDays(random.nextInt(40));
+            for (long wardID = 1; wardID <= 4; wardID++) {
+                List<StayInterval> actual = index.overlapping(wardID, from, to);
+                List<Long> scanned = new ArrayList<>();
+                for (StayInterval interval : expected.values()) {
+                    if (interval.getWardID() == wardID && interval.overlaps(from.toEpochDay(), to.toEpochDay())) {
+                        scanned.add(interval.getStayID());
+                    }
+                }
+                assertEquals(scanned.size(), actual.size(), "ward " + wardID + " " + from + ".." + to);
+                for (int i = 0; i < actual.size(); i++) {
+                    assertTrue(scanned.contains(actual.get(i).getStayID()));
+                    if (i > 0) {
+                        assertTrue(actual.get(i - 1).getStartDay() <= actual.get(i).getStartDay());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBothEndsAreInclusive() {
+        StayIntervalIndex index = new StayIntervalIndex();
+        index.put(new StayInterval(1, 1, 1, BASE.plusDays(10).toEpochDay(), BASE.plusDays(12).toEpochDay()));
+        index.put(new StayInterval(2, 1, 2, BASE.plusDays(12).toEpochDay(), StayInterval.OPEN_END));
+
+        assertEquals(0, index.occupancyAt(1, BASE.plusDays(9)));
+        assertEquals(1, index.occupancyAt(1, BASE.plusDays(10)));
+        assertEquals(2, index.occupancyAt(1, BASE.plusDays(12)));
+        assertEquals(1, index.occupancyAt(1, BASE.plusDays(13)));
+        assertEquals(1, index.occupancyAt(1, BASE.plusDays(5_000)));
+        assertEquals(0, index.occupancyAt(2, BASE.plusDays(12)));
+        assertArrayEquals(new int[] {0, 1, 1, 2, 1}, index.dailyOccupancy(1, BASE.plusDays(9), BASE.plusDays(13)));
+    }
+
+    @Test
+    public void testServiceKeepsIndexCurrent() throws SQLException {
+        new DBCreator().createDatabase(URL, "sa", "");
+        BasicDBServiceImpl service = new BasicDBServiceImpl(URL, "sa", "");
+        try {
+            Ward ward = service.createWard("Chirurgie", 10);
+            service.store(ward);
+            Patient patient = service.createPatient("Muster", "Max");
+            patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+            service.store(patient);
+            HospitalStay before = service.createHospitalStay(patient, ward, Date.valueOf("2023-01-01"));
+            before.setDischargeDate(Date.valueOf("2023-01-05"));
+            service.store(before);
+
+            StayIntervalIndex index = service.enableStayIndex();
+            assertEquals(1, index.occupancyAt(ward.getObjectID(), LocalDate.of(2023, 1, 5)));
+
+            HospitalStay stay = service.createHospitalStay(patient, ward, Date.valueOf("2023-02-01"));
+            service.store(stay);
+            assertEquals(1, index.occupancyAt(ward.getObjectID(), LocalDate.of(2024, 1, 1)));
+
+            stay.setDischargeDate(Date.valueOf("2023-02-10"));
+            service.store(stay);
+            assertEquals(0, index.occupancyAt(ward.getObjectID(), LocalDate.of(2024, 1, 1)));
+            assertEquals(1, index.occupancyAt(ward.getObjectID(), LocalDate.of(2023, 2, 10)));
+
+            service.removeHospitalStay(stay.getObjectID());
+            assertEquals(0, index.occupancyAt(ward.getObjectID(), LocalDate.of(2023, 2, 10)));
+            assertEquals(1, index.size());
+        } finally {
+            service.close();
+            try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.hshn.mi.pdbg.basicservice.paging;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the page loading of {@link VirtualRows} with a list as result, and paging through sorted results of
+ * {@link BasicDBServiceImpl}.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class VirtualRowsTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:virtualrows";
+
+    /**
+     * Serves windows of a list and records the requested offsets.
+     */
+    private static final class ListLoader implements VirtualRows.PageLoader<Integer> {
+        final List<Integer> rows = new ArrayList<>();
+        final List<Integer> offsets = new ArrayList<>();
+
+        ListLoader(int size) {
+            for (int i = 0; i < size; i++) {
+                rows.add(i);
+            }
+        }
+
+        @Override
+        public List<Integer> load(int offset, int limit) {
+            offsets.add(offset);
+            return new ArrayList<>(rows.subList(Math.min(offset, rows.size()), Math.min(offset + limit, rows.size())));
+        }
+    }
+
+    @Test
+    public void testScrollDown() {
+        ListLoader loader = new ListLoader(250);
+        VirtualRows<Integer> rows = new VirtualRows<>(loader, 10);
+
+        assertEquals(30, rows.getRowCount());
+        assertFalse(rows.isComplete());
+        for (int i = 0; i < 250; i++) {
+            assertEquals(i, rows.get(i));
+        }
+        assertTrue(rows.isComplete());
+        assertEquals(250, rows.getRowCount());
+        assertNull(rows.get(250));
+        // every query loads the missed page and the next one
+        assertEquals(13, loader.offsets.size());
+    }
+
+    @Test
+    public void testScrollUpLoadsPagesAbove() {
+        ListLoader loader = new ListLoader(250);
+        VirtualRows<Integer> rows = new VirtualRows<>(loader, 10);
+
+        assertEquals(95, rows.get(95));
+        assertEquals(85, rows.get(85));
+        assertEquals(List.of(90, 70), loader.offsets);
+        assertEquals(75, rows.get(75));
+        assertEquals(2, loader.offsets.size());
+    }
+
+    @Test
+    public void testShortResults() {
+        assertEquals(0, new VirtualRows<>(new ListLoader(0), 10).getRowCount());
+        VirtualRows<Integer> rows = new VirtualRows<>(new ListLoader(15), 10);
+        assertEquals(15, rows.getRowCount());
+        assertTrue(rows.isComplete());
+        assertEquals(14, rows.get(14));
+        assertNull(rows.get(15));
+        // a jump behind the end of a result whose size is not known yet
+        VirtualRows<Integer> jump = new VirtualRows<>(new ListLoader(25), 10);
+        assertNull(jump.get(100));
+        assertEquals(24, jump.get(24));
+        assertEquals(25, jump.getRowCount());
+    }
+
+    @Test
+    public void testOnlyFewPagesAreKept() {
+        ListLoader loader = new ListLoader(1_000);
+        VirtualRows<Integer> rows = new VirtualRows<>(loader, 10);
+        for (int i = 0; i < 500; i++) {
+            rows.get(i);
+        }
+        int queries = loader.offsets.size();
+        assertEquals(0, rows.get(0));
+        assertEquals(queries + 1, loader.offsets.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ListLoader loader = new ListLoader(20);
+        VirtualRows<Integer> rows = new VirtualRows<>(loader, 10);
+        assertEquals(20, rows.getRowCount());
+        loader.rows.add(0, -1);
+        assertEquals(0, rows.get(0));
+
+        rows.invalidate();
+        assertEquals(-1, rows.get(0));
+        assertEquals(19, rows.get(20));
+        assertEquals(21, rows.getRowCount());
+    }
+
+    @Test
+    public void testServicePages() throws SQLException {
+        new DBCreator().createDatabase(URL, "sa", "");
+        BasicDBServiceImpl service = new BasicDBServiceImpl(URL, "sa", "");
+        try {
+            for (int i = 0; i < 25; i++) {
+                Patient patient = service.createPatient(String.format("Name%02d", (i * 7) % 25), "Vorname");
+                patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+                service.store(patient);
+                service.store(service.createWard(String.format("Station%02d", 24 - i), i + 1));
+            }
+
+            VirtualRows<Patient> patients = new VirtualRows<>((offset, limit) -> service.getPatients(null, null, null,
+                    null, PatientSort.LASTNAME, SortDirection.DESCENDING, offset, limit), 4);
+            for (int i = 0; i < 25; i++) {
+                assertEquals(String.format("Name%02d", 24 - i), patients.get(i).getLastname());
+            }
+            assertNull(patients.get(25));
+            assertEquals(25, patients.getRowCount());
+
+            VirtualRows<Ward> wards = new VirtualRows<>((offset, limit) ->
+                    service.getWards(WardSort.NAME, SortDirection.ASCENDING, offset, limit), 10);
+            assertEquals(30, wards.getRowCount());
+            assertFalse(wards.isComplete());
+            for (int i = 0; i < 25; i++) {
+                assertEquals(String.format("Station%02d", i), wards.get(i).getName());
+            }
+            assertEquals(25, wards.getRowCount());
+        } finally {
+            service.close();
+            try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+}
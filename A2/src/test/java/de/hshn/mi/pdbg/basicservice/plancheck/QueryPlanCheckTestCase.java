@@ -0,0 +1,28 @@
+package de.hshn.mi.pdbg.basicservice.plancheck;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the {@link QueryPlanCheck} against the checked-in HSQLDB baseline {@code queryplans/hsqldb.json} on every
+ * build, so a change that loses an index fails the tests without the {@code tool-queryplans} profile.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class QueryPlanCheckTestCase {
+
+    @Test
+    public void testPlansMatchHSQLDBBaseline() throws SQLException, IOException {
+        QueryPlanCheckConfig config = QueryPlanCheckConfig.parse(new String[] {
+            "--url=jdbc:hsqldb:mem:queryplancheck", "--baseline=queryplans/hsqldb.json"
+        });
+        assertTrue(new QueryPlanCheck(config).run(), "Query plans regressed against queryplans/hsqldb.json; "
+                + "if the new plans are intended, rebaseline with mvn -P tool-queryplans verify "
+                + "-Dqueryplans.args=--rebaseline=true");
+    }
+}
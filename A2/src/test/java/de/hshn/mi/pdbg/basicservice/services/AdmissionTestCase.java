@@ -0,0 +1,160 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.NoFreeBedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link BasicDBServiceImpl#admit} and {@link BasicDBServiceImpl#admitAll} never admit more patients
+ * to a ward than it has beds, also when several connections admit at the same time.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class AdmissionTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:admission";
+    private static final Date TODAY = Date.valueOf("2023-03-01");
+
+    private BasicDBServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        new DBCreator().createDatabase(URL, "sa", "");
+        service = new BasicDBServiceImpl(URL, "sa", "");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        service.close();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    private static Patient newPatient(BasicDBServiceImpl service, String lastname) {
+        Patient patient = service.createPatient(lastname, "Vorname");
+        patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+        return patient;
+    }
+
+    private Ward storedWard(String name, int beds) {
+        Ward ward = service.createWard(name, beds);
+        service.store(ward);
+        return ward;
+    }
+
+    @Test
+    public void testAdmitRejectsFullWard() {
+        Ward ward = storedWard("Chirurgie", 2);
+        HospitalStay first = service.admit(newPatient(service, "A"), ward, TODAY);
+        service.admit(newPatient(service, "B"), ward, TODAY);
+
+        Patient rejected = newPatient(service, "C");
+        NoFreeBedException e = assertThrows(NoFreeBedException.class, () -> service.admit(rejected, ward, TODAY));
+        assertEquals(ward.getObjectID(), e.getWardID());
+        assertFalse(rejected.isPersistent());
+        assertTrue(rejected.getHospitalStays().isEmpty());
+        assertEquals(0, service.getFreeBeds(ward));
+
+        first.setDischargeDate(Date.valueOf("2023-03-02"));
+        service.store(first);
+        assertEquals(1, service.getFreeBeds(ward));
+        assertTrue(service.admit(rejected, ward, Date.valueOf("2023-03-03")).isPersistent());
+    }
+
+    @Test
+    public void testAdmitAllKeepsOrderPerWard() {
+        Ward large = storedWard("Innere", 2);
+        Ward small = storedWard("Kardiologie", 1);
+        List<HospitalStay> stays = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            stays.add(service.createHospitalStay(newPatient(service, "Innere" + i), large, TODAY));
+            if (i < 2) {
+                stays.add(service.createHospitalStay(newPatient(service, "Kardio" + i), small, TODAY));
+            }
+        }
+
+        List<HospitalStay> rejected = service.admitAll(stays);
+
+        // the third stay on the large ward and the second one on the small ward
+        assertEquals(2, rejected.size());
+        assertTrue(rejected.containsAll(List.of(stays.get(3), stays.get(4))));
+        for (HospitalStay stay : stays) {
+            assertEquals(!rejected.contains(stay), stay.isPersistent());
+        }
+        assertEquals(0, service.getFreeBeds(large));
+        assertEquals(0, service.getFreeBeds(small));
+        assertEquals(2, service.getAllocatedBeds(large));
+        assertEquals(1, service.getAllocatedBeds(small));
+    }
+
+    @Test
+    public void testConcurrentAdmissionsDoNotOverbook() throws Exception {
+        int beds = 10;
+        int threads = 6;
+        int perThread = 5;
+        Ward ward = storedWard("Chirurgie", beds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    BasicDBServiceImpl own = new BasicDBServiceImpl(URL, "sa", "");
+                    try {
+                        Ward same = own.getWard(ward.getObjectID());
+                        start.await();
+                        int admitted = 0;
+                        for (int i = 0; i < perThread; i++) {
+                            try {
+                                own.admit(newPatient(own, "P" + thread + "-" + i), same, TODAY);
+                                admitted++;
+                            } catch (NoFreeBedException e) {
+                                // the ward is full
+                            }
+                        }
+                        return admitted;
+                    } finally {
+                        own.close();
+                    }
+                }));
+            }
+            start.countDown();
+            int admitted = 0;
+            for (Future<Integer> result : results) {
+                admitted += result.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(beds, admitted);
+            assertEquals(beds, service.getAllocatedBeds(ward));
+            assertEquals(0, service.getFreeBeds(ward));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package de.hshn.mi.pdbg.basicservice.services;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.exception.StoreException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the explicit and the implicit transactions of {@link BasicDBServiceImpl}: commit, rollback and the reset
+ * of the objects written in a rolled back transaction.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class TransactionTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:transaction";
+
+    private BasicDBServiceImpl service;
+    private BasicDBServiceImpl other;
+
+    @BeforeEach
+    public void setUp() {
+        new DBCreator().createDatabase(URL, "sa", "");
+        service = new BasicDBServiceImpl(URL, "sa", "");
+        other = new BasicDBServiceImpl(URL, "sa", "");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        other.close();
+        service.close();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testCommit() {
+        service.begin(Durability.RELAXED);
+        assertTrue(service.isInTransaction());
+        Ward first = service.createWard("Chirurgie", 10);
+        Ward second = service.createWard("Innere", 20);
+        service.store(first);
+        service.store(second);
+        service.commit();
+
+        assertFalse(service.isInTransaction());
+        assertEquals("Chirurgie", other.getWard(first.getObjectID()).getName());
+        assertEquals("Innere", other.getWard(second.getObjectID()).getName());
+    }
+
+    @Test
+    public void testRollbackResetsObjects() {
+        Ward stored = service.createWard("Chirurgie", 10);
+        service.store(stored);
+
+        service.begin();
+        stored.setName("Kardiologie");
+        service.store(stored);
+        Ward inserted = service.createWard("Innere", 20);
+        service.store(inserted);
+        service.rollback();
+
+        assertFalse(service.isInTransaction());
+        assertFalse(inserted.isPersistent());
+        assertEquals("Chirurgie", other.getWard(stored.getObjectID()).getName());
+        assertEquals(1, other.getWards().size());
+        // the row version was restored, so the object can be stored again
+        service.store(stored);
+        service.store(inserted);
+        assertEquals("Kardiologie", other.getWard(stored.getObjectID()).getName());
+        assertEquals(2, other.getWards().size());
+    }
+
+    @Test
+    public void testInTransactionRollsBackOnException() {
+        Ward ward = service.createWard("Chirurgie", 10);
+        IllegalStateException failure = new IllegalStateException("stop");
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> service.inTransaction(() -> {
+            service.store(ward);
+            throw failure;
+        }));
+
+        assertEquals(failure, thrown);
+        assertFalse(service.isInTransaction());
+        assertFalse(ward.isPersistent());
+        assertTrue(other.getWards().isEmpty());
+    }
+
+    @Test
+    public void testFailedCascadeResetsObjects() throws SQLException {
+        Patient patient = service.createPatient("Muster", "Max");
+        patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+        // longer than the column, so the ward is rejected after the patient has been inserted
+        Ward ward = service.createWard("X".repeat(60), 10);
+        HospitalStay stay = service.createHospitalStay(patient, ward, Date.valueOf("2023-01-01"));
+
+        assertThrows(StoreException.class, () -> service.store(stay));
+
+        assertFalse(service.isInTransaction());
+        assertFalse(stay.isPersistent());
+        assertFalse(patient.isPersistent());
+        assertFalse(ward.isPersistent());
+        try (Statement statement = service.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM Person")) {
+            resultSet.next();
+            assertEquals(0, resultSet.getInt(1));
+        }
+        ward.setName("Chirurgie");
+        service.store(stay);
+        assertTrue(stay.isPersistent());
+        assertEquals(1, other.getHospitalStays(patient.getObjectID()).size());
+    }
+}
@@ -0,0 +1,145 @@
+package de.hshn.mi.pdbg.basicservice.shard;
+
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.HospitalStay;
+import de.hshn.mi.pdbg.basicservice.Patient;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the ID ranges of {@link ShardIds} and the routing of {@link ShardedBasicDBService} over three in-memory
+ * HSQLDB databases.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class ShardedBasicDBServiceTestCase {
+
+    private static final int SHARDS = 3;
+
+    private final List<BasicDBServiceImpl> shards = new ArrayList<>();
+    private ShardedBasicDBService service;
+
+    private static String url(int shard) {
+        return "jdbc:hsqldb:mem:shard" + shard;
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            new DBCreator().createDatabase(url(i), "sa", "");
+            BasicDBServiceImpl shard = new BasicDBServiceImpl(url(i), "sa", "");
+            ShardIds.prepare(shard.getConnection(), i);
+            shards.add(shard);
+        }
+        service = new ShardedBasicDBService(shards, 1);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        service.close();
+        for (int i = 0; i < SHARDS; i++) {
+            try (Connection connection = DriverManager.getConnection(url(i), "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+
+    @Test
+    public void testIdRanges() {
+        assertEquals(0, ShardIds.firstId(0));
+        assertEquals(ShardIds.firstId(4), ShardIds.limitId(3));
+        assertEquals(3, ShardIds.shardOf(ShardIds.firstId(3)));
+        assertEquals(3, ShardIds.shardOf(ShardIds.limitId(3) - 1));
+        assertEquals(0, ShardIds.shardOf(1));
+        assertEquals(ShardIds.MAX_SHARDS - 1, ShardIds.shardOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, ShardIds.limitId(ShardIds.MAX_SHARDS - 1));
+        assertThrows(AssertionError.class, () -> ShardIds.shardOf(0));
+        assertThrows(AssertionError.class, () -> ShardIds.firstId(ShardIds.MAX_SHARDS));
+    }
+
+    @Test
+    public void testObjectsAreRoutedByTheirId() {
+        List<Ward> wards = new ArrayList<>();
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            Ward ward = service.getShard(i).createWard("Station" + i, 10 + i);
+            service.store(ward);
+            Patient patient = service.getShard(i).createPatient("Patient" + i, "Vorname");
+            patient.setDateOfBirth(Date.valueOf("1970-01-01"));
+            service.store(patient);
+            assertEquals(i, ShardIds.shardOf(ward.getObjectID()));
+            assertEquals(i, ShardIds.shardOf(patient.getObjectID()));
+            wards.add(ward);
+            patients.add(patient);
+        }
+        Ward home = service.createWard("Home", 5);
+        service.store(home);
+        assertEquals(1, ShardIds.shardOf(home.getObjectID()));
+
+        for (int i = 0; i < SHARDS; i++) {
+            assertEquals("Station" + i, service.getWard(wards.get(i).getObjectID()).getName());
+            assertEquals("Patient" + i, service.getPatient(patients.get(i).getObjectID()).getLastname());
+            // no other shard holds the objects
+            assertNull(shards.get((i + 1) % SHARDS).getWard(wards.get(i).getObjectID()));
+        }
+
+        List<Ward> all = service.getWards();
+        assertEquals(List.of("Station0", "Station1", "Home", "Station2"), all.stream().map(Ward::getName).toList());
+        assertEquals(3, service.getPatients(null, null, null, null).size());
+
+        HospitalStay stay = service.createHospitalStay(patients.get(2), wards.get(2), Date.valueOf("2023-01-01"));
+        service.store(stay);
+        assertEquals(2, ShardIds.shardOf(stay.getObjectID()));
+        assertEquals(1, service.getHospitalStays(patients.get(2).getObjectID()).size());
+        assertEquals(1, service.getAllocatedBeds(null));
+        assertEquals(10 + 11 + 12 + 5 - 1, service.getFreeBeds(null));
+        assertEquals(11, service.getFreeBeds(wards.get(2)));
+
+        service.removeHospitalStay(stay.getObjectID());
+        assertTrue(service.getHospitalStays(patients.get(2).getObjectID()).isEmpty());
+
+        assertThrows(AssertionError.class,
+                () -> service.createHospitalStay(patients.get(0), wards.get(1), Date.valueOf("2023-01-01")));
+        assertThrows(AssertionError.class, () -> service.getWard(ShardIds.firstId(SHARDS)));
+    }
+
+    @Test
+    public void testUnpreparedDatabaseIsRefused() throws SQLException {
+        String url = "jdbc:hsqldb:mem:shardunprepared";
+        new DBCreator().createDatabase(url, "sa", "");
+        BasicDBServiceImpl unprepared = new BasicDBServiceImpl(url, "sa", "");
+        try {
+            List<BasicDBServiceImpl> list = List.of(shards.get(0), unprepared);
+            assertThrows(IllegalStateException.class, () -> ShardIds.verify(unprepared.getConnection(), 1));
+            assertThrows(IllegalStateException.class, () -> new ShardedBasicDBService(list, 0));
+
+            // a database with IDs of shard 0 cannot become another shard
+            unprepared.store(unprepared.createWard("Chirurgie", 10));
+            assertThrows(IllegalStateException.class, () -> ShardIds.prepare(unprepared.getConnection(), 1));
+        } finally {
+            unprepared.close();
+            try (Connection connection = DriverManager.getConnection(url, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.hshn.mi.pdbg.basicservice.writebehind;
+
+import de.hshn.mi.pdbg.PersistentObject;
+import de.hshn.mi.pdbg.basicservice.DBCreator;
+import de.hshn.mi.pdbg.basicservice.Ward;
+import de.hshn.mi.pdbg.basicservice.exception.OptimisticLockException;
+import de.hshn.mi.pdbg.basicservice.impl.WardImpl;
+import de.hshn.mi.pdbg.basicservice.services.BasicDBServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests the snapshots and the error handling of {@link WriteBehindQueue} against an in-memory HSQLDB database.
+ *
+ * @author Neaga Vlad, Abdul Satar Amiri, Hussein Radujew
+ * @version 1.0
+ */
+public class WriteBehindQueueTestCase {
+
+    private static final String URL = "jdbc:hsqldb:mem:writebehind";
+
+    private BasicDBServiceImpl service;
+    private BasicDBServiceImpl other;
+
+    @BeforeEach
+    public void setUp() {
+        new DBCreator().createDatabase(URL, "sa", "");
+        service = new BasicDBServiceImpl(URL, "sa", "");
+        other = new BasicDBServiceImpl(URL, "sa", "");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        other.close();
+        service.close();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testOneStaleObjectInBatch() {
+        Ward w1 = service.createWard("Chirurgie", 10);
+        Ward w2 = service.createWard("Innere", 20);
+        service.store(w1);
+        service.store(w2);
+        Ward concurrent = other.getWard(w2.getObjectID());
+        concurrent.setName("Kardiologie");
+        other.store(concurrent);
+
+        List<PersistentObject> failed = new ArrayList<>();
+        List<Exception> causes = new ArrayList<>();
+        WriteBehindOptions options = new WriteBehindOptions(10, 10, 60_000, 1_000);
+        try (WriteBehindQueue queue = new WriteBehindQueue(URL, "sa", "", options, (object, cause) -> {
+            failed.add(object);
+            causes.add(cause);
+        })) {
+            w1.setName("Neurologie");
+            w2.setName("Onkologie");
+            queue.enqueue((WardImpl) w1);
+            queue.enqueue((WardImpl) w2);
+            queue.flush();
+        }
+
+        assertEquals(1, failed.size());
+        assertSame(w2, failed.get(0));
+        assertInstanceOf(OptimisticLockException.class, causes.get(0));
+        assertEquals("Neurologie", other.getWard(w1.getObjectID()).getName());
+        assertEquals("Kardiologie", other.getWard(w2.getObjectID()).getName());
+        assertEquals(1, ((WardImpl) w1).getVersion());
+        assertEquals(0, ((WardImpl) w2).getVersion());
+    }
+
+    @Test
+    public void testChangeAfterEnqueueIsNotWritten() {
+        Ward ward = service.createWard("Chirurgie", 10);
+        service.store(ward);
+
+        List<Exception> causes = new ArrayList<>();
+        WriteBehindOptions options = new WriteBehindOptions(10, 10, 60_000, 1_000);
+        try (WriteBehindQueue queue = new WriteBehindQueue(URL, "sa", "", options,
+                (object, cause) -> causes.add(cause))) {
+            ward.setName("Neurologie");
+            queue.enqueue((WardImpl) ward);
+            ward.setName("Onkologie");
+            queue.flush();
+            assertEquals("Neurologie", other.getWard(ward.getObjectID()).getName());
+
+            queue.enqueue((WardImpl) ward);
+            queue.flush();
+        }
+
+        assertEquals(0, causes.size());
+        assertEquals("Onkologie", other.getWard(ward.getObjectID()).getName());
+        assertEquals(2, ((WardImpl) ward).getVersion());
+    }
+}